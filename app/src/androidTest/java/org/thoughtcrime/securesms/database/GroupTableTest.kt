@@ -19,6 +19,7 @@ import org.thoughtcrime.securesms.recipients.Recipient
 import org.thoughtcrime.securesms.recipients.RecipientId
 import org.thoughtcrime.securesms.testing.SignalActivityRule
 import java.security.SecureRandom
+import kotlin.concurrent.thread
 import kotlin.random.Random
 
 class GroupTableTest {
@@ -34,6 +35,7 @@ class GroupTableTest {
 
     groupTable.writableDatabase.deleteAll(GroupTable.TABLE_NAME)
     groupTable.writableDatabase.deleteAll(GroupTable.MembershipTable.TABLE_NAME)
+    groupTable.invalidateMembershipCache()
   }
 
   @Test
@@ -274,6 +276,87 @@ class GroupTableTest {
     }
   }
 
+  @Test
+  fun givenSeveralGroups_whenIGetGroupsContainingMember_thenIExpectTheSameResultAsFromDisk() {
+    val g1 = insertPushGroupWithSelfAndOthers(listOf(harness.others[0], harness.others[1]))
+    val g2 = insertPushGroup()
+    insertMmsGroup(members = listOf(harness.self.id, harness.others[1]))
+    insertThread(g2)
+    insertThread(g1)
+
+    assertMembershipCacheMatchesDisk()
+  }
+
+  @Test
+  fun givenSeveralGroups_whenIRemoveAndRemapMembers_thenIExpectTheSameResultAsFromDisk() {
+    val g1 = insertPushGroupWithSelfAndOthers(listOf(harness.others[0], harness.others[1]))
+    insertPushGroup()
+    insertMmsGroup(members = listOf(harness.self.id, harness.others[0]))
+
+    assertMembershipCacheMatchesDisk()
+
+    groupTable.remove(g1, harness.others[1])
+    assertMembershipCacheMatchesDisk()
+
+    groupTable.remapRecipient(harness.others[0], harness.others[1])
+    assertMembershipCacheMatchesDisk()
+  }
+
+  @Test
+  fun givenAMembershipChangeInATransactionThatRollsBack_whenIGetGroupsContainingMember_thenIExpectTheSameResultAsFromDisk() {
+    val g1 = insertPushGroup()
+    assertMembershipCacheMatchesDisk()
+
+    val db = groupTable.writableDatabase
+    db.beginTransaction()
+    try {
+      groupTable.remove(g1, harness.others[0])
+      assertEquals(0, groupTable.getGroupsContainingMember(harness.others[0], pushOnly = false, includeInactive = true).size)
+    } finally {
+      db.endTransaction()
+    }
+
+    assertMembershipCacheMatchesDisk()
+    assertEquals(1, groupTable.getGroupsContainingMember(harness.others[0], pushOnly = false, includeInactive = true).size)
+  }
+
+  @Test
+  fun givenAnUncommittedMembershipChange_whenAnotherThreadGetsGroupsContainingMember_thenIExpectTheCommittedResult() {
+    val g1 = insertPushGroup()
+    assertMembershipCacheMatchesDisk()
+
+    val db = groupTable.writableDatabase
+    db.beginTransaction()
+    try {
+      groupTable.remove(g1, harness.others[0])
+      assertEquals(0, groupTable.getGroupsContainingMember(harness.others[0], pushOnly = false, includeInactive = true).size)
+
+      var fromOtherThread = -1
+      thread { fromOtherThread = groupTable.getGroupsContainingMember(harness.others[0], pushOnly = false, includeInactive = true).size }.join()
+      assertEquals(1, fromOtherThread)
+
+      db.setTransactionSuccessful()
+    } finally {
+      db.endTransaction()
+    }
+
+    assertMembershipCacheMatchesDisk()
+    assertEquals(0, groupTable.getGroupsContainingMember(harness.others[0], pushOnly = false, includeInactive = true).size)
+  }
+
+  private fun assertMembershipCacheMatchesDisk() {
+    for (recipientId in listOf(harness.self.id) + harness.others) {
+      for (pushOnly in listOf(true, false)) {
+        for (includeInactive in listOf(true, false)) {
+          val fromCache = groupTable.getGroupsContainingMember(recipientId, pushOnly, includeInactive)
+          val fromDisk = groupTable.getGroupsContainingMemberFromDisk(recipientId, pushOnly, includeInactive)
+
+          assertEquals(fromDisk.associate { it.id to it.members.toSet() }, fromCache.associate { it.id to it.members.toSet() })
+        }
+      }
+    }
+  }
+
   private fun insertThread(groupId: GroupId): Long {
     val groupRecipient = SignalDatabase.recipients.getByGroupId(groupId).get()
     return SignalDatabase.threads.getOrCreateThreadIdFor(Recipient.resolved(groupRecipient))
@@ -21,6 +21,7 @@ import org.thoughtcrime.securesms.jobmanager.JobTracker
 import org.thoughtcrime.securesms.util.TextSecurePreferences
 import java.util.concurrent.CountDownLatch
 import kotlin.random.Random
+import kotlin.time.Duration.Companion.nanoseconds
 
 @Ignore("This is just for testing performance, not correctness, and they can therefore take a long time. Run them manually when you need to.")
 @RunWith(AndroidJUnit4::class)
@@ -45,6 +46,53 @@ class JobManagerPerformanceTests {
     runTest("noQueues", 2000) { TestJob(queue = null) }
   }
 
+  @Test
+  fun testEnqueuePerformance_individually() {
+    runEnqueueTest("enqueueIndividually", 10_000) { jobManager, jobs ->
+      jobs.forEach { jobManager.add(it) }
+    }
+  }
+
+  @Test
+  fun testEnqueuePerformance_batched() {
+    runEnqueueTest("enqueueBatched", 10_000) { jobManager, jobs ->
+      jobManager.runInBatch {
+        jobs.forEach { jobManager.add(it) }
+      }
+    }
+  }
+
+  /**
+   * Times how long it takes for the jobs to be enqueued and written to the job database, without running them.
+   */
+  private fun runEnqueueTest(name: String, count: Int, enqueue: (JobManager, List<TestJob>) -> Unit) {
+    val jobManager = testJobManager(AppDependencies.application)
+    val jobs = (1..count).map { TestJob(queue = null) }
+
+    val latch = CountDownLatch(count)
+    jobManager.addListener({ it.factoryKey == TestJob.KEY }) { _, state ->
+      if (state.isComplete) {
+        latch.countDown()
+      }
+    }
+
+    // Wait for initialization, so it isn't part of the measurement
+    jobManager.flush()
+
+    Log.i(TAG, "[$name] Adding jobs...")
+    val start = System.nanoTime()
+    enqueue(jobManager, jobs)
+    jobManager.flush()
+    val duration = (System.nanoTime() - start).nanoseconds
+
+    Log.i(TAG, "[$name] Enqueued $count jobs in ${duration.inWholeMilliseconds} ms (~${duration.inWholeMicroseconds / count} us per job)")
+
+    // Run the jobs, so they don't stick around in the job database
+    jobManager.beginJobLoop()
+    latch.await()
+    Log.i(TAG, "[$name] Jobs complete!")
+  }
+
   private fun runTest(name: String, count: Int, jobCreator: () -> TestJob) {
     val context = AppDependencies.application
     val jobManager = testJobManager(context)
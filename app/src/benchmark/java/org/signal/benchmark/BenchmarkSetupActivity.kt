@@ -4,9 +4,12 @@ import android.os.Bundle
 import android.widget.TextView
 import org.signal.benchmark.setup.TestMessages
 import org.signal.benchmark.setup.TestUsers
+import org.signal.core.util.concurrent.SignalExecutors
 import org.thoughtcrime.securesms.BaseActivity
 import org.thoughtcrime.securesms.database.SignalDatabase
+import org.thoughtcrime.securesms.database.TestDbUtils
 import org.thoughtcrime.securesms.recipients.Recipient
+import kotlin.random.Random
 
 class BenchmarkSetupActivity : BaseActivity() {
   override fun onCreate(savedInstanceState: Bundle?) {
@@ -15,6 +18,15 @@ class BenchmarkSetupActivity : BaseActivity() {
     when (intent.extras!!.getString("setup-type")) {
       "cold-start" -> setupColdStart()
       "conversation-open" -> setupConversationOpen()
+      "conversation-scroll" -> setupConversationScroll()
+      "message-search" -> {
+        // Far too slow for the main thread, so only say we're done once it's finished.
+        SignalExecutors.BOUNDED.execute {
+          setupMessageSearch()
+          runOnUiThread { setContentView(TextView(this).apply { text = "done" }) }
+        }
+        return
+      }
     }
 
     val textView: TextView = TextView(this).apply {
@@ -54,4 +66,54 @@ class BenchmarkSetupActivity : BaseActivity() {
       SignalDatabase.threads.update(SignalDatabase.threads.getOrCreateThreadIdFor(recipient = recipient), true)
     }
   }
+
+  /**
+   * A long chat mixing media with text that's expensive to present -- emoji, links, phone numbers, and long multi-line bodies.
+   */
+  private fun setupConversationScroll() {
+    TestUsers.setupSelf()
+    TestUsers.setupTestRecipient().let {
+      val recipient: Recipient = Recipient.resolved(it)
+      val messagesToAdd = 1000
+      val generator: TestMessages.TimestampGenerator = TestMessages.TimestampGenerator(System.currentTimeMillis() - (messagesToAdd * 2000L) - 60_000L)
+
+      for (i in 0 until messagesToAdd) {
+        when (i % 5) {
+          0 -> TestMessages.insertIncomingTextMessage(other = recipient, body = "Message $i \uD83D\uDE00\uD83C\uDF89 have you seen https://signal.org/blog/ yet? \uD83D\uDC4D", timestamp = generator.nextTimestamp())
+          1 -> TestMessages.insertOutgoingTextMessage(other = recipient, body = "Message $i: call me at +1 555 555 0123 or mail test@example.com \u2764\uFE0F\n".repeat(4), timestamp = generator.nextTimestamp())
+          2 -> TestMessages.insertIncomingImageMessage(other = recipient, body = "Album $i \uD83D\uDCF7", attachmentCount = 2, timestamp = generator.nextTimestamp())
+          3 -> TestMessages.insertOutgoingImageMessage(other = recipient, attachmentCount = 1, timestamp = generator.nextTimestamp())
+          else -> TestMessages.insertIncomingTextMessage(other = recipient, body = "\uD83D\uDE02\uD83D\uDE02\uD83D\uDE02", timestamp = generator.nextTimestamp())
+        }
+      }
+
+      SignalDatabase.messages.setAllMessagesRead()
+      SignalDatabase.threads.update(SignalDatabase.threads.getOrCreateThreadIdFor(recipient = recipient), true)
+    }
+  }
+
+  /**
+   * A large search index spread across a handful of chats, so every keystroke of a search has plenty to match.
+   */
+  private fun setupMessageSearch() {
+    val self = TestUsers.setupSelf()
+    val recipients = TestUsers.setupTestRecipients(20)
+    val messagesPerChat = 25_000
+    val random = Random(42)
+    val words = listOf(
+      "hello", "help", "helmet", "world", "would", "word", "lunch", "later", "tomorrow", "today", "meeting", "movie", "dinner", "coffee",
+      "weekend", "photo", "party", "birthday", "call", "running", "late", "sounds", "good", "thanks", "maybe", "where", "when", "home"
+    )
+
+    recipients.forEachIndexed { index, id ->
+      val threadId = SignalDatabase.threads.getOrCreateThreadIdFor(recipient = Recipient.resolved(id))
+      val start = System.currentTimeMillis() - (recipients.size - index) * messagesPerChat.toLong() - 60_000L
+
+      TestDbUtils.insertIncomingTextMessages(threadId = threadId, sender = id, self = self.id, count = messagesPerChat, startTimestamp = start) {
+        List(3 + random.nextInt(8)) { words[random.nextInt(words.size)] }.joinToString(" ")
+      }
+
+      SignalDatabase.threads.update(threadId, true)
+    }
+  }
 }
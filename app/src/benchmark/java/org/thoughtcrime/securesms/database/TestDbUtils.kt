@@ -1,7 +1,10 @@
 package org.thoughtcrime.securesms.database
 
 import android.content.ContentValues
+import androidx.core.content.contentValuesOf
 import org.signal.core.util.SqlUtil.buildArgs
+import org.signal.core.util.withinTransaction
+import org.thoughtcrime.securesms.recipients.RecipientId
 
 object TestDbUtils {
 
@@ -11,4 +14,34 @@ object TestDbUtils {
     contentValues.put(MessageTable.DATE_RECEIVED, timestamp)
     val rowsUpdated = database.update(MessageTable.TABLE_NAME, contentValues, DatabaseTable.ID_WHERE, buildArgs(messageId))
   }
+
+  /**
+   * Inserts [count] read, incoming text messages from [sender] in a single transaction, one millisecond apart starting at [startTimestamp]. This skips
+   * everything [MessageTable] does on insert besides the search index triggers, so it's only suitable for filling the database quickly.
+   */
+  fun insertIncomingTextMessages(threadId: Long, sender: RecipientId, self: RecipientId, count: Int, startTimestamp: Long, body: (Int) -> String) {
+    val type = MessageTypes.BASE_INBOX_TYPE or MessageTypes.SECURE_MESSAGE_BIT or MessageTypes.PUSH_MESSAGE_BIT
+
+    SignalDatabase.rawDatabase.withinTransaction { db ->
+      for (i in 0 until count) {
+        val timestamp = startTimestamp + i
+        db.insert(
+          MessageTable.TABLE_NAME,
+          null,
+          contentValuesOf(
+            MessageTable.THREAD_ID to threadId,
+            MessageTable.FROM_RECIPIENT_ID to sender.toLong(),
+            MessageTable.FROM_DEVICE_ID to 1,
+            MessageTable.TO_RECIPIENT_ID to self.toLong(),
+            MessageTable.DATE_SENT to timestamp,
+            MessageTable.DATE_RECEIVED to timestamp,
+            MessageTable.DATE_SERVER to timestamp,
+            MessageTable.TYPE to type,
+            MessageTable.BODY to body(i),
+            MessageTable.READ to 1
+          )
+        )
+      }
+    }
+  }
 }
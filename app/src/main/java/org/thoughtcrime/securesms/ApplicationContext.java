@@ -44,6 +44,7 @@ import org.signal.ringrtc.CallManager;
 import org.thoughtcrime.securesms.apkupdate.ApkUpdateRefreshListener;
 import org.thoughtcrime.securesms.avatar.AvatarPickerStorage;
 import org.thoughtcrime.securesms.backup.v2.BackupRepository;
+import org.thoughtcrime.securesms.backup.v2.RestoreMediaScheduler;
 import org.thoughtcrime.securesms.crypto.AttachmentSecretProvider;
 import org.thoughtcrime.securesms.crypto.DatabaseSecretProvider;
 import org.thoughtcrime.securesms.database.LogDatabase;
@@ -102,6 +103,7 @@ import org.thoughtcrime.securesms.service.webrtc.AndroidTelecomUtil;
 import org.thoughtcrime.securesms.storage.StorageSyncHelper;
 import org.thoughtcrime.securesms.util.AppForegroundObserver;
 import org.thoughtcrime.securesms.util.AppStartup;
+import org.thoughtcrime.securesms.util.ByteUnit;
 import org.thoughtcrime.securesms.util.DynamicTheme;
 import org.thoughtcrime.securesms.util.RemoteConfig;
 import org.thoughtcrime.securesms.util.SignalLocalMetrics;
@@ -112,6 +114,7 @@ import org.thoughtcrime.securesms.util.VersionTracker;
 import org.thoughtcrime.securesms.util.dynamiclanguage.DynamicLanguageContextWrapper;
 import org.whispersystems.signalservice.api.websocket.SignalWebSocket;
 
+import java.io.File;
 import java.io.InterruptedIOException;
 import java.net.SocketException;
 import java.security.Security;
@@ -228,6 +231,7 @@ public class ApplicationContext extends Application implements AppForegroundObse
               .addPostRender(LinkedDeviceInactiveCheckJob::enqueueIfNecessary)
               .addPostRender(() -> ActiveCallManager.clearNotifications(this))
               .addPostRender(RestoreOptimizedMediaJob::enqueueIfNecessary)
+              .addPostRender(RestoreMediaScheduler::resumeIfNecessary)
               .addPostRender(RetryPendingSendsJob::enqueueForAll)
               .execute();
 
@@ -447,7 +451,9 @@ public class ApplicationContext extends Application implements AppForegroundObse
   }
 
   private void initializeTracer() {
-    if (RemoteConfig.internalUser()) {
+    if (RemoteConfig.streamingTraces()) {
+      Tracer.getInstance().startStreaming(new File(getCacheDir(), "traces"), (int) ByteUnit.MEGABYTES.toBytes(4), ByteUnit.MEGABYTES.toBytes(32), TimeUnit.MINUTES.toMillis(10));
+    } else if (RemoteConfig.internalUser()) {
       Tracer.getInstance().setMaxBufferSize(35_000);
     }
   }
@@ -33,6 +33,7 @@ import org.thoughtcrime.securesms.database.EmojiSearchTable;
 import org.thoughtcrime.securesms.database.GroupReceiptTable;
 import org.thoughtcrime.securesms.database.KeyValueDatabase;
 import org.thoughtcrime.securesms.database.KyberPreKeyTable;
+import org.thoughtcrime.securesms.database.MediaTable;
 import org.thoughtcrime.securesms.database.MentionTable;
 import org.thoughtcrime.securesms.database.MessageTable;
 import org.thoughtcrime.securesms.database.OneTimePreKeyTable;
@@ -99,7 +100,9 @@ public class FullBackupExporter extends FullBackupBase {
       AvatarPickerDatabase.TABLE_NAME,
       RemappedRecordTables.Recipients.TABLE_NAME,
       RemappedRecordTables.Threads.TABLE_NAME,
-      RemoteMegaphoneTable.TABLE_NAME
+      RemoteMegaphoneTable.TABLE_NAME,
+      MediaTable.USAGE_TABLE_NAME,
+      MediaTable.FILE_USAGE_TABLE_NAME
   );
 
   public static BackupEvent export(@NonNull Context context,
@@ -32,6 +32,7 @@ import org.thoughtcrime.securesms.database.KeyValueDatabase;
 import org.thoughtcrime.securesms.database.KyberPreKeyTable;
 import org.thoughtcrime.securesms.database.OneTimePreKeyTable;
 import org.thoughtcrime.securesms.database.SearchTable;
+import org.thoughtcrime.securesms.database.SignalDatabase;
 import org.thoughtcrime.securesms.database.SignedPreKeyTable;
 import org.thoughtcrime.securesms.database.StickerTable;
 import org.thoughtcrime.securesms.dependencies.AppDependencies;
@@ -158,6 +159,8 @@ public class FullBackupImporter extends FullBackupBase {
       db.setForeignKeyConstraintsEnabled(true);
     }
 
+    SignalDatabase.groups().invalidateMembershipCache();
+
     EventBus.getDefault().post(new BackupEvent(BackupEvent.Type.FINISHED, count, 0));
   }
 
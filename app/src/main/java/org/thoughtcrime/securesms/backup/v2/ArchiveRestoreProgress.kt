@@ -166,7 +166,12 @@ object ArchiveRestoreProgress {
 
   private fun update() {
     store.update { state ->
-      val remainingRestoreSize = SignalDatabase.attachments.getRemainingRestorableAttachmentSize().bytes
+      val scheduledRemainingBytes = RestoreMediaScheduler.getRemainingBytes()
+      val remainingRestoreSize = if (scheduledRemainingBytes >= 0) {
+        scheduledRemainingBytes.bytes
+      } else {
+        SignalDatabase.attachments.getRemainingRestorableAttachmentSize().bytes
+      }
       var restoreState = SignalStore.backup.restoreState
 
       if (restoreState.isMediaRestoreOperation) {
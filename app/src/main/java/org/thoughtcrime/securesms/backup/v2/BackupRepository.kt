@@ -161,6 +161,7 @@ import org.whispersystems.signalservice.internal.crypto.PaddingInputStream
 import org.whispersystems.signalservice.internal.push.AttachmentUploadForm
 import org.whispersystems.signalservice.internal.push.AuthCredentials
 import org.whispersystems.signalservice.internal.push.SubscriptionsConfiguration
+import org.whispersystems.signalservice.internal.push.http.SegmentedDownloader
 import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.IOException
@@ -1224,6 +1225,7 @@ object BackupRepository {
       AppDependencies.recipientCache.clear()
       AppDependencies.recipientCache.clearSelf()
       SignalDatabase.threads.clearCache()
+      SignalDatabase.groups.invalidateMembershipCache()
 
       stopwatch.split("drop-data")
 
@@ -1542,7 +1544,14 @@ object BackupRepository {
       .map { pair ->
         val (cdnCredentials, info) = pair
         val messageReceiver = AppDependencies.signalServiceMessageReceiver
-        messageReceiver.retrieveBackup(info.cdn!!, cdnCredentials, "backups/${info.backupDir}/${info.backupName}", destination, listener)
+        val segmentedDownloader = if (RemoteConfig.segmentedDownloads) SegmentedDownloader() else null
+        try {
+          messageReceiver.retrieveBackup(info.cdn!!, cdnCredentials, "backups/${info.backupDir}/${info.backupName}", destination, listener, segmentedDownloader)
+        } catch (e: Exception) {
+          // Callers download into a new temporary file every time, so nothing would ever resume this one
+          SegmentedDownloader.deletePartialDownload(destination)
+          throw e
+        }
       }
   }
 
@@ -29,11 +29,18 @@ object BackupRestoreManager {
   fun prioritizeAttachmentsIfNeeded(messageRecords: List<MessageRecord>) {
     SignalExecutors.BOUNDED.execute {
       synchronized(this) {
-        val restoringAttachments = messageRecords
+        val attachments = messageRecords
           .asSequence()
           .mapNotNull { (it as? MmsMessageRecord?)?.slideDeck?.slides }
           .flatten()
           .mapNotNull { it.asAttachment() as? DatabaseAttachment }
+
+        if (RestoreMediaScheduler.isRunning) {
+          RestoreMediaScheduler.prioritize(attachments.toList())
+          return@execute
+        }
+
+        val restoringAttachments = attachments
           .filter {
             val needThumbnail = it.thumbnailRestoreState == AttachmentTable.ThumbnailRestoreState.NEEDS_RESTORE && it.transferState == AttachmentTable.TRANSFER_RESTORE_IN_PROGRESS
             (needThumbnail || it.thumbnailRestoreState == AttachmentTable.ThumbnailRestoreState.IN_PROGRESS) && !reprioritizedAttachments.contains(it.attachmentId)
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.backup.v2
+
+/**
+ * Decides how many restore downloads to run at once by hill climbing on throughput.
+ *
+ * Completed downloads are added up over a window. At the end of each window the limit moves one step: in the same direction as last time if that
+ * made things faster, the other way if it made them slower. If throughput didn't change much, it steps down, since extra connections that don't
+ * buy anything just cost battery and compete with the rest of the app.
+ */
+class RestoreConcurrencyController(
+  private val minLimit: Int,
+  private val maxLimit: Int,
+  private val windowMs: Long = DEFAULT_WINDOW_MS
+) {
+
+  companion object {
+    const val DEFAULT_WINDOW_MS = 10_000L
+
+    /** How much throughput has to change by before we treat it as better or worse rather than noise. */
+    private const val TOLERANCE = 0.1
+  }
+
+  init {
+    require(minLimit in 1..maxLimit)
+  }
+
+  var limit: Int = minLimit
+    private set
+
+  private var direction = 1
+  private var windowStartMs = -1L
+  private var windowBytes = 0L
+  private var lastThroughput = -1.0
+
+  /**
+   * Records that [bytes] finished downloading at [nowMs].
+   *
+   * @return The limit to use from now on.
+   */
+  fun onDownloaded(bytes: Long, nowMs: Long): Int {
+    if (windowStartMs < 0) {
+      windowStartMs = nowMs
+    }
+
+    windowBytes += bytes
+
+    val elapsed = nowMs - windowStartMs
+    if (elapsed < windowMs) {
+      return limit
+    }
+
+    val throughput = windowBytes * 1000.0 / elapsed
+
+    if (lastThroughput >= 0) {
+      direction = when {
+        throughput > lastThroughput * (1 + TOLERANCE) -> direction
+        throughput < lastThroughput * (1 - TOLERANCE) -> -direction
+        else -> -1
+      }
+    }
+
+    val next = limit + direction
+    if (next < minLimit || next > maxLimit) {
+      direction = -direction
+    } else {
+      limit = next
+    }
+
+    lastThroughput = throughput
+    windowStartMs = nowMs
+    windowBytes = 0
+
+    return limit
+  }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.backup.v2
+
+import org.signal.core.util.ThreadUtil
+import org.signal.core.util.concurrent.SignalExecutors
+import org.signal.core.util.logging.Log
+import org.thoughtcrime.securesms.attachments.AttachmentId
+import org.thoughtcrime.securesms.attachments.DatabaseAttachment
+import org.thoughtcrime.securesms.backup.RestoreState
+import org.thoughtcrime.securesms.database.AttachmentTable
+import org.thoughtcrime.securesms.database.SignalDatabase
+import org.thoughtcrime.securesms.dependencies.AppDependencies
+import org.thoughtcrime.securesms.jobmanager.impl.BackoffUtil
+import org.thoughtcrime.securesms.jobmanager.impl.BatteryNotLowConstraint
+import org.thoughtcrime.securesms.jobmanager.impl.RestoreAttachmentConstraint
+import org.thoughtcrime.securesms.jobs.BaseJob
+import org.thoughtcrime.securesms.jobs.CheckRestoreMediaLeftJob
+import org.thoughtcrime.securesms.jobs.RestoreAttachmentJob
+import org.thoughtcrime.securesms.jobs.RestoreAttachmentThumbnailJob
+import org.thoughtcrime.securesms.keyvalue.SignalStore
+import org.thoughtcrime.securesms.util.RemoteConfig
+import java.util.PriorityQueue
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.days
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * Downloads the media of a restored backup without putting a job per attachment into the job queue.
+ *
+ * Pending downloads are kept in memory: anything that has been on screen goes first, then thumbnails, then everything else by how recently its thread
+ * was active. The database stays the source of truth for what's left, since attachments are marked as restoring before they get here, so the queue is
+ * rebuilt from it after a restart.
+ *
+ * Small files are handed to a worker in batches and run back to back on the same kept-alive connection. The number of workers follows the observed
+ * throughput via [RestoreConcurrencyController]. Each download still runs through [RestoreAttachmentJob] or [RestoreAttachmentThumbnailJob], just
+ * without the JobManager persisting or scheduling it.
+ */
+object RestoreMediaScheduler {
+
+  private val TAG = Log.tag(RestoreMediaScheduler::class.java)
+
+  private const val LOAD_PAGE_SIZE = 1000
+  private const val MIN_WORKERS = 2
+  private const val MAX_WORKERS = 8
+  private const val MAX_BATCH_SIZE = 16
+  private const val SMALL_FILE_BYTES = 256L * 1024
+
+  /** We don't know how big a thumbnail is until it's downloaded, so they count as this much when measuring throughput. */
+  private const val THUMBNAIL_ESTIMATE_BYTES = 32L * 1024
+
+  /** The queue that [CheckRestoreMediaLeftJob] runs in once we're out of work. */
+  private const val CHECK_QUEUE = "RestoreMediaScheduler"
+
+  private val CONSTRAINT_RECHECK_INTERVAL = 30.seconds
+
+  /** How long we keep retrying a download before marking it as failed, the same as the lifespans of the jobs that would otherwise run it. */
+  private val FULL_SIZE_LIFESPAN = 30.days
+  private val THUMBNAIL_LIFESPAN = 1.days
+
+  private val executor = SignalExecutors.newCachedBoundedExecutor("signal-restore-media", ThreadUtil.PRIORITY_BACKGROUND_THREAD, 1, MAX_WORKERS, 30)
+
+  private val queue = PriorityQueue(
+    MAX_BATCH_SIZE,
+    compareByDescending<Item> { it.thumbnail }
+      .thenByDescending { it.threadDate }
+      .thenByDescending { it.messageId }
+  )
+
+  /** Downloads for attachments that have been on screen, most recent first. */
+  private val visible = ArrayDeque<Item>()
+
+  /**
+   * The live [Item] for each pending download. Moving an item to [visible] or retrying it replaces the entry here, and whatever copy is left behind in
+   * [queue] gets skipped when it comes up, which avoids an O(n) removal from the heap.
+   */
+  private val pending = HashMap<Long, Item>()
+
+  private val controller = RestoreConcurrencyController(MIN_WORKERS, MAX_WORKERS)
+
+  private var running = false
+  private var loading = false
+  private var inFlight = 0
+  private var waitingRetries = 0
+  private var recheckScheduled = false
+  private var fullSizeCanceled = false
+
+  private val remainingBytes = AtomicLong(0)
+  private val totalBytes = AtomicLong(0)
+
+  /**
+   * Whether a restore is currently being run here.
+   */
+  @get:JvmStatic
+  @get:Synchronized
+  val isRunning: Boolean
+    get() = running
+
+  /**
+   * How many bytes of full-size media are still to be downloaded, or -1 if no restore is running here.
+   */
+  @JvmStatic
+  fun getRemainingBytes(): Long {
+    return if (isRunning) remainingBytes.get() else -1
+  }
+
+  /**
+   * Starts downloading all media that's marked as restoring. Does nothing if a restore is already running.
+   */
+  @JvmStatic
+  fun start() {
+    synchronized(this) {
+      if (running) {
+        Log.i(TAG, "Already running.")
+        return
+      }
+
+      running = true
+      loading = true
+      fullSizeCanceled = false
+    }
+
+    SignalStore.backup.isMediaRestoreScheduled = true
+
+    SignalExecutors.BOUNDED.execute {
+      load()
+      dispatch()
+    }
+  }
+
+  /**
+   * Picks a scheduled restore back up after the process restarts. This doesn't check [RemoteConfig.restoreMediaScheduler], since nothing else would
+   * download the media of a restore that was started here if the flag has been turned off since.
+   */
+  @JvmStatic
+  fun resumeIfNecessary() {
+    if (SignalStore.backup.isMediaRestoreScheduled && SignalStore.backup.restoreState.isMediaRestoreOperation) {
+      Log.i(TAG, "Resuming scheduled media restore.")
+      start()
+    }
+  }
+
+  /**
+   * Moves any pending downloads for [attachments] to the front of the line, because they're on screen.
+   */
+  fun prioritize(attachments: List<DatabaseAttachment>) {
+    synchronized(this) {
+      if (!running) {
+        return
+      }
+
+      for (attachment in attachments) {
+        if (attachment.thumbnailRestoreState == AttachmentTable.ThumbnailRestoreState.IN_PROGRESS) {
+          moveToVisible(keyOf(attachment.attachmentId, thumbnail = true))
+        }
+
+        if (attachment.transferState == AttachmentTable.TRANSFER_RESTORE_IN_PROGRESS) {
+          moveToVisible(keyOf(attachment.attachmentId, thumbnail = false))
+        }
+      }
+    }
+
+    dispatch()
+  }
+
+  /**
+   * Drops all full-size downloads that haven't started yet and marks them as offloaded, the same as canceling their jobs would. Thumbnails keep going.
+   */
+  fun cancelFullSizeRestores() {
+    val canceled: List<AttachmentId>
+
+    synchronized(this) {
+      fullSizeCanceled = true
+      canceled = pending.values.filterNot { it.thumbnail }.map { it.attachmentId }
+      pending.values.removeAll { !it.thumbnail }
+      queue.removeAll { !it.thumbnail }
+      visible.removeAll { !it.thumbnail }
+      remainingBytes.set(0)
+    }
+
+    Log.i(TAG, "Canceled ${canceled.size} full-size restores.")
+    SignalDatabase.attachments.setRestoreTransferState(canceled, AttachmentTable.TRANSFER_RESTORE_OFFLOADED)
+    dispatch()
+  }
+
+  private fun load() {
+    var afterId: AttachmentId? = null
+    var count = 0
+    var bytes = 0L
+
+    do {
+      val page = SignalDatabase.attachments.getRestoringMedia(afterId, LOAD_PAGE_SIZE)
+
+      synchronized(this) {
+        for (media in page) {
+          val threadDate = if (media.messageId == AttachmentTable.WALLPAPER_MESSAGE_ID) Long.MAX_VALUE else media.threadDate
+
+          if (media.restoringThumbnail && add(Item(media.attachmentId, media.messageId, media.size, media.stickerPackId, thumbnail = true, threadDate = threadDate))) {
+            count++
+          }
+
+          if (media.restoringFullSize && !fullSizeCanceled && add(Item(media.attachmentId, media.messageId, media.size, media.stickerPackId, thumbnail = false, threadDate = threadDate))) {
+            count++
+            bytes += media.size
+          }
+        }
+      }
+
+      afterId = page.lastOrNull()?.attachmentId ?: afterId
+    } while (page.size == LOAD_PAGE_SIZE)
+
+    remainingBytes.addAndGet(bytes)
+    totalBytes.addAndGet(bytes)
+
+    synchronized(this) {
+      loading = false
+    }
+
+    Log.i(TAG, "Loaded $count downloads totaling $bytes bytes of full-size media.")
+  }
+
+  private fun dispatch() {
+    val batches = mutableListOf<List<Item>>()
+
+    synchronized(this) {
+      if (!running) {
+        return
+      }
+
+      if (!constraintsMet()) {
+        scheduleRecheck()
+        return
+      }
+
+      while (inFlight < controller.limit) {
+        val batch = takeBatch()
+        if (batch.isEmpty()) {
+          break
+        }
+
+        inFlight++
+        batches += batch
+      }
+
+      if (!loading && inFlight == 0 && waitingRetries == 0 && pending.isEmpty()) {
+        finish()
+        return
+      }
+    }
+
+    batches.forEach { batch -> executor.execute { runBatch(batch) } }
+  }
+
+  private fun runBatch(batch: List<Item>) {
+    var downloadedBytes = 0L
+
+    for (item in batch) {
+      if (!item.thumbnail && synchronized(this) { fullSizeCanceled }) {
+        SignalDatabase.attachments.setRestoreTransferState(item.attachmentId, AttachmentTable.TRANSFER_RESTORE_OFFLOADED)
+        continue
+      }
+
+      if (download(item)) {
+        downloadedBytes += if (item.thumbnail) THUMBNAIL_ESTIMATE_BYTES else item.size
+      }
+    }
+
+    synchronized(this) {
+      inFlight--
+      controller.onDownloaded(downloadedBytes, System.currentTimeMillis())
+    }
+
+    dispatch()
+  }
+
+  /**
+   * @return True if the download succeeded.
+   */
+  private fun download(item: Item): Boolean {
+    val job: BaseJob = if (item.thumbnail) {
+      RestoreAttachmentThumbnailJob(messageId = item.messageId, attachmentId = item.attachmentId, highPriority = false)
+    } else {
+      RestoreAttachmentJob.forInitialRestore(attachmentId = item.attachmentId, messageId = item.messageId, stickerPackId = item.stickerPackId)
+    }
+
+    val firstAttemptTime = item.firstAttemptTime ?: System.currentTimeMillis()
+
+    job.setContext(AppDependencies.application)
+    val result = job.run()
+
+    when {
+      result.isSuccess -> {
+        onDone(item)
+        return true
+      }
+      result.isRetry && System.currentTimeMillis() - firstAttemptTime < item.lifespan.inWholeMilliseconds -> {
+        scheduleRetry(item.copy(firstAttemptTime = firstAttemptTime))
+      }
+      result.isRetry -> {
+        Log.w(TAG, "[${item.attachmentId}] Giving up on restoring${if (item.thumbnail) " thumbnail" else ""} after ${item.lifespan}. (${item.attempts})")
+        job.onFailure()
+        onDone(item)
+      }
+      else -> {
+        Log.w(TAG, "[${item.attachmentId}] Failed to restore${if (item.thumbnail) " thumbnail" else ""}.")
+        job.onFailure()
+        onDone(item)
+      }
+    }
+
+    return false
+  }
+
+  private fun onDone(item: Item) {
+    if (!item.thumbnail) {
+      remainingBytes.addAndGet(-item.size)
+    }
+  }
+
+  private fun scheduleRetry(item: Item) {
+    val retry = item.copy(visible = false, attempts = item.attempts + 1)
+    val backoff = BackoffUtil.exponentialBackoff(retry.attempts, RemoteConfig.defaultMaxBackoff)
+
+    Log.i(TAG, "[${item.attachmentId}] Retrying in $backoff ms. (${retry.attempts})")
+
+    synchronized(this) {
+      waitingRetries++
+    }
+
+    ThreadUtil.runOnMainDelayed({
+      SignalExecutors.BOUNDED.execute {
+        synchronized(this) {
+          waitingRetries--
+          if (running && !(fullSizeCanceled && !retry.thumbnail)) {
+            add(retry)
+          }
+        }
+        dispatch()
+      }
+    }, backoff)
+  }
+
+  private fun scheduleRecheck() {
+    if (recheckScheduled) {
+      return
+    }
+
+    Log.i(TAG, "Waiting for restore constraints to be met.")
+    recheckScheduled = true
+
+    ThreadUtil.runOnMainDelayed({
+      SignalExecutors.BOUNDED.execute {
+        synchronized(this) {
+          recheckScheduled = false
+        }
+        dispatch()
+      }
+    }, CONSTRAINT_RECHECK_INTERVAL.inWholeMilliseconds)
+  }
+
+  private fun finish() {
+    Log.i(TAG, "Out of media to restore. Downloaded ${totalBytes.get() - remainingBytes.get()} of ${totalBytes.get()} bytes of full-size media.")
+
+    running = false
+    remainingBytes.set(0)
+    totalBytes.set(0)
+    SignalStore.backup.isMediaRestoreScheduled = false
+
+    if (SignalStore.backup.restoreState != RestoreState.NONE) {
+      AppDependencies.jobManager.add(CheckRestoreMediaLeftJob(CHECK_QUEUE))
+    }
+  }
+
+  private fun constraintsMet(): Boolean {
+    return RestoreAttachmentConstraint.isMet(AppDependencies.application) && BatteryNotLowConstraint.isMet()
+  }
+
+  /**
+   * One download, or a run of small ones. Large files get a worker to themselves.
+   */
+  private fun takeBatch(): List<Item> {
+    val first = poll() ?: return emptyList()
+    if (!first.isSmall) {
+      return listOf(first)
+    }
+
+    val batch = mutableListOf(first)
+    while (batch.size < MAX_BATCH_SIZE && peek()?.isSmall == true) {
+      batch += poll()!!
+    }
+
+    return batch
+  }
+
+  private fun add(item: Item): Boolean {
+    if (pending.containsKey(item.key)) {
+      return false
+    }
+
+    pending[item.key] = item
+    queue += item
+    return true
+  }
+
+  private fun moveToVisible(key: Long) {
+    val item = pending[key] ?: return
+    if (item.visible) {
+      return
+    }
+
+    val moved = item.copy(visible = true)
+    pending[key] = moved
+    visible.addFirst(moved)
+  }
+
+  private fun peek(): Item? {
+    while (visible.isNotEmpty() && !isLive(visible.first())) {
+      visible.removeFirst()
+    }
+
+    if (visible.isNotEmpty()) {
+      return visible.first()
+    }
+
+    while (queue.isNotEmpty() && !isLive(queue.peek()!!)) {
+      queue.poll()
+    }
+
+    return queue.peek()
+  }
+
+  private fun poll(): Item? {
+    val item = peek() ?: return null
+
+    if (visible.firstOrNull() === item) {
+      visible.removeFirst()
+    } else {
+      queue.poll()
+    }
+
+    pending.remove(item.key)
+    return item
+  }
+
+  private fun isLive(item: Item): Boolean {
+    return pending[item.key] === item
+  }
+
+  private fun keyOf(attachmentId: AttachmentId, thumbnail: Boolean): Long {
+    return attachmentId.id * 2 + if (thumbnail) 1 else 0
+  }
+
+  private data class Item(
+    val attachmentId: AttachmentId,
+    val messageId: Long,
+    val size: Long,
+    val stickerPackId: String?,
+    val thumbnail: Boolean,
+    val threadDate: Long,
+    val visible: Boolean = false,
+    val attempts: Int = 0,
+    val firstAttemptTime: Long? = null
+  ) {
+    val key: Long
+      get() = keyOf(attachmentId, thumbnail)
+
+    val lifespan: Duration
+      get() = if (thumbnail) THUMBNAIL_LIFESPAN else FULL_SIZE_LIFESPAN
+
+    val isSmall: Boolean
+      get() = thumbnail || size <= SMALL_FILE_BYTES
+  }
+}
@@ -205,7 +205,7 @@ public class ThumbnailView extends FrameLayout {
   }
 
   @SuppressWarnings("SuspiciousNameCombination")
-  private void fillTargetDimensions(int[] targetDimens, int[] dimens, int[] bounds) {
+  private static void fillTargetDimensions(int[] targetDimens, int[] dimens, int[] bounds) {
     int     dimensFilledCount = getNonZeroCount(dimens);
     int     boundsFilledCount = getNonZeroCount(bounds);
     boolean dimensAreInvalid  = dimensFilledCount > 0 && dimensFilledCount < dimens.length;
@@ -599,10 +599,7 @@ public class ThumbnailView extends FrameLayout {
   }
 
   private RequestBuilder<Drawable> buildThumbnailRequestBuilder(@NonNull RequestManager requestManager, @NonNull Slide slide) {
-    RequestBuilder<Drawable> requestBuilder = applySizing(requestManager.load(new DecryptableUri(Objects.requireNonNull(slide.getDisplayUri())))
-                                                              .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
-                                                              .downsample(SignalDownsampleStrategy.CENTER_OUTSIDE_NO_UPSCALE)
-                                                              .transition(withCrossFade()));
+    RequestBuilder<Drawable> requestBuilder = applySizing(buildBaseThumbnailRequestBuilder(requestManager, slide).transition(withCrossFade()));
 
     boolean doNotShowMissingThumbnailImage = Build.VERSION.SDK_INT < 23;
 
@@ -613,6 +610,36 @@ public class ThumbnailView extends FrameLayout {
     }
   }
 
+  /**
+   * Builds the thumbnail request that {@link #setImageResource(RequestManager, Slide, boolean, boolean, int, int, int)} would make for {@code slide} if it
+   * were shown within the given bounds, so that it can be loaded ahead of time and then found in Glide's memory cache when the view binds.
+   *
+   * @param bounds The min width, max width, min height and max height the view would be laid out with.
+   * @return The request, or null if the slide has nothing to show or we can't know its size without a view.
+   */
+  public static @Nullable RequestBuilder<Drawable> buildPrefetchRequestBuilder(@NonNull RequestManager requestManager, @NonNull Slide slide, @NonNull int[] bounds) {
+    if (slide.getDisplayUri() == null) {
+      return null;
+    }
+
+    int[] size = new int[2];
+    fillTargetDimensions(size, new int[] { slide.asAttachment().width, slide.asAttachment().height }, bounds);
+    if (size[WIDTH] <= 0 || size[HEIGHT] <= 0) {
+      return null;
+    }
+
+    return buildBaseThumbnailRequestBuilder(requestManager, slide).override(size[WIDTH], size[HEIGHT]);
+  }
+
+  /**
+   * Everything that contributes to the cache key of a thumbnail request, which needs to be the same for both prefetches and regular loads.
+   */
+  private static RequestBuilder<Drawable> buildBaseThumbnailRequestBuilder(@NonNull RequestManager requestManager, @NonNull Slide slide) {
+    return requestManager.load(new DecryptableUri(Objects.requireNonNull(slide.getDisplayUri())))
+                         .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+                         .downsample(SignalDownsampleStrategy.CENTER_OUTSIDE_NO_UPSCALE);
+  }
+
   public void clear(RequestManager requestManager) {
     requestManager.clear(image);
     image.setImageDrawable(null);
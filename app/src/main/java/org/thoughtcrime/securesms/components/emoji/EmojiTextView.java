@@ -164,8 +164,18 @@ public class EmojiTextView extends AppCompatTextView {
 
   @Override
   public void setText(@Nullable CharSequence text, BufferType type) {
-    EmojiParser.CandidateList candidates = isInEditMode() ? null : EmojiProvider.getCandidates(text);
+    setText(text, type, isInEditMode() ? null : EmojiProvider.getCandidates(text));
+  }
+
+  /**
+   * Sets the text using emoji candidates that were already parsed from it, typically off of the main thread. The candidates must have been found
+   * in exactly the same text (null if it has none), otherwise emoji will be drawn over the wrong characters.
+   */
+  public void setText(@Nullable CharSequence text, @Nullable EmojiParser.CandidateList precomputedCandidates) {
+    setText(text, BufferType.SPANNABLE, isInEditMode() ? null : precomputedCandidates);
+  }
 
+  private void setText(@Nullable CharSequence text, BufferType type, @Nullable EmojiParser.CandidateList candidates) {
     if (scaleEmojis &&
         candidates != null &&
         candidates.allEmojis &&
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.contacts.paged
+
+import androidx.annotation.VisibleForTesting
+import androidx.annotation.WorkerThread
+import org.signal.core.util.logging.Log
+import org.signal.core.util.readToList
+import org.signal.core.util.requireBoolean
+import org.signal.core.util.requireLong
+import org.signal.core.util.requireString
+import org.thoughtcrime.securesms.database.DatabaseObserver
+import org.thoughtcrime.securesms.database.RecipientTable
+import org.thoughtcrime.securesms.database.SignalDatabase
+import org.thoughtcrime.securesms.dependencies.AppDependencies
+import org.thoughtcrime.securesms.recipients.RecipientId
+import java.text.Normalizer
+
+/**
+ * An in-memory copy of the Signal contacts in [RecipientTable.getSignalContacts], which is what the individuals section of contact search lists.
+ *
+ * Sizing that section and loading each page of it used to repeat the same GLOB scan over the recipient table, on every keystroke. Instead, each
+ * [RecipientTable.IncludeSelfMode] gets a snapshot of its contacts in display order, with names and usernames already lower cased and stripped of
+ * accents, so searches and letter headers are worked out in memory. This ignores case and accents like
+ * [org.signal.core.util.SqlUtil.buildCaseInsensitiveGlobPattern] did, except that accents are ignored in the query too, so "andré" also finds "andre".
+ *
+ * Recipients reported as changed by the [DatabaseObserver] are re-read the next time the index is used.
+ */
+object ContactSearchIndex {
+
+  private val TAG = Log.tag(ContactSearchIndex::class.java)
+
+  private val COMBINING_MARKS = Regex("\\p{Mn}+")
+
+  /** Past this many changed recipients, re-reading everything is cheaper than patching each one in. */
+  private const val MAX_INCREMENTAL_UPDATES = 250
+
+  private val indexes = mutableMapOf<RecipientTable.IncludeSelfMode, ContactIndex>()
+  private val changedRecipients = mutableSetOf<RecipientId>()
+  private var observing = false
+
+  private val recipientObserver = DatabaseObserver.RecipientObserver { onRecipientsChanged(it) }
+
+  /**
+   * @return The contacts whose name, username or shared phone number contains [query], in the order they're shown.
+   */
+  @WorkerThread
+  @Synchronized
+  fun search(includeSelfMode: RecipientTable.IncludeSelfMode, query: String?): SearchResult {
+    if (!observing) {
+      AppDependencies.databaseObserver.registerRecipientObserver(recipientObserver)
+      observing = true
+    }
+
+    applyChanges()
+
+    return indexes.getOrPut(includeSelfMode) { ContactIndex(readContacts(includeSelfMode, null)) }.search(query)
+  }
+
+  @Synchronized
+  private fun onRecipientsChanged(recipientIds: Set<RecipientId>) {
+    if (indexes.isNotEmpty()) {
+      changedRecipients += recipientIds
+    }
+  }
+
+  private fun applyChanges() {
+    if (changedRecipients.isEmpty()) {
+      return
+    }
+
+    if (changedRecipients.size > MAX_INCREMENTAL_UPDATES) {
+      Log.d(TAG, "${changedRecipients.size} recipients changed, dropping the index.")
+      indexes.clear()
+    } else {
+      indexes.forEach { (includeSelfMode, index) ->
+        index.update(changedRecipients, readContacts(includeSelfMode, changedRecipients))
+      }
+    }
+
+    changedRecipients.clear()
+  }
+
+  private fun readContacts(includeSelfMode: RecipientTable.IncludeSelfMode, recipientIds: Collection<RecipientId>?): List<Contact> {
+    return SignalDatabase.recipients.getSignalContactsForSearchIndex(includeSelfMode, recipientIds).readToList { cursor ->
+      Contact(
+        id = RecipientId.from(cursor.requireLong(RecipientTable.ID)),
+        sortName = cursor.requireString(RecipientTable.SORT_NAME),
+        systemJoinedName = cursor.requireString(RecipientTable.SYSTEM_JOINED_NAME),
+        searchProfileName = cursor.requireString(RecipientTable.SEARCH_PROFILE_NAME),
+        username = cursor.requireString(RecipientTable.USERNAME),
+        e164 = cursor.requireString(RecipientTable.E164),
+        isE164Searchable = cursor.requireBoolean(RecipientTable.E164_SEARCHABLE)
+      )
+    }
+  }
+
+  /**
+   * Lower cased, with accents and other combining marks removed.
+   */
+  private fun fold(text: String): String {
+    return Normalizer.normalize(text, Normalizer.Form.NFD).replace(COMBINING_MARKS, "").lowercase()
+  }
+
+  private fun upperAscii(text: String): String {
+    return String(CharArray(text.length) { i -> if (text[i] in 'a'..'z') text[i].uppercaseChar() else text[i] })
+  }
+
+  /**
+   * @param recipientIds The matching contacts, starting from the first one whose name starts with a letter and wrapping around to those before it.
+   * @param headerLetters The letter to show above the first contact with each letter.
+   */
+  class SearchResult(
+    val recipientIds: List<RecipientId>,
+    val headerLetters: Map<RecipientId, String>
+  )
+
+  @VisibleForTesting
+  class Contact(
+    val id: RecipientId,
+    val sortName: String?,
+    val systemJoinedName: String?,
+    val searchProfileName: String?,
+    val username: String?,
+    val e164: String?,
+    isE164Searchable: Boolean
+  ) {
+    private val foldedSortName: String? = sortName?.let { fold(it) }
+    private val foldedUsername: String? = username?.let { fold(it) }
+    private val searchableE164: String? = if (isE164Searchable) e164 else null
+
+    /** Whether the name shown for this contact starts with a letter, rather than a digit or nothing at all. */
+    val hasAlphaName: Boolean = (systemJoinedName?.takeIf { it.isNotEmpty() } ?: searchProfileName).let { !it.isNullOrEmpty() && !it.first().isDigit() }
+
+    /** The first character of [sortName], with only ASCII letters upper cased, to match the `UPPER(SUBSTR(...))` this replaced. */
+    val headerLetter: String? = sortName?.takeIf { it.isNotEmpty() }?.let { upperAscii(String(Character.toChars(it.codePointAt(0)))) }
+
+    fun matches(foldedQuery: String): Boolean {
+      return foldedSortName?.contains(foldedQuery) == true ||
+        foldedUsername?.contains(foldedQuery) == true ||
+        searchableE164?.contains(foldedQuery) == true
+    }
+  }
+
+  /**
+   * The contacts for one [RecipientTable.IncludeSelfMode]. Remembers the last search, since a data source sizes and then loads several pages for the
+   * same query, and a query that only adds to the last one can only match a subset of what it matched.
+   */
+  @VisibleForTesting
+  class ContactIndex(contacts: List<Contact>) {
+
+    companion object {
+      /** Matches the ORDER BY of [RecipientTable.getSignalContacts]. */
+      private val ORDER: Comparator<Contact> = compareBy<Contact, String?>(nullsFirst()) { it.sortName }
+        .thenBy(nullsFirst()) { it.systemJoinedName }
+        .thenBy(nullsFirst()) { it.searchProfileName }
+        .thenBy(nullsFirst()) { it.username }
+        .thenBy(nullsFirst()) { it.e164 }
+        .thenBy { it.id.toLong() }
+    }
+
+    private val contacts = ArrayList(contacts)
+
+    private var lastQuery: String? = null
+    private var lastMatches: List<Contact> = emptyList()
+    private var lastResult: SearchResult? = null
+
+    fun search(query: String?): SearchResult {
+      val foldedQuery = fold(query?.trim() ?: "")
+
+      val previousQuery = lastQuery
+      val previousResult = lastResult
+      if (previousResult != null && previousQuery == foldedQuery) {
+        return previousResult
+      }
+
+      val candidates = if (previousQuery != null && foldedQuery.contains(previousQuery)) lastMatches else contacts
+      val matches = if (foldedQuery.isEmpty()) contacts.toList() else candidates.filter { it.matches(foldedQuery) }
+
+      val firstAlpha = matches.indexOfFirst { it.hasAlphaName }.coerceAtLeast(0)
+      val ordered = matches.subList(firstAlpha, matches.size) + matches.subList(0, firstAlpha)
+
+      val headerLetters = mutableMapOf<RecipientId, String>()
+      val seenLetters = mutableSetOf<String>()
+      for (contact in ordered) {
+        val letter = contact.headerLetter ?: continue
+        if (seenLetters.add(letter)) {
+          headerLetters[contact.id] = letter
+        }
+      }
+
+      return SearchResult(ordered.map { it.id }, headerLetters).also {
+        lastQuery = foldedQuery
+        lastMatches = matches
+        lastResult = it
+      }
+    }
+
+    /**
+     * Replaces everything known about [recipientIds] with [updated], which are the ones that are still Signal contacts.
+     */
+    fun update(recipientIds: Set<RecipientId>, updated: List<Contact>) {
+      contacts.removeAll { it.id in recipientIds }
+
+      for (contact in updated) {
+        val index = contacts.binarySearch(contact, ORDER)
+        contacts.add(if (index < 0) -(index + 1) else index, contact)
+      }
+
+      lastQuery = null
+      lastMatches = emptyList()
+      lastResult = null
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package org.thoughtcrime.securesms.contacts.paged
 
 import android.database.Cursor
+import android.os.CancellationSignal
 import androidx.annotation.WorkerThread
 import org.signal.core.util.requireLong
 import org.signal.paging.PagedDataSource
@@ -48,6 +49,16 @@ class ContactSearchPagedDataSource(
   private var searchSize = -1
   private var displayEmptyState: Boolean = false
 
+  /** Lets a message search that's still running be abandoned once this source has been replaced. */
+  private val messageSearchCancellationSignal = CancellationSignal()
+
+  /**
+   * Cancels any message search this source is running or would run. Call this once the source is no longer used, e.g. because the query changed.
+   */
+  fun cancel() {
+    messageSearchCancellationSignal.cancel()
+  }
+
   /**
    * When determining when the list is in an empty state, we ignore any arbitrary items, since in general
    * they are always present. If you'd like arbitrary items to appear even when the list is empty, ensure
@@ -131,7 +142,11 @@ class ContactSearchPagedDataSource(
 
   private fun getSectionSize(section: ContactSearchConfiguration.Section, query: String?): Int {
     return when (section) {
-      is ContactSearchConfiguration.Section.Individuals -> getNonGroupSearchIterator(section, query).getCollectionSizeAndClose(section, query, null)
+      is ContactSearchConfiguration.Section.Individuals -> if (canUseContactSearchIndex(section, query)) {
+        ListSearchIterator(searchSignalContacts(section, query).recipientIds).getCollectionSizeAndClose(section, query, null)
+      } else {
+        getNonGroupSearchIterator(section, query).getCollectionSizeAndClose(section, query, null)
+      }
       is ContactSearchConfiguration.Section.Groups -> contactSearchPagedDataSourceRepository.getGroupSearchIterator(section, query).getCollectionSizeAndClose(section, query, this::canSendToGroup)
       is ContactSearchConfiguration.Section.Recents -> getRecentsSearchIterator(section, query).getCollectionSizeAndClose(section, query, null)
       is ContactSearchConfiguration.Section.Stories -> getStoriesSearchIterator(query).getCollectionSizeAndClose(section, query, null)
@@ -215,6 +230,17 @@ class ContactSearchPagedDataSource(
     }
   }
 
+  /**
+   * The index keeps contacts in name order, which is also the only order used when there's no query.
+   */
+  private fun canUseContactSearchIndex(section: ContactSearchConfiguration.Section.Individuals, query: String?): Boolean {
+    return section.pushSearchResultsSortOrder == ContactSearchSortOrder.NATURAL || query.isNullOrEmpty()
+  }
+
+  private fun searchSignalContacts(section: ContactSearchConfiguration.Section.Individuals, query: String?): ContactSearchIndex.SearchResult {
+    return contactSearchPagedDataSourceRepository.searchSignalContacts(query, section.includeSelfMode)
+  }
+
   private fun getNonGroupSearchIterator(section: ContactSearchConfiguration.Section.Individuals, query: String?): ContactSearchIterator<Cursor> {
     val searchQuery = RecipientTable.ContactSearchQuery(query ?: "", section.includeSelfMode, section.pushSearchResultsSortOrder)
     return CursorSearchIterator(wrapRecipientCursor(contactSearchPagedDataSourceRepository.querySignalContacts(searchQuery)))
@@ -385,6 +411,10 @@ class ContactSearchPagedDataSource(
   }
 
   private fun getNonGroupContactsData(section: ContactSearchConfiguration.Section.Individuals, query: String?, startIndex: Int, endIndex: Int): List<ContactSearchData> {
+    if (canUseContactSearchIndex(section, query)) {
+      return getIndexedNonGroupContactsData(section, query, startIndex, endIndex)
+    }
+
     val headerMap: Map<RecipientId, String> = if (section.includeLetterHeaders) {
       getNonGroupHeaderLetterMap(section, query)
     } else {
@@ -406,6 +436,24 @@ class ContactSearchPagedDataSource(
     }
   }
 
+  private fun getIndexedNonGroupContactsData(section: ContactSearchConfiguration.Section.Individuals, query: String?, startIndex: Int, endIndex: Int): List<ContactSearchData> {
+    val result = searchSignalContacts(section, query)
+
+    return ListSearchIterator(result.recipientIds).use { records ->
+      readContactData(
+        records = records,
+        recordsPredicate = null,
+        section = section,
+        startIndex = startIndex,
+        endIndex = endIndex,
+        recordMapper = {
+          val recipient = contactSearchPagedDataSourceRepository.getRecipient(it)
+          ContactSearchData.KnownRecipient(section.sectionKey, recipient, headerLetter = if (section.includeLetterHeaders) result.headerLetters[it] else null)
+        }
+      )
+    }
+  }
+
   private fun getGroupContactsData(section: ContactSearchConfiguration.Section.Groups, query: String?, startIndex: Int, endIndex: Int): List<ContactSearchData> {
     return contactSearchPagedDataSourceRepository.getGroupSearchIterator(section, query).use { records ->
       readContactData(
@@ -457,7 +505,7 @@ class ContactSearchPagedDataSource(
     check(searchRepository != null)
 
     if (searchCache.messageSearchResult == null && query != null) {
-      searchCache = searchCache.copy(messageSearchResult = searchRepository.queryMessagesSync(query))
+      searchCache = searchCache.copy(messageSearchResult = searchRepository.queryMessagesSync(query, messageSearchCancellationSignal))
     }
 
     return if (query != null) {
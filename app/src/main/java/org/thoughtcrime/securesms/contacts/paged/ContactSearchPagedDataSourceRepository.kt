@@ -43,6 +43,10 @@ open class ContactSearchPagedDataSourceRepository(
     return contactRepository.querySignalContacts(contactsSearchQuery)
   }
 
+  open fun searchSignalContacts(query: String?, includeSelfMode: RecipientTable.IncludeSelfMode): ContactSearchIndex.SearchResult {
+    return ContactSearchIndex.search(includeSelfMode, query)
+  }
+
   open fun querySignalContactLetterHeaders(query: String?, includeSelfMode: RecipientTable.IncludeSelfMode, includePush: Boolean, includeSms: Boolean): Map<RecipientId, String> {
     return SignalDatabase.recipients.querySignalContactLetterHeaders(query ?: "", includeSelfMode, includePush, includeSms)
   }
@@ -106,6 +110,10 @@ open class ContactSearchPagedDataSourceRepository(
     return Recipient.resolved(RecipientId.from(CursorUtil.requireLong(cursor, ContactRepository.ID_COLUMN)))
   }
 
+  open fun getRecipient(recipientId: RecipientId): Recipient {
+    return Recipient.resolved(recipientId)
+  }
+
   open fun getRecipientFromRecipientCursor(cursor: Cursor): Recipient {
     return Recipient.resolved(RecipientId.from(CursorUtil.requireLong(cursor, RecipientTable.ID)))
   }
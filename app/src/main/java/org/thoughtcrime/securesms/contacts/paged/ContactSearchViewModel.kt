@@ -62,20 +62,28 @@ class ContactSearchViewModel(
   val errorEventsStream: Observable<ContactSearchError> = errorEvents
 
   private var selectionSize = 0
+  private var pagedDataSource: ContactSearchPagedDataSource? = null
+
   override fun onCleared() {
     disposables.clear()
+    pagedDataSource?.cancel()
+    searchRepository.close()
   }
 
   fun getSelectedMembersSize(): Int {
     return selectionSize
   }
   fun setConfiguration(contactSearchConfiguration: ContactSearchConfiguration) {
+    // Every data source shares one fetch thread, so a search for a query that's already out of date would hold up the one that replaces it.
+    this.pagedDataSource?.cancel()
+
     val pagedDataSource = ContactSearchPagedDataSource(
       contactSearchConfiguration,
       arbitraryRepository = arbitraryRepository,
       searchRepository = searchRepository,
       contactSearchPagedDataSourceRepository = contactSearchPagedDataSourceRepository
     )
+    this.pagedDataSource = pagedDataSource
     pagedData.value = PagedData.createForLiveData(pagedDataSource, pagingConfig)
   }
 
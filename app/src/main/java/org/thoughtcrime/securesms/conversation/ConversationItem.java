@@ -104,6 +104,8 @@ import org.thoughtcrime.securesms.conversation.colors.Colorizer;
 import org.thoughtcrime.securesms.conversation.mutiselect.MultiselectCollection;
 import org.thoughtcrime.securesms.conversation.mutiselect.MultiselectPart;
 import org.thoughtcrime.securesms.conversation.ui.payment.PaymentMessageView;
+import org.thoughtcrime.securesms.conversation.v2.computed.PrecomputedBodyCache;
+import org.thoughtcrime.securesms.conversation.v2.computed.PrecomputedBodyCache.PrecomputedBody;
 import org.thoughtcrime.securesms.conversation.v2.items.InteractiveConversationElement;
 import org.thoughtcrime.securesms.conversation.v2.items.V2ConversationItemUtils;
 import org.thoughtcrime.securesms.database.AttachmentTable;
@@ -1050,9 +1052,10 @@ public final class ConversationItem extends RelativeLayout implements BindableCo
       bodyText.setOverflowText(null);
       bodyText.setVisibility(View.GONE);
     } else {
-      Spannable styledText = conversationMessage.getDisplayBody(getContext());
+      Spannable       styledText      = conversationMessage.getDisplayBody(getContext());
+      PrecomputedBody precomputedBody = PrecomputedBodyCache.get(messageRecord.getId(), styledText);
       if (messageRequestAccepted) {
-        linkifyMessageBody(styledText, batchSelected.isEmpty());
+        linkifyMessageBody(styledText, batchSelected.isEmpty(), precomputedBody);
       }
       styledText = SearchUtil.getHighlightedSpan(locale, STYLE_FACTORY, styledText, searchQuery, SearchUtil.STRICT);
 
@@ -1076,7 +1079,11 @@ public final class ConversationItem extends RelativeLayout implements BindableCo
         bodyText.setMaxLines(Integer.MAX_VALUE);
       }
 
-      bodyText.setText(StringUtil.trim(styledText));
+      if (precomputedBody != null) {
+        bodyText.setText(StringUtil.trim(styledText), precomputedBody.getTrimmedEmojiCandidates());
+      } else {
+        bodyText.setText(StringUtil.trim(styledText));
+      }
       bodyText.setVisibility(View.VISIBLE);
 
       if (conversationMessage.getBottomButton() != null) {
@@ -1586,9 +1593,10 @@ public final class ConversationItem extends RelativeLayout implements BindableCo
   }
 
   private void linkifyMessageBody(@NonNull Spannable messageBody,
-                                  boolean shouldLinkifyAllLinks)
+                                  boolean shouldLinkifyAllLinks,
+                                  @Nullable PrecomputedBody precomputedBody)
   {
-    V2ConversationItemUtils.linkifyUrlLinks(messageBody, shouldLinkifyAllLinks, urlClickListener);
+    V2ConversationItemUtils.linkifyUrlLinks(messageBody, shouldLinkifyAllLinks, urlClickListener, precomputedBody != null ? precomputedBody.getLinks() : null);
 
     if (conversationMessage.hasStyleLinks()) {
       for (PlaceholderURLSpan placeholder : messageBody.getSpans(0, messageBody.length(), PlaceholderURLSpan.class)) {
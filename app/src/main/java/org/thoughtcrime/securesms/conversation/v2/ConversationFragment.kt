@@ -430,6 +430,9 @@ class ConversationFragment :
     }
     scrollListener = null
 
+    mediaPrefetcher?.detach()
+    mediaPrefetcher = null
+
     _binding.conversationItemRecycler.adapter = null
 
     textDraftSaveDebouncer.clear()
@@ -542,6 +545,7 @@ class ConversationFragment :
   private var dataObserver: DataObserver? = null
   private var menuProvider: ConversationOptionsMenu.Provider? = null
   private var scrollListener: ScrollListener? = null
+  private var mediaPrefetcher: ConversationMediaPrefetcher? = null
 
   private val jumpAndPulseScrollStrategy = object : ScrollToPositionDelegate.ScrollStrategy {
     override fun performScroll(recyclerView: RecyclerView, layoutManager: LinearLayoutManager, position: Int, smooth: Boolean) {
@@ -1727,6 +1731,10 @@ class ConversationFragment :
 
     adapter.setPagingController(viewModel.pagingController)
 
+    if (RemoteConfig.conversationMediaPrefetch) {
+      mediaPrefetcher = ConversationMediaPrefetcher(binding.conversationItemRecycler, adapter, adapter.requestManager).also { it.attach() }
+    }
+
     recyclerViewColorizer = RecyclerViewColorizer(binding.conversationItemRecycler)
     recyclerViewColorizer.setChatColors(args.chatColors)
 
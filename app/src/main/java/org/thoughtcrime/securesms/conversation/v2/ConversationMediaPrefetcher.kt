@@ -0,0 +1,278 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.conversation.v2
+
+import android.graphics.drawable.Drawable
+import android.net.Uri
+import android.os.SystemClock
+import android.view.View
+import androidx.annotation.MainThread
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import com.bumptech.glide.RequestManager
+import com.bumptech.glide.load.DataSource
+import com.bumptech.glide.load.engine.GlideException
+import com.bumptech.glide.request.RequestListener
+import com.bumptech.glide.request.target.Target
+import org.signal.core.util.logging.Log
+import org.thoughtcrime.securesms.R
+import org.thoughtcrime.securesms.components.ThumbnailView
+import org.thoughtcrime.securesms.conversation.ConversationMessage
+import org.thoughtcrime.securesms.database.AttachmentTable
+import org.thoughtcrime.securesms.database.model.MmsMessageRecord
+import org.thoughtcrime.securesms.mms.Slide
+import org.thoughtcrime.securesms.util.isCaptionlessMms
+import kotlin.math.abs
+
+/**
+ * Decodes thumbnails for messages just past the edge of the screen in the direction of scroll, so that by the time they're bound they can be served
+ * from Glide's memory cache instead of showing a blurhash while we decrypt and decode.
+ *
+ * How far ahead we look scales with scroll velocity, and everything outstanding is cancelled when the scroll direction changes. Upcoming items are
+ * looked up through [ConversationAdapterV2.getConversationMessage], which also asks the paging controller to load data around them.
+ *
+ * Only single image and video messages are prefetched, since those are the only ones whose on-screen size we can work out without a view.
+ */
+@MainThread
+class ConversationMediaPrefetcher(
+  private val recyclerView: RecyclerView,
+  private val adapter: ConversationAdapterV2,
+  private val requestManager: RequestManager
+) : RecyclerView.OnScrollListener(), RecyclerView.OnChildAttachStateChangeListener {
+
+  companion object {
+    private val TAG = Log.tag(ConversationMediaPrefetcher::class.java)
+
+    /** How far ahead, in time, we want media to be ready at the current scroll velocity. */
+    private const val LOOKAHEAD_WINDOW_MS = 500f
+    private const val MIN_LOOKAHEAD_ITEMS = 2
+    private const val MAX_LOOKAHEAD_ITEMS = 20
+
+    /** Gaps between scroll events longer than this are treated as a fresh scroll rather than a velocity sample. */
+    private const val MAX_SAMPLE_INTERVAL_MS = 100L
+
+    /** Upper bound on how many prefetches we track at once, which in turn bounds how many decoded bitmaps we can be holding on to. */
+    private const val MAX_OUTSTANDING = 24
+  }
+
+  private val outstanding: LinkedHashMap<Uri, Prefetch> = LinkedHashMap()
+
+  private val minWidthSolo = recyclerView.resources.getDimensionPixelSize(R.dimen.media_bubble_min_width_solo)
+  private val minWidthWithContent = recyclerView.resources.getDimensionPixelSize(R.dimen.media_bubble_min_width_with_content)
+  private val maxWidth = recyclerView.resources.getDimensionPixelSize(R.dimen.media_bubble_max_width)
+  private val minHeight = recyclerView.resources.getDimensionPixelSize(R.dimen.media_bubble_min_height)
+  private val maxHeight = recyclerView.resources.getDimensionPixelSize(R.dimen.media_bubble_max_height)
+
+  /** 1 when scrolling towards higher adapter positions (older messages), -1 when scrolling towards lower ones, 0 before the first scroll. */
+  private var direction = 0
+  private var lastScrollTime = 0L
+  private var velocityPxPerMs = 0f
+
+  private var started = 0
+  private var hits = 0
+  private var late = 0
+  private var misses = 0
+  private var cancelled = 0
+  private var wasted = 0
+
+  fun attach() {
+    recyclerView.addOnScrollListener(this)
+    recyclerView.addOnChildAttachStateChangeListener(this)
+  }
+
+  fun detach() {
+    recyclerView.removeOnScrollListener(this)
+    recyclerView.removeOnChildAttachStateChangeListener(this)
+    cancelAll()
+    Log.d(TAG, "Detached. ${getMetrics()}")
+  }
+
+  fun getMetrics(): Metrics {
+    return Metrics(
+      started = started,
+      hits = hits,
+      late = late,
+      misses = misses,
+      cancelled = cancelled,
+      wasted = wasted
+    )
+  }
+
+  override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+    val layoutManager = recyclerView.layoutManager as? LinearLayoutManager ?: return
+    if (dy == 0) {
+      return
+    }
+
+    val newDirection = if ((dy > 0) != layoutManager.reverseLayout) 1 else -1
+    if (direction != 0 && newDirection != direction) {
+      cancelAll()
+      velocityPxPerMs = 0f
+    }
+    direction = newDirection
+
+    val now = SystemClock.uptimeMillis()
+    val elapsed = now - lastScrollTime
+    velocityPxPerMs = if (elapsed in 1..MAX_SAMPLE_INTERVAL_MS) {
+      (velocityPxPerMs + abs(dy).toFloat() / elapsed) / 2
+    } else {
+      0f
+    }
+    lastScrollTime = now
+
+    prefetchAhead(layoutManager)
+  }
+
+  override fun onChildViewAttachedToWindow(view: View) {
+    val holder = recyclerView.getChildViewHolder(view)
+    if (holder.bindingAdapter !== adapter || holder.bindingAdapterPosition == RecyclerView.NO_POSITION) {
+      return
+    }
+
+    val slide = getPrefetchableSlide(adapter.getConversationMessage(holder.bindingAdapterPosition)) ?: return
+    val prefetch = outstanding.remove(slide.displayUri)
+
+    when {
+      prefetch == null -> misses++
+      prefetch.ready -> hits++
+      else -> {
+        // The view's own request joins the in-flight load for the same key, so we can let go of ours
+        late++
+        prefetch.clear()
+      }
+    }
+  }
+
+  override fun onChildViewDetachedFromWindow(view: View) = Unit
+
+  private fun prefetchAhead(layoutManager: LinearLayoutManager) {
+    val first = layoutManager.findFirstVisibleItemPosition()
+    val last = layoutManager.findLastVisibleItemPosition()
+    if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
+      return
+    }
+
+    val averageItemHeight = recyclerView.height.toFloat() / (last - first + 1)
+    val lookahead = if (averageItemHeight > 0) {
+      (velocityPxPerMs * LOOKAHEAD_WINDOW_MS / averageItemHeight).toInt().coerceIn(MIN_LOOKAHEAD_ITEMS, MAX_LOOKAHEAD_ITEMS)
+    } else {
+      MIN_LOOKAHEAD_ITEMS
+    }
+
+    val edge = if (direction > 0) last else first
+    for (i in 1..lookahead) {
+      val position = edge + direction * i
+      if (position < 0 || position >= adapter.itemCount) {
+        break
+      }
+
+      prefetch(adapter.getConversationMessage(position))
+    }
+  }
+
+  private fun prefetch(conversationMessage: ConversationMessage?) {
+    val slide = getPrefetchableSlide(conversationMessage) ?: return
+    val uri = slide.displayUri ?: return
+
+    if (outstanding.containsKey(uri)) {
+      return
+    }
+
+    val bounds = intArrayOf(
+      if (conversationMessage!!.messageRecord.isCaptionlessMms(recyclerView.context)) minWidthSolo else minWidthWithContent,
+      maxWidth,
+      minHeight,
+      maxHeight
+    )
+
+    val request = ThumbnailView.buildPrefetchRequestBuilder(requestManager, slide, bounds) ?: return
+
+    if (outstanding.size >= MAX_OUTSTANDING) {
+      val oldest = outstanding.entries.first()
+      outstanding.remove(oldest.key)
+      discard(oldest.value)
+    }
+
+    val prefetch = Prefetch(uri)
+    outstanding[uri] = prefetch
+    started++
+
+    prefetch.target = request.addListener(prefetch).preload()
+  }
+
+  private fun getPrefetchableSlide(conversationMessage: ConversationMessage?): Slide? {
+    val record = conversationMessage?.messageRecord as? MmsMessageRecord ?: return null
+    if (record.isViewOnce || record.isMmsNotification) {
+      return null
+    }
+
+    val slide = record.slideDeck.thumbnailSlides.singleOrNull() ?: return null
+    if (slide.isVideoGif || slide.displayUri == null || slide.transferState != AttachmentTable.TRANSFER_PROGRESS_DONE || slide.asAttachment().isPermanentlyFailed) {
+      return null
+    }
+
+    return slide
+  }
+
+  private fun cancelAll() {
+    outstanding.values.forEach { discard(it) }
+    outstanding.clear()
+  }
+
+  private fun discard(prefetch: Prefetch) {
+    if (prefetch.ready) {
+      wasted++
+    } else {
+      cancelled++
+    }
+    prefetch.clear()
+  }
+
+  private inner class Prefetch(private val uri: Uri) : RequestListener<Drawable> {
+    var target: Target<Drawable>? = null
+    var ready = false
+
+    fun clear() {
+      target?.let { requestManager.clear(it) }
+      target = null
+    }
+
+    override fun onResourceReady(resource: Drawable?, model: Any?, target: Target<Drawable>?, dataSource: DataSource?, isFirstResource: Boolean): Boolean {
+      ready = true
+      return false
+    }
+
+    override fun onLoadFailed(e: GlideException?, model: Any?, target: Target<Drawable>?, isFirstResource: Boolean): Boolean {
+      if (outstanding[uri] === this) {
+        outstanding.remove(uri)
+      }
+      return false
+    }
+  }
+
+  /**
+   * @param started Prefetches kicked off.
+   * @param hits Prefetchable thumbnails that were already decoded when bound.
+   * @param late Prefetchable thumbnails that were still being decoded when bound.
+   * @param misses Prefetchable thumbnails that were bound without us having tried to prefetch them.
+   * @param cancelled Prefetches cancelled part way through, because of a change of direction or because too many were outstanding.
+   * @param wasted Prefetches that finished decoding but were dropped before they were bound.
+   */
+  data class Metrics(
+    val started: Int,
+    val hits: Int,
+    val late: Int,
+    val misses: Int,
+    val cancelled: Int,
+    val wasted: Int
+  ) {
+    val hitRate: Float
+      get() = if (hits + late + misses > 0) hits.toFloat() / (hits + late + misses) else 0f
+
+    val wasteRate: Float
+      get() = if (started > 0) (cancelled + wasted).toFloat() / started else 0f
+  }
+}
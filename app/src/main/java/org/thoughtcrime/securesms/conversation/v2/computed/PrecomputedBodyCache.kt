@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.conversation.v2.computed
+
+import android.content.Context
+import androidx.annotation.AnyThread
+import androidx.annotation.WorkerThread
+import org.signal.core.util.StringUtil
+import org.thoughtcrime.securesms.components.emoji.EmojiProvider
+import org.thoughtcrime.securesms.components.emoji.parsing.EmojiParser
+import org.thoughtcrime.securesms.conversation.ConversationMessage
+import org.thoughtcrime.securesms.conversation.v2.items.V2ConversationItemUtils
+import org.thoughtcrime.securesms.emoji.EmojiSource
+import org.thoughtcrime.securesms.util.LRUCache
+
+/**
+ * Holds the parts of presenting a message body that don't depend on the view it's bound to -- link detection and emoji parsing -- so that they can
+ * be done on the paging thread as each page of the conversation loads, rather than on the main thread for every bind during a scroll.
+ *
+ * Entries are keyed by message id and are only handed out if the body they were computed from still matches, so edits and mention resolution
+ * just cause a miss rather than stale spans.
+ */
+object PrecomputedBodyCache {
+
+  private const val MAX_SIZE = 1000
+
+  private val cache = LRUCache<Long, PrecomputedBody>(MAX_SIZE)
+
+  @WorkerThread
+  fun precompute(context: Context, conversationMessages: List<ConversationMessage>) {
+    for (conversationMessage in conversationMessages) {
+      precompute(context, conversationMessage)
+    }
+  }
+
+  @WorkerThread
+  fun precompute(context: Context, conversationMessage: ConversationMessage) {
+    val messageRecord = conversationMessage.messageRecord
+    if (messageRecord.isUpdate || messageRecord.isRemoteDelete) {
+      return
+    }
+
+    val body = conversationMessage.getDisplayBody(context)
+    if (body.isEmpty()) {
+      return
+    }
+
+    val text = body.toString()
+    val emojiSource = EmojiSource.latest
+    val existing = synchronized(cache) { cache[messageRecord.id] }
+    if (existing != null && existing.text == text && existing.emojiSource === emojiSource) {
+      return
+    }
+
+    val precomputed = PrecomputedBody(
+      text = text,
+      links = V2ConversationItemUtils.findUrlLinks(body),
+      trimmedEmojiCandidates = EmojiProvider.getCandidates(StringUtil.trim(body)),
+      emojiSource = emojiSource
+    )
+
+    synchronized(cache) {
+      cache[messageRecord.id] = precomputed
+    }
+  }
+
+  /**
+   * @return The precomputed body for the message, or null if there isn't one that matches [body] and the current emoji source.
+   */
+  @JvmStatic
+  @AnyThread
+  fun get(messageId: Long, body: CharSequence): PrecomputedBody? {
+    val precomputed = synchronized(cache) { cache[messageId] } ?: return null
+    return if (precomputed.text.contentEquals(body) && precomputed.emojiSource === EmojiSource.latest) precomputed else null
+  }
+
+  /**
+   * @param text The display body this was computed from.
+   * @param links Legal links in [text], as found by [V2ConversationItemUtils.findUrlLinks].
+   * @param trimmedEmojiCandidates Emoji found in [text] after being trimmed with [StringUtil.trim], which is what's actually set on the view.
+   */
+  class PrecomputedBody(
+    val text: String,
+    val links: List<V2ConversationItemUtils.UrlLink>,
+    val trimmedEmojiCandidates: EmojiParser.CandidateList?,
+    val emojiSource: EmojiSource
+  )
+}
@@ -15,6 +15,7 @@ import org.thoughtcrime.securesms.backup.v2.BackupRestoreManager
 import org.thoughtcrime.securesms.conversation.ConversationData
 import org.thoughtcrime.securesms.conversation.ConversationMessage
 import org.thoughtcrime.securesms.conversation.ConversationMessage.ConversationMessageFactory
+import org.thoughtcrime.securesms.conversation.v2.computed.PrecomputedBodyCache
 import org.thoughtcrime.securesms.database.MessageTable
 import org.thoughtcrime.securesms.database.SignalDatabase
 import org.thoughtcrime.securesms.database.model.InMemoryMessageRecord.RemovedContactHidden
@@ -129,7 +130,7 @@ class ConversationDataSource(
       stopwatch.split("restore")
     }
 
-    val messages = records.map { record ->
+    val conversationMessages = records.map { record ->
       ConversationMessageFactory.createWithUnresolvedData(
         localContext,
         record,
@@ -137,11 +138,16 @@ class ConversationDataSource(
         extraData.mentionsById[record.id],
         extraData.hasBeenQuoted.contains(record.id),
         threadRecipient
-      ).toMappingModel()
+      )
     }
 
     stopwatch.split("conversion")
 
+    PrecomputedBodyCache.precompute(localContext, conversationMessages)
+    stopwatch.split("precompute")
+
+    val messages = conversationMessages.map { it.toMappingModel() }
+
     val threadHeaderIndex = totalSize - THREAD_HEADER_COUNT
 
     val threadHeaders: List<ConversationElement> = if (start + length > threadHeaderIndex) {
@@ -192,14 +198,19 @@ class ConversationDataSource(
         record = MessageDataFetcher.updateModelWithData(record, extraData)
         stopwatch.split("models")
 
-        return ConversationMessageFactory.createWithUnresolvedData(
+        val conversationMessage = ConversationMessageFactory.createWithUnresolvedData(
           localContext,
           record,
           record.getDisplayBody(AppDependencies.application),
           extraData.mentionsById[record.id],
           extraData.hasBeenQuoted.contains(record.id),
           threadRecipient
-        ).toMappingModel()
+        )
+
+        PrecomputedBodyCache.precompute(localContext, conversationMessage)
+        stopwatch.split("precompute")
+
+        return conversationMessage.toMappingModel()
       }
     } finally {
       val log = stopwatch.stopAndGetLogString()
@@ -39,6 +39,7 @@ import org.thoughtcrime.securesms.conversation.mutiselect.Multiselect
 import org.thoughtcrime.securesms.conversation.mutiselect.MultiselectPart
 import org.thoughtcrime.securesms.conversation.mutiselect.Multiselectable
 import org.thoughtcrime.securesms.conversation.v2.computed.FormattedDate
+import org.thoughtcrime.securesms.conversation.v2.computed.PrecomputedBodyCache
 import org.thoughtcrime.securesms.conversation.v2.data.ConversationMessageElement
 import org.thoughtcrime.securesms.database.model.MessageRecord
 import org.thoughtcrime.securesms.database.model.MmsMessageRecord
@@ -444,8 +445,9 @@ open class V2ConversationItemTextOnlyViewHolder<Model : MappingModel<Model>>(
 
     val record = conversationMessage.messageRecord
     var styledText: Spannable = conversationMessage.getDisplayBody(context)
+    val precomputedBody = PrecomputedBodyCache.get(record.id, styledText)
     if (conversationContext.isMessageRequestAccepted) {
-      linkifyMessageBody(styledText)
+      linkifyMessageBody(styledText, precomputedBody)
     }
 
     styledText = SearchUtil.getHighlightedSpan(Locale.getDefault(), STYLE_FACTORY, styledText, conversationContext.searchQuery, SearchUtil.MATCH_ALL)
@@ -464,11 +466,15 @@ open class V2ConversationItemTextOnlyViewHolder<Model : MappingModel<Model>>(
     val bodyText = StringUtil.trim(styledText)
 
     binding.body.visible = bodyText.isNotEmpty()
-    binding.body.text = bodyText
+    if (precomputedBody != null) {
+      binding.body.setText(bodyText, precomputedBody.trimmedEmojiCandidates)
+    } else {
+      binding.body.text = bodyText
+    }
   }
 
-  private fun linkifyMessageBody(messageBody: Spannable) {
-    V2ConversationItemUtils.linkifyUrlLinks(messageBody, conversationContext.selectedItems.isEmpty(), conversationContext.clickListener::onUrlClicked)
+  private fun linkifyMessageBody(messageBody: Spannable, precomputedBody: PrecomputedBodyCache.PrecomputedBody?) {
+    V2ConversationItemUtils.linkifyUrlLinks(messageBody, conversationContext.selectedItems.isEmpty(), conversationContext.clickListener::onUrlClicked, precomputedBody?.links)
 
     if (conversationMessage.hasStyleLinks()) {
       messageBody.getSpans(0, messageBody.length, PlaceholderURLSpan::class.java).forEach { placeholder ->
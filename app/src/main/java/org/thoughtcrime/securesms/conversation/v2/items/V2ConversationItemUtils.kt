@@ -7,9 +7,11 @@ package org.thoughtcrime.securesms.conversation.v2.items
 
 import android.content.Context
 import android.text.Spannable
+import android.text.SpannableString
 import android.text.Spanned
 import android.text.style.URLSpan
 import android.text.util.Linkify
+import androidx.annotation.WorkerThread
 import androidx.core.text.util.LinkifyCompat
 import org.thoughtcrime.securesms.database.model.MessageRecord
 import org.thoughtcrime.securesms.util.InterceptableLongClickCopyLinkSpan
@@ -26,10 +28,24 @@ object V2ConversationItemUtils {
     return hasOnlyThumbnail(context) && isDisplayBodyEmpty(context)
   }
 
+  private const val LINK_PATTERN = Linkify.WEB_URLS or Linkify.EMAIL_ADDRESSES or Linkify.PHONE_NUMBERS
+
+  /**
+   * Links URLs in the body. If [precomputedLinks] are provided (see [findUrlLinks]), they're used instead of searching the body again.
+   */
   @JvmStatic
-  fun linkifyUrlLinks(messageBody: Spannable, shouldLinkifyAllLinks: Boolean, urlClickHandler: UrlClickHandler) {
-    val linkPattern = Linkify.WEB_URLS or Linkify.EMAIL_ADDRESSES or Linkify.PHONE_NUMBERS
-    val hasLinks = LinkifyCompat.addLinks(messageBody, if (shouldLinkifyAllLinks) linkPattern else 0)
+  @JvmOverloads
+  fun linkifyUrlLinks(messageBody: Spannable, shouldLinkifyAllLinks: Boolean, urlClickHandler: UrlClickHandler, precomputedLinks: List<UrlLink>? = null) {
+    if (shouldLinkifyAllLinks && precomputedLinks != null) {
+      messageBody.getSpans(0, messageBody.length, URLSpan::class.java).forEach(messageBody::removeSpan)
+
+      precomputedLinks.forEach { link ->
+        messageBody.setSpan(InterceptableLongClickCopyLinkSpan(link.url, urlClickHandler), link.start, link.end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+      }
+      return
+    }
+
+    val hasLinks = LinkifyCompat.addLinks(messageBody, if (shouldLinkifyAllLinks) LINK_PATTERN else 0)
 
     if (!hasLinks) {
       return
@@ -48,4 +64,23 @@ object V2ConversationItemUtils {
       messageBody.removeSpan(urlSpan)
     }
   }
+
+  /**
+   * Finds the legal links in a message body the same way [linkifyUrlLinks] does, but without modifying it, so that the (comparatively expensive)
+   * search can happen ahead of time, off of the main thread.
+   */
+  @JvmStatic
+  @WorkerThread
+  fun findUrlLinks(messageBody: CharSequence): List<UrlLink> {
+    val spannable = SpannableString(messageBody)
+    if (!LinkifyCompat.addLinks(spannable, LINK_PATTERN)) {
+      return emptyList()
+    }
+
+    return spannable.getSpans(0, spannable.length, URLSpan::class.java)
+      .filter { LinkUtil.isLegalUrl(it.url) }
+      .map { UrlLink(it.url, spannable.getSpanStart(it), spannable.getSpanEnd(it)) }
+  }
+
+  data class UrlLink(val url: String, val start: Int, val end: Int)
 }
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.crypto;
+
+import androidx.annotation.NonNull;
+
+import org.signal.core.util.Conversions;
+import org.thoughtcrime.securesms.util.LRUCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A read-only {@link SeekableByteChannel} over a file written by {@link ModernEncryptingPartOutputStream}, decrypting as it goes.
+ * <p>
+ * The format is plain AES-CTR, so any position can be reached by re-initializing the cipher with the counter for the block that contains it, rather
+ * than by reading through the file. Derived keys are cached per file, so that reopening the same attachment (like a video player does when seeking)
+ * doesn't redo the key derivation.
+ * <p>
+ * Create via {@link ModernDecryptingPartInputStream#createChannelFor}.
+ */
+public final class DecryptingPartChannel implements SeekableByteChannel {
+
+  private static final int BLOCK_SIZE         = 16;
+  private static final int BUFFER_SIZE        = 64 * 1024;
+  private static final int MAX_POOLED_BUFFERS = 8;
+  private static final int MAX_CACHED_KEYS    = 64;
+
+  private static final LRUCache<KeyId, SecretKeySpec> KEY_CACHE   = new LRUCache<>(MAX_CACHED_KEYS);
+  private static final ArrayDeque<byte[]>             BUFFER_POOL = new ArrayDeque<>();
+
+  private final FileChannel fileChannel;
+  private final long        headerLength;
+  private final Cipher      cipher;
+  private final byte[]      iv           = new byte[BLOCK_SIZE];
+  private final byte[]      blockScratch = new byte[BLOCK_SIZE];
+
+  private final SecretKeySpec key;
+
+  private long position;
+
+  /** The plaintext position the cipher will decrypt next, or -1 if it needs to be initialized before use. */
+  private long cipherPosition = -1;
+
+  DecryptingPartChannel(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random, @NonNull File file, long headerLength) throws IOException {
+    this.fileChannel  = new FileInputStream(file).getChannel();
+    this.headerLength = headerLength;
+
+    try {
+      this.key    = getKey(attachmentSecret, random);
+      this.cipher = Cipher.getInstance("AES/CTR/NoPadding");
+    } catch (GeneralSecurityException e) {
+      fileChannel.close();
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Reads the 32 byte random that {@link ModernEncryptingPartOutputStream} writes to the start of inline files.
+   */
+  static @NonNull byte[] readInlineRandom(@NonNull File file) throws IOException {
+    try (FileChannel channel = new FileInputStream(file).getChannel()) {
+      ByteBuffer random = ByteBuffer.allocate(32);
+
+      while (random.hasRemaining()) {
+        if (channel.read(random) == -1) {
+          throw new IOException(ModernDecryptingPartInputStream.PREMATURE_END_ERROR_MESSAGE);
+        }
+      }
+
+      return random.array();
+    }
+  }
+
+  @Override
+  public synchronized int read(@NonNull ByteBuffer dst) throws IOException {
+    int read = read(dst, position);
+    if (read > 0) {
+      position += read;
+    }
+    return read;
+  }
+
+  /**
+   * Reads into {@code dst} starting at the given plaintext position, without changing this channel's position.
+   *
+   * @return The number of bytes read, 0 if {@code dst} has no space left, or -1 if {@code position} is at or past the end.
+   */
+  public synchronized int read(@NonNull ByteBuffer dst, long position) throws IOException {
+    ensureOpen();
+
+    if (position < 0) {
+      throw new IllegalArgumentException("Negative position: " + position);
+    }
+
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+
+    long available = size() - position;
+    if (available <= 0) {
+      return -1;
+    }
+
+    int toRead = (int) Math.min(dst.remaining(), available);
+
+    seekCipher(position);
+
+    byte[] buffer = obtainBuffer();
+    try {
+      int total = 0;
+
+      while (total < toRead) {
+        int chunk = fileChannel.read(ByteBuffer.wrap(buffer, 0, Math.min(buffer.length, toRead - total)), headerLength + position + total);
+        if (chunk <= 0) {
+          break;
+        }
+
+        decrypt(buffer, chunk, dst);
+        total += chunk;
+      }
+
+      return total > 0 ? total : -1;
+    } finally {
+      recycleBuffer(buffer);
+    }
+  }
+
+  @Override
+  public int write(ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public synchronized long position() throws IOException {
+    ensureOpen();
+    return position;
+  }
+
+  /**
+   * Moves to the given plaintext position. This is O(1): the cipher is only re-keyed to the new counter on the next read.
+   */
+  @Override
+  public synchronized @NonNull DecryptingPartChannel position(long newPosition) throws IOException {
+    ensureOpen();
+
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Negative position: " + newPosition);
+    }
+
+    position = newPosition;
+    return this;
+  }
+
+  @Override
+  public long size() throws IOException {
+    return Math.max(0, fileChannel.size() - headerLength);
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return fileChannel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    fileChannel.close();
+  }
+
+  /**
+   * @return An {@link InputStream} that reads from this channel's current position, and skips by moving that position rather than reading.
+   */
+  public @NonNull InputStream asInputStream() {
+    return new ChannelInputStream(this);
+  }
+
+  private void seekCipher(long position) throws IOException {
+    if (position == cipherPosition) {
+      return;
+    }
+
+    Arrays.fill(iv, (byte) 0);
+    Conversions.longTo4ByteArray(iv, 12, position / BLOCK_SIZE);
+
+    try {
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+
+      int remainder = (int) (position % BLOCK_SIZE);
+      if (remainder > 0) {
+        cipher.update(blockScratch, 0, remainder, blockScratch, 0);
+      }
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+
+    cipherPosition = position;
+  }
+
+  private void decrypt(byte[] cipherText, int length, ByteBuffer dst) {
+    try {
+      int written;
+      if (dst.hasArray()) {
+        written = cipher.update(cipherText, 0, length, dst.array(), dst.arrayOffset() + dst.position());
+        dst.position(dst.position() + written);
+      } else {
+        written = cipher.update(ByteBuffer.wrap(cipherText, 0, length), dst);
+      }
+
+      if (written != length) {
+        throw new AssertionError("CTR produced " + written + " bytes for " + length + " bytes of input!");
+      }
+
+      cipherPosition += length;
+    } catch (ShortBufferException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (!fileChannel.isOpen()) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  private static @NonNull SecretKeySpec getKey(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random) throws GeneralSecurityException {
+    KeyId keyId = new KeyId(attachmentSecret.getModernKey(), random);
+
+    synchronized (KEY_CACHE) {
+      SecretKeySpec cached = KEY_CACHE.get(keyId);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(attachmentSecret.getModernKey(), "HmacSHA256"));
+
+    SecretKeySpec key = new SecretKeySpec(mac.doFinal(random), "AES");
+
+    synchronized (KEY_CACHE) {
+      KEY_CACHE.put(keyId, key);
+    }
+
+    return key;
+  }
+
+  private static @NonNull byte[] obtainBuffer() {
+    synchronized (BUFFER_POOL) {
+      byte[] buffer = BUFFER_POOL.poll();
+      if (buffer != null) {
+        return buffer;
+      }
+    }
+
+    return new byte[BUFFER_SIZE];
+  }
+
+  private static void recycleBuffer(@NonNull byte[] buffer) {
+    synchronized (BUFFER_POOL) {
+      if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) {
+        BUFFER_POOL.push(buffer);
+      }
+    }
+  }
+
+  private static final class KeyId {
+    private final byte[] modernKey;
+    private final byte[] random;
+
+    private KeyId(@NonNull byte[] modernKey, @NonNull byte[] random) {
+      this.modernKey = modernKey;
+      this.random    = random.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof KeyId)) return false;
+
+      KeyId other = (KeyId) o;
+      return Arrays.equals(modernKey, other.modernKey) && Arrays.equals(random, other.random);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Arrays.hashCode(modernKey) + Arrays.hashCode(random);
+    }
+  }
+
+  private static final class ChannelInputStream extends InputStream {
+    private final DecryptingPartChannel channel;
+    private final byte[]                single = new byte[1];
+
+    private ChannelInputStream(@NonNull DecryptingPartChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = read(single, 0, 1);
+      return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+
+      return channel.read(ByteBuffer.wrap(buffer, offset, length));
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      synchronized (channel) {
+        long skipped = Math.max(0, Math.min(n, channel.size() - channel.position()));
+        channel.position(channel.position() + skipped);
+        return skipped;
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      synchronized (channel) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, channel.size() - channel.position()));
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
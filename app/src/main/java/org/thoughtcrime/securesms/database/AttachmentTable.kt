@@ -66,6 +66,7 @@ import org.signal.core.util.select
 import org.signal.core.util.toInt
 import org.signal.core.util.update
 import org.signal.core.util.withinTransaction
+import org.signal.protos.resumableuploads.ResumableUpload
 import org.thoughtcrime.securesms.attachments.ArchivedAttachment
 import org.thoughtcrime.securesms.attachments.Attachment
 import org.thoughtcrime.securesms.attachments.AttachmentId
@@ -80,6 +81,7 @@ import org.thoughtcrime.securesms.backup.v2.proto.BackupDebugInfo
 import org.thoughtcrime.securesms.blurhash.BlurHash
 import org.thoughtcrime.securesms.crypto.AttachmentSecret
 import org.thoughtcrime.securesms.crypto.ClassicDecryptingPartInputStream
+import org.thoughtcrime.securesms.crypto.DecryptingPartChannel
 import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream
 import org.thoughtcrime.securesms.crypto.ModernEncryptingPartOutputStream
 import org.thoughtcrime.securesms.database.AttachmentTable.ArchiveTransferState.COPY_PENDING
@@ -187,6 +189,8 @@ class AttachmentTable(
     const val ARCHIVE_CDN = "archive_cdn"
     const val ARCHIVE_TRANSFER_STATE = "archive_transfer_state"
     const val ARCHIVE_THUMBNAIL_TRANSFER_STATE = "archive_thumbnail_transfer_state"
+    const val UPLOAD_CHECKPOINT_SPEC = "upload_checkpoint_spec"
+    const val UPLOAD_CHECKPOINT_OFFSET = "upload_checkpoint_offset"
     const val THUMBNAIL_RESTORE_STATE = "thumbnail_restore_state"
     const val ATTACHMENT_UUID = "attachment_uuid"
     const val OFFLOAD_RESTORED_AT = "offload_restored_at"
@@ -293,7 +297,9 @@ class AttachmentTable(
         $ATTACHMENT_UUID TEXT DEFAULT NULL,
         $OFFLOAD_RESTORED_AT INTEGER DEFAULT 0,
         $QUOTE_TARGET_CONTENT_TYPE TEXT DEFAULT NULL,
-        $ARCHIVE_THUMBNAIL_TRANSFER_STATE INTEGER DEFAULT ${ArchiveTransferState.NONE.value}
+        $ARCHIVE_THUMBNAIL_TRANSFER_STATE INTEGER DEFAULT ${ArchiveTransferState.NONE.value},
+        $UPLOAD_CHECKPOINT_SPEC BLOB DEFAULT NULL,
+        $UPLOAD_CHECKPOINT_OFFSET INTEGER DEFAULT 0
       )
       """
 
@@ -338,6 +344,21 @@ class AttachmentTable(
     return getDataStream(attachmentId, offset) ?: throw FileNotFoundException("No stream for: $attachmentId")
   }
 
+  /**
+   * Opens a seekable, decrypting channel over an attachment's data, for callers that jump around within it like media players.
+   *
+   * @return The channel, or null if the attachment has no data or its data is in the legacy format, which can only be read as a stream.
+   */
+  @Throws(IOException::class)
+  fun getAttachmentChannel(attachmentId: AttachmentId): DecryptingPartChannel? {
+    val dataInfo = getDataFileInfo(attachmentId) ?: return null
+    if (dataInfo.random.size != 32) {
+      return null
+    }
+
+    return ModernDecryptingPartInputStream.createChannelFor(attachmentSecret, dataInfo.random, dataInfo.file)
+  }
+
   @Throws(IOException::class)
   fun getAttachmentStream(localArchivableAttachment: LocalArchivableAttachment): InputStream {
     return try {
@@ -694,6 +715,40 @@ class AttachmentTable(
       .readToSingleLong()
   }
 
+  /**
+   * Pages through attachments whose full-size file or thumbnail is being restored, along with when their thread was last active. Used to rebuild the
+   * restore media scheduler's queue.
+   */
+  fun getRestoringMedia(afterId: AttachmentId?, limit: Int): List<RestoringMedia> {
+    return readableDatabase
+      .select("$TABLE_NAME.$ID", "$TABLE_NAME.$MESSAGE_ID", "$TABLE_NAME.$DATA_SIZE", "$TABLE_NAME.$TRANSFER_STATE", "$TABLE_NAME.$THUMBNAIL_RESTORE_STATE", "$TABLE_NAME.$STICKER_PACK_ID", "${ThreadTable.TABLE_NAME}.${ThreadTable.DATE}")
+      .from(
+        "$TABLE_NAME " +
+          "LEFT JOIN ${MessageTable.TABLE_NAME} ON ${MessageTable.TABLE_NAME}.${MessageTable.ID} = $TABLE_NAME.$MESSAGE_ID " +
+          "LEFT JOIN ${ThreadTable.TABLE_NAME} ON ${ThreadTable.TABLE_NAME}.${ThreadTable.ID} = ${MessageTable.TABLE_NAME}.${MessageTable.THREAD_ID}"
+      )
+      .where(
+        "$TABLE_NAME.$ID > ? AND ($TABLE_NAME.$TRANSFER_STATE = ? OR $TABLE_NAME.$THUMBNAIL_RESTORE_STATE = ?)",
+        afterId?.id ?: 0,
+        TRANSFER_RESTORE_IN_PROGRESS,
+        ThumbnailRestoreState.IN_PROGRESS.value
+      )
+      .orderBy("$TABLE_NAME.$ID ASC")
+      .limit(limit)
+      .run()
+      .readToList {
+        RestoringMedia(
+          attachmentId = AttachmentId(it.requireLong(ID)),
+          messageId = it.requireLong(MESSAGE_ID),
+          size = it.requireLong(DATA_SIZE),
+          stickerPackId = it.requireString(STICKER_PACK_ID),
+          restoringFullSize = it.requireInt(TRANSFER_STATE) == TRANSFER_RESTORE_IN_PROGRESS,
+          restoringThumbnail = it.requireInt(THUMBNAIL_RESTORE_STATE) == ThumbnailRestoreState.IN_PROGRESS.value,
+          threadDate = it.requireLong(ThreadTable.DATE)
+        )
+      }
+  }
+
   fun getOptimizedMediaAttachmentSize(): Long {
     return readableDatabase
       .select("SUM($DATA_SIZE)")
@@ -1745,7 +1800,9 @@ class AttachmentTable(
       DATA_SIZE to uploadResult.dataSize,
       DATA_HASH_END to dataHashEnd,
       UPLOAD_TIMESTAMP to uploadResult.uploadTimestamp,
-      BLUR_HASH to uploadResult.blurHash
+      BLUR_HASH to uploadResult.blurHash,
+      UPLOAD_CHECKPOINT_SPEC to null,
+      UPLOAD_CHECKPOINT_OFFSET to 0
     )
 
     val dataFilePath = getDataFilePath(id) ?: throw IOException("No data file found for attachment!")
@@ -2072,6 +2129,46 @@ class AttachmentTable(
       .readToSingleObject { it.requireString(DATA_FILE) }
   }
 
+  /**
+   * Remembers the resumable upload an upload of this attachment is using and how much of it the CDN has acknowledged, so that a later attempt can pick
+   * it back up.
+   */
+  fun setUploadCheckpoint(attachmentId: AttachmentId, spec: ResumableUpload, committedLength: Long) {
+    writableDatabase
+      .update(TABLE_NAME)
+      .values(
+        UPLOAD_CHECKPOINT_SPEC to spec.encode(),
+        UPLOAD_CHECKPOINT_OFFSET to committedLength
+      )
+      .where("$ID = ?", attachmentId.id)
+      .run()
+  }
+
+  fun getUploadCheckpoint(attachmentId: AttachmentId): UploadCheckpoint? {
+    return readableDatabase
+      .select(UPLOAD_CHECKPOINT_SPEC, UPLOAD_CHECKPOINT_OFFSET)
+      .from(TABLE_NAME)
+      .where("$ID = ? AND $UPLOAD_CHECKPOINT_SPEC NOT NULL", attachmentId.id)
+      .run()
+      .readToSingleObject { cursor ->
+        UploadCheckpoint(
+          spec = ResumableUpload.ADAPTER.decode(cursor.requireNonNullBlob(UPLOAD_CHECKPOINT_SPEC)),
+          committedLength = cursor.requireLong(UPLOAD_CHECKPOINT_OFFSET)
+        )
+      }
+  }
+
+  fun clearUploadCheckpoint(attachmentId: AttachmentId) {
+    writableDatabase
+      .update(TABLE_NAME)
+      .values(
+        UPLOAD_CHECKPOINT_SPEC to null,
+        UPLOAD_CHECKPOINT_OFFSET to 0
+      )
+      .where("$ID = ?", attachmentId.id)
+      .run()
+  }
+
   fun markAttachmentAsTransformed(attachmentId: AttachmentId, withFastStart: Boolean) {
     Log.i(TAG, "[markAttachmentAsTransformed] Marking $attachmentId as transformed. withFastStart: $withFastStart")
     writableDatabase.withinTransaction { db ->
@@ -3753,6 +3850,16 @@ class AttachmentTable(
     }
   }
 
+  data class RestoringMedia(
+    val attachmentId: AttachmentId,
+    val messageId: Long,
+    val size: Long,
+    val stickerPackId: String?,
+    val restoringFullSize: Boolean,
+    val restoringThumbnail: Boolean,
+    val threadDate: Long
+  )
+
   data class DebugAttachmentStats(
     val totalAttachmentRows: Long = 0L,
     val totalUniqueMediaNamesEligibleForUpload: Long = 0L,
@@ -3830,6 +3937,12 @@ class AttachmentTable(
     }
   }
 
+  /**
+   * @param committedLength How much of the upload the CDN had acknowledged when this was saved. The CDN is still asked where to resume from, since it
+   *                        may have more.
+   */
+  data class UploadCheckpoint(val spec: ResumableUpload, val committedLength: Long)
+
   data class CreateRemoteKeyResult(val totalCount: Int, val notQuoteOrSickerDupeNotFoundCount: Int, val notQuoteOrSickerDupeFoundCount: Int) {
     val unexpectedKeyCreation = notQuoteOrSickerDupeFoundCount > 0 || notQuoteOrSickerDupeNotFoundCount > 0
   }
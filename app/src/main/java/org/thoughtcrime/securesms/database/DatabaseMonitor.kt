@@ -1,14 +1,36 @@
 package org.thoughtcrime.securesms.database
 
 import android.content.ContentValues
+import org.signal.core.util.metrics.Metrics
 
 object DatabaseMonitor {
+  /** Histogram of how long SQL statements take, labeled by table. Statements that aren't tied to a single table are labeled [RAW_SQL]. */
+  const val METRIC_SQL = "db.sql"
+
+  private const val RAW_SQL = "(raw sql)"
+
   private var queryMonitor: QueryMonitor? = null
 
   fun initialize(queryMonitor: QueryMonitor?) {
     DatabaseMonitor.queryMonitor = queryMonitor
   }
 
+  /**
+   * Called once a statement has finished running, including filling the first window of a cursor.
+   *
+   * @param table The table the statement was run against, if it was made through one of the table-based methods.
+   * @param sql The selection for table-based statements, otherwise the full SQL.
+   * @param startNanos When the statement started, per [System.nanoTime].
+   */
+  @JvmStatic
+  fun onExecuted(db: SQLiteDatabase, table: String?, sql: String?, startNanos: Long) {
+    val durationNanos = System.nanoTime() - startNanos
+
+    Metrics.histogram(METRIC_SQL, table ?: RAW_SQL).record(durationNanos)
+    SlowQueryDetector.onExecuted(db, table, sql, durationNanos)
+    queryMonitor?.onExecuted(table, sql, durationNanos)
+  }
+
   @JvmStatic
   fun onSql(sql: String, args: Array<Any>?) {
     queryMonitor?.onSql(sql, args)
@@ -6,12 +6,14 @@ import androidx.annotation.VisibleForTesting;
 import org.jetbrains.annotations.NotNull;
 import org.signal.core.util.concurrent.SignalExecutors;
 import org.thoughtcrime.securesms.database.model.MessageId;
+import org.thoughtcrime.securesms.dependencies.AppDependencies;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.service.webrtc.links.CallLinkRoomId;
 import org.thoughtcrime.securesms.util.concurrent.SerialExecutor;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -71,6 +73,7 @@ public class DatabaseObserver {
   private final Map<CallLinkRoomId, Set<Observer>> callLinkObservers;
   private final Set<InAppPaymentObserver>          inAppPaymentObservers;
   private final Set<Observer>                      chatFolderObservers;
+  private final Set<RecipientObserver>             recipientObservers;
 
   public DatabaseObserver() {
     this.executor                     = new SerialExecutor(SignalExecutors.BOUNDED);
@@ -94,6 +97,7 @@ public class DatabaseObserver {
     this.callLinkObservers            = new HashMap<>();
     this.inAppPaymentObservers        = new HashSet<>();
     this.chatFolderObservers          = new HashSet<>();
+    this.recipientObservers           = new HashSet<>();
   }
 
   public void registerConversationListObserver(@NonNull Observer listener) {
@@ -213,6 +217,10 @@ public class DatabaseObserver {
     executor.execute(() -> chatFolderObservers.add(observer));
   }
 
+  public void registerRecipientObserver(@NonNull RecipientObserver observer) {
+    executor.execute(() -> recipientObservers.add(observer));
+  }
+
   public void unregisterObserver(@NonNull Observer listener) {
     executor.execute(() -> {
       conversationListObservers.remove(listener);
@@ -247,6 +255,12 @@ public class DatabaseObserver {
     });
   }
 
+  public void unregisterObserver(@NonNull RecipientObserver listener) {
+    executor.execute(() -> {
+      recipientObservers.remove(listener);
+    });
+  }
+
   public void notifyConversationListeners(Set<Long> threadIds) {
     for (long threadId : threadIds) {
       notifyConversationListeners(threadId);
@@ -358,6 +372,32 @@ public class DatabaseObserver {
   public void notifyRecipientChanged(@NonNull RecipientId recipientId) {
     SignalDatabase.runPostSuccessfulTransaction(KEY_RECIPIENT + recipientId.serialize(), () -> {
       Recipient.live(recipientId).refresh();
+      notifyRecipientObservers(Collections.singleton(recipientId));
+    });
+  }
+
+  /**
+   * Like {@link #notifyRecipientChanged(RecipientId)}, but refreshes all of the provided recipients with a single bulk read once the transaction
+   * succeeds, rather than reading each one individually.
+   */
+  public void notifyRecipientsChanged(@NonNull Collection<RecipientId> recipientIds) {
+    if (recipientIds.isEmpty()) {
+      return;
+    }
+
+    Set<RecipientId> ids = new HashSet<>(recipientIds);
+
+    SignalDatabase.runPostSuccessfulTransaction(() -> {
+      AppDependencies.getRecipientCache().refresh(ids);
+      notifyRecipientObservers(ids);
+    });
+  }
+
+  private void notifyRecipientObservers(@NonNull Set<RecipientId> recipientIds) {
+    executor.execute(() -> {
+      for (RecipientObserver observer : recipientObservers) {
+        observer.onRecipientsChanged(recipientIds);
+      }
     });
   }
 
@@ -465,6 +505,13 @@ public class DatabaseObserver {
     void onMessageChanged(@NonNull MessageId messageId);
   }
 
+  public interface RecipientObserver {
+    /**
+     * Called after the provided recipients have changed in the database. Executed on a serial executor, so don't do any long-running tasks!
+     */
+    void onRecipientsChanged(@NonNull Set<RecipientId> recipientIds);
+  }
+
   public interface InAppPaymentObserver {
     void onInAppPaymentChanged(@NonNull InAppPaymentTable.InAppPayment inAppPayment);
   }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.database
+
+import androidx.collection.MutableLongObjectMap
+import androidx.collection.MutableLongSet
+import org.thoughtcrime.securesms.recipients.RecipientId
+
+/**
+ * An in-memory copy of [GroupTable.MembershipTable], indexed in both directions: member -> groups and group -> members. Groups are identified by their
+ * recipient id so that everything can be kept in primitive long sets.
+ *
+ * Like [PendingRetryReceiptCache], the first access loads everything from disk. [GroupTable] applies its writes here only once their transaction has
+ * committed, so other threads never see uncommitted memberships.
+ *
+ * Loading happens outside the lock and can overlap with a commit, so every change bumps a generation counter, and a load is only kept if no change
+ * happened while it ran. Otherwise it's retried, since it may have read from a snapshot from before the change.
+ */
+class GroupMembershipCache(private val loader: () -> List<Pair<Long, Long>>) {
+
+  private val groupsByMember = MutableLongObjectMap<MutableLongSet>()
+  private val membersByGroup = MutableLongObjectMap<MutableLongSet>()
+  private var populated = false
+  private var generation = 0L
+
+  /**
+   * @return The recipient ids of all groups that [memberId] is a member of, in no particular order.
+   */
+  fun getGroupsContainingMember(memberId: RecipientId): List<RecipientId> {
+    return read { groupsByMember[memberId.toLong()].toRecipientIds() }
+  }
+
+  /**
+   * @return The members of the group with the given recipient id, in no particular order.
+   */
+  fun getMembers(groupRecipientId: RecipientId): List<RecipientId> {
+    return read { membersByGroup[groupRecipientId.toLong()].toRecipientIds() }
+  }
+
+  fun setMembers(groupRecipientId: RecipientId, members: Collection<RecipientId>) {
+    synchronized(this) {
+      generation++
+      if (!populated) return
+
+      val groupId = groupRecipientId.toLong()
+      membersByGroup.remove(groupId)?.forEach { memberId -> groupsByMember.removeFromSet(memberId, groupId) }
+
+      for (member in members) {
+        add(groupId, member.toLong())
+      }
+    }
+  }
+
+  fun removeMember(groupRecipientId: RecipientId, memberId: RecipientId) {
+    synchronized(this) {
+      generation++
+      if (!populated) return
+
+      membersByGroup.removeFromSet(groupRecipientId.toLong(), memberId.toLong())
+      groupsByMember.removeFromSet(memberId.toLong(), groupRecipientId.toLong())
+    }
+  }
+
+  /**
+   * Moves every membership of [fromId] over to [toId], mirroring [GroupTable.remapRecipient].
+   */
+  fun remapMember(fromId: RecipientId, toId: RecipientId) {
+    synchronized(this) {
+      generation++
+      if (!populated) return
+
+      val groups = groupsByMember.remove(fromId.toLong()) ?: return
+      groups.forEach { groupId ->
+        membersByGroup.removeFromSet(groupId, fromId.toLong())
+        add(groupId, toId.toLong())
+      }
+    }
+  }
+
+  /**
+   * Drops everything, so that the next read reloads from disk.
+   */
+  fun invalidate() {
+    synchronized(this) {
+      generation++
+      groupsByMember.clear()
+      membersByGroup.clear()
+      populated = false
+    }
+  }
+
+  /**
+   * Runs [block] under the lock once the cache is populated, loading it first if needed. Loops in case it's invalidated in between.
+   */
+  private inline fun <T> read(block: () -> T): T {
+    while (true) {
+      ensurePopulated()
+      synchronized(this) {
+        if (populated) {
+          return block()
+        }
+      }
+    }
+  }
+
+  private fun ensurePopulated() {
+    while (true) {
+      val startGeneration = synchronized(this) {
+        if (populated) return
+        generation
+      }
+
+      val memberships = loader()
+
+      synchronized(this) {
+        if (populated) return
+
+        if (generation == startGeneration) {
+          for ((groupId, memberId) in memberships) {
+            add(groupId, memberId)
+          }
+          populated = true
+          return
+        }
+      }
+    }
+  }
+
+  private fun add(groupId: Long, memberId: Long) {
+    membersByGroup.getOrPut(groupId) { MutableLongSet() }.add(memberId)
+    groupsByMember.getOrPut(memberId) { MutableLongSet() }.add(groupId)
+  }
+
+  private fun MutableLongObjectMap<MutableLongSet>.removeFromSet(key: Long, value: Long) {
+    val set = this[key] ?: return
+    set.remove(value)
+    if (set.isEmpty()) {
+      remove(key)
+    }
+  }
+
+  private fun MutableLongSet?.toRecipientIds(): List<RecipientId> {
+    if (this == null) return emptyList()
+
+    val ids = ArrayList<RecipientId>(size)
+    forEach { ids += RecipientId.from(it) }
+    return ids
+  }
+}
@@ -38,6 +38,9 @@ class GroupReceiptTable(context: Context?, databaseHelper: SignalDatabase?) : Da
     const val STATUS_SKIPPED = 4
     const val STATUS_FAILED = 5
 
+    /** Each recipient in a bulk update takes three arguments, so this keeps us well under SQLite's argument limit. */
+    private const val UPDATE_CHUNK_SIZE = 300
+
     const val CREATE_TABLE = """
       CREATE TABLE $TABLE_NAME (
         $ID INTEGER PRIMARY KEY, 
@@ -82,6 +85,33 @@ class GroupReceiptTable(context: Context?, databaseHelper: SignalDatabase?) : Da
       .run()
   }
 
+  /**
+   * Bulk version of [update] for many recipients of the same message, each with their own receipt timestamp.
+   */
+  fun update(mmsId: Long, status: Int, timestamps: Map<RecipientId, Long>) {
+    writableDatabase.withinTransaction { db ->
+      for (chunk in timestamps.entries.chunked(UPDATE_CHUNK_SIZE)) {
+        val cases = chunk.joinToString(separator = " ") { "WHEN ? THEN ?" }
+        val ids = chunk.joinToString(separator = ",") { "?" }
+        val args = chunk.flatMap { listOf(it.key.serialize(), it.value.toString()) } + chunk.map { it.key.serialize() }
+
+        db.execSQL(
+          """
+          UPDATE $TABLE_NAME
+          SET
+            $STATUS = $status,
+            $TIMESTAMP = CASE $RECIPIENT_ID $cases END
+          WHERE
+            $MMS_ID = $mmsId AND
+            $STATUS < $status AND
+            $RECIPIENT_ID IN ($ids)
+          """,
+          args.toTypedArray()
+        )
+      }
+    }
+  }
+
   fun setUnidentified(results: Collection<Pair<RecipientId, Boolean>>, mmsId: Long) {
     val mmsMatchPrefix = "$MMS_ID = $mmsId AND"
     val unidentifiedQueries = SqlUtil.buildCollectionQuery(
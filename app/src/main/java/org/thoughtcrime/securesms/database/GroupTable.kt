@@ -171,8 +171,15 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
       .toList()
 
     val CREATE_TABLES = arrayOf(CREATE_TABLE, MembershipTable.CREATE_TABLE)
+
+    private const val MEMBERSHIP_CACHE_KEY = "GroupTable.membershipCache"
   }
 
+  private val membershipCache = GroupMembershipCache { readAllMemberships() }
+
+  /** Changes to [membershipCache] made in this thread's open transaction, to be applied in order once it commits. */
+  private val pendingMembershipChanges = ThreadLocal<MutableList<(GroupMembershipCache) -> Unit>>()
+
   class MembershipTable(context: Context, databaseHelper: SignalDatabase) : DatabaseTable(context, databaseHelper) {
     companion object {
       const val TABLE_NAME = "group_membership"
@@ -471,8 +478,63 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
     return getGroupsContainingMember(recipientId, pushOnly, false)
   }
 
+  /**
+   * Finds the groups [recipientId] is in using [GroupMembershipCache], so only the group rows themselves need to be read, and their member lists
+   * come from memory rather than a subquery per group. Ordered by the date of each group's thread, most recent first.
+   */
   @WorkerThread
   fun getGroupsContainingMember(recipientId: RecipientId, pushOnly: Boolean, includeInactive: Boolean): List<GroupRecord> {
+    if (hasPendingMembershipChanges()) {
+      return getGroupsContainingMemberFromDisk(recipientId, pushOnly, includeInactive)
+    }
+
+    val groupRecipientIds = membershipCache.getGroupsContainingMember(recipientId)
+    if (groupRecipientIds.isEmpty()) {
+      return emptyList()
+    }
+
+    //language=sql
+    val table = """
+      SELECT $TABLE_NAME.*, ${ThreadTable.TABLE_NAME}.${ThreadTable.DATE} AS $THREAD_DATE
+      FROM $TABLE_NAME
+      LEFT JOIN ${ThreadTable.TABLE_NAME} ON $TABLE_NAME.$RECIPIENT_ID = ${ThreadTable.TABLE_NAME}.${ThreadTable.RECIPIENT_ID}
+    """
+
+    val records = mutableListOf<Pair<Long, GroupRecord>>()
+
+    for (collectionQuery in buildCollectionQuery("$TABLE_NAME.$RECIPIENT_ID", groupRecipientIds)) {
+      var query = collectionQuery.where
+      var args = collectionQuery.whereArgs
+
+      if (pushOnly) {
+        query += " AND $MMS = ?"
+        args = appendArg(args, "0")
+      }
+
+      if (!includeInactive) {
+        query += " AND $TABLE_NAME.$ACTIVE = ?"
+        args = appendArg(args, "1")
+      }
+
+      readableDatabase.query("$table WHERE $query", args).use { cursor ->
+        val reader = Reader(cursor) { groupRecipientId -> membershipCache.getMembers(groupRecipientId).sorted() }
+        while (cursor.moveToNext()) {
+          records += cursor.requireLong(THREAD_DATE) to reader.getCurrent()!!
+        }
+      }
+    }
+
+    return records
+      .sortedByDescending { it.first }
+      .map { it.second }
+  }
+
+  /**
+   * The original SQL-only implementation of [getGroupsContainingMember]. Used while this thread's transaction has membership changes the cache
+   * doesn't have yet, and by tests to verify [GroupMembershipCache] against.
+   */
+  @WorkerThread
+  fun getGroupsContainingMemberFromDisk(recipientId: RecipientId, pushOnly: Boolean, includeInactive: Boolean): List<GroupRecord> {
     //language=sql
     val table = """
       SELECT 
@@ -720,6 +782,8 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
         writableDatabase.execSQL(query.where, query.whereArgs)
       }
 
+      updateMembershipCache(writableDatabase) { it.setMembers(groupRecipientId, groupMembers) }
+
       writableDatabase.setTransactionSuccessful()
     } finally {
       writableDatabase.endTransaction()
@@ -849,7 +913,7 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
         .where("$GROUP_ID = ?", groupId.toString())
         .run()
 
-      performMembershipUpdate(database, groupId, groupMembers, groupSendEndorsementRecords)
+      performMembershipUpdate(database, groupId, groupRecipientId, groupMembers, groupSendEndorsementRecords)
     }
 
     if (decryptedGroup.disappearingMessagesTimer != null) {
@@ -889,6 +953,7 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
       .run()
 
     val groupRecipient = recipients.getOrInsertFromGroupId(groupId)
+    updateMembershipCache(writableDatabase) { it.removeMember(groupRecipient, source) }
     Recipient.live(groupRecipient).refresh()
   }
 
@@ -904,7 +969,7 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
       .toMutableList()
   }
 
-  private fun performMembershipUpdate(database: SQLiteDatabase, groupId: GroupId, members: Collection<RecipientId>, groupSendEndorsementRecords: GroupSendEndorsementRecords?) {
+  private fun performMembershipUpdate(database: SQLiteDatabase, groupId: GroupId, groupRecipientId: RecipientId, members: Collection<RecipientId>, groupSendEndorsementRecords: GroupSendEndorsementRecords?) {
     check(database.inTransaction())
     database
       .delete(MembershipTable.TABLE_NAME)
@@ -920,6 +985,53 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
     inserts.forEach {
       database.execSQL(it.where, it.whereArgs)
     }
+
+    updateMembershipCache(database) { it.setMembers(groupRecipientId, members) }
+  }
+
+  /**
+   * Applies a change to [membershipCache] once the surrounding transaction commits, or right away if there isn't one. Until then, this thread's reads
+   * skip the cache, since they'd otherwise miss the change. Nothing is applied if the transaction is rolled back.
+   */
+  private fun updateMembershipCache(database: SQLiteDatabase, update: (GroupMembershipCache) -> Unit) {
+    if (!database.inTransaction()) {
+      update(membershipCache)
+      return
+    }
+
+    val pending = pendingMembershipChanges.get() ?: mutableListOf<(GroupMembershipCache) -> Unit>().also { pendingMembershipChanges.set(it) }
+    pending += update
+
+    database.runPostSuccessfulTransaction(MEMBERSHIP_CACHE_KEY) {
+      pendingMembershipChanges.get()?.forEach { it(membershipCache) }
+      pendingMembershipChanges.remove()
+    }
+    database.runOnTransactionRollback(MEMBERSHIP_CACHE_KEY) { pendingMembershipChanges.remove() }
+  }
+
+  private fun hasPendingMembershipChanges(): Boolean {
+    return !pendingMembershipChanges.get().isNullOrEmpty()
+  }
+
+  /**
+   * Should be called when membership rows may have been removed without going through this class, such as by a cascading delete or a backup
+   * import. Like any other membership change, it takes effect once the surrounding transaction commits.
+   */
+  fun invalidateMembershipCache() {
+    updateMembershipCache(writableDatabase) { it.invalidate() }
+  }
+
+  private fun readAllMemberships(): List<Pair<Long, Long>> {
+    //language=sql
+    val query = """
+      SELECT $TABLE_NAME.$RECIPIENT_ID AS group_recipient_id, ${MembershipTable.TABLE_NAME}.${MembershipTable.RECIPIENT_ID} AS member_recipient_id
+      FROM ${MembershipTable.TABLE_NAME}
+      INNER JOIN $TABLE_NAME ON ${MembershipTable.TABLE_NAME}.${MembershipTable.GROUP_ID} = $TABLE_NAME.$GROUP_ID
+    """
+
+    return readableDatabase
+      .query(query)
+      .readToList { cursor -> cursor.requireLong("group_recipient_id") to cursor.requireLong("member_recipient_id") }
   }
 
   fun isActive(groupId: GroupId): Boolean {
@@ -1092,6 +1204,8 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
       .where("${MembershipTable.RECIPIENT_ID} = ?", fromId)
       .run()
 
+    updateMembershipCache(writableDatabase) { it.remapMember(fromId, toId) }
+
     for (group in getGroupsContainingMember(fromId, pushOnly = false, includeInactive = true)) {
       if (group.isV2Group) {
         removeUnmigratedV1Members(group.id.requireV2(), listOf(fromId))
@@ -1099,7 +1213,10 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
     }
   }
 
-  class Reader(val cursor: Cursor?) :
+  /**
+   * @param memberLookup If set, members are taken from here rather than from a [MEMBER_GROUP_CONCAT] column on the cursor.
+   */
+  class Reader(val cursor: Cursor?, private val memberLookup: ((RecipientId) -> List<RecipientId>)? = null) :
     Closeable,
     ContactSearchIterator<GroupRecord> {
 
@@ -1119,11 +1236,13 @@ class GroupTable(context: Context?, databaseHelper: SignalDatabase?) :
       return if (cursor == null || cursor.requireString(GROUP_ID) == null || cursor.requireLong(RECIPIENT_ID) == 0L) {
         null
       } else {
+        val recipientId = RecipientId.from(cursor.requireNonNullString(RECIPIENT_ID))
+
         GroupRecord(
           id = GroupId.parseOrThrow(cursor.requireNonNullString(GROUP_ID)),
-          recipientId = RecipientId.from(cursor.requireNonNullString(RECIPIENT_ID)),
+          recipientId = recipientId,
           title = cursor.requireString(TITLE),
-          serializedMembers = cursor.requireString(MEMBER_GROUP_CONCAT),
+          serializedMembers = if (memberLookup != null) RecipientId.toSerializedList(memberLookup.invoke(recipientId)) else cursor.requireString(MEMBER_GROUP_CONCAT),
           serializedUnmigratedV1Members = null,
           avatarId = cursor.requireLong(AVATAR_ID),
           avatarKey = cursor.requireBlob(AVATAR_KEY),
@@ -175,6 +175,16 @@ class JobDatabase(
     }
   }
 
+  /**
+   * Runs the [block] in a single transaction. The other write methods open their own transactions, which join this one.
+   */
+  @Synchronized
+  fun runInTransaction(block: Runnable) {
+    writableDatabase.withinTransaction {
+      block.run()
+    }
+  }
+
   @Synchronized
   fun getJobSpecs(limit: Int): List<JobSpec> {
     return readableDatabase
@@ -3,10 +3,17 @@ package org.thoughtcrime.securesms.database
 import android.annotation.SuppressLint
 import android.content.Context
 import android.database.Cursor
+import android.provider.MediaStore
+import androidx.annotation.VisibleForTesting
 import androidx.compose.runtime.Immutable
+import org.signal.core.util.Stopwatch
+import org.signal.core.util.deleteAll
+import org.signal.core.util.logging.Log
 import org.signal.core.util.requireInt
 import org.signal.core.util.requireLong
 import org.signal.core.util.requireString
+import org.signal.core.util.select
+import org.signal.core.util.withinTransaction
 import org.thoughtcrime.securesms.attachments.DatabaseAttachment
 import org.thoughtcrime.securesms.recipients.RecipientId
 import org.thoughtcrime.securesms.util.MediaUtil
@@ -16,6 +23,8 @@ import org.thoughtcrime.securesms.util.MediaUtil.SlideType
 class MediaTable internal constructor(context: Context?, databaseHelper: SignalDatabase?) : DatabaseTable(context, databaseHelper) {
 
   companion object {
+    private val TAG = Log.tag(MediaTable::class.java)
+
     const val ALL_THREADS = -1
     private const val THREAD_RECIPIENT_ID = "THREAD_RECIPIENT_ID"
     private val BASE_MEDIA_QUERY = """
@@ -90,6 +99,7 @@ class MediaTable internal constructor(context: Context?, databaseHelper: SignalD
         FROM 
           ${AttachmentTable.TABLE_NAME} 
         WHERE 
+          ${AttachmentTable.DATA_FILE} IS NOT NULL AND 
           ${AttachmentTable.STICKER_PACK_ID} IS NULL AND 
           ${AttachmentTable.TRANSFER_STATE} = ${AttachmentTable.TRANSFER_PROGRESS_DONE} 
         GROUP BY ${AttachmentTable.DATA_FILE}
@@ -151,6 +161,161 @@ class MediaTable internal constructor(context: Context?, databaseHelper: SignalD
         )"""
     )
 
+    /**
+     * Materialized global media usage per category, counting each data file only once, matching what [UNIQUE_MEDIA_QUERY] would report.
+     */
+    const val USAGE_TABLE_NAME = "media_usage"
+    private const val USAGE_CATEGORY = "category"
+    private const val USAGE_SIZE = "size"
+    private const val USAGE_COUNT = "item_count"
+
+    /** Reference counts for every data file that contributes to the totals in [USAGE_TABLE_NAME]. */
+    const val FILE_USAGE_TABLE_NAME = "media_usage_file"
+    private const val FILE_USAGE_DATA_FILE = "data_file"
+    private const val FILE_USAGE_CATEGORY = "category"
+    private const val FILE_USAGE_SIZE = "size"
+    private const val FILE_USAGE_COUNT = "usage_count"
+
+    private const val CATEGORY_NONE = -1
+    private const val CATEGORY_PHOTO = 0
+    private const val CATEGORY_VIDEO = 1
+    private const val CATEGORY_AUDIO = 2
+    private const val CATEGORY_DOCUMENT = 3
+
+    @JvmField
+    val CREATE_TABLES = arrayOf(
+      """
+      CREATE TABLE $USAGE_TABLE_NAME (
+        $USAGE_CATEGORY INTEGER PRIMARY KEY,
+        $USAGE_SIZE INTEGER NOT NULL DEFAULT 0,
+        $USAGE_COUNT INTEGER NOT NULL DEFAULT 0
+      )
+      """,
+      """
+      CREATE TABLE $FILE_USAGE_TABLE_NAME (
+        $FILE_USAGE_DATA_FILE TEXT PRIMARY KEY,
+        $FILE_USAGE_CATEGORY INTEGER NOT NULL,
+        $FILE_USAGE_SIZE INTEGER NOT NULL DEFAULT 0,
+        $FILE_USAGE_COUNT INTEGER NOT NULL DEFAULT 0
+      )
+      """
+    )
+
+    /**
+     * Mirrors [MediaUtil.getSlideTypeFromContentType], bucketed the same way [getStorageBreakdown] buckets slide types.
+     */
+    private fun categoryOf(row: String): String {
+      val contentType = "$row.${AttachmentTable.CONTENT_TYPE}"
+      return """
+        (CASE 
+          WHEN TRIM($contentType) = '${MediaUtil.IMAGE_GIF}' THEN $CATEGORY_PHOTO 
+          WHEN (SUBSTR($contentType, 1, 6) = 'image/' AND $contentType != 'image/svg+xml') OR $contentType = '${MediaStore.Images.Media.CONTENT_TYPE}' THEN $CATEGORY_PHOTO 
+          WHEN SUBSTR($contentType, 1, 6) = 'video/' OR $contentType = '${MediaStore.Video.Media.CONTENT_TYPE}' THEN $CATEGORY_VIDEO 
+          WHEN SUBSTR($contentType, 1, 6) = 'audio/' OR $contentType = '${MediaStore.Audio.Media.CONTENT_TYPE}' THEN $CATEGORY_AUDIO 
+          WHEN TRIM($contentType) = 'application/mms' THEN $CATEGORY_PHOTO 
+          WHEN $contentType = '${MediaUtil.VIEW_ONCE}' THEN $CATEGORY_NONE 
+          ELSE $CATEGORY_DOCUMENT 
+        END)
+      """
+    }
+
+    private fun isCounted(row: String): String {
+      return "$row.${AttachmentTable.DATA_FILE} IS NOT NULL AND $row.${AttachmentTable.STICKER_PACK_ID} IS NULL AND $row.${AttachmentTable.TRANSFER_STATE} = ${AttachmentTable.TRANSFER_PROGRESS_DONE}"
+    }
+
+    private fun fileUsageOf(row: String, column: String): String {
+      return "(SELECT $FILE_USAGE_TABLE_NAME.$column FROM $FILE_USAGE_TABLE_NAME WHERE $FILE_USAGE_TABLE_NAME.$FILE_USAGE_DATA_FILE = $row.${AttachmentTable.DATA_FILE})"
+    }
+
+    /**
+     * Recomputes the [FILE_USAGE_TABLE_NAME] row for the data file of [row] from the attachment table, and moves its contribution to the
+     * totals from what it was to what it is now. Adjusting the file's row incrementally can't tell what its size or category should become when the
+     * attachment that set them changes or goes away while others still share the file, so it's cheaper to look at the handful of rows sharing it.
+     */
+    private fun refreshFileUsage(row: String): String {
+      return """
+        UPDATE $USAGE_TABLE_NAME SET 
+          $USAGE_SIZE = $USAGE_SIZE - ${fileUsageOf(row, FILE_USAGE_SIZE)}, 
+          $USAGE_COUNT = $USAGE_COUNT - 1 
+        WHERE $USAGE_CATEGORY = ${fileUsageOf(row, FILE_USAGE_CATEGORY)};
+        DELETE FROM $FILE_USAGE_TABLE_NAME WHERE $FILE_USAGE_DATA_FILE = $row.${AttachmentTable.DATA_FILE};
+        INSERT INTO $FILE_USAGE_TABLE_NAME ($FILE_USAGE_DATA_FILE, $FILE_USAGE_CATEGORY, $FILE_USAGE_SIZE, $FILE_USAGE_COUNT) 
+          SELECT 
+            ${AttachmentTable.TABLE_NAME}.${AttachmentTable.DATA_FILE}, 
+            ${categoryOf(AttachmentTable.TABLE_NAME)}, 
+            MAX(COALESCE(${AttachmentTable.TABLE_NAME}.${AttachmentTable.DATA_SIZE}, 0)), 
+            COUNT(*) 
+          FROM ${AttachmentTable.TABLE_NAME} 
+          WHERE ${AttachmentTable.TABLE_NAME}.${AttachmentTable.DATA_FILE} = $row.${AttachmentTable.DATA_FILE} AND ${isCounted(AttachmentTable.TABLE_NAME)} 
+          GROUP BY ${AttachmentTable.TABLE_NAME}.${AttachmentTable.DATA_FILE};
+        INSERT OR IGNORE INTO $USAGE_TABLE_NAME ($USAGE_CATEGORY) 
+          SELECT $FILE_USAGE_CATEGORY FROM $FILE_USAGE_TABLE_NAME WHERE $FILE_USAGE_DATA_FILE = $row.${AttachmentTable.DATA_FILE};
+        UPDATE $USAGE_TABLE_NAME SET 
+          $USAGE_SIZE = $USAGE_SIZE + ${fileUsageOf(row, FILE_USAGE_SIZE)}, 
+          $USAGE_COUNT = $USAGE_COUNT + 1 
+        WHERE $USAGE_CATEGORY = ${fileUsageOf(row, FILE_USAGE_CATEGORY)};
+      """
+    }
+
+    private val USAGE_TRACKED_ATTACHMENT_COLUMNS = listOf(
+      AttachmentTable.CONTENT_TYPE,
+      AttachmentTable.TRANSFER_STATE,
+      AttachmentTable.DATA_FILE,
+      AttachmentTable.DATA_SIZE,
+      AttachmentTable.STICKER_PACK_ID
+    ).joinToString(", ")
+
+    /**
+     * Keeps [USAGE_TABLE_NAME] and [FILE_USAGE_TABLE_NAME] in sync with every insert, update and delete path in [AttachmentTable].
+     */
+    @JvmField
+    val CREATE_TRIGGERS = arrayOf(
+      """
+      CREATE TRIGGER media_usage_attachment_insert AFTER INSERT ON ${AttachmentTable.TABLE_NAME} WHEN ${isCounted("new")}
+      BEGIN
+        ${refreshFileUsage("new")}
+      END
+      """,
+      """
+      CREATE TRIGGER media_usage_attachment_delete AFTER DELETE ON ${AttachmentTable.TABLE_NAME} WHEN ${isCounted("old")}
+      BEGIN
+        ${refreshFileUsage("old")}
+      END
+      """,
+      """
+      CREATE TRIGGER media_usage_attachment_update_remove AFTER UPDATE OF $USAGE_TRACKED_ATTACHMENT_COLUMNS ON ${AttachmentTable.TABLE_NAME} WHEN ${isCounted("old")}
+      BEGIN
+        ${refreshFileUsage("old")}
+      END
+      """,
+      """
+      CREATE TRIGGER media_usage_attachment_update_add AFTER UPDATE OF $USAGE_TRACKED_ATTACHMENT_COLUMNS ON ${AttachmentTable.TABLE_NAME} WHEN ${isCounted("new")}
+      BEGIN
+        ${refreshFileUsage("new")}
+      END
+      """
+    )
+
+    private val REBUILD_USAGE = arrayOf(
+      """
+      INSERT INTO $FILE_USAGE_TABLE_NAME ($FILE_USAGE_DATA_FILE, $FILE_USAGE_CATEGORY, $FILE_USAGE_SIZE, $FILE_USAGE_COUNT) 
+        SELECT 
+          ${AttachmentTable.DATA_FILE}, 
+          ${categoryOf(AttachmentTable.TABLE_NAME)}, 
+          MAX(COALESCE(${AttachmentTable.DATA_SIZE}, 0)), 
+          COUNT(*) 
+        FROM ${AttachmentTable.TABLE_NAME} 
+        WHERE ${isCounted(AttachmentTable.TABLE_NAME)} 
+        GROUP BY ${AttachmentTable.DATA_FILE}
+      """,
+      """
+      INSERT INTO $USAGE_TABLE_NAME ($USAGE_CATEGORY, $USAGE_SIZE, $USAGE_COUNT) 
+        SELECT $FILE_USAGE_CATEGORY, SUM($FILE_USAGE_SIZE), COUNT(*) 
+        FROM $FILE_USAGE_TABLE_NAME 
+        GROUP BY $FILE_USAGE_CATEGORY
+      """
+    )
+
     private fun applyEqualityOperator(threadId: Long, query: String): String {
       return query.replace("__EQUALITY__", if (threadId == ALL_THREADS.toLong()) "!=" else "=")
     }
@@ -186,7 +351,58 @@ class MediaTable internal constructor(context: Context?, databaseHelper: SignalD
     return readableDatabase.rawQuery(query, args)
   }
 
+  /**
+   * Global storage used by media, with each data file counted only once. Served from the materialized [USAGE_TABLE_NAME] counters.
+   */
   fun getStorageBreakdown(): StorageBreakdown {
+    val sizes = LongArray(4)
+
+    readableDatabase
+      .select(USAGE_CATEGORY, USAGE_SIZE)
+      .from(USAGE_TABLE_NAME)
+      .run()
+      .use { cursor ->
+        while (cursor.moveToNext()) {
+          val category = cursor.requireInt(USAGE_CATEGORY)
+          if (category in sizes.indices) {
+            sizes[category] += cursor.requireLong(USAGE_SIZE)
+          }
+        }
+      }
+
+    return StorageBreakdown(
+      photoSize = sizes[CATEGORY_PHOTO],
+      videoSize = sizes[CATEGORY_VIDEO],
+      audioSize = sizes[CATEGORY_AUDIO],
+      documentSize = sizes[CATEGORY_DOCUMENT]
+    )
+  }
+
+  /**
+   * Throws away the materialized usage counters and recomputes them from the attachment table. Needed after bulk imports that bypass the
+   * triggers, e.g. restoring a legacy backup.
+   */
+  fun rebuildUsage() {
+    val stopwatch = Stopwatch("rebuild-usage")
+    writableDatabase.withinTransaction { db ->
+      db.deleteAll(USAGE_TABLE_NAME)
+      db.deleteAll(FILE_USAGE_TABLE_NAME)
+      stopwatch.split("clear")
+
+      for (statement in REBUILD_USAGE) {
+        db.execSQL(statement)
+      }
+      stopwatch.split("rebuild")
+    }
+    stopwatch.stop(TAG)
+  }
+
+  /**
+   * Computes a storage breakdown by scanning the attachment table, bucketing content types in Kotlin rather than SQL. This is what
+   * [getStorageBreakdown] used to do on every call; it's kept around to verify the materialized counters.
+   */
+  @VisibleForTesting
+  fun calculateStorageBreakdown(): StorageBreakdown {
     var photoSize: Long = 0
     var videoSize: Long = 0
     var audioSize: Long = 0
@@ -194,27 +410,27 @@ class MediaTable internal constructor(context: Context?, databaseHelper: SignalD
 
     readableDatabase.rawQuery(UNIQUE_MEDIA_QUERY, null).use { cursor ->
       while (cursor.moveToNext()) {
-        val size: Int = cursor.requireInt(AttachmentTable.DATA_SIZE)
+        val size: Long = cursor.requireLong(AttachmentTable.DATA_SIZE)
         val type: String? = cursor.requireString(AttachmentTable.CONTENT_TYPE)
 
         when (MediaUtil.getSlideTypeFromContentType(type)) {
           SlideType.GIF,
           SlideType.IMAGE,
           SlideType.MMS -> {
-            photoSize += size.toLong()
+            photoSize += size
           }
 
           SlideType.VIDEO -> {
-            videoSize += size.toLong()
+            videoSize += size
           }
 
           SlideType.AUDIO -> {
-            audioSize += size.toLong()
+            audioSize += size
           }
 
           SlideType.LONG_TEXT,
           SlideType.DOCUMENT -> {
-            documentSize += size.toLong()
+            documentSize += size
           }
 
           SlideType.VIEW_ONCE -> Unit
@@ -230,6 +446,22 @@ class MediaTable internal constructor(context: Context?, databaseHelper: SignalD
     )
   }
 
+  /**
+   * Compares the materialized counters against a full recomputation, logging the difference if they disagree.
+   */
+  @VisibleForTesting
+  fun isUsageConsistent(): Boolean {
+    val materialized = getStorageBreakdown()
+    val calculated = calculateStorageBreakdown()
+
+    return if (materialized != calculated) {
+      Log.w(TAG, "Usage mismatch! Materialized: $materialized, Calculated: $calculated")
+      false
+    } else {
+      true
+    }
+  }
+
   data class MediaRecord constructor(
     val attachment: DatabaseAttachment?,
     val recipientId: RecipientId,
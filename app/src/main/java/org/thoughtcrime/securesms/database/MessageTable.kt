@@ -4548,6 +4548,15 @@ open class MessageTable(context: Context?, databaseHelper: SignalDatabase) : Dat
     return incrementReceiptCounts(targetTimestamps, receiptAuthor, receiptSentTimestamp, ReceiptType.DELIVERY, stopwatch = stopwatch)
   }
 
+  /**
+   * Batched version of [incrementDeliveryReceiptCounts] for receipts from many authors at once.
+   *
+   * @return The receipts whose target message couldn't be found.
+   */
+  fun incrementDeliveryReceiptCounts(receipts: Collection<BatchedReceipt>): Set<BatchedReceipt> {
+    return incrementReceiptCounts(receipts, ReceiptType.DELIVERY)
+  }
+
   fun incrementDeliveryReceiptCount(targetTimestamps: Long, receiptAuthor: RecipientId, receiptSentTimestamp: Long): Boolean {
     return incrementReceiptCount(targetTimestamps, receiptAuthor, receiptSentTimestamp, ReceiptType.DELIVERY)
   }
@@ -4559,6 +4568,15 @@ open class MessageTable(context: Context?, databaseHelper: SignalDatabase) : Dat
     return incrementReceiptCounts(targetTimestamps, receiptAuthor, receiptSentTimestamp, ReceiptType.READ)
   }
 
+  /**
+   * Batched version of [incrementReadReceiptCounts] for receipts from many authors at once.
+   *
+   * @return The receipts whose target message couldn't be found.
+   */
+  fun incrementReadReceiptCounts(receipts: Collection<BatchedReceipt>): Set<BatchedReceipt> {
+    return incrementReceiptCounts(receipts, ReceiptType.READ)
+  }
+
   fun incrementReadReceiptCount(targetTimestamps: Long, receiptAuthor: RecipientId, receiptSentTimestamp: Long): Boolean {
     return incrementReceiptCount(targetTimestamps, receiptAuthor, receiptSentTimestamp, ReceiptType.READ)
   }
@@ -4673,6 +4691,143 @@ open class MessageTable(context: Context?, databaseHelper: SignalDatabase) : Dat
     return missingTargetTimestamps
   }
 
+  /**
+   * Applies receipts from any number of authors with a handful of set-based statements, rather than a lookup and update per receipt.
+   *
+   * Repeated receipts for the same (author, target) are collapsed into the first one, and only the first receipt for a message sets its receipt
+   * timestamp, the same as applying them one at a time would. Target messages are found with one query per chunk of timestamps, each message row is
+   * updated once no matter how many receipts it got, and group receipts are updated in bulk.
+   * Thread receipt state is refreshed once per message and observers are notified once per message and thread.
+   *
+   * Receipts for stories go through [incrementReceiptCountInternal], since they need to fan out via [StorySendTable].
+   *
+   * @return The receipts whose target message couldn't be found.
+   */
+  private fun incrementReceiptCounts(receipts: Collection<BatchedReceipt>, receiptType: ReceiptType): Set<BatchedReceipt> {
+    val deduped: Collection<BatchedReceipt> = receipts
+      .groupBy { it.author to it.targetTimestamp }
+      .values
+      .map { duplicates -> duplicates.first() }
+
+    if (deduped.isEmpty()) {
+      return emptySet()
+    }
+
+    val messageUpdates: MutableSet<MessageReceiptUpdate> = HashSet()
+    val missing: MutableSet<BatchedReceipt> = HashSet()
+
+    writableDatabase.withinTransaction { db ->
+      val candidatesByTimestamp: Map<Long, List<BatchedReceiptCandidate>> = getBatchedReceiptCandidates(deduped.map { it.targetTimestamp }.toSet(), receiptType)
+
+      val firstReceiptByMessage: MutableMap<Long, Long> = HashMap()
+      val groupReceiptsByMessage: MutableMap<Long, MutableMap<RecipientId, Long>> = HashMap()
+
+      for (receipt in deduped) {
+        val candidate = candidatesByTimestamp[receipt.targetTimestamp]?.firstOrNull { it.toRecipientId == receipt.author || !it.toIndividual }
+
+        if (candidate == null) {
+          if (receiptType == ReceiptType.DELIVERY) {
+            earlyDeliveryReceiptCache.increment(receipt.targetTimestamp, receipt.author, receipt.receiptSentTimestamp)
+          }
+          missing += receipt
+          continue
+        }
+
+        if (candidate.storyType != StoryType.NONE) {
+          messageUpdates += incrementReceiptCountInternal(receipt.targetTimestamp, receipt.author, receipt.receiptSentTimestamp, receiptType, MessageQualifier.ALL)
+          continue
+        }
+
+        if (!candidate.marked) {
+          firstReceiptByMessage.putIfAbsent(candidate.messageId, receipt.receiptSentTimestamp)
+        }
+
+        if (candidate.toRecipientId != receipt.author) {
+          groupReceiptsByMessage.getOrPut(candidate.messageId) { HashMap() }.putIfAbsent(receipt.author, receipt.receiptSentTimestamp)
+        }
+
+        messageUpdates += MessageReceiptUpdate(candidate.threadId, MessageId(candidate.messageId), shouldUpdateSnippet = receiptType != ReceiptType.VIEWED && !candidate.marked)
+      }
+
+      // See incrementReceiptCountInternal for why we take the max of the receipt timestamps
+      for ((messageId, receiptTimestamp) in firstReceiptByMessage) {
+        db.execSQL(
+          """
+          UPDATE $TABLE_NAME
+          SET
+            ${receiptType.columnName} = 1,
+            $RECEIPT_TIMESTAMP = MAX($RECEIPT_TIMESTAMP, $receiptTimestamp)
+          WHERE
+            $ID = $messageId
+          """
+        )
+      }
+
+      for ((messageId, timestamps) in groupReceiptsByMessage) {
+        groupReceipts.update(messageId, receiptType.groupStatus, timestamps)
+      }
+
+      for (update in messageUpdates) {
+        if (update.shouldUpdateSnippet) {
+          threads.updateReceiptStatus(update.messageId.id, update.threadId)
+        }
+      }
+    }
+
+    for (update in messageUpdates) {
+      AppDependencies.databaseObserver.notifyMessageUpdateObservers(update.messageId)
+    }
+
+    if (messageUpdates.isNotEmpty()) {
+      AppDependencies.databaseObserver.notifyVerboseConversationListeners(messageUpdates.map { it.threadId }.filter { it > 0 }.toSet())
+      notifyConversationListListeners()
+    }
+
+    return missing
+  }
+
+  /**
+   * Finds every outgoing message sent at one of [targetTimestamps] that a receipt could apply to, keyed by sent timestamp and ordered by id within each.
+   */
+  private fun getBatchedReceiptCandidates(targetTimestamps: Set<Long>, receiptType: ReceiptType): Map<Long, List<BatchedReceiptCandidate>> {
+    val candidates: MutableList<BatchedReceiptCandidate> = mutableListOf()
+    val selfId = Recipient.self().id
+
+    for (query in SqlUtil.buildCollectionQuery("$TABLE_NAME.$DATE_SENT", targetTimestamps)) {
+      candidates += readableDatabase
+        .rawQuery(
+          """
+          SELECT
+            $TABLE_NAME.$ID,
+            $TABLE_NAME.$THREAD_ID,
+            $TABLE_NAME.$STORY_TYPE,
+            $TABLE_NAME.$DATE_SENT,
+            $TABLE_NAME.${receiptType.columnName},
+            $TABLE_NAME.$TO_RECIPIENT_ID,
+            ${RecipientTable.TABLE_NAME}.${RecipientTable.TYPE}
+          FROM $TABLE_NAME
+          LEFT JOIN ${RecipientTable.TABLE_NAME} ON ${RecipientTable.TABLE_NAME}.${RecipientTable.ID} = $TABLE_NAME.$TO_RECIPIENT_ID
+          WHERE ${query.where} AND $TABLE_NAME.$FROM_RECIPIENT_ID = ?
+          ORDER BY $TABLE_NAME.$ID ASC
+          """,
+          SqlUtil.appendArg(query.whereArgs, selfId.serialize())
+        )
+        .readToList { cursor ->
+          BatchedReceiptCandidate(
+            messageId = cursor.requireLong(ID),
+            threadId = cursor.requireLong(THREAD_ID),
+            storyType = StoryType.fromCode(cursor.requireInt(STORY_TYPE)),
+            dateSent = cursor.requireLong(DATE_SENT),
+            marked = cursor.requireBoolean(receiptType.columnName),
+            toRecipientId = RecipientId.from(cursor.requireLong(TO_RECIPIENT_ID)),
+            toIndividual = cursor.requireInt(RecipientTable.TYPE) == RecipientTable.RecipientType.INDIVIDUAL.id
+          )
+        }
+    }
+
+    return candidates.groupBy { it.dateSent }
+  }
+
   private fun incrementReceiptCountInternal(targetTimestamp: Long, receiptAuthor: RecipientId, receiptSentTimestamp: Long, receiptType: ReceiptType, messageQualifier: MessageQualifier, stopwatch: Stopwatch? = null): Set<MessageReceiptUpdate> {
     val qualifierWhere: String = when (messageQualifier) {
       MessageQualifier.NORMAL -> " AND NOT ($IS_STORY_CLAUSE)"
@@ -5424,6 +5579,25 @@ open class MessageTable(context: Context?, databaseHelper: SignalDatabase) : Dat
     val shouldUpdateSnippet: Boolean
   )
 
+  /**
+   * A single receipt from [author] for the message we sent at [targetTimestamp], for use with the batched receipt methods.
+   */
+  data class BatchedReceipt(
+    val author: RecipientId,
+    val targetTimestamp: Long,
+    val receiptSentTimestamp: Long
+  )
+
+  private data class BatchedReceiptCandidate(
+    val messageId: Long,
+    val threadId: Long,
+    val storyType: StoryType,
+    val dateSent: Long,
+    val marked: Boolean,
+    val toRecipientId: RecipientId,
+    val toIndividual: Boolean
+  )
+
   data class ReportSpamData(
     val recipientId: RecipientId,
     val serverGuid: String,
@@ -7,4 +7,9 @@ interface QueryMonitor {
   fun onQuery(distinct: Boolean, table: String, projection: Array<String>?, selection: String?, args: Array<Any>?, groupBy: String?, having: String?, orderBy: String?, limit: String?)
   fun onDelete(table: String, selection: String?, args: Array<Any>?)
   fun onUpdate(table: String, values: ContentValues, selection: String?, args: Array<Any>?)
+
+  /**
+   * Called after a statement has run. See [DatabaseMonitor.onExecuted].
+   */
+  fun onExecuted(table: String?, sql: String?, durationNanos: Long) = Unit
 }
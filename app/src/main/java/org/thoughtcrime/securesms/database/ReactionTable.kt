@@ -117,14 +117,14 @@ class ReactionTable(context: Context, databaseHelper: SignalDatabase) : Database
       }
 
       writableDatabase.insert(TABLE_NAME, null, values)
-      SignalDatabase.messages.updateReactionsUnread(writableDatabase, messageId.id, hasReactions(messageId), false)
+      SignalDatabase.messages.updateReactionsUnread(writableDatabase, messageId.id, hasReactions = true, isRemoval = false)
 
       writableDatabase.setTransactionSuccessful()
     } finally {
       writableDatabase.endTransaction()
     }
 
-    AppDependencies.databaseObserver.notifyMessageUpdateObservers(messageId)
+    notifyMessageUpdated(messageId)
   }
 
   fun deleteReaction(messageId: MessageId, recipientId: RecipientId) {
@@ -142,7 +142,17 @@ class ReactionTable(context: Context, databaseHelper: SignalDatabase) : Database
       writableDatabase.endTransaction()
     }
 
-    AppDependencies.databaseObserver.notifyMessageUpdateObservers(messageId)
+    notifyMessageUpdated(messageId)
+  }
+
+  /**
+   * Reactions to the same message often land together, such as a remove and add when someone changes their reaction, so we only notify once per
+   * message for any outer transaction.
+   */
+  private fun notifyMessageUpdated(messageId: MessageId) {
+    writableDatabase.runPostSuccessfulTransaction("reaction-update-${messageId.id}") {
+      AppDependencies.databaseObserver.notifyMessageUpdateObservers(messageId)
+    }
   }
 
   fun deleteReactions(messageId: MessageId) {
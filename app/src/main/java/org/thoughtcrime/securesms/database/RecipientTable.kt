@@ -8,6 +8,7 @@ import android.net.Uri
 import android.text.TextUtils
 import androidx.annotation.VisibleForTesting
 import androidx.core.content.contentValuesOf
+import okio.ByteString
 import okio.ByteString.Companion.toByteString
 import org.signal.core.util.Base64
 import org.signal.core.util.Bitmask
@@ -197,6 +198,7 @@ open class RecipientTable(context: Context, databaseHelper: SignalDatabase) : Da
 
     const val SEARCH_PROFILE_NAME = "search_signal_profile"
     const val SORT_NAME = "sort_name"
+    const val E164_SEARCHABLE = "e164_searchable"
     const val IDENTITY_STATUS = "identity_status"
     const val IDENTITY_KEY = "identity_key"
 
@@ -797,6 +799,30 @@ open class RecipientTable(context: Context, databaseHelper: SignalDatabase) : Da
     }
   }
 
+  /**
+   * Bulk version of [getRecordForSync]. Any IDs that don't have a record are left out of the result.
+   */
+  fun getRecordsForSync(ids: Collection<RecipientId>): List<RecipientRecord> {
+    return SqlUtil.buildCollectionQuery("$TABLE_NAME.$ID", ids.map { it.serialize() })
+      .flatMap { query -> getRecordForSync(query.where, query.whereArgs) }
+  }
+
+  /**
+   * Bulk version of [getByStorageId], keyed by the raw storage ID. Any storage IDs that don't have a record are left out of the result.
+   */
+  fun getByStorageIds(storageIds: Collection<ByteArray>): Map<ByteString, RecipientRecord> {
+    val out: MutableMap<ByteString, RecipientRecord> = HashMap(storageIds.size)
+
+    for (query in SqlUtil.buildCollectionQuery("$TABLE_NAME.$STORAGE_SERVICE_ID", storageIds.map { Base64.encodeWithPadding(it) })) {
+      for (record in getRecordForSync(query.where, query.whereArgs)) {
+        val storageId = record.storageId ?: continue
+        out[storageId.toByteString()] = record
+      }
+    }
+
+    return out
+  }
+
   fun markNeedsSyncWithoutRefresh(recipientIds: Collection<RecipientId>) {
     val db = writableDatabase
     db.beginTransaction()
@@ -1260,12 +1286,31 @@ open class RecipientTable(context: Context, databaseHelper: SignalDatabase) : Da
         }
       }
 
+    val gv2Recipients: MutableMap<String, Pair<RecipientId, String?>> = HashMap()
+
+    readableDatabase
+      .select(ID, GROUP_ID, STORAGE_SERVICE_ID)
+      .from(TABLE_NAME)
+      .where("$TYPE = ?", RecipientType.GV2.id)
+      .run()
+      .use { cursor ->
+        while (cursor.moveToNext()) {
+          gv2Recipients[cursor.requireNonNullString(GROUP_ID)] = RecipientId.from(cursor.requireLong(ID)) to cursor.requireString(STORAGE_SERVICE_ID)
+        }
+      }
+
     for (id in groups.getAllGroupV2Ids()) {
-      val recipient = Recipient.externalGroupExact(id)
-      val recipientId = recipient.id
-      val existing: RecipientRecord = getRecordForSync(recipientId) ?: throw AssertionError()
-      val key = existing.storageId ?: throw AssertionError()
-      out[recipientId] = StorageId.forGroupV2(key)
+      val existing = gv2Recipients[id.toString()]
+
+      if (existing != null) {
+        val key = existing.second ?: throw AssertionError()
+        out[existing.first] = StorageId.forGroupV2(Base64.decodeOrThrow(key))
+      } else {
+        val recipientId = Recipient.externalGroupExact(id).id
+        val record: RecipientRecord = getRecordForSync(recipientId) ?: throw AssertionError()
+        val key = record.storageId ?: throw AssertionError()
+        out[recipientId] = StorageId.forGroupV2(key)
+      }
     }
 
     return out
@@ -3453,6 +3498,34 @@ open class RecipientTable(context: Context, databaseHelper: SignalDatabase) : Da
     return readableDatabase.query(TABLE_NAME, searchProjection(includeSelfMode), selection, args, null, null, orderBy)
   }
 
+  /**
+   * The same contacts, in the same order, as [getSignalContacts], along with the [USERNAME] and whether the [E164] may be searched for
+   * ([E164_SEARCHABLE]), so that they can be matched against a query without going back to the database.
+   *
+   * @param recipientIds If set, only these recipients are returned.
+   */
+  fun getSignalContactsForSearchIndex(includeSelfMode: IncludeSelfMode, recipientIds: Collection<RecipientId>? = null): Cursor {
+    val searchSelection = ContactSearchSelection.Builder()
+      .withRegistered(true)
+      .withGroups(false)
+      .withVerified(true)
+      .excludeId(if (includeSelfMode.includeSelf) null else Recipient.self().id)
+      .build()
+
+    val selection = if (recipientIds == null) {
+      searchSelection.where
+    } else {
+      "${searchSelection.where} AND $ID IN (${recipientIds.joinToString(",") { it.serialize() }})"
+    }
+
+    val projection = searchProjection(includeSelfMode) + arrayOf(
+      USERNAME,
+      "($PHONE_NUMBER_SHARING != ${PhoneNumberSharingState.DISABLED.id} OR $SYSTEM_CONTACT_URI NOT NULL) AS $E164_SEARCHABLE"
+    )
+
+    return readableDatabase.query(TABLE_NAME, projection, selection, searchSelection.args, null, null, "$SORT_NAME, $SYSTEM_JOINED_NAME, $SEARCH_PROFILE_NAME, $USERNAME, $E164")
+  }
+
   fun querySignalContacts(contactSearchQuery: ContactSearchQuery): Cursor? {
     val query = SqlUtil.buildCaseInsensitiveGlobPattern(contactSearchQuery.query.trim())
 
@@ -3712,13 +3785,86 @@ open class RecipientTable(context: Context, databaseHelper: SignalDatabase) : Da
     }
 
     // Invalidate recipient cache so that updated timestamps are reflected
-    ids.forEach { id ->
-      AppDependencies.databaseObserver.notifyRecipientChanged(id)
+    AppDependencies.databaseObserver.notifyRecipientsChanged(ids)
+  }
+
+  /**
+   * Writes the result of a batch of profile fetches. Each recipient gets a single update for the plain profile fields (plus separate ones for the
+   * name, credential, and username, since those have their own side effects or conditions), and everything that actually changed is refreshed
+   * with a single coalesced notification, rather than one per field per recipient.
+   *
+   * @return The recipients that had at least one field change.
+   */
+  fun applyProfileUpdates(updates: Collection<ProfileUpdate>): Set<RecipientId> {
+    val changed: MutableSet<RecipientId> = HashSet()
+    var needsStorageSync = false
+
+    writableDatabase.withinTransaction {
+      for (profile in updates) {
+        val values = ContentValues().apply {
+          profile.about?.let { (about, emoji) ->
+            put(ABOUT, about)
+            put(ABOUT_EMOJI, emoji)
+          }
+          profile.badges?.let { badges -> put(BADGES, BadgeList(badges = badges.map { toDatabaseBadge(it) }).encode()) }
+          profile.capabilities?.let { capabilities -> put(CAPABILITIES, maskCapabilitiesToLong(capabilities)) }
+          profile.sealedSenderAccessMode?.let { mode -> put(SEALED_SENDER_MODE, mode.mode) }
+          profile.phoneNumberSharing?.let { sharing -> put(PHONE_NUMBER_SHARING, sharing.id) }
+        }
+
+        if (values.size() > 0 && update(profile.id, values)) {
+          changed += profile.id
+        }
+
+        if (profile.profileName != null) {
+          val nameValues = contentValuesOf(
+            PROFILE_GIVEN_NAME to profile.profileName.givenName.nullIfBlank(),
+            PROFILE_FAMILY_NAME to profile.profileName.familyName.nullIfBlank(),
+            PROFILE_JOINED_NAME to profile.profileName.toString().nullIfBlank()
+          )
+
+          if (update(profile.id, nameValues)) {
+            changed += profile.id
+            rotateStorageId(profile.id)
+            needsStorageSync = true
+          }
+        }
+
+        if (profile.expiringProfileKeyCredential != null) {
+          val (profileKey, credential) = profile.expiringProfileKeyCredential
+          val columnData = ExpiringProfileKeyCredentialColumnData.Builder()
+            .profileKey(profileKey.serialize().toByteString())
+            .expiringProfileKeyCredential(credential.serialize().toByteString())
+            .build()
+          val credentialValues = contentValuesOf(EXPIRING_PROFILE_KEY_CREDENTIAL to Base64.encodeWithPadding(columnData.encode()))
+          val updateQuery = SqlUtil.buildTrueUpdateQuery("$ID = ? AND $PROFILE_KEY = ?", arrayOf(profile.id.serialize(), Base64.encodeWithPadding(profileKey.serialize())), credentialValues)
+
+          if (update(updateQuery, credentialValues)) {
+            changed += profile.id
+          }
+        }
+
+        if (profile.clearUsername && update(profile.id, contentValuesOf(USERNAME to null))) {
+          changed += profile.id
+          rotateStorageId(profile.id)
+          needsStorageSync = true
+        }
+      }
+    }
+
+    if (needsStorageSync) {
+      StorageSyncHelper.scheduleSyncForDataChange()
     }
+
+    AppDependencies.databaseObserver.notifyRecipientsChanged(changed)
+
+    return changed
   }
 
   fun applyBlockedUpdate(blockedE164s: List<String>, blockedAcis: List<ACI>, blockedGroupIds: List<ByteArray?>) {
-    writableDatabase.withinTransaction { db ->
+    val changed: Set<RecipientId> = writableDatabase.withinTransaction { db ->
+      val previouslyBlocked = getBlockedIds(db)
+
       db.updateAll(TABLE_NAME)
         .values(BLOCKED to 0)
         .run()
@@ -3760,9 +3906,22 @@ open class RecipientTable(context: Context, databaseHelper: SignalDatabase) : Da
           .where(groupIdQuery.where, groupIdQuery.whereArgs)
           .run()
       }
+
+      val nowBlocked = getBlockedIds(db)
+      (previouslyBlocked - nowBlocked) + (nowBlocked - previouslyBlocked)
     }
 
     AppDependencies.recipientCache.clear()
+    AppDependencies.databaseObserver.notifyRecipientsChanged(changed)
+  }
+
+  private fun getBlockedIds(db: SQLiteDatabase): Set<RecipientId> {
+    return db
+      .select(ID)
+      .from(TABLE_NAME)
+      .where("$BLOCKED = 1")
+      .run()
+      .readToSet { RecipientId.from(it.requireLong(ID)) }
   }
 
   fun updateStorageId(recipientId: RecipientId, id: ByteArray?) {
@@ -4102,6 +4261,7 @@ open class RecipientTable(context: Context, databaseHelper: SignalDatabase) : Da
     // Recipient
     Log.w(TAG, "Deleting recipient $secondaryId", true)
     db.delete(TABLE_NAME, ID_WHERE, SqlUtil.buildArgs(secondaryId))
+    SignalDatabase.groups.invalidateMembershipCache()
     RemappedRecords.getInstance().addRecipient(secondaryId, primaryId)
 
     val uuidValues = contentValuesOf(
@@ -4293,6 +4453,7 @@ open class RecipientTable(context: Context, databaseHelper: SignalDatabase) : Da
 
     if (deletes > 0) {
       Log.w(TAG, "Deleted a PLACEHOLDER_SELF from the table.")
+      SignalDatabase.groups.invalidateMembershipCache()
     } else {
       Log.i(TAG, "No PLACEHOLDER_SELF in the table.")
     }
@@ -4881,6 +5042,21 @@ open class RecipientTable(context: Context, databaseHelper: SignalDatabase) : Da
     }
   }
 
+  /**
+   * The profile fields to write for a single recipient in [applyProfileUpdates]. Any field left null is not touched.
+   */
+  data class ProfileUpdate(
+    val id: RecipientId,
+    val profileName: ProfileName? = null,
+    val about: Pair<String?, String?>? = null,
+    val badges: List<Badge>? = null,
+    val capabilities: SignalServiceProfile.Capabilities? = null,
+    val sealedSenderAccessMode: SealedSenderAccessMode? = null,
+    val phoneNumberSharing: PhoneNumberSharingState? = null,
+    val expiringProfileKeyCredential: Pair<ProfileKey, ExpiringProfileKeyCredential>? = null,
+    val clearUsername: Boolean = false
+  )
+
   data class CdsV2Result(
     val pni: PNI,
     val aci: ACI?
@@ -17,6 +17,7 @@ import net.zetetic.database.sqlcipher.SQLiteTransactionListener;
 import org.signal.core.util.tracing.Tracer;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -50,10 +51,12 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
 
   private static final ThreadLocal<Set<Runnable>> PENDING_POST_SUCCESSFUL_TRANSACTION_TASKS;
   private static final ThreadLocal<Set<Runnable>> POST_SUCCESSFUL_TRANSACTION_TASKS;
+  private static final ThreadLocal<Set<Runnable>> PENDING_ROLLBACK_TASKS;
 
   static {
     PENDING_POST_SUCCESSFUL_TRANSACTION_TASKS = new ThreadLocal<>();
     POST_SUCCESSFUL_TRANSACTION_TASKS         = new ThreadLocal<>();
+    PENDING_ROLLBACK_TASKS                    = new ThreadLocal<>();
 
     PENDING_POST_SUCCESSFUL_TRANSACTION_TASKS.set(new LinkedHashSet<>());
   }
@@ -82,10 +85,14 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
       traceLockStart();
     }
 
+    long start = System.nanoTime();
+
     tracer.start(methodName, KEY_QUERY, query);
     returnable.run();
     tracer.end(methodName);
 
+    DatabaseMonitor.onExecuted(this, null, query, start);
+
     if (locked) {
       traceLockEnd();
     }
@@ -108,6 +115,8 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
       params.put(KEY_TABLE, table);
     }
 
+    long start = System.nanoTime();
+
     tracer.start(methodName, params);
     E result = returnable.run();
     if (result instanceof Cursor) {
@@ -116,6 +125,8 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
     }
     tracer.end(methodName);
 
+    DatabaseMonitor.onExecuted(this, table, query, start);
+
     if (locked) {
       traceLockEnd();
     }
@@ -152,6 +163,17 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
     }
   }
 
+  /**
+   * Allows you to enqueue a task to be run if the active transaction is rolled back, which is useful for undoing in-memory changes that were made
+   * alongside the transaction. There can only be one task enqueued for a given dedupe key.
+   * If the transaction succeeds, or there is no current transaction open, the task is discarded.
+   */
+  public void runOnTransactionRollback(@NonNull String dedupeKey, @NonNull Runnable task) {
+    if (wrapped.inTransaction()) {
+      getPendingRollbackTasks().add(new DedupedRunnable(dedupeKey, task));
+    }
+  }
+
   private @NonNull Set<Runnable> getPendingPostSuccessfulTransactionTasks() {
     Set<Runnable> tasks = PENDING_POST_SUCCESSFUL_TRANSACTION_TASKS.get();
 
@@ -174,6 +196,17 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
     return tasks;
   }
 
+  private @NonNull Set<Runnable> getPendingRollbackTasks() {
+    Set<Runnable> tasks = PENDING_ROLLBACK_TASKS.get();
+
+    if (tasks == null) {
+      tasks = new LinkedHashSet<>();
+      PENDING_ROLLBACK_TASKS.set(tasks);
+    }
+
+    return tasks;
+  }
+
   private interface Returnable<E> {
     E run();
   }
@@ -303,11 +336,18 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
             tasks.clear();
             tasks.addAll(pendingTasks);
             pendingTasks.clear();
+            getPendingRollbackTasks().clear();
           }
 
           @Override
           public void onRollback() {
             getPendingPostSuccessfulTransactionTasks().clear();
+
+            Set<Runnable> rollbackTasks = getPendingRollbackTasks();
+            for (Runnable r : new ArrayList<>(rollbackTasks)) {
+              r.run();
+            }
+            rollbackTasks.clear();
           }
         });
       });
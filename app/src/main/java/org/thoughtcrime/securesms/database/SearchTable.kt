@@ -5,17 +5,23 @@ import android.app.Application
 import android.content.Context
 import android.database.Cursor
 import android.database.sqlite.SQLiteException
+import android.os.CancellationSignal
 import android.text.TextUtils
+import androidx.sqlite.db.SimpleSQLiteQuery
 import androidx.sqlite.db.SupportSQLiteDatabase
 import net.zetetic.database.sqlcipher.SQLiteDatabase
 import org.intellij.lang.annotations.Language
 import org.signal.core.util.SqlUtil
 import org.signal.core.util.ThreadUtil
 import org.signal.core.util.logging.Log
+import org.signal.core.util.readToList
+import org.signal.core.util.requireLong
+import org.signal.core.util.requireString
 import org.signal.core.util.withinTransaction
 import org.thoughtcrime.securesms.dependencies.AppDependencies
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencyProvider
 import org.thoughtcrime.securesms.jobs.RebuildMessageSearchIndexJob
+import org.thoughtcrime.securesms.recipients.RecipientId
 
 /**
  * Contains all databases necessary for full-text search (FTS).
@@ -36,6 +42,9 @@ class SearchTable(context: Context, databaseHelper: SignalDatabase) : DatabaseTa
     const val MESSAGE_ID = "message_id"
     const val SNIPPET_WRAP = "..."
 
+    /** The most message hits a single search will return. */
+    const val MESSAGE_SEARCH_LIMIT = 500
+
     @Language("sql")
     val CREATE_TABLE = arrayOf(
       // We've taken the default of tokenize value of "unicode61 categories 'L* N* Co'" and added the Sc (currency) and So (emoji) categories to allow searching for those characters.
@@ -94,6 +103,57 @@ class SearchTable(context: Context, databaseHelper: SignalDatabase) : DatabaseTa
       LIMIT 500
     """
 
+    /**
+     * Same matches and order as [MESSAGES_QUERY], but without building snippets, so it stays cheap even when a short prefix matches most of the
+     * index. Snippets are built later with [MESSAGES_BY_ID_QUERY], only for the rows that are actually shown.
+     */
+    @Language("sql")
+    private const val MESSAGE_HITS_QUERY = """
+      SELECT 
+        ${MessageTable.TABLE_NAME}.${MessageTable.ID}, 
+        ${MessageTable.TABLE_NAME}.${MessageTable.THREAD_ID}, 
+        ${ThreadTable.TABLE_NAME}.${ThreadTable.RECIPIENT_ID} AS $CONVERSATION_RECIPIENT, 
+        ${MessageTable.TABLE_NAME}.${MessageTable.FROM_RECIPIENT_ID} AS $MESSAGE_RECIPIENT, 
+        ${MessageTable.TABLE_NAME}.${MessageTable.DATE_RECEIVED}, 
+        ${MessageTable.TABLE_NAME}.${MessageTable.BODY} 
+      FROM 
+        ${MessageTable.TABLE_NAME} 
+          INNER JOIN $FTS_TABLE_NAME ON $FTS_TABLE_NAME.$ID = ${MessageTable.TABLE_NAME}.${MessageTable.ID} 
+          INNER JOIN ${ThreadTable.TABLE_NAME} ON $FTS_TABLE_NAME.$THREAD_ID = ${ThreadTable.TABLE_NAME}.${ThreadTable.ID} 
+      WHERE 
+        $FTS_TABLE_NAME MATCH ? AND 
+        ${MessageTable.TABLE_NAME}.${MessageTable.TYPE} & ${MessageTypes.GROUP_V2_BIT} = 0 AND 
+        ${MessageTable.TABLE_NAME}.${MessageTable.TYPE} & ${MessageTypes.SPECIAL_TYPE_PAYMENTS_NOTIFICATION} = 0 AND
+        ${MessageTable.TABLE_NAME}.${MessageTable.SCHEDULED_DATE} < 0 AND
+        ${MessageTable.TABLE_NAME}.${MessageTable.LATEST_REVISION_ID} IS NULL
+      ORDER BY ${MessageTable.DATE_RECEIVED} DESC 
+      LIMIT $MESSAGE_SEARCH_LIMIT
+    """
+
+    /**
+     * The columns of [MESSAGES_QUERY] for a known set of message ids, which are appended in parentheses. The CROSS JOIN keeps the message table as the
+     * outer loop, so the match is only checked for those rows rather than for everything the query matches.
+     */
+    @Language("sql")
+    private const val MESSAGES_BY_ID_QUERY = """
+      SELECT 
+        ${ThreadTable.TABLE_NAME}.${ThreadTable.RECIPIENT_ID} AS $CONVERSATION_RECIPIENT, 
+        ${MessageTable.TABLE_NAME}.${MessageTable.FROM_RECIPIENT_ID} AS $MESSAGE_RECIPIENT, 
+        snippet($FTS_TABLE_NAME, -1, '', '', '$SNIPPET_WRAP', 7) AS $SNIPPET, 
+        ${MessageTable.TABLE_NAME}.${MessageTable.DATE_RECEIVED}, 
+        $FTS_TABLE_NAME.$THREAD_ID, 
+        $FTS_TABLE_NAME.$BODY, 
+        $FTS_TABLE_NAME.$ID AS $MESSAGE_ID, 
+        1 AS $IS_MMS 
+      FROM 
+        ${MessageTable.TABLE_NAME} 
+          CROSS JOIN $FTS_TABLE_NAME ON $FTS_TABLE_NAME.$ID = ${MessageTable.TABLE_NAME}.${MessageTable.ID} 
+          INNER JOIN ${ThreadTable.TABLE_NAME} ON $FTS_TABLE_NAME.$THREAD_ID = ${ThreadTable.TABLE_NAME}.${ThreadTable.ID} 
+      WHERE 
+        $FTS_TABLE_NAME MATCH ? AND 
+        ${MessageTable.TABLE_NAME}.${MessageTable.ID} IN 
+    """
+
     @Language("sql")
     private const val MESSAGES_FOR_THREAD_QUERY = """
       SELECT 
@@ -130,6 +190,41 @@ class SearchTable(context: Context, databaseHelper: SignalDatabase) : DatabaseTa
     }
   }
 
+  /**
+   * Finds the messages matching [query], newest first, without building snippets.
+   *
+   * @throws android.os.OperationCanceledException If [cancellationSignal] is canceled while the query runs.
+   */
+  fun getMessageSearchHits(query: String, cancellationSignal: CancellationSignal?): List<MessageSearchHit> {
+    val fullTextSearchQuery = createFullTextSearchQuery(query)
+    if (fullTextSearchQuery.isEmpty()) {
+      return emptyList()
+    }
+
+    return readableDatabase.query(SimpleSQLiteQuery(MESSAGE_HITS_QUERY, SqlUtil.buildArgs(fullTextSearchQuery)), cancellationSignal).readToList { cursor ->
+      MessageSearchHit(
+        messageId = cursor.requireLong(MessageTable.ID),
+        threadId = cursor.requireLong(MessageTable.THREAD_ID),
+        conversationRecipientId = RecipientId.from(cursor.requireLong(CONVERSATION_RECIPIENT)),
+        messageRecipientId = RecipientId.from(cursor.requireLong(MESSAGE_RECIPIENT)),
+        receivedTimestampMs = cursor.requireLong(MessageTable.DATE_RECEIVED),
+        body = cursor.requireString(MessageTable.BODY) ?: ""
+      )
+    }
+  }
+
+  /**
+   * The same rows as [queryMessages], snippets included, but only for [messageIds]. Messages that no longer match are left out.
+   */
+  fun queryMessages(query: String, messageIds: Collection<Long>): Cursor? {
+    val fullTextSearchQuery = createFullTextSearchQuery(query)
+    return if (fullTextSearchQuery.isEmpty() || messageIds.isEmpty()) {
+      null
+    } else {
+      readableDatabase.rawQuery("$MESSAGES_BY_ID_QUERY (${messageIds.joinToString(",")})", SqlUtil.buildArgs(fullTextSearchQuery))
+    }
+  }
+
   fun queryMessages(query: String, threadId: Long): Cursor? {
     val fullTextSearchQuery = createFullTextSearchQuery(query)
     return if (TextUtils.isEmpty(fullTextSearchQuery)) {
@@ -364,4 +459,16 @@ class SearchTable(context: Context, databaseHelper: SignalDatabase) : DatabaseTa
     val quotesEscaped = s.replace("\"", "\"\"")
     return "\"$quotesEscaped\""
   }
+
+  /**
+   * A message that matched a search, with just enough to order it and to show it if it can't be reloaded.
+   */
+  data class MessageSearchHit(
+    val messageId: Long,
+    val threadId: Long,
+    val conversationRecipientId: RecipientId,
+    val messageRecipientId: RecipientId,
+    val receivedTimestampMs: Long,
+    val body: String
+  )
 }
@@ -148,6 +148,7 @@ open class SignalDatabase(private val context: Application, databaseSecret: Data
     executeStatements(db, DistributionListTables.CREATE_TABLE)
     executeStatements(db, ChatFolderTables.CREATE_TABLE)
     db.execSQL(BackupMediaSnapshotTable.CREATE_TABLE)
+    executeStatements(db, MediaTable.CREATE_TABLES)
 
     executeStatements(db, RecipientTable.CREATE_INDEXS)
     executeStatements(db, MessageTable.CREATE_INDEXS)
@@ -174,6 +175,7 @@ open class SignalDatabase(private val context: Application, databaseSecret: Data
     executeStatements(db, BackupMediaSnapshotTable.CREATE_INDEXES)
 
     executeStatements(db, MessageSendLogTables.CREATE_TRIGGERS)
+    executeStatements(db, MediaTable.CREATE_TRIGGERS)
 
     DistributionListTables.insertInitialDistributionListAtCreationTime(db)
     ChatFolderTables.insertInitialChatFoldersAtCreationTime(db)
@@ -313,6 +315,7 @@ open class SignalDatabase(private val context: Application, databaseSecret: Data
           instance!!.messageTable.deleteAbandonedMessages()
           instance!!.messageTable.trimEntriesForExpiredMessages()
           instance!!.reactionTable.deleteAbandonedReactions()
+          instance!!.mediaTable.rebuildUsage()
           instance!!.searchTable.fullyResetTables(useTransaction = false)
           instance!!.recipientTable.clearFileWallpapersPostBackupRestore()
           instance!!.rawWritableDatabase.execSQL("DROP TABLE IF EXISTS key_value")
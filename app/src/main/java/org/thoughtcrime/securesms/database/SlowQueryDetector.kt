@@ -0,0 +1,234 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.database
+
+import androidx.annotation.VisibleForTesting
+import org.signal.core.util.ThreadUtil
+import org.signal.core.util.concurrent.SignalExecutors
+import org.signal.core.util.logging.Log
+import org.signal.core.util.readToList
+import org.signal.core.util.requireString
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A query profiler that's cheap enough to leave on in production, fed by [DatabaseMonitor.onExecuted].
+ *
+ * Statements are grouped by their shape, which is their SQL with literals replaced by `?` (see [normalize]). Every statement slower than
+ * [SLOW_THRESHOLD_NANOS] is counted, along with roughly one in [SAMPLE_INTERVAL] of the rest, so the work of normalizing is only done on a small
+ * fraction of statements.
+ *
+ * The first time a shape is slow, its `EXPLAIN QUERY PLAN` is captured in the background, and shapes whose plan scans the whole of a large table
+ * (see [LARGE_TABLES]) are flagged. The results end up in the debug log via [getReport], so missing indexes can be found from field logs.
+ */
+object SlowQueryDetector {
+
+  private val TAG = Log.tag(SlowQueryDetector::class.java)
+
+  private val SLOW_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(50)
+
+  private const val SAMPLE_INTERVAL = 16
+
+  /** Beyond this many shapes, new ones are only counted in [droppedShapes], so a stream of unique SQL can't use up memory. */
+  private const val MAX_SHAPES = 250
+
+  private const val MAX_SHAPE_LENGTH = 500
+
+  private val LARGE_TABLES = setOf(MessageTable.TABLE_NAME, AttachmentTable.TABLE_NAME, RecipientTable.TABLE_NAME)
+
+  private val WHITESPACE = Regex("\\s+")
+  private val STRING_LITERAL = Regex("'(?:[^']|'')*'")
+  private val NUMBER_LITERAL = Regex("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b")
+  private val PLACEHOLDER_LIST = Regex("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)")
+  private val EXPLAINABLE = Regex("^\\s*(SELECT|WITH|UPDATE|DELETE|INSERT|REPLACE)\\b", RegexOption.IGNORE_CASE)
+  private val FULL_SCAN = Regex("^SCAN (?:TABLE )?(\\w+)")
+  private val INDEX_SCAN = Regex("USING (?:COVERING )?INDEX")
+
+  private val shapes = ConcurrentHashMap<String, Shape>()
+  private val droppedShapes = AtomicLong()
+
+  private val explainExecutor = SignalExecutors.newCachedSingleThreadExecutor("signal-query-explain", ThreadUtil.PRIORITY_BACKGROUND_THREAD)
+
+  fun onExecuted(db: SQLiteDatabase, table: String?, sql: String?, durationNanos: Long) {
+    val slow = durationNanos >= SLOW_THRESHOLD_NANOS
+
+    if (!slow && ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) != 0) {
+      return
+    }
+
+    val shapeSql = normalize(table, sql)
+
+    var shape = shapes[shapeSql]
+    if (shape == null) {
+      if (shapes.size >= MAX_SHAPES) {
+        droppedShapes.incrementAndGet()
+        return
+      }
+      shape = shapes.computeIfAbsent(shapeSql) { Shape(it) }
+    }
+
+    shape.record(durationNanos, if (slow) 1 else SAMPLE_INTERVAL, slow)
+
+    if (slow && shape.claimExplain()) {
+      val explainSql = explainableSql(table, sql) ?: return
+      explainExecutor.execute { explain(db, shape, explainSql) }
+    }
+  }
+
+  /**
+   * A human-readable report of the shapes that have taken the most time, slowest first.
+   */
+  fun getReport(maxShapes: Int): String {
+    val sorted = shapes.values.map { it.snapshot() }.sortedByDescending { it.totalNanos }
+    if (sorted.isEmpty()) {
+      return "No queries recorded."
+    }
+
+    val output = StringBuilder()
+
+    val fullScans = sorted.filter { it.fullScans.isNotEmpty() }
+    if (fullScans.isNotEmpty()) {
+      output.append("-- Full scans of large tables\n")
+      for (shape in fullScans) {
+        output.append("${shape.fullScans.joinToString()}: ${shape.sql}\n")
+      }
+      output.append("\n")
+    }
+
+    output.append("-- By total time (estimated from samples, plus every query over ${TimeUnit.NANOSECONDS.toMillis(SLOW_THRESHOLD_NANOS)} ms)\n")
+    for (shape in sorted.take(maxShapes)) {
+      output.append(shape.sql).append("\n")
+      output.append("  count: ${shape.count}, total: ${shape.totalNanos.ms()} ms, mean: ${(shape.totalNanos / shape.count).ms()} ms, max: ${shape.maxNanos.ms()} ms, slow: ${shape.slowCount}\n")
+      shape.plan?.forEach { output.append("  plan: ").append(it).append("\n") }
+    }
+
+    if (sorted.size > maxShapes) {
+      output.append("...and ${sorted.size - maxShapes} more shapes\n")
+    }
+
+    if (droppedShapes.get() > 0) {
+      output.append("Dropped ${droppedShapes.get()} samples after reaching $MAX_SHAPES shapes\n")
+    }
+
+    return output.toString()
+  }
+
+  /**
+   * Boils a statement down to its shape, so statements that only differ by their literals, whitespace or the number of arguments in a list are
+   * grouped together.
+   */
+  @VisibleForTesting
+  fun normalize(table: String?, sql: String?): String {
+    val statement = if (table != null) {
+      "$table: ${sql ?: "(all rows)"}"
+    } else {
+      sql ?: "(unknown)"
+    }
+
+    return statement
+      .replace(STRING_LITERAL, "?")
+      .replace(NUMBER_LITERAL, "?")
+      .replace(WHITESPACE, " ")
+      .replace(PLACEHOLDER_LIST, "(?...)")
+      .trim()
+      .take(MAX_SHAPE_LENGTH)
+  }
+
+  /**
+   * @return The tables in [LARGE_TABLES] that an `EXPLAIN QUERY PLAN` row says are scanned in full, rather than searched with an index.
+   */
+  @VisibleForTesting
+  fun findFullScans(plan: List<String>): Set<String> {
+    return plan
+      .filterNot { it.contains(INDEX_SCAN) }
+      .mapNotNull { FULL_SCAN.find(it.trim())?.groupValues?.get(1) }
+      .filter { it in LARGE_TABLES }
+      .toSet()
+  }
+
+  /**
+   * Table-based statements only give us their selection, so the plan is checked for the equivalent SELECT, which searches the same way. Inserts
+   * don't have a selection, and have nothing to search for anyway.
+   */
+  private fun explainableSql(table: String?, sql: String?): String? {
+    return if (table != null) {
+      sql?.let { "SELECT * FROM $table WHERE $it" }
+    } else {
+      sql?.takeIf { it.contains(EXPLAINABLE) }
+    }
+  }
+
+  private fun explain(db: SQLiteDatabase, shape: Shape, sql: String) {
+    try {
+      // Deliberately bypasses the wrapper, so this isn't itself traced and profiled. Unbound arguments are treated as NULL, which is enough for a plan.
+      val plan = db.sqlCipherDatabase.rawQuery("EXPLAIN QUERY PLAN $sql", null).readToList { it.requireString("detail") ?: "" }
+      val fullScans = findFullScans(plan)
+
+      shape.setPlan(plan, fullScans)
+
+      if (fullScans.isNotEmpty()) {
+        Log.w(TAG, "Slow query does a full scan of $fullScans: ${shape.sql}")
+      }
+    } catch (e: Exception) {
+      Log.w(TAG, "Failed to explain a slow query.", e)
+    }
+  }
+
+  private fun Long.ms(): Long = TimeUnit.NANOSECONDS.toMillis(this)
+
+  private class Shape(val sql: String) {
+    private var count = 0L
+    private var totalNanos = 0L
+    private var maxNanos = 0L
+    private var slowCount = 0L
+    private var plan: List<String>? = null
+    private var fullScans: Set<String> = emptySet()
+    private var explainClaimed = false
+
+    @Synchronized
+    fun record(durationNanos: Long, weight: Int, slow: Boolean) {
+      count += weight
+      totalNanos += durationNanos * weight
+      maxNanos = maxOf(maxNanos, durationNanos)
+      if (slow) {
+        slowCount++
+      }
+    }
+
+    /** Only the first caller gets to explain the shape. */
+    @Synchronized
+    fun claimExplain(): Boolean {
+      if (explainClaimed) {
+        return false
+      }
+      explainClaimed = true
+      return true
+    }
+
+    @Synchronized
+    fun setPlan(plan: List<String>, fullScans: Set<String>) {
+      this.plan = plan
+      this.fullScans = fullScans
+    }
+
+    @Synchronized
+    fun snapshot(): ShapeSnapshot {
+      return ShapeSnapshot(sql, count, totalNanos, maxNanos, slowCount, plan, fullScans)
+    }
+  }
+
+  private class ShapeSnapshot(
+    val sql: String,
+    val count: Long,
+    val totalNanos: Long,
+    val maxNanos: Long,
+    val slowCount: Long,
+    val plan: List<String>?,
+    val fullScans: Set<String>
+  )
+}
@@ -146,6 +146,8 @@ import org.thoughtcrime.securesms.database.helpers.migration.V288_CopyStickerDat
 import org.thoughtcrime.securesms.database.helpers.migration.V289_AddQuoteTargetContentTypeColumn
 import org.thoughtcrime.securesms.database.helpers.migration.V290_AddArchiveThumbnailTransferStateColumn
 import org.thoughtcrime.securesms.database.helpers.migration.V291_NullOutRemoteKeyIfEmpty
+import org.thoughtcrime.securesms.database.helpers.migration.V292_MediaUsageCounters
+import org.thoughtcrime.securesms.database.helpers.migration.V293_AddUploadCheckpointColumns
 import org.thoughtcrime.securesms.database.SQLiteDatabase as SignalSqliteDatabase
 
 /**
@@ -297,10 +299,12 @@ object SignalDatabaseMigrations {
     288 to V288_CopyStickerDataHashStartToEnd,
     289 to V289_AddQuoteTargetContentTypeColumn,
     290 to V290_AddArchiveThumbnailTransferStateColumn,
-    291 to V291_NullOutRemoteKeyIfEmpty
+    291 to V291_NullOutRemoteKeyIfEmpty,
+    292 to V292_MediaUsageCounters,
+    293 to V293_AddUploadCheckpointColumns
   )
 
-  const val DATABASE_VERSION = 291
+  const val DATABASE_VERSION = 293
 
   @JvmStatic
   fun migrate(context: Application, db: SignalSqliteDatabase, oldVersion: Int, newVersion: Int) {
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.database.helpers.migration
+
+import android.app.Application
+import org.signal.core.util.Stopwatch
+import org.signal.core.util.logging.Log
+import org.thoughtcrime.securesms.database.SQLiteDatabase
+
+/**
+ * Adds trigger-maintained media usage counters so the storage breakdown no longer has to scan the attachment table.
+ */
+@Suppress("ClassName")
+object V292_MediaUsageCounters : SignalDatabaseMigration {
+
+  private val TAG = Log.tag(V292_MediaUsageCounters::class)
+
+  override fun migrate(context: Application, db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+    val stopwatch = Stopwatch("migration")
+
+    for (statement in CREATE_TABLES) {
+      db.execSQL(statement)
+    }
+    stopwatch.split("tables")
+
+    for (statement in BACKFILL) {
+      db.execSQL(statement)
+    }
+    stopwatch.split("backfill")
+
+    for (statement in CREATE_TRIGGERS) {
+      db.execSQL(statement)
+    }
+    stopwatch.split("triggers")
+
+    stopwatch.stop(TAG)
+  }
+
+  private val CREATE_TABLES = arrayOf(
+    """
+    CREATE TABLE media_usage (
+      category INTEGER PRIMARY KEY,
+      size INTEGER NOT NULL DEFAULT 0,
+      item_count INTEGER NOT NULL DEFAULT 0
+    )
+    """,
+    """
+    CREATE TABLE media_usage_file (
+      data_file TEXT PRIMARY KEY,
+      category INTEGER NOT NULL,
+      size INTEGER NOT NULL DEFAULT 0,
+      usage_count INTEGER NOT NULL DEFAULT 0
+    )
+    """
+  )
+
+  private val BACKFILL = arrayOf(
+    """
+    INSERT INTO media_usage_file (data_file, category, size, usage_count) 
+      SELECT 
+        data_file, 
+        ${categoryOf("attachment")}, 
+        MAX(COALESCE(data_size, 0)), 
+        COUNT(*) 
+      FROM attachment 
+      WHERE ${isCounted("attachment")} 
+      GROUP BY data_file
+    """,
+    """
+    INSERT INTO media_usage (category, size, item_count) 
+      SELECT category, SUM(size), COUNT(*) 
+      FROM media_usage_file 
+      GROUP BY category
+    """
+  )
+
+  private fun categoryOf(row: String): String {
+    val contentType = "$row.content_type"
+    return """
+      (CASE 
+        WHEN TRIM($contentType) = 'image/gif' THEN 0 
+        WHEN (SUBSTR($contentType, 1, 6) = 'image/' AND $contentType != 'image/svg+xml') OR $contentType = 'vnd.android.cursor.dir/image' THEN 0 
+        WHEN SUBSTR($contentType, 1, 6) = 'video/' OR $contentType = 'vnd.android.cursor.dir/video' THEN 1 
+        WHEN SUBSTR($contentType, 1, 6) = 'audio/' OR $contentType = 'vnd.android.cursor.dir/audio' THEN 2 
+        WHEN TRIM($contentType) = 'application/mms' THEN 0 
+        WHEN $contentType = 'application/x-signal-view-once' THEN -1 
+        ELSE 3 
+      END)
+    """
+  }
+
+  private fun isCounted(row: String): String {
+    return "$row.data_file IS NOT NULL AND $row.sticker_pack_id IS NULL AND $row.transfer_state = 0"
+  }
+
+  private fun fileUsageOf(row: String, column: String): String {
+    return "(SELECT media_usage_file.$column FROM media_usage_file WHERE media_usage_file.data_file = $row.data_file)"
+  }
+
+  private fun refreshFileUsage(row: String): String {
+    return """
+      UPDATE media_usage SET 
+        size = size - ${fileUsageOf(row, "size")}, 
+        item_count = item_count - 1 
+      WHERE category = ${fileUsageOf(row, "category")};
+      DELETE FROM media_usage_file WHERE data_file = $row.data_file;
+      INSERT INTO media_usage_file (data_file, category, size, usage_count) 
+        SELECT 
+          attachment.data_file, 
+          ${categoryOf("attachment")}, 
+          MAX(COALESCE(attachment.data_size, 0)), 
+          COUNT(*) 
+        FROM attachment 
+        WHERE attachment.data_file = $row.data_file AND ${isCounted("attachment")} 
+        GROUP BY attachment.data_file;
+      INSERT OR IGNORE INTO media_usage (category) 
+        SELECT category FROM media_usage_file WHERE data_file = $row.data_file;
+      UPDATE media_usage SET 
+        size = size + ${fileUsageOf(row, "size")}, 
+        item_count = item_count + 1 
+      WHERE category = ${fileUsageOf(row, "category")};
+    """
+  }
+
+  private val CREATE_TRIGGERS = arrayOf(
+    """
+    CREATE TRIGGER media_usage_attachment_insert AFTER INSERT ON attachment WHEN ${isCounted("new")}
+    BEGIN
+      ${refreshFileUsage("new")}
+    END
+    """,
+    """
+    CREATE TRIGGER media_usage_attachment_delete AFTER DELETE ON attachment WHEN ${isCounted("old")}
+    BEGIN
+      ${refreshFileUsage("old")}
+    END
+    """,
+    """
+    CREATE TRIGGER media_usage_attachment_update_remove AFTER UPDATE OF content_type, transfer_state, data_file, data_size, sticker_pack_id ON attachment WHEN ${isCounted("old")}
+    BEGIN
+      ${refreshFileUsage("old")}
+    END
+    """,
+    """
+    CREATE TRIGGER media_usage_attachment_update_add AFTER UPDATE OF content_type, transfer_state, data_file, data_size, sticker_pack_id ON attachment WHEN ${isCounted("new")}
+    BEGIN
+      ${refreshFileUsage("new")}
+    END
+    """
+  )
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.database.helpers.migration
+
+import android.app.Application
+import org.thoughtcrime.securesms.database.SQLiteDatabase
+
+/**
+ * Lets us remember how far a chunked attachment upload got, so that it can be resumed even if the job that started it never got to save its progress.
+ */
+@Suppress("ClassName")
+object V293_AddUploadCheckpointColumns : SignalDatabaseMigration {
+
+  override fun migrate(context: Application, db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+    db.execSQL("ALTER TABLE attachment ADD COLUMN upload_checkpoint_spec BLOB DEFAULT NULL")
+    db.execSQL("ALTER TABLE attachment ADD COLUMN upload_checkpoint_offset INTEGER DEFAULT 0")
+  }
+}
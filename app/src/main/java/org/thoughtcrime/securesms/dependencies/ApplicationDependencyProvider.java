@@ -10,6 +10,7 @@ import androidx.annotation.VisibleForTesting;
 
 import org.jetbrains.annotations.NotNull;
 import org.signal.billing.BillingFactory;
+import org.signal.core.util.SetUtil;
 import org.signal.core.util.ThreadUtil;
 import org.signal.core.util.billing.BillingApi;
 import org.signal.core.util.concurrent.DeadlockDetector;
@@ -36,8 +37,10 @@ import org.thoughtcrime.securesms.jobmanager.JobManager;
 import org.thoughtcrime.securesms.jobmanager.JobMigrator;
 import org.thoughtcrime.securesms.jobmanager.impl.FactoryJobPredicate;
 import org.thoughtcrime.securesms.jobs.AttachmentCompressionJob;
+import org.thoughtcrime.securesms.jobs.AttachmentHashBackfillJob;
 import org.thoughtcrime.securesms.jobs.AttachmentUploadJob;
 import org.thoughtcrime.securesms.jobs.FastJobStorage;
+import org.thoughtcrime.securesms.jobs.GenerateAudioWaveFormJob;
 import org.thoughtcrime.securesms.jobs.GroupCallUpdateSendJob;
 import org.thoughtcrime.securesms.jobs.IndividualSendJob;
 import org.thoughtcrime.securesms.jobs.JobManagerFactories;
@@ -124,6 +127,7 @@ import org.whispersystems.signalservice.internal.websocket.LibSignalNetworkExten
 import org.whispersystems.signalservice.internal.websocket.OkHttpWebSocketConnection;
 
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -152,7 +156,9 @@ public class ApplicationDependencyProvider implements AppDependencies.Provider {
 
   @Override
   public @NonNull GroupsV2Operations provideGroupsV2Operations(@NonNull SignalServiceConfiguration signalServiceConfiguration) {
-    return new GroupsV2Operations(provideClientZkOperations(signalServiceConfiguration), RemoteConfig.groupLimits().getHardLimit());
+    return new GroupsV2Operations(provideClientZkOperations(signalServiceConfiguration),
+                                  RemoteConfig.groupLimits().getHardLimit(),
+                                  RemoteConfig.parallelGroupDecryption() ? ForkJoinPool.commonPool() : null);
   }
 
   @Override
@@ -212,6 +218,7 @@ public class ApplicationDependencyProvider implements AppDependencies.Provider {
                                                                       GroupCallUpdateSendJob.KEY,
                                                                       SendDeliveryReceiptJob.KEY
                                                                   ))
+                                                                  .setCpuBoundFactories(SetUtil.newHashSet(AttachmentCompressionJob.KEY, AttachmentHashBackfillJob.KEY, GenerateAudioWaveFormJob.KEY))
                                                                   .build();
     return new JobManager(context, config);
   }
@@ -10,6 +10,7 @@ import org.whispersystems.signalservice.api.groupsv2.DecryptedGroupChangeLog;
 import org.whispersystems.signalservice.api.groupsv2.DecryptedGroupUtil;
 import org.whispersystems.signalservice.api.groupsv2.GroupChangeReconstruct;
 import org.whispersystems.signalservice.api.groupsv2.GroupChangeUtil;
+import org.whispersystems.signalservice.api.groupsv2.MutableDecryptedGroup;
 import org.whispersystems.signalservice.api.groupsv2.NotAbleToApplyGroupV2ChangeException;
 
 import java.util.ArrayList;
@@ -131,10 +132,12 @@ final class GroupStatePatcher {
   }
 
   private static StateChain<DecryptedGroup, DecryptedGroupChange> createNewMapper() {
+    IndexedChangeApplier applier = new IndexedChangeApplier();
+
     return new StateChain<>(
       (group, change) -> {
         try {
-          return DecryptedGroupUtil.applyWithoutRevisionCheck(group, change);
+          return applier.apply(group, change);
         } catch (NotAbleToApplyGroupV2ChangeException e) {
           Log.w(TAG, "Unable to apply V" + change.revision, e);
           return null;
@@ -144,4 +147,30 @@ final class GroupStatePatcher {
       (groupA, groupB) -> groupA.revision == groupB.revision && DecryptedGroupUtil.changeIsEmpty(GroupChangeReconstruct.reconstructGroupChange(groupA, groupB))
     );
   }
+
+  /**
+   * Applies changes through a {@link MutableDecryptedGroup} that's carried over from one revision to the next, so that catching up on a long run
+   * of changes doesn't have to rebuild and rescan the membership lists for every action. Falls back to {@link DecryptedGroupUtil} whenever the
+   * state being applied to isn't the one we produced last.
+   */
+  private static final class IndexedChangeApplier {
+    private @Nullable MutableDecryptedGroup indexed;
+    private @Nullable DecryptedGroup        indexedState;
+
+    @NonNull DecryptedGroup apply(@NonNull DecryptedGroup group, @NonNull DecryptedGroupChange change) throws NotAbleToApplyGroupV2ChangeException {
+      if (indexed == null || indexedState != group) {
+        indexed = MutableDecryptedGroup.from(group);
+      }
+
+      indexedState = null;
+
+      if (indexed == null || !indexed.applyWithoutRevisionCheck(change)) {
+        indexed = null;
+        return DecryptedGroupUtil.applyWithoutRevisionCheck(group, change);
+      }
+
+      indexedState = indexed.toDecryptedGroup();
+      return indexedState;
+    }
+  }
 }
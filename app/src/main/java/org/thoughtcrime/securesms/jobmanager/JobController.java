@@ -29,7 +29,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntSupplier;
@@ -38,6 +37,12 @@ import java.util.function.Predicate;
 /**
  * Manages the queue of jobs. This is the only class that should write to {@link JobStorage} to
  * ensure consistency.
+ * <p>
+ * Aside from the reserved runners, jobs are run by two {@link JobRunnerPool}s: one for jobs that the
+ * {@link JobWorkloadClassifier} considers CPU-bound, and a general one for everything else, which
+ * mostly waits on the network or disk. Each pool scales up to meet the number of eligible jobs it
+ * can run, within limits set by the {@link JobRunnerLimiter}, and extra runners are retired once
+ * they're idle or the pool is over its limit.
  */
 class JobController {
 
@@ -45,6 +50,9 @@ class JobController {
 
   private static final Predicate<MinimalJobSpec> NO_PREDICATE = spec -> true;
 
+  /** CPU-bound jobs get a runner that's always around, so a factory that's newly classified as CPU-bound is never left without one. */
+  private static final int CPU_CORE_RUNNERS = 1;
+
   private final Application                application;
   private final JobStorage                 jobStorage;
   private final JobInstantiator            jobInstantiator;
@@ -60,12 +68,19 @@ class JobController {
   private final long                            generalRunnerIdleTimeout;
   private final AtomicInteger                   nextRunnerId;
   private final List<Predicate<MinimalJobSpec>> reservedRunnerPredicates;
+  private final JobWorkloadClassifier           workloadClassifier;
 
   @VisibleForTesting
   final AtomicBoolean runnersStarted = new AtomicBoolean(false);
 
+  /** Set while {@link #submitBatch(List)} runs its operations. Only read or written while holding the lock. */
+  private Batch currentBatch;
+
+  @VisibleForTesting
+  final JobRunnerPool generalPool;
+
   @VisibleForTesting
-  final List<JobRunner> activeGeneralRunners;
+  final JobRunnerPool cpuPool;
 
   JobController(@NonNull Application application,
                 @NonNull JobStorage jobStorage,
@@ -78,7 +93,9 @@ class JobController {
                 int minGeneralRunners,
                 int maxGeneralRunners,
                 long generalRunnerIdleTimeout,
-                @NonNull List<Predicate<MinimalJobSpec>> reservedRunnerPredicates)
+                @NonNull List<Predicate<MinimalJobSpec>> reservedRunnerPredicates,
+                @NonNull JobWorkloadClassifier workloadClassifier,
+                @NonNull JobRunnerLimiter runnerLimiter)
   {
     this.application              = application;
     this.jobStorage               = jobStorage;
@@ -93,8 +110,16 @@ class JobController {
     this.maxGeneralRunners        = maxGeneralRunners;
     this.generalRunnerIdleTimeout = generalRunnerIdleTimeout;
     this.nextRunnerId             = new AtomicInteger(0);
-    this.activeGeneralRunners     = new CopyOnWriteArrayList<>();
     this.reservedRunnerPredicates = new ArrayList<>(reservedRunnerPredicates);
+    this.workloadClassifier       = workloadClassifier;
+    this.generalPool              = new JobRunnerPool("general",
+                                                      spec -> !workloadClassifier.isCpuBound(spec.getFactoryKey()),
+                                                      minGeneralRunners,
+                                                      () -> Math.min(maxGeneralRunners, runnerLimiter.getMaxGeneralRunners()));
+    this.cpuPool                  = new JobRunnerPool("cpu",
+                                                      spec -> workloadClassifier.isCpuBound(spec.getFactoryKey()),
+                                                      CPU_CORE_RUNNERS,
+                                                      runnerLimiter::getMaxCpuRunners);
   }
 
   @WorkerThread
@@ -104,24 +129,62 @@ class JobController {
   }
 
   synchronized void wakeUp() {
+    if (currentBatch != null) {
+      // The batch wakes everything up once it's all been submitted
+      return;
+    }
+
     notifyAll();
-    maybeScaleUpRunners(() -> jobStorage.getEligibleJobCount(System.currentTimeMillis()));
+    maybeScaleUpRunners();
   }
 
+  /**
+   * Runs the operations, which call the submit and cancel methods on this class, such that all of their changes to storage are written in a
+   * single transaction. The scheduler and runners are only woken up once, after the last operation, and job callbacks like
+   * {@link Job#onSubmit()} are run once everything is in, outside of the lock as usual.
+   */
   @WorkerThread
-  void submitNewJobChains(@NonNull List<List<List<Job>>> chains) {
+  void submitBatch(@NonNull List<Runnable> operations) {
+    Batch batch = new Batch();
+
     synchronized (this) {
-      for (List<List<Job>> chain : chains) {
-        submitNewJobChain(chain);
+      currentBatch = batch;
+
+      try {
+        jobStorage.runInTransaction(() -> {
+          for (Runnable operation : operations) {
+            operation.run();
+          }
+        });
+      } finally {
+        currentBatch = null;
       }
+
+      scheduleJobs(distinctSchedules(batch.jobsToSchedule));
+    }
+
+    for (Runnable callbacks : batch.jobCallbacks) {
+      callbacks.run();
     }
+
+    wakeUp();
   }
 
   @WorkerThread
-  void submitNewJobChain(@NonNull List<List<Job>> chain) {
-    synchronized (this) {
-      chain = Stream.of(chain).filterNot(List::isEmpty).toList();
+  void submitNewJobChains(@NonNull List<List<List<Job>>> chains) {
+    List<Runnable> operations = new ArrayList<>(chains.size());
+    for (List<List<Job>> chain : chains) {
+      operations.add(() -> submitNewJobChain(chain));
+    }
 
+    submitBatch(operations);
+  }
+
+  @WorkerThread
+  void submitNewJobChain(@NonNull List<List<Job>> jobListChain) {
+    List<List<Job>> chain = Stream.of(jobListChain).filterNot(List::isEmpty).toList();
+
+    synchronized (this) {
       if (chain.isEmpty()) {
         Log.w(TAG, "Tried to submit an empty job chain. Skipping.");
         return;
@@ -143,12 +206,9 @@ class JobController {
     }
 
     // We have no control over what happens in jobs' onSubmit method, so we drop our lock to reduce the possibility of a deadlock
-    triggerOnSubmit(chain);
+    runJobCallbacks(() -> triggerOnSubmit(chain));
 
-    synchronized (this) {
-      notifyAll();
-      maybeScaleUpRunners(() -> jobStorage.getEligibleJobCount(System.currentTimeMillis()));
-    }
+    wakeUp();
   }
 
   @WorkerThread
@@ -195,12 +255,9 @@ class JobController {
     }
 
     // We have no control over what happens in jobs' onSubmit method, so we drop our lock to reduce the possibility of a deadlock
-    triggerOnSubmit(chain);
+    runJobCallbacks(() -> triggerOnSubmit(chain));
 
-    synchronized (this) {
-      notifyAll();
-      maybeScaleUpRunners(() -> jobStorage.getEligibleJobCount(System.currentTimeMillis()));
-    }
+    wakeUp();
   }
 
   @WorkerThread
@@ -228,15 +285,14 @@ class JobController {
     }
 
     // We have no control over what happens in jobs' onSubmit method, so we drop our lock to reduce the possibility of a deadlock
-    for (Job job : canRun) {
-      job.setContext(application);
-      job.onSubmit();
-    }
+    runJobCallbacks(() -> {
+      for (Job job : canRun) {
+        job.setContext(application);
+        job.onSubmit();
+      }
+    });
 
-    synchronized (this) {
-      notifyAll();
-      maybeScaleUpRunners(() -> jobStorage.getEligibleJobCount(System.currentTimeMillis()));
-    }
+    wakeUp();
   }
 
   @WorkerThread
@@ -268,8 +324,13 @@ class JobController {
 
     // We have no control over what happens in jobs' onFailure method, so we drop our lock to reduce the possibility of a deadlock
     if (inactiveJob != null) {
-      inactiveJob.onFailure();
-      Stream.of(inactiveJobDependents).forEach(Job::onFailure);
+      Job       failed     = inactiveJob;
+      List<Job> dependents = inactiveJobDependents;
+
+      runJobCallbacks(() -> {
+        failed.onFailure();
+        Stream.of(dependents).forEach(Job::onFailure);
+      });
     }
   }
 
@@ -333,10 +394,14 @@ class JobController {
                                     .map(jobSpec -> mapToJobWithInputData(jobSpec, outputData))
                                     .toList();
 
-      jobStorage.updateJobs(updates);
+      jobStorage.runInTransaction(() -> {
+        jobStorage.updateJobs(updates);
+        jobStorage.deleteJob(job.getId());
+      });
+    } else {
+      jobStorage.deleteJob(job.getId());
     }
 
-    jobStorage.deleteJob(job.getId());
     jobTracker.onStateChange(job, JobTracker.JobState.SUCCESS);
     notifyAll();
   }
@@ -455,7 +520,8 @@ class JobController {
 
     info.append("\n-- Additional Details\n");
     info.append("Runners started: ").append(runnersStarted.get()).append('\n');
-    info.append("General runner count: ").append(activeGeneralRunners.size()).append('\n');
+    info.append("General pool: ").append(generalPool).append('\n');
+    info.append("CPU pool: ").append(cpuPool).append('\n');
     info.append("Reserved runner count: ").append(reservedRunnerPredicates.size()).append("\n\n");
 
     if (additional != null) {
@@ -485,57 +551,106 @@ class JobController {
 
     int reservedId = 1;
     for (Predicate<MinimalJobSpec> predicate : reservedRunnerPredicates) {
-      JobRunner runner = new JobRunner(application, JobRunner.generateName(reservedId++, true, true), this, predicate == null ? NO_PREDICATE : predicate, 0);
+      JobRunner runner = new JobRunner(application, JobRunner.generateName(reservedId++, true, true), this, null, predicate == null ? NO_PREDICATE : predicate, 0);
       runner.start();
       Log.i(TAG, "Spawned new runner " + runner.getName());
     }
 
     int coreId = 1;
-    for (int i = 0; i < minGeneralRunners; i++) {
-      spawnGeneralRunner(coreId++, 0);
+    for (int i = 0; i < generalPool.getCoreRunners(); i++) {
+      spawnRunner(generalPool, coreId++, 0);
     }
 
-    maybeScaleUpRunners(() -> jobStorage.getEligibleJobCount(System.currentTimeMillis()));
+    for (int i = 0; i < cpuPool.getCoreRunners(); i++) {
+      spawnRunner(cpuPool, coreId++, 0);
+    }
+
+    maybeScaleUpRunners();
 
     notifyAll();
   }
 
   /**
-   * Scales up the number of {@link JobRunner}s to satisfy the number of eligible jobs, if needed.
+   * Scales up each pool to satisfy the number of eligible jobs it can run, if needed.
+   */
+  synchronized void maybeScaleUpRunners() {
+    long now = System.currentTimeMillis();
+
+    maybeScaleUpRunners(generalPool, () -> jobStorage.getEligibleJobCount(now, spec -> generalPool.getPredicate().test(spec)));
+    maybeScaleUpRunners(cpuPool, () -> jobStorage.getEligibleJobCount(now, spec -> cpuPool.getPredicate().test(spec)));
+  }
+
+  /**
+   * Scales up the number of {@link JobRunner}s in the pool to satisfy the number of eligible jobs, if needed.
    */
   @VisibleForTesting
-  synchronized void maybeScaleUpRunners(IntSupplier eligibleJobCountSupplier) {
+  synchronized void maybeScaleUpRunners(@NonNull JobRunnerPool pool, @NonNull IntSupplier eligibleJobCountSupplier) {
     if (!runnersStarted.get()) {
       return;
     }
 
-    int eligibleJobCount            = eligibleJobCountSupplier.getAsInt();
-    int activeRunners              = this.activeGeneralRunners.size();
-    int maxPossibleRunnersToSpawn  = maxGeneralRunners - activeRunners;
+    int eligibleJobCount           = eligibleJobCountSupplier.getAsInt();
+    int activeRunners              = pool.getActiveRunners().size();
+    int maxRunners                 = pool.getMaxRunners();
+    int maxPossibleRunnersToSpawn  = maxRunners - activeRunners;
     int runnersToCoverEligibleJobs = eligibleJobCount - activeRunners;
     int actualRunnersToSpawn       = Math.min(runnersToCoverEligibleJobs, maxPossibleRunnersToSpawn);
 
     if (actualRunnersToSpawn > 0) {
-      Log.i(TAG, "Spawning " + actualRunnersToSpawn + " new JobRunner(s) to meet demand. (CurrentActive: " + activeRunners + ", EligibleJobs: " + eligibleJobCount + ", MaxAllowed: " + maxGeneralRunners + ")");
+      Log.i(TAG, "Spawning " + actualRunnersToSpawn + " new " + pool.getName() + " JobRunner(s) to meet demand. (CurrentActive: " + activeRunners + ", EligibleJobs: " + eligibleJobCount + ", MaxAllowed: " + maxRunners + ")");
 
       for (int i = 0; i < actualRunnersToSpawn; i++) {
-        spawnGeneralRunner(nextRunnerId.incrementAndGet(), generalRunnerIdleTimeout);
+        spawnRunner(pool, nextRunnerId.incrementAndGet(), generalRunnerIdleTimeout);
       }
     }
   }
 
-  private synchronized void spawnGeneralRunner(int id, long timeOutMs) {
-    JobRunner runner = new JobRunner(application, JobRunner.generateName(id, false, timeOutMs == 0), this, NO_PREDICATE, timeOutMs);
+  private synchronized void spawnRunner(@NonNull JobRunnerPool pool, int id, long timeOutMs) {
+    String    name   = pool == cpuPool ? JobRunner.generateCpuName(id, timeOutMs == 0) : JobRunner.generateName(id, false, timeOutMs == 0);
+    JobRunner runner = new JobRunner(application, name, this, pool, pool.getPredicate(), timeOutMs);
     runner.start();
-    activeGeneralRunners.add(runner);
+    pool.getActiveRunners().add(runner);
 
-    Log.d(TAG, "Spawned new general runner " + runner.getName() + " (CurrentActive: " + activeGeneralRunners.size() + ")");
+    Log.d(TAG, "Spawned new " + pool.getName() + " runner " + runner.getName() + " (CurrentActive: " + pool.getActiveRunners().size() + ")");
   }
 
   @VisibleForTesting
   synchronized void onRunnerTerminated(@NonNull JobRunner runner) {
-    activeGeneralRunners.remove(runner);
-    Log.i(TAG, runner.getName() + " terminated. (CurrentActive: " + activeGeneralRunners.size() + ")");
+    JobRunnerPool pool = runner.getPool();
+    if (pool != null) {
+      pool.getActiveRunners().remove(runner);
+      Log.i(TAG, runner.getName() + " terminated. (CurrentActive: " + pool.getActiveRunners().size() + ")");
+    }
+  }
+
+  /**
+   * Lets a runner that isn't one of its pool's core runners know if it should stop, because its pool has more runners than it's currently allowed,
+   * e.g. because the device has started to overheat. This is what holds back CPU-bound jobs when the device is under load.
+   *
+   * @return True if the runner has been removed from its pool and should terminate.
+   */
+  synchronized boolean maybeRetireRunner(@NonNull JobRunner runner) {
+    JobRunnerPool pool = runner.getPool();
+    if (pool == null) {
+      return false;
+    }
+
+    List<JobRunner> activeRunners = pool.getActiveRunners();
+    int             maxRunners    = pool.getMaxRunners();
+
+    if (activeRunners.size() > maxRunners && activeRunners.remove(runner)) {
+      Log.i(TAG, runner.getName() + " retired, since the " + pool.getName() + " pool is over its limit. (CurrentActive: " + activeRunners.size() + ", MaxAllowed: " + maxRunners + ")");
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Called by a {@link JobRunner} after running a job, with how long it took and how much of that was spent on the CPU.
+   */
+  void onJobRan(@NonNull Job job, long wallNanos, long cpuNanos) {
+    workloadClassifier.onJobRan(job.getFactoryKey(), wallNanos, cpuNanos);
   }
 
   @WorkerThread
@@ -577,6 +692,36 @@ class JobController {
     return exceedsQueue;
   }
 
+  /**
+   * Runs callbacks into jobs right away, or once the current batch is in, if there is one.
+   */
+  private void runJobCallbacks(@NonNull Runnable callbacks) {
+    synchronized (this) {
+      if (currentBatch != null) {
+        currentBatch.jobCallbacks.add(callbacks);
+        return;
+      }
+    }
+
+    callbacks.run();
+  }
+
+  /**
+   * The scheduler only needs to be told once about each combination of initial delay and constraints.
+   */
+  private static @NonNull List<Job> distinctSchedules(@NonNull List<Job> jobs) {
+    Set<String> seen     = new HashSet<>();
+    List<Job>   distinct = new ArrayList<>();
+
+    for (Job job : jobs) {
+      if (seen.add(job.getParameters().getInitialDelay() + ":" + job.getParameters().getConstraintKeys())) {
+        distinct.add(job);
+      }
+    }
+
+    return distinct;
+  }
+
   @WorkerThread
   private void triggerOnSubmit(@NonNull List<List<Job>> chain) {
     Stream.of(chain)
@@ -640,6 +785,11 @@ class JobController {
 
   @WorkerThread
   private void scheduleJobs(@NonNull List<Job> jobs) {
+    if (currentBatch != null) {
+      currentBatch.jobsToSchedule.addAll(jobs);
+      return;
+    }
+
     for (Job job : jobs) {
       List<String>     constraintKeys = job.getParameters().getConstraintKeys();
       List<Constraint> constraints    = new ArrayList<>(constraintKeys.size());
@@ -742,4 +892,12 @@ class JobController {
     String runnerName,
     boolean coreRunner
   ) {}
+
+  /**
+   * What's been put off until the end of a {@link #submitBatch(List)}.
+   */
+  private static final class Batch {
+    private final List<Job>      jobsToSchedule = new ArrayList<>();
+    private final List<Runnable> jobCallbacks   = new ArrayList<>();
+  }
 }
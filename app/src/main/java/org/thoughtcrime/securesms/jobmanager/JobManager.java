@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +57,9 @@ public class JobManager implements ConstraintObserver.Notifier {
   @GuardedBy("emptyQueueListeners")
   private final Set<EmptyQueueListener> emptyQueueListeners = new CopyOnWriteArraySet<>();
 
+  /** Operations held by {@link #runInBatch(Runnable)} on each thread. */
+  private final ThreadLocal<List<Runnable>> batches = new ThreadLocal<>();
+
   private volatile boolean initialized = false;
   private volatile boolean shutdown    = false;
 
@@ -78,7 +82,9 @@ public class JobManager implements ConstraintObserver.Notifier {
                                            configuration.getMinGeneralRunners(),
                                            configuration.getMaxGeneralRunners(),
                                            configuration.getGeneralRunnerIdleTimeout(),
-                                           configuration.getReservedJobRunners());
+                                           configuration.getReservedJobRunners(),
+                                           new JobWorkloadClassifier(configuration.getCpuBoundFactories()),
+                                           new JobRunnerLimiter(application, configuration.getMaxGeneralRunners()));
 
     executor.execute(() -> {
       synchronized (this) {
@@ -171,7 +177,7 @@ public class JobManager implements ConstraintObserver.Notifier {
   public void add(@NonNull Job job, @NonNull Collection<String> dependsOn) {
     jobTracker.onStateChange(job, JobTracker.JobState.PENDING);
 
-    runOnExecutor(() -> {
+    submit(() -> {
       jobController.submitJobWithExistingDependencies(job, dependsOn, null);
       jobController.wakeUp();
     });
@@ -184,7 +190,7 @@ public class JobManager implements ConstraintObserver.Notifier {
   public void add(@NonNull Job job, @Nullable String dependsOnQueue) {
     jobTracker.onStateChange(job, JobTracker.JobState.PENDING);
 
-    runOnExecutor(() -> {
+    submit(() -> {
       jobController.submitJobWithExistingDependencies(job, Collections.emptyList(), dependsOnQueue);
     });
   }
@@ -196,7 +202,7 @@ public class JobManager implements ConstraintObserver.Notifier {
   public void add(@NonNull Job job, @NonNull Collection<String> dependsOn, @Nullable String dependsOnQueue) {
     jobTracker.onStateChange(job, JobTracker.JobState.PENDING);
 
-    runOnExecutor(() -> {
+    submit(() -> {
       jobController.submitJobWithExistingDependencies(job, dependsOn, dependsOnQueue);
     });
   }
@@ -210,7 +216,7 @@ public class JobManager implements ConstraintObserver.Notifier {
       jobTracker.onStateChange(job, JobTracker.JobState.PENDING);
     }
 
-    runOnExecutor(() -> {
+    submit(() -> {
       jobController.submitJobs(jobs);
     });
   }
@@ -228,9 +234,41 @@ public class JobManager implements ConstraintObserver.Notifier {
       }
     }
 
-    runOnExecutor(() -> {
-      jobController.submitNewJobChains(chains.stream().map(Chain::getJobListChain).collect(Collectors.toList()));
-    });
+    List<Runnable> batch = batches.get();
+    if (batch != null) {
+      for (Chain chain : chains) {
+        batch.add(() -> jobController.submitNewJobChain(chain.getJobListChain()));
+      }
+    } else {
+      runOnExecutor(() -> {
+        jobController.submitNewJobChains(chains.stream().map(Chain::getJobListChain).collect(Collectors.toList()));
+      });
+    }
+  }
+
+  /**
+   * Runs the block with batching turned on for the calling thread. Jobs added, chains enqueued and jobs canceled through this JobManager on
+   * this thread are held until the block finishes, and are then written to storage in a single transaction, with one wakeup of the scheduler
+   * and runners. This is much cheaper than submitting them one at a time when a lot of jobs are enqueued at once, like while processing a
+   * batch of messages.
+   *
+   * Calls within the block still return right away, like they normally do. Nested calls join the outermost batch. Anything that waits for a
+   * job to run, like {@link #runSynchronously(Job, long)}, sends off what's been held so far first, since it can't wait for the block to end.
+   */
+  public void runInBatch(@NonNull Runnable block) {
+    if (batches.get() != null) {
+      block.run();
+      return;
+    }
+
+    batches.set(new ArrayList<>());
+
+    try {
+      block.run();
+    } finally {
+      flushBatch();
+      batches.remove();
+    }
   }
 
   /**
@@ -258,21 +296,21 @@ public class JobManager implements ConstraintObserver.Notifier {
    * moment. Just like a normal failure, all later jobs in the same chain will also be failed.
    */
   public void cancel(@NonNull String id) {
-    runOnExecutor(() -> jobController.cancelJob(id));
+    submit(() -> jobController.cancelJob(id));
   }
 
   /**
    * Cancels all jobs in the specified queue. See {@link #cancel(String)} for details.
    */
   public void cancelAllInQueue(@NonNull String queue) {
-    runOnExecutor(() -> jobController.cancelAllInQueue(queue));
+    submit(() -> jobController.cancelAllInQueue(queue));
   }
 
   /**
    * Cancels all jobs in the specified queues. See {@link #cancel(String)} for details.
    */
   public void cancelAllInQueues(@NonNull Collection<String> queues) {
-    runOnExecutor(() -> {
+    submit(() -> {
       for (String queue : queues) {
         jobController.cancelAllInQueue(queue);
       }
@@ -285,7 +323,7 @@ public class JobManager implements ConstraintObserver.Notifier {
    * things up.
    */
   public void update(@NonNull JobUpdater updater) {
-    runOnExecutor(() -> jobController.update(updater));
+    submit(() -> jobController.update(updater));
   }
 
   /**
@@ -321,7 +359,7 @@ public class JobManager implements ConstraintObserver.Notifier {
       }
     });
 
-    add(job);
+    enqueueChain(new Chain(this, Collections.singletonList(job)), false);
 
     try {
       if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
@@ -399,6 +437,8 @@ public class JobManager implements ConstraintObserver.Notifier {
    */
   @WorkerThread
   public void flush() {
+    flushBatch();
+
     CountDownLatch latch = new CountDownLatch(1);
 
     runOnExecutor(latch::countDown);
@@ -456,17 +496,27 @@ public class JobManager implements ConstraintObserver.Notifier {
     runOnExecutor(jobController::wakeUp);
   }
 
-  private void enqueueChain(@NonNull Chain chain) {
+  /**
+   * @param allowBatching False if the caller is going to wait for the chain to run, in which case it can't be held by {@link #runInBatch(Runnable)}.
+   */
+  private void enqueueChain(@NonNull Chain chain, boolean allowBatching) {
     for (List<Job> jobList : chain.getJobListChain()) {
       for (Job job : jobList) {
         jobTracker.onStateChange(job, JobTracker.JobState.PENDING);
       }
     }
 
-    runOnExecutor(() -> {
+    Runnable operation = () -> {
       jobController.submitNewJobChain(chain.getJobListChain());
       jobController.wakeUp();
-    });
+    };
+
+    if (allowBatching) {
+      submit(operation);
+    } else {
+      flushBatch();
+      runOnExecutor(operation);
+    }
   }
 
   private void onEmptyQueue() {
@@ -479,6 +529,34 @@ public class JobManager implements ConstraintObserver.Notifier {
     });
   }
 
+  /**
+   * Runs an operation that changes the job queue, which is held until the end of the batch if one is open on this thread. Otherwise it's run
+   * via {@link #runOnExecutor(Runnable)}.
+   */
+  private void submit(@NonNull Runnable operation) {
+    List<Runnable> batch = batches.get();
+
+    if (batch != null) {
+      batch.add(operation);
+    } else {
+      runOnExecutor(operation);
+    }
+  }
+
+  /**
+   * Sends off everything held by the batch on this thread, if there is one, so nothing that comes after it can get ahead of it.
+   */
+  private void flushBatch() {
+    List<Runnable> batch = batches.get();
+
+    if (batch != null && !batch.isEmpty()) {
+      List<Runnable> operations = new ArrayList<>(batch);
+      batch.clear();
+
+      runOnExecutor(() -> jobController.submitBatch(operations));
+    }
+  }
+
   /**
    * Anything that you want to ensure happens off of the main thread and after initialization, run
    * it through here.
@@ -554,15 +632,19 @@ public class JobManager implements ConstraintObserver.Notifier {
     }
 
     public void enqueue() {
-      jobManager.enqueueChain(this);
+      jobManager.enqueueChain(this, true);
     }
 
     public void enqueue(@NonNull JobTracker.JobListener listener) {
+      addListener(listener);
+      enqueue();
+    }
+
+    private void addListener(@NonNull JobTracker.JobListener listener) {
       List<Job> lastChain          = jobs.get(jobs.size() - 1);
       Job       lastJobInLastChain = lastChain.get(lastChain.size() - 1);
 
       jobManager.addListener(lastJobInLastChain.getId(), listener);
-      enqueue();
     }
 
     public Optional<JobTracker.JobState> enqueueAndBlockUntilCompletion(long timeout) {
@@ -579,7 +661,8 @@ public class JobManager implements ConstraintObserver.Notifier {
         }
       };
 
-      enqueue(listener);
+      addListener(listener);
+      jobManager.enqueueChain(this, false);
 
       try {
         if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
@@ -612,6 +695,7 @@ public class JobManager implements ConstraintObserver.Notifier {
     private final JobMigrator                     jobMigrator;
     private final JobTracker                      jobTracker;
     private final List<Predicate<MinimalJobSpec>> reservedJobRunners;
+    private final Set<String>                     cpuBoundFactories;
 
     private Configuration(int minGeneralRunners,
                           int maxGeneralRunners,
@@ -623,7 +707,8 @@ public class JobManager implements ConstraintObserver.Notifier {
                           @NonNull JobStorage jobStorage,
                           @NonNull JobMigrator jobMigrator,
                           @NonNull JobTracker jobTracker,
-                          @NonNull List<Predicate<MinimalJobSpec>> reservedJobRunners)
+                          @NonNull List<Predicate<MinimalJobSpec>> reservedJobRunners,
+                          @NonNull Set<String> cpuBoundFactories)
     {
       this.executorFactory          = executorFactory;
       this.minGeneralRunners        = minGeneralRunners;
@@ -636,6 +721,7 @@ public class JobManager implements ConstraintObserver.Notifier {
       this.jobMigrator              = jobMigrator;
       this.jobTracker               = jobTracker;
       this.reservedJobRunners       = new ArrayList<>(reservedJobRunners);
+      this.cpuBoundFactories        = new HashSet<>(cpuBoundFactories);
     }
 
     int getMinGeneralRunners() {
@@ -683,6 +769,10 @@ public class JobManager implements ConstraintObserver.Notifier {
       return reservedJobRunners;
     }
 
+    @NonNull Set<String> getCpuBoundFactories() {
+      return cpuBoundFactories;
+    }
+
     public static class Builder {
 
       private ExecutorFactory                 executorFactory          = new DefaultExecutorFactory();
@@ -696,6 +786,7 @@ public class JobManager implements ConstraintObserver.Notifier {
       private JobMigrator                     jobMigrator              = null;
       private JobTracker                      jobTracker               = new JobTracker();
       private List<Predicate<MinimalJobSpec>> reservedJobRunners       = new ArrayList<>();
+      private Set<String>                     cpuBoundFactories        = new HashSet<>();
 
       public @NonNull Builder setMinGeneralRunners(int minGeneralRunners) {
         this.minGeneralRunners = minGeneralRunners;
@@ -717,6 +808,15 @@ public class JobManager implements ConstraintObserver.Notifier {
         return this;
       }
 
+      /**
+       * Factories whose jobs are known to spend most of their time on the CPU, and should be run in the CPU pool from the start. Other factories
+       * are moved there if they turn out to be CPU-bound when they run.
+       */
+      public @NonNull Builder setCpuBoundFactories(@NonNull Set<String> cpuBoundFactories) {
+        this.cpuBoundFactories = cpuBoundFactories;
+        return this;
+      }
+
       public @NonNull Builder setExecutorFactory(@NonNull ExecutorFactory executorFactory) {
         this.executorFactory = executorFactory;
         return this;
@@ -758,7 +858,8 @@ public class JobManager implements ConstraintObserver.Notifier {
                                  jobStorage,
                                  jobMigrator,
                                  jobTracker,
-                                 reservedJobRunners);
+                                 reservedJobRunners,
+                                 cpuBoundFactories);
       }
     }
   }
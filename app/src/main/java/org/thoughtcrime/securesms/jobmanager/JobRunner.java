@@ -1,11 +1,14 @@
 package org.thoughtcrime.securesms.jobmanager;
 
 import android.app.Application;
+import android.os.Debug;
 import android.os.PowerManager;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.signal.core.util.logging.Log;
+import org.signal.core.util.metrics.Metrics;
 import org.thoughtcrime.securesms.jobs.MinimalJobSpec;
 import org.thoughtcrime.securesms.util.WakeLockUtil;
 
@@ -27,28 +30,43 @@ class JobRunner extends Thread {
 
   private static long WAKE_LOCK_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
 
+  /** Histogram of how long each job's {@link Job#run()} takes, labeled by factory key. */
+  static final String METRIC_JOB_RUN = "job.run";
+
   private final Application               application;
   private final JobController             jobController;
+  private final JobRunnerPool             pool;
   private final Predicate<MinimalJobSpec> jobPredicate;
   private final long                      idleTimeoutMs;
 
   /**
+   * @param pool          The pool this runner belongs to, or null for reserved runners.
    * @param idleTimeoutMs If the runner experiences no activity within this duration, it will terminate. If set to 0, it will never terminate.
    */
-  JobRunner(@NonNull Application application, @NonNull String name, @NonNull JobController jobController, @NonNull Predicate<MinimalJobSpec> predicate, long idleTimeoutMs) {
+  JobRunner(@NonNull Application application, @NonNull String name, @NonNull JobController jobController, @Nullable JobRunnerPool pool, @NonNull Predicate<MinimalJobSpec> predicate, long idleTimeoutMs) {
     super(name);
 
     this.application   = application;
     this.jobController = jobController;
+    this.pool          = pool;
     this.jobPredicate  = predicate;
     this.idleTimeoutMs = idleTimeoutMs;
   }
 
+  @Nullable JobRunnerPool getPool() {
+    return pool;
+  }
+
   @Override
   public synchronized void run() {
     Log.i(TAG, getName() + " started" + (idleTimeoutMs > 0 ? " with idle timeout " + idleTimeoutMs + "ms" : " with no idle timeout"));
     
     while (true) {
+      if (idleTimeoutMs > 0 && jobController.maybeRetireRunner(this)) {
+        Log.i(TAG, getName() + " terminating because its pool is over its limit");
+        break;
+      }
+
       Job job = jobController.pullNextEligibleJobForExecution(jobPredicate, getName(), idleTimeoutMs);
       if (job == null && idleTimeoutMs > 0) {
         Log.i(TAG, getName() + " terminating due to inactivity");
@@ -59,7 +77,19 @@ class JobRunner extends Thread {
         continue;
       }
 
-      Job.Result result = run(job);
+      Job.Result result;
+
+      if (pool != null) {
+        pool.onJobStarted();
+      }
+
+      try {
+        result = run(job);
+      } finally {
+        if (pool != null) {
+          pool.onJobFinished();
+        }
+      }
 
       jobController.onJobFinished(job);
 
@@ -91,12 +121,16 @@ class JobRunner extends Thread {
       return Job.Result.failure();
     }
 
-    Job.Result            result   = null;
-    PowerManager.WakeLock wakeLock = null;
+    Job.Result            result    = null;
+    PowerManager.WakeLock wakeLock  = null;
+    long                  wallStart = 0;
+    long                  cpuStart  = 0;
 
     try {
-      wakeLock = WakeLockUtil.acquire(application, PowerManager.PARTIAL_WAKE_LOCK, WAKE_LOCK_TIMEOUT, job.getId());
-      result   = job.run();
+      wakeLock  = WakeLockUtil.acquire(application, PowerManager.PARTIAL_WAKE_LOCK, WAKE_LOCK_TIMEOUT, job.getId());
+      wallStart = System.nanoTime();
+      cpuStart  = Debug.threadCpuTimeNanos();
+      result    = job.run();
 
       if (job.isCanceled()) {
         Log.w(TAG, JobLogger.format(job, getName(), "Failing because the job was canceled."));
@@ -109,6 +143,10 @@ class JobRunner extends Thread {
       Log.w(TAG, JobLogger.format(job, getName(), "Failing due to an unexpected exception."), e);
       return Job.Result.failure();
     } finally {
+      if (wallStart != 0) {
+        onJobRan(job, System.nanoTime() - wallStart, cpuStart);
+      }
+
       if (wakeLock != null) {
         WakeLockUtil.release(wakeLock, job.getId());
       }
@@ -127,6 +165,17 @@ class JobRunner extends Thread {
     return result;
   }
 
+  /**
+   * Every run is timed, rather than a sample, since the CPU share of each run is what decides which pool the job's factory belongs to.
+   */
+  private void onJobRan(@NonNull Job job, long wallNanos, long cpuStart) {
+    long cpuEnd   = Debug.threadCpuTimeNanos();
+    long cpuNanos = cpuStart >= 0 && cpuEnd >= 0 ? cpuEnd - cpuStart : -1;
+
+    Metrics.histogram(METRIC_JOB_RUN, job.getFactoryKey()).record(wallNanos);
+    jobController.onJobRan(job, wallNanos, cpuNanos);
+  }
+
   private boolean isJobExpired(@NonNull Job job) {
     long expirationTime = job.getParameters().getCreateTime() + job.getParameters().getLifespan();
 
@@ -158,4 +207,8 @@ class JobRunner extends Thread {
 
     return "JobRunner-Temp-" + id;
   }
+
+  static @NonNull String generateCpuName(int id, boolean core) {
+    return core ? "JobRunner-Cpu-Core-" + id : "JobRunner-Cpu-Temp-" + id;
+  }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.jobmanager
+
+import android.app.Application
+import android.os.Build
+import android.os.PowerManager
+import androidx.annotation.VisibleForTesting
+import org.thoughtcrime.securesms.util.ServiceUtil
+import java.util.concurrent.TimeUnit
+
+/**
+ * Decides how far [JobController]'s runner pools may grow, based on the number of cores and how hot and power-constrained the device is.
+ *
+ * CPU-bound jobs get at most one runner per core (less one, for the UI). When the device is getting hot or is in power save mode, that's halved,
+ * and once it's severely throttled, CPU-bound jobs are run one at a time and the general pool is halved too. Jobs beyond that wait in the queue.
+ */
+open class JobRunnerLimiter(
+  private val application: Application,
+  private val maxGeneralRunners: Int,
+  private val processors: Int = Runtime.getRuntime().availableProcessors()
+) {
+
+  companion object {
+    private val REFRESH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10)
+
+    @VisibleForTesting
+    fun limitsFor(processors: Int, maxGeneralRunners: Int, thermalStatus: Int, powerSaveMode: Boolean): Limits {
+      val cpu = (processors - 1).coerceAtLeast(1)
+
+      return when {
+        thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE -> Limits(maxGeneralRunners = (maxGeneralRunners / 2).coerceAtLeast(1), maxCpuRunners = 1)
+        thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE || powerSaveMode -> Limits(maxGeneralRunners, (cpu / 2).coerceAtLeast(1))
+        else -> Limits(maxGeneralRunners, cpu)
+      }
+    }
+  }
+
+  @Volatile
+  private var limits: Limits? = null
+
+  @Volatile
+  private var lastRefreshTime = 0L
+
+  /** The most runners the general pool, which runs everything that isn't CPU-bound, may have. */
+  open fun getMaxGeneralRunners(): Int = getLimits().maxGeneralRunners
+
+  /** The most runners the pool of CPU-bound jobs may have. */
+  open fun getMaxCpuRunners(): Int = getLimits().maxCpuRunners
+
+  private fun getLimits(): Limits {
+    val now = System.currentTimeMillis()
+    val current = limits
+
+    if (current != null && now - lastRefreshTime < REFRESH_INTERVAL_MS) {
+      return current
+    }
+
+    val powerManager = ServiceUtil.getPowerManager(application)
+    val thermalStatus = if (Build.VERSION.SDK_INT >= 29) powerManager.currentThermalStatus else PowerManager.THERMAL_STATUS_NONE
+
+    return limitsFor(processors, maxGeneralRunners, thermalStatus, powerManager.isPowerSaveMode).also {
+      limits = it
+      lastRefreshTime = now
+    }
+  }
+
+  data class Limits(val maxGeneralRunners: Int, val maxCpuRunners: Int)
+}
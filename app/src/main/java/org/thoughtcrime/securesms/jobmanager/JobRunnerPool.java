@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.jobmanager;
+
+import androidx.annotation.NonNull;
+
+import org.signal.core.util.metrics.Metrics;
+import org.thoughtcrime.securesms.jobs.MinimalJobSpec;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A set of {@link JobRunner}s that share a predicate, and that {@link JobController} grows and shrinks between a fixed number of core runners and
+ * a limit that can change over time.
+ * <p>
+ * The pool's size, how many of its runners are busy and its limit are reported to {@link Metrics} as gauges labeled with the pool's name.
+ */
+final class JobRunnerPool {
+
+  private final String                    name;
+  private final Predicate<MinimalJobSpec> predicate;
+  private final int                       coreRunners;
+  private final IntSupplier               maxRunners;
+  private final List<JobRunner>           activeRunners;
+  private final AtomicInteger             busyRunners;
+
+  JobRunnerPool(@NonNull String name, @NonNull Predicate<MinimalJobSpec> predicate, int coreRunners, @NonNull IntSupplier maxRunners) {
+    this.name          = name;
+    this.predicate     = predicate;
+    this.coreRunners   = coreRunners;
+    this.maxRunners    = maxRunners;
+    this.activeRunners = new CopyOnWriteArrayList<>();
+    this.busyRunners   = new AtomicInteger(0);
+
+    Metrics.registerGauge("job.pool.runners", name, activeRunners::size);
+    Metrics.registerGauge("job.pool.busy", name, busyRunners::get);
+    Metrics.registerGauge("job.pool.limit", name, this::getMaxRunners);
+    Metrics.registerGauge("job.pool.utilization", name, this::getUtilizationPercent);
+  }
+
+  @NonNull String getName() {
+    return name;
+  }
+
+  @NonNull Predicate<MinimalJobSpec> getPredicate() {
+    return predicate;
+  }
+
+  int getCoreRunners() {
+    return coreRunners;
+  }
+
+  /**
+   * The current limit, which is never less than the number of core runners.
+   */
+  int getMaxRunners() {
+    return Math.max(coreRunners, maxRunners.getAsInt());
+  }
+
+  @NonNull List<JobRunner> getActiveRunners() {
+    return activeRunners;
+  }
+
+  void onJobStarted() {
+    busyRunners.incrementAndGet();
+  }
+
+  void onJobFinished() {
+    busyRunners.decrementAndGet();
+  }
+
+  /**
+   * @return The percentage of active runners that are running a job right now.
+   */
+  long getUtilizationPercent() {
+    int active = activeRunners.size();
+    return active == 0 ? 0 : busyRunners.get() * 100L / active;
+  }
+
+  @Override
+  public @NonNull String toString() {
+    return name + " (active: " + activeRunners.size() + ", busy: " + busyRunners.get() + ", core: " + coreRunners + ", max: " + getMaxRunners() + ")";
+  }
+}
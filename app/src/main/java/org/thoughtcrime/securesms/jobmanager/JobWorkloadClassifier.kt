@@ -0,0 +1,76 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.jobmanager
+
+import org.signal.core.util.logging.Log
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Decides whether jobs are CPU-bound or mostly waiting on I/O, by factory, so [JobController] can run them in separate pools.
+ *
+ * Factories can be declared CPU-bound up front. Everything else starts out as I/O-bound and is reclassified based on how much of each run was
+ * spent on the CPU, as reported through [onJobRan].
+ */
+class JobWorkloadClassifier(declaredCpuBoundFactories: Set<String>) {
+
+  companion object {
+    private val TAG = Log.tag(JobWorkloadClassifier::class.java)
+
+    /** Runs shorter than this don't say much either way, and are ignored. */
+    private val MIN_WALL_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(20)
+
+    private const val MIN_SAMPLES = 3
+
+    /** Weight given to each new run in the moving average. */
+    private const val SMOOTHING = 0.3
+
+    /** A factory becomes CPU-bound above this fraction of time on the CPU, and goes back to I/O-bound below [IO_BOUND_RATIO]. */
+    private const val CPU_BOUND_RATIO = 0.6
+    private const val IO_BOUND_RATIO = 0.4
+  }
+
+  private val declared: Set<String> = declaredCpuBoundFactories.toSet()
+  private val learned: MutableSet<String> = ConcurrentHashMap.newKeySet()
+  private val samples = ConcurrentHashMap<String, CpuRatio>()
+
+  fun isCpuBound(factoryKey: String): Boolean {
+    return factoryKey in declared || factoryKey in learned
+  }
+
+  /**
+   * @param cpuNanos Time the runner thread spent on the CPU during the run, or a negative value if that isn't known.
+   */
+  fun onJobRan(factoryKey: String, wallNanos: Long, cpuNanos: Long) {
+    if (cpuNanos < 0 || wallNanos < MIN_WALL_TIME_NANOS || factoryKey in declared) {
+      return
+    }
+
+    val ratio = samples.computeIfAbsent(factoryKey) { CpuRatio() }.add(cpuNanos.toDouble() / wallNanos) ?: return
+
+    if (ratio >= CPU_BOUND_RATIO && learned.add(factoryKey)) {
+      Log.i(TAG, "$factoryKey is now considered CPU-bound. (ratio: $ratio)")
+    } else if (ratio < IO_BOUND_RATIO && learned.remove(factoryKey)) {
+      Log.i(TAG, "$factoryKey is now considered I/O-bound. (ratio: $ratio)")
+    }
+  }
+
+  private class CpuRatio {
+    private var count = 0
+    private var average = 0.0
+
+    /**
+     * @return The updated average, or null if there aren't enough samples to go on yet.
+     */
+    @Synchronized
+    fun add(ratio: Double): Double? {
+      average = if (count == 0) ratio else average + SMOOTHING * (ratio - average)
+      count++
+
+      return if (count >= MIN_SAMPLES) average else null
+    }
+  }
+}
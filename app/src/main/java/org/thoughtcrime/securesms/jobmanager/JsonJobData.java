@@ -7,8 +7,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import org.signal.core.util.logging.Log;
 import org.signal.core.util.Base64;
+import org.thoughtcrime.securesms.jobs.protos.JsonJobDataValues;
 import org.thoughtcrime.securesms.util.JsonUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -18,12 +20,22 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+/**
+ * Key-value data for jobs. Despite the name, it's serialized as a {@link JsonJobDataValues} proto, which is much smaller and faster to read
+ * and write than JSON. Data serialized as JSON by older versions is still read, and is converted the next time the job is serialized.
+ */
 public class JsonJobData {
 
   public static final String TAG = Log.tag(JsonJobData.class);
 
   public static final JsonJobData EMPTY = new JsonJobData.Builder().build();
 
+  /**
+   * The first byte of data in the binary format. Neither JSON nor a proto can start with a zero byte, so this tells it apart from both legacy
+   * data and job data that's a proto of its own.
+   */
+  private static final byte BINARY_FORMAT = 0;
+
   @JsonProperty private final Map<String, String>    strings;
   @JsonProperty private final Map<String, String[]>  stringArrays;
   @JsonProperty private final Map<String, Integer>   integers;
@@ -43,9 +55,9 @@ public class JsonJobData {
     }
 
     try {
-      return JsonUtils.fromJson(data, JsonJobData.class);
+      return isBinary(data) ? fromBinary(data) : JsonUtils.fromJson(data, JsonJobData.class);
     } catch (IOException e) {
-      Log.e(TAG, "Failed to deserialize JSON.", e);
+      Log.e(TAG, "Failed to deserialize.", e);
       throw new AssertionError(e);
     }
   }
@@ -56,7 +68,7 @@ public class JsonJobData {
     }
 
     try {
-      return JsonUtils.fromJson(data, JsonJobData.class);
+      return isBinary(data) ? fromBinary(data) : JsonUtils.fromJson(data, JsonJobData.class);
     } catch (IOException e) {
       return null;
     }
@@ -305,14 +317,166 @@ public class JsonJobData {
   public @Nullable byte[] serialize() {
     if (isEmpty()) {
       return null;
-    } else {
+    } else if (hasNullStringArrayElements()) {
+      // A proto can't hold a null in a list, so this is the one case left for JSON
       try {
         return JsonUtils.toJson(this).getBytes(StandardCharsets.UTF_8);
       } catch (IOException e) {
         Log.e(TAG, "Failed to serialize to JSON.", e);
         throw new AssertionError(e);
       }
+    } else {
+      return toBinary();
+    }
+  }
+
+  private boolean hasNullStringArrayElements() {
+    for (String[] array : stringArrays.values()) {
+      for (String value : array) {
+        if (value == null) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private @NonNull byte[] toBinary() {
+    List<JsonJobDataValues.StringEntry> stringEntries = new ArrayList<>(strings.size());
+    for (Map.Entry<String, String> entry : strings.entrySet()) {
+      stringEntries.add(new JsonJobDataValues.StringEntry.Builder().key(entry.getKey()).value_(entry.getValue()).build());
+    }
+
+    Map<String, JsonJobDataValues.StringList> stringLists = new HashMap<>(stringArrays.size());
+    for (Map.Entry<String, String[]> entry : stringArrays.entrySet()) {
+      stringLists.put(entry.getKey(), new JsonJobDataValues.StringList.Builder().values(Arrays.asList(entry.getValue())).build());
+    }
+
+    Map<String, JsonJobDataValues.IntList> intLists = new HashMap<>(integerArrays.size());
+    for (Map.Entry<String, int[]> entry : integerArrays.entrySet()) {
+      List<Integer> values = new ArrayList<>(entry.getValue().length);
+      for (int value : entry.getValue()) {
+        values.add(value);
+      }
+      intLists.put(entry.getKey(), new JsonJobDataValues.IntList.Builder().values(values).build());
+    }
+
+    Map<String, JsonJobDataValues.LongList> longLists = new HashMap<>(longArrays.size());
+    for (Map.Entry<String, long[]> entry : longArrays.entrySet()) {
+      List<Long> values = new ArrayList<>(entry.getValue().length);
+      for (long value : entry.getValue()) {
+        values.add(value);
+      }
+      longLists.put(entry.getKey(), new JsonJobDataValues.LongList.Builder().values(values).build());
+    }
+
+    Map<String, JsonJobDataValues.FloatList> floatLists = new HashMap<>(floatArrays.size());
+    for (Map.Entry<String, float[]> entry : floatArrays.entrySet()) {
+      List<Float> values = new ArrayList<>(entry.getValue().length);
+      for (float value : entry.getValue()) {
+        values.add(value);
+      }
+      floatLists.put(entry.getKey(), new JsonJobDataValues.FloatList.Builder().values(values).build());
+    }
+
+    Map<String, JsonJobDataValues.DoubleList> doubleLists = new HashMap<>(doubleArrays.size());
+    for (Map.Entry<String, double[]> entry : doubleArrays.entrySet()) {
+      List<Double> values = new ArrayList<>(entry.getValue().length);
+      for (double value : entry.getValue()) {
+        values.add(value);
+      }
+      doubleLists.put(entry.getKey(), new JsonJobDataValues.DoubleList.Builder().values(values).build());
+    }
+
+    Map<String, JsonJobDataValues.BooleanList> booleanLists = new HashMap<>(booleanArrays.size());
+    for (Map.Entry<String, boolean[]> entry : booleanArrays.entrySet()) {
+      List<Boolean> values = new ArrayList<>(entry.getValue().length);
+      for (boolean value : entry.getValue()) {
+        values.add(value);
+      }
+      booleanLists.put(entry.getKey(), new JsonJobDataValues.BooleanList.Builder().values(values).build());
+    }
+
+    byte[] encoded = new JsonJobDataValues.Builder()
+                                          .strings(stringEntries)
+                                          .stringArrays(stringLists)
+                                          .integers(integers)
+                                          .integerArrays(intLists)
+                                          .longs(longs)
+                                          .longArrays(longLists)
+                                          .floats(floats)
+                                          .floatArrays(floatLists)
+                                          .doubles(doubles)
+                                          .doubleArrays(doubleLists)
+                                          .booleans(booleans)
+                                          .booleanArrays(booleanLists)
+                                          .build()
+                                          .encode();
+
+    byte[] serialized = new byte[encoded.length + 1];
+    serialized[0] = BINARY_FORMAT;
+    System.arraycopy(encoded, 0, serialized, 1, encoded.length);
+
+    return serialized;
+  }
+
+  private static boolean isBinary(@NonNull byte[] data) {
+    return data.length > 0 && data[0] == BINARY_FORMAT;
+  }
+
+  private static @NonNull JsonJobData fromBinary(@NonNull byte[] data) throws IOException {
+    JsonJobDataValues values  = JsonJobDataValues.ADAPTER.decode(new ByteArrayInputStream(data, 1, data.length - 1));
+    Builder           builder = new Builder();
+
+    for (JsonJobDataValues.StringEntry entry : values.strings) {
+      builder.putString(entry.key, entry.value_);
     }
+
+    for (Map.Entry<String, JsonJobDataValues.StringList> entry : values.stringArrays.entrySet()) {
+      builder.putStringListAsArray(entry.getKey(), entry.getValue().values);
+    }
+
+    builder.integers.putAll(values.integers);
+    for (Map.Entry<String, JsonJobDataValues.IntList> entry : values.integerArrays.entrySet()) {
+      builder.putIntegerListAsArray(entry.getKey(), entry.getValue().values);
+    }
+
+    builder.longs.putAll(values.longs);
+    for (Map.Entry<String, JsonJobDataValues.LongList> entry : values.longArrays.entrySet()) {
+      builder.putLongListAsArray(entry.getKey(), entry.getValue().values);
+    }
+
+    builder.floats.putAll(values.floats);
+    for (Map.Entry<String, JsonJobDataValues.FloatList> entry : values.floatArrays.entrySet()) {
+      List<Float> list  = entry.getValue().values;
+      float[]     array = new float[list.size()];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = list.get(i);
+      }
+      builder.putFloatArray(entry.getKey(), array);
+    }
+
+    builder.doubles.putAll(values.doubles);
+    for (Map.Entry<String, JsonJobDataValues.DoubleList> entry : values.doubleArrays.entrySet()) {
+      List<Double> list  = entry.getValue().values;
+      double[]     array = new double[list.size()];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = list.get(i);
+      }
+      builder.putDoubleArray(entry.getKey(), array);
+    }
+
+    builder.booleans.putAll(values.booleans);
+    for (Map.Entry<String, JsonJobDataValues.BooleanList> entry : values.booleanArrays.entrySet()) {
+      List<Boolean> list  = entry.getValue().values;
+      boolean[]     array = new boolean[list.size()];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = list.get(i);
+      }
+      builder.putBooleanArray(entry.getKey(), array);
+    }
+
+    return builder.build();
   }
 
 
@@ -11,6 +11,12 @@ interface JobStorage {
   @WorkerThread
   fun insertJobs(fullSpecs: List<FullSpec>)
 
+  /**
+   * Runs the [block] such that every change it makes to storage is written in a single transaction.
+   */
+  @WorkerThread
+  fun runInTransaction(block: Runnable)
+
   @WorkerThread
   fun getJobSpec(id: String): JobSpec?
 
@@ -23,6 +29,13 @@ interface JobStorage {
   @WorkerThread
   fun getEligibleJobCount(currentTime: Long): Int
 
+  /**
+   * Like [getEligibleJobCount], but only counts jobs that match the [filter]. As with [getNextEligibleJob], a pending migration job is counted
+   * regardless of the filter.
+   */
+  @WorkerThread
+  fun getEligibleJobCount(currentTime: Long, filter: (MinimalJobSpec) -> Boolean): Int
+
   @WorkerThread
   fun getJobsInQueue(queue: String): List<JobSpec>
 
@@ -11,6 +11,7 @@ import org.greenrobot.eventbus.EventBus
 import org.signal.core.util.Base64
 import org.signal.core.util.Hex
 import org.signal.core.util.logging.Log
+import org.signal.core.util.mebiBytes
 import org.signal.libsignal.protocol.InvalidMacException
 import org.signal.libsignal.protocol.InvalidMessageException
 import org.thoughtcrime.securesms.attachments.Attachment
@@ -44,6 +45,7 @@ import org.whispersystems.signalservice.api.push.exceptions.MissingConfiguration
 import org.whispersystems.signalservice.api.push.exceptions.NonSuccessfulResponseCodeException
 import org.whispersystems.signalservice.api.push.exceptions.PushNetworkException
 import org.whispersystems.signalservice.api.push.exceptions.RangeException
+import org.whispersystems.signalservice.internal.push.http.SegmentedDownloader
 import java.io.File
 import java.io.IOException
 import java.util.Optional
@@ -67,6 +69,9 @@ class AttachmentDownloadJob private constructor(
     private const val KEY_ATTACHMENT_ID = "part_row_id"
     private const val KEY_MANUAL = "part_manual"
 
+    /** Below this, a single request is about as fast and avoids the extra round trip to learn the file's length. */
+    private val SEGMENTED_DOWNLOAD_THRESHOLD = 10.mebiBytes.inWholeBytes
+
     @JvmStatic
     fun constructQueueString(attachmentId: AttachmentId): String {
       return "AttachmentDownloadJob-" + attachmentId.id
@@ -126,6 +131,18 @@ class AttachmentDownloadJob private constructor(
         }
       }
     }
+
+    /**
+     * @return A downloader to fetch an attachment of [size] bytes in parallel segments with, or null if it should be fetched with a single request.
+     */
+    @JvmStatic
+    fun getSegmentedDownloader(size: Long): SegmentedDownloader? {
+      return if (RemoteConfig.segmentedDownloads && size >= SEGMENTED_DOWNLOAD_THRESHOLD) {
+        SegmentedDownloader()
+      } else {
+        null
+      }
+    }
   }
 
   constructor(messageId: Long, attachmentId: AttachmentId, manual: Boolean) : this(
@@ -307,7 +324,8 @@ class AttachmentDownloadJob private constructor(
           attachmentFile,
           maxReceiveSize,
           IntegrityCheck.forEncryptedDigestAndPlaintextHash(attachment.remoteDigest, attachment.dataHash),
-          progressListener
+          progressListener,
+          getSegmentedDownloader(attachment.size)
         )
 
       decryptingStream.use { input ->
@@ -315,7 +333,7 @@ class AttachmentDownloadJob private constructor(
       }
     } catch (e: RangeException) {
       Log.w(TAG, "[$attachmentId] Range exception, file size " + attachmentFile.length(), e)
-      if (attachmentFile.delete()) {
+      if (SegmentedDownloader.deletePartialDownload(attachmentFile)) {
         Log.i(TAG, "[$attachmentId] Deleted temp download file to recover")
         throw RetryLaterException(e)
       } else {
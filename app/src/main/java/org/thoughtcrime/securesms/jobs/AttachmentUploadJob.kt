@@ -44,6 +44,7 @@ import org.whispersystems.signalservice.api.messages.SignalServiceAttachmentStre
 import org.whispersystems.signalservice.api.push.exceptions.NonSuccessfulResumableUploadResponseCodeException
 import org.whispersystems.signalservice.api.push.exceptions.ResumeLocationInvalidException
 import org.whispersystems.signalservice.internal.crypto.PaddingInputStream
+import org.whispersystems.signalservice.internal.push.http.ChunkedAttachmentUploader
 import java.io.IOException
 import java.util.concurrent.TimeUnit
 import kotlin.time.Duration.Companion.days
@@ -160,9 +161,14 @@ class AttachmentUploadJob private constructor(
       }
     }
 
+    if (uploadSpec == null) {
+      uploadSpec = getCheckpointedUploadSpec(databaseAttachment)
+    }
+
     if (uploadSpec != null && System.currentTimeMillis() > uploadSpec!!.timeout) {
       Log.w(TAG, "Upload spec expired! Clearing.")
       uploadSpec = null
+      SignalDatabase.attachments.clearUploadCheckpoint(attachmentId)
     }
 
     if (uploadSpec == null) {
@@ -186,7 +192,14 @@ class AttachmentUploadJob private constructor(
     try {
       getAttachmentNotificationIfNeeded(databaseAttachment).use { notification ->
         buildAttachmentStream(databaseAttachment, notification, uploadSpec!!).use { localAttachment ->
-          val uploadResult: AttachmentUploadResult = SignalNetwork.attachments.uploadAttachmentV4(localAttachment).successOrThrow()
+          val uploadResult: AttachmentUploadResult = if (shouldUploadInChunks(databaseAttachment)) {
+            val spec = uploadSpec!!
+            SignalNetwork.attachments.uploadAttachmentV4(localAttachment, ChunkedAttachmentUploader()) { committedLength ->
+              SignalDatabase.attachments.setUploadCheckpoint(attachmentId, spec, committedLength)
+            }
+          } else {
+            SignalNetwork.attachments.uploadAttachmentV4(localAttachment)
+          }.successOrThrow()
           SignalDatabase.attachments.finalizeAttachmentAfterUpload(databaseAttachment.attachmentId, uploadResult)
           if (SignalStore.backup.backsUpMedia) {
             val messageId = SignalDatabase.attachments.getMessageId(databaseAttachment.attachmentId)
@@ -237,6 +250,7 @@ class AttachmentUploadJob private constructor(
       if (e.code == 400) {
         Log.w(TAG, "Failed to upload due to a 400 when getting resumable upload information. Clearing upload spec.", e)
         uploadSpec = null
+        SignalDatabase.attachments.clearUploadCheckpoint(attachmentId)
       }
 
       resetProgressListeners(databaseAttachment)
@@ -245,6 +259,7 @@ class AttachmentUploadJob private constructor(
     } catch (e: ResumeLocationInvalidException) {
       Log.w(TAG, "Resume location invalid. Clearing upload spec.", e)
       uploadSpec = null
+      SignalDatabase.attachments.clearUploadCheckpoint(attachmentId)
 
       resetProgressListeners(databaseAttachment)
 
@@ -252,6 +267,27 @@ class AttachmentUploadJob private constructor(
     }
   }
 
+  /**
+   * The upload spec is normally carried between attempts in the job data, but that's only saved when an attempt fails cleanly. Chunked uploads also
+   * checkpoint it in the database, which lets us resume after the process was killed mid-upload.
+   */
+  private fun getCheckpointedUploadSpec(attachment: DatabaseAttachment): ResumableUpload? {
+    val checkpoint = SignalDatabase.attachments.getUploadCheckpoint(attachmentId) ?: return null
+
+    if (attachment.remoteKey == null || !checkpoint.spec.secretKey.toByteArray().contentEquals(Base64.decode(attachment.remoteKey))) {
+      Log.w(TAG, "Upload checkpoint was for a different key. Clearing.")
+      SignalDatabase.attachments.clearUploadCheckpoint(attachmentId)
+      return null
+    }
+
+    Log.i(TAG, "Resuming from an upload checkpoint. The CDN had acknowledged ${checkpoint.committedLength} bytes.")
+    return checkpoint.spec
+  }
+
+  private fun shouldUploadInChunks(attachment: Attachment): Boolean {
+    return RemoteConfig.chunkedAttachmentUploads && attachment.size >= AttachmentUploadUtil.FOREGROUND_LIMIT_BYTES
+  }
+
   private fun getAttachmentNotificationIfNeeded(attachment: Attachment): AttachmentProgressService.Controller? {
     return if (attachment.size >= AttachmentUploadUtil.FOREGROUND_LIMIT_BYTES) {
       AttachmentProgressService.start(context, context.getString(R.string.AttachmentUploadJob_uploading_media))
@@ -10,6 +10,7 @@ import org.signal.core.util.withinTransaction
 import org.thoughtcrime.securesms.R
 import org.thoughtcrime.securesms.attachments.AttachmentId
 import org.thoughtcrime.securesms.backup.v2.ArchiveRestoreProgress
+import org.thoughtcrime.securesms.backup.v2.RestoreMediaScheduler
 import org.thoughtcrime.securesms.database.AttachmentTable
 import org.thoughtcrime.securesms.database.SignalDatabase
 import org.thoughtcrime.securesms.database.model.MmsMessageRecord
@@ -19,6 +20,7 @@ import org.thoughtcrime.securesms.jobmanager.impl.NetworkConstraint
 import org.thoughtcrime.securesms.keyvalue.SignalStore
 import org.thoughtcrime.securesms.net.NotPushRegisteredException
 import org.thoughtcrime.securesms.service.BackupMediaRestoreService
+import org.thoughtcrime.securesms.util.RemoteConfig
 import kotlin.time.Duration.Companion.days
 
 /**
@@ -60,11 +62,13 @@ class BackupRestoreMediaJob private constructor(parameters: Parameters) : BaseJo
     val jobManager = AppDependencies.jobManager
     val batchSize = 500
     val restoreTime = System.currentTimeMillis()
+    val useScheduler = RemoteConfig.restoreMediaScheduler
 
     do {
       val restoreThumbnailJobs: MutableList<RestoreAttachmentThumbnailJob> = mutableListOf()
       val restoreFullAttachmentJobs: MutableList<RestoreAttachmentJob> = mutableListOf()
 
+      val restoreFullAttachmentIds: MutableList<AttachmentId> = mutableListOf()
       val restoreThumbnailOnlyAttachmentsIds: MutableList<AttachmentId> = mutableListOf()
       val notRestorable: MutableList<AttachmentId> = mutableListOf()
 
@@ -92,19 +96,25 @@ class BackupRestoreMediaJob private constructor(parameters: Parameters) : BaseJo
         }
 
         if (isWallpaper || shouldRestoreFullSize(message!!, restoreTime, SignalStore.backup.optimizeStorage)) {
-          restoreFullAttachmentJobs += RestoreAttachmentJob.forInitialRestore(
-            messageId = attachment.mmsId,
-            attachmentId = attachment.attachmentId,
-            stickerPackId = attachment.stickerPackId
-          )
+          restoreFullAttachmentIds += attachment.attachmentId
+
+          if (!useScheduler) {
+            restoreFullAttachmentJobs += RestoreAttachmentJob.forInitialRestore(
+              messageId = attachment.mmsId,
+              attachmentId = attachment.attachmentId,
+              stickerPackId = attachment.stickerPackId
+            )
+          }
         } else {
-          restoreThumbnailJobs += RestoreAttachmentThumbnailJob(
-            messageId = attachment.mmsId,
-            attachmentId = attachment.attachmentId,
-            highPriority = false
-          )
-
           restoreThumbnailOnlyAttachmentsIds += attachment.attachmentId
+
+          if (!useScheduler) {
+            restoreThumbnailJobs += RestoreAttachmentThumbnailJob(
+              messageId = attachment.mmsId,
+              attachmentId = attachment.attachmentId,
+              highPriority = false
+            )
+          }
         }
       }
 
@@ -115,20 +125,32 @@ class BackupRestoreMediaJob private constructor(parameters: Parameters) : BaseJo
 
         // Set thumbnail only attachments as offloaded
         SignalDatabase.attachments.setRestoreTransferState(restoreThumbnailOnlyAttachmentsIds, AttachmentTable.TRANSFER_RESTORE_OFFLOADED)
+
+        if (useScheduler) {
+          // Mark everything as restoring up front, which is what the jobs would have done in onAdded()
+          SignalDatabase.attachments.setThumbnailRestoreState(restoreThumbnailOnlyAttachmentsIds, AttachmentTable.ThumbnailRestoreState.IN_PROGRESS)
+          SignalDatabase.attachments.setRestoreTransferState(restoreFullAttachmentIds, AttachmentTable.TRANSFER_RESTORE_IN_PROGRESS)
+        }
       }
 
       ArchiveRestoreProgress.onProcessStart()
 
-      // Intentionally enqueues one at a time for safer attachment transfer state management
-      restoreThumbnailJobs.forEach { jobManager.add(it) }
-      restoreFullAttachmentJobs.forEach { jobManager.add(it) }
-    } while (restoreThumbnailJobs.isNotEmpty() || restoreFullAttachmentJobs.isNotEmpty() || notRestorable.isNotEmpty())
+      if (!useScheduler) {
+        // Intentionally enqueues one at a time for safer attachment transfer state management
+        restoreThumbnailJobs.forEach { jobManager.add(it) }
+        restoreFullAttachmentJobs.forEach { jobManager.add(it) }
+      }
+    } while (restoreThumbnailOnlyAttachmentsIds.isNotEmpty() || restoreFullAttachmentIds.isNotEmpty() || notRestorable.isNotEmpty())
 
     BackupMediaRestoreService.start(context, context.getString(R.string.BackupStatus__restoring_media))
     ArchiveRestoreProgress.onRestoringMedia()
 
-    RestoreAttachmentJob.Queues.INITIAL_RESTORE.forEach { queue ->
-      jobManager.add(CheckRestoreMediaLeftJob(queue))
+    if (useScheduler) {
+      RestoreMediaScheduler.start()
+    } else {
+      RestoreAttachmentJob.Queues.INITIAL_RESTORE.forEach { queue ->
+        jobManager.add(CheckRestoreMediaLeftJob(queue))
+      }
     }
   }
 
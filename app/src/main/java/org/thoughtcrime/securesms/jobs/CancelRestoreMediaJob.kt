@@ -7,6 +7,7 @@ package org.thoughtcrime.securesms.jobs
 
 import org.signal.core.util.logging.Log
 import org.thoughtcrime.securesms.backup.v2.ArchiveRestoreProgress
+import org.thoughtcrime.securesms.backup.v2.RestoreMediaScheduler
 import org.thoughtcrime.securesms.dependencies.AppDependencies
 import org.thoughtcrime.securesms.jobmanager.Job
 import org.thoughtcrime.securesms.keyvalue.SignalStore
@@ -36,6 +37,10 @@ class CancelRestoreMediaJob private constructor(parameters: Parameters) : Job(pa
     Log.i(TAG, "Canceling all media restore jobs")
     RestoreAttachmentJob.Queues.ALL.forEach { AppDependencies.jobManager.cancelAllInQueue(it) }
 
+    if (RestoreMediaScheduler.isRunning) {
+      RestoreMediaScheduler.cancelFullSizeRestores()
+    }
+
     Log.i(TAG, "Enqueueing check restore media jobs to cleanup")
     RestoreAttachmentJob.Queues.ALL.forEach { AppDependencies.jobManager.add(CheckRestoreMediaLeftJob(it)) }
 
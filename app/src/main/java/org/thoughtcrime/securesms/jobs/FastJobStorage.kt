@@ -122,6 +122,11 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
     stopwatch?.stop(TAG)
   }
 
+  @Synchronized
+  override fun runInTransaction(block: Runnable) {
+    jobDatabase.runInTransaction(block)
+  }
+
   @Synchronized
   override fun getJobSpec(id: String): JobSpec? {
     return minimalJobs.firstOrNull { it.id == id }?.toJobSpec()
@@ -157,8 +162,12 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
     }
   }
 
-  @Synchronized
   override fun getEligibleJobCount(currentTime: Long): Int {
+    return getEligibleJobCount(currentTime) { true }
+  }
+
+  @Synchronized
+  override fun getEligibleJobCount(currentTime: Long, filter: (MinimalJobSpec) -> Boolean): Int {
     val migrationJob: MinimalJobSpec? = migrationJobs.firstOrNull()
 
     return if (migrationJob != null && !migrationJob.isRunning && migrationJob.hasEligibleRunTime(currentTime)) {
@@ -174,7 +183,7 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
         }
         .filterNot { it.isRunning }
         .filter { job -> job.hasEligibleRunTime(currentTime) }
-        .count()
+        .count(filter)
     }
   }
 
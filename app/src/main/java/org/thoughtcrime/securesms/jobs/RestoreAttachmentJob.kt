@@ -57,6 +57,7 @@ import org.whispersystems.signalservice.api.push.exceptions.MissingConfiguration
 import org.whispersystems.signalservice.api.push.exceptions.NonSuccessfulResponseCodeException
 import org.whispersystems.signalservice.api.push.exceptions.PushNetworkException
 import org.whispersystems.signalservice.api.push.exceptions.RangeException
+import org.whispersystems.signalservice.internal.push.http.SegmentedDownloader
 import java.io.File
 import java.io.IOException
 import java.util.concurrent.TimeUnit
@@ -366,7 +367,8 @@ class RestoreAttachmentJob private constructor(
             attachmentFile,
             pointer,
             maxReceiveSize,
-            progressListener
+            progressListener,
+            AttachmentDownloadJob.getSegmentedDownloader(attachment.size)
           )
       } else {
         messageReceiver
@@ -375,7 +377,8 @@ class RestoreAttachmentJob private constructor(
             attachmentFile,
             maxReceiveSize,
             IntegrityCheck.forEncryptedDigestAndPlaintextHash(pointer.digest.getOrNull(), attachment.dataHash),
-            progressListener
+            progressListener,
+            AttachmentDownloadJob.getSegmentedDownloader(attachment.size)
           )
       }
       ArchiveRestoreProgress.onDownloadEnd(attachmentId, attachmentFile.length())
@@ -399,7 +402,7 @@ class RestoreAttachmentJob private constructor(
       ArchiveRestoreProgress.onWriteToDiskEnd(attachmentId)
     } catch (e: RangeException) {
       Log.w(TAG, "[$attachmentId] Range exception, file size " + attachmentFile.length(), e)
-      if (attachmentFile.delete()) {
+      if (SegmentedDownloader.deletePartialDownload(attachmentFile)) {
         Log.i(TAG, "Deleted temp download file to recover")
         throw RetryLaterException(e)
       } else {
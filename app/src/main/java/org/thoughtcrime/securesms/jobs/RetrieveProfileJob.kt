@@ -2,6 +2,8 @@ package org.thoughtcrime.securesms.jobs
 
 import androidx.annotation.WorkerThread
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
 import org.signal.core.util.Base64.decode
@@ -13,12 +15,14 @@ import org.signal.libsignal.protocol.InvalidKeyException
 import org.signal.libsignal.zkgroup.profiles.ExpiringProfileKeyCredential
 import org.signal.libsignal.zkgroup.profiles.ProfileKey
 import org.thoughtcrime.securesms.badges.Badges
+import org.thoughtcrime.securesms.badges.models.Badge
 import org.thoughtcrime.securesms.crypto.ProfileKeyUtil
 import org.thoughtcrime.securesms.crypto.SealedSenderAccessUtil
 import org.thoughtcrime.securesms.database.GroupTable
 import org.thoughtcrime.securesms.database.RecipientTable
 import org.thoughtcrime.securesms.database.RecipientTable.Companion.maskCapabilitiesToLong
 import org.thoughtcrime.securesms.database.RecipientTable.PhoneNumberSharingState
+import org.thoughtcrime.securesms.database.RecipientTable.ProfileUpdate
 import org.thoughtcrime.securesms.database.RecipientTable.SealedSenderAccessMode
 import org.thoughtcrime.securesms.database.SignalDatabase
 import org.thoughtcrime.securesms.database.model.RecipientRecord
@@ -30,6 +34,7 @@ import org.thoughtcrime.securesms.keyvalue.SignalStore
 import org.thoughtcrime.securesms.net.SignalNetwork
 import org.thoughtcrime.securesms.notifications.v2.ConversationId.Companion.forConversation
 import org.thoughtcrime.securesms.profiles.ProfileName
+import org.thoughtcrime.securesms.profiles.ProfileRefreshStats
 import org.thoughtcrime.securesms.recipients.Recipient
 import org.thoughtcrime.securesms.recipients.RecipientId
 import org.thoughtcrime.securesms.recipients.RecipientUtil
@@ -40,7 +45,6 @@ import org.thoughtcrime.securesms.util.Util
 import org.whispersystems.signalservice.api.crypto.InvalidCiphertextException
 import org.whispersystems.signalservice.api.crypto.ProfileCipher
 import org.whispersystems.signalservice.api.profiles.ProfileRepository
-import org.whispersystems.signalservice.api.profiles.ProfileRepository.IdProfilePair
 import org.whispersystems.signalservice.api.profiles.ProfileRepository.ProfileFetchRequest
 import org.whispersystems.signalservice.api.profiles.ProfileRepository.ProfileFetchResult
 import org.whispersystems.signalservice.api.profiles.ProfileRepository.SignalServiceProfileWithCredential
@@ -129,13 +133,27 @@ class RetrieveProfileJob private constructor(parameters: Parameters, private val
 
     stopwatch.split("requests")
 
+    val fetchStartTime = System.currentTimeMillis()
     val response: ProfileFetchResult<RecipientId> = runBlocking {
       withContext(Dispatchers.IO) {
         ProfileRepository(SignalNetwork.profile).fetchProfiles(requests)
       }
     }
+    val fetchMs = System.currentTimeMillis() - fetchStartTime
     stopwatch.split("responses")
 
+    val decryptStartTime = System.currentTimeMillis()
+    val decryptedProfiles: List<DecryptedProfile> = runBlocking {
+      withContext(Dispatchers.Default) {
+        response.successes
+          .map { idProfilePair -> async { decrypt(recipientsById[idProfilePair.id]!!, idProfilePair.profileWithCredential) } }
+          .awaitAll()
+      }
+    }
+    val decryptMs = System.currentTimeMillis() - decryptStartTime
+    stopwatch.split("decrypt")
+
+    val writeStartTime = System.currentTimeMillis()
     val localRecords = SignalDatabase.recipients.getExistingRecords(fetchingRecipientIds)
     Log.d(TAG, "Fetched ${localRecords.size} existing records.")
     stopwatch.split("disk-fetch")
@@ -147,31 +165,16 @@ class RetrieveProfileJob private constructor(parameters: Parameters, private val
       .map { it.id }
       .toSet()
 
-    val updatedProfiles = response.successes
-      .filter { idProfilePair: IdProfilePair<RecipientId> ->
-        val recipientToUpdate: Recipient = recipientsById[idProfilePair.id]!!
-        val localRecipientRecord: RecipientRecord = localRecords[recipientToUpdate.id] ?: return@filter true
-        val (remoteProfile, remoteCredential) = idProfilePair.profileWithCredential
-
-        return@filter try {
-          isUpdated(localRecipientRecord, remoteProfile, remoteCredential)
-        } catch (e: InvalidCiphertextException) {
-          Log.w(TAG, "Could not compare new and old profiles.", e)
-          true
-        } catch (e: IOException) {
-          Log.w(TAG, "Could not compare new and old profiles.", e)
-          true
-        }
-      }
-      .toList()
+    val updatedProfiles: List<DecryptedProfile> = decryptedProfiles.filter { decrypted ->
+      val localRecipientRecord: RecipientRecord = localRecords[decrypted.recipient.id] ?: return@filter true
+      isUpdated(localRecipientRecord, decrypted)
+    }
     stopwatch.split("filter")
 
     Log.d(TAG, "Committing updates to " + updatedProfiles.size + " of " + response.successes.size + " retrieved profiles.")
-    updatedProfiles.chunked(150).forEach { list: List<IdProfilePair<RecipientId>> ->
+    updatedProfiles.chunked(150).forEach { list: List<DecryptedProfile> ->
       SignalDatabase.runInTransaction {
-        for (idProfilePair in list) {
-          process(recipientsById[idProfilePair.id]!!, idProfilePair.profileWithCredential)
-        }
+        process(list)
       }
     }
     stopwatch.split("process")
@@ -204,6 +207,22 @@ class RetrieveProfileJob private constructor(parameters: Parameters, private val
     }
     stopwatch.split("identityKeys")
 
+    val batch = ProfileRefreshStats.Batch(
+      requested = requests.size,
+      fetched = response.successes.size,
+      updated = updatedProfiles.size,
+      unregistered = response.unregistered.size,
+      retryableFailures = response.retryableFailures.size,
+      verificationFailures = response.verificationFailures.size,
+      decryptionFailures = decryptedProfiles.count { it.decryptionFailed },
+      rateLimited = response.retryAfter != null,
+      fetchMs = fetchMs,
+      decryptMs = decryptMs,
+      writeMs = System.currentTimeMillis() - writeStartTime
+    )
+    ProfileRefreshStats.record(batch)
+    Log.d(TAG, "Refreshed ${batch.fetched} profile(s) at ${batch.profilesPerSecond} profiles/s. Totals: ${ProfileRefreshStats.snapshot()}")
+
     val keyCount = response.successes.mapNotNull { recipientsById[it.id] }.mapNotNull { it.profileKey }.count()
 
     Log.d(TAG, "Started with ${recipients.size} recipient(s). Of those, ${recipientsToFetch.size} were outside the cache period. Found ${response.successes.size} profile(s), and had keys for $keyCount of them. Will retry ${response.retryableFailures.size}.")
@@ -231,99 +250,165 @@ class RetrieveProfileJob private constructor(parameters: Parameters, private val
 
   override fun onFailure() {}
 
-  @Throws(InvalidCiphertextException::class, IOException::class)
-  private fun isUpdated(localRecipientRecord: RecipientRecord, remoteProfile: SignalServiceProfile, remoteExpiringProfileKeyCredential: ExpiringProfileKeyCredential?): Boolean {
-    if (localRecipientRecord.signalProfileAvatar != remoteProfile.avatar) {
+  /**
+   * Decrypts all of the encrypted fields of a fetched profile. This is the bulk of the CPU work of a refresh, so it's done up front, in parallel,
+   * and outside of any database transaction.
+   */
+  private fun decrypt(recipient: Recipient, profileAndCredential: SignalServiceProfileWithCredential): DecryptedProfile {
+    val (profile, expiringCredential) = profileAndCredential
+    val profileKey = ProfileKeyUtil.profileKeyOrNull(recipient.profileKey)
+    var decryptionFailed = false
+
+    var name: String? = null
+    var about: Pair<String?, String?>? = null
+    var phoneNumberSharing: PhoneNumberSharingState? = null
+
+    if (profileKey != null) {
+      try {
+        name = Util.emptyIfNull(ProfileUtil.decryptString(profileKey, profile.name))
+      } catch (e: InvalidCiphertextException) {
+        Log.w(TAG, "Bad profile key for ${recipient.id}")
+        decryptionFailed = true
+      } catch (e: IOException) {
+        Log.w(TAG, e)
+        decryptionFailed = true
+      }
+
+      try {
+        about = ProfileUtil.decryptString(profileKey, profile.about) to ProfileUtil.decryptString(profileKey, profile.aboutEmoji)
+      } catch (e: InvalidCiphertextException) {
+        Log.w(TAG, e)
+        decryptionFailed = true
+      } catch (e: IOException) {
+        Log.w(TAG, e)
+        decryptionFailed = true
+      }
+
+      try {
+        phoneNumberSharing = ProfileUtil.decryptBoolean(profileKey, profile.phoneNumberSharing)
+          .map { value: Boolean -> if (value) PhoneNumberSharingState.ENABLED else PhoneNumberSharingState.DISABLED }
+          .orElse(PhoneNumberSharingState.UNKNOWN)
+      } catch (e: InvalidCiphertextException) {
+        Log.w(TAG, "Failed to decrypt the phone number sharing setting!", e)
+        decryptionFailed = true
+      } catch (e: IOException) {
+        Log.w(TAG, "Failed to decrypt the phone number sharing setting!", e)
+        decryptionFailed = true
+      }
+    }
+
+    return DecryptedProfile(
+      recipient = recipient,
+      profile = profile,
+      credential = expiringCredential,
+      profileKey = profileKey,
+      name = name,
+      about = about,
+      phoneNumberSharing = phoneNumberSharing,
+      sealedSenderAccessMode = deriveUnidentifiedAccessMode(profileKey, profile.unidentifiedAccess, profile.isUnrestrictedUnidentifiedAccess),
+      badges = profile.badges?.map { Badges.fromServiceBadge(it) },
+      decryptionFailed = decryptionFailed
+    )
+  }
+
+  private fun isUpdated(localRecipientRecord: RecipientRecord, decrypted: DecryptedProfile): Boolean {
+    val remoteProfile = decrypted.profile
+
+    if (!localRecipientRecord.profileKey.contentEquals(decrypted.recipient.profileKey)) {
       return true
     }
 
-    if (localRecipientRecord.badges != remoteProfile.badges.map { Badges.fromServiceBadge(it) }) {
+    if (localRecipientRecord.signalProfileAvatar != remoteProfile.avatar) {
       return true
     }
 
-    if (localRecipientRecord.capabilities.rawBits != maskCapabilitiesToLong(remoteProfile.capabilities)) {
+    if (decrypted.badges != null && localRecipientRecord.badges != decrypted.badges) {
       return true
     }
 
-    val profileKey = ProfileKeyUtil.profileKeyOrNull(localRecipientRecord.profileKey)
-    val accessMode = deriveUnidentifiedAccessMode(
-      profileKey = profileKey,
-      unidentifiedAccessVerifier = remoteProfile.unidentifiedAccess,
-      unrestrictedUnidentifiedAccess = remoteProfile.isUnrestrictedUnidentifiedAccess
-    )
+    if (remoteProfile.capabilities != null && localRecipientRecord.capabilities.rawBits != maskCapabilitiesToLong(remoteProfile.capabilities)) {
+      return true
+    }
 
-    if (localRecipientRecord.sealedSenderAccessMode != accessMode) {
+    if (localRecipientRecord.sealedSenderAccessMode != decrypted.sealedSenderAccessMode) {
       return true
     }
 
-    if (profileKey == null) {
+    if (decrypted.profileKey == null) {
       return false
     }
 
-    val newProfileName = ProfileName.fromSerialized(ProfileUtil.decryptString(profileKey, remoteProfile.name))
-    if (localRecipientRecord.signalProfileName != newProfileName) {
+    if (decrypted.decryptionFailed) {
       return true
     }
 
-    if (localRecipientRecord.about != ProfileUtil.decryptString(profileKey, remoteProfile.about)) {
+    if (localRecipientRecord.signalProfileName != ProfileName.fromSerialized(decrypted.name)) {
       return true
     }
 
-    if (remoteExpiringProfileKeyCredential != null && localRecipientRecord.expiringProfileKeyCredential != remoteExpiringProfileKeyCredential) {
+    if (localRecipientRecord.about != decrypted.about?.first) {
       return true
     }
 
-    val remotePhoneNumberSharing = ProfileUtil.decryptBoolean(profileKey, remoteProfile.phoneNumberSharing)
-      .map { value: Boolean -> if (value) PhoneNumberSharingState.ENABLED else PhoneNumberSharingState.DISABLED }
-      .orElse(PhoneNumberSharingState.UNKNOWN)
+    if (decrypted.credential != null && localRecipientRecord.expiringProfileKeyCredential != decrypted.credential) {
+      return true
+    }
 
-    if (localRecipientRecord.phoneNumberSharing != remotePhoneNumberSharing) {
+    if (localRecipientRecord.phoneNumberSharing != decrypted.phoneNumberSharing) {
       return true
     }
 
     return false
   }
 
-  private fun process(recipient: Recipient, profileAndCredential: SignalServiceProfileWithCredential) {
-    val (profile, expiringCredential) = profileAndCredential
-    val recipientProfileKey = ProfileKeyUtil.profileKeyOrNull(recipient.profileKey)
-    val wroteNewProfileName = setProfileName(recipient, profile.name)
+  /**
+   * Writes a batch of profiles with a single bulk update, and then performs the per-recipient side effects of any changes.
+   */
+  private fun process(profiles: List<DecryptedProfile>) {
+    val newProfileNames: Map<RecipientId, ProfileName> = profiles
+      .mapNotNull { decrypted -> getNewProfileName(decrypted)?.let { decrypted.recipient.id to it } }
+      .toMap()
+
+    for (decrypted in profiles) {
+      if (decrypted.recipient.id in newProfileNames) {
+        insertLearnedProfileNameEventIfNecessary(decrypted.recipient)
+      }
+    }
 
-    setProfileAbout(recipient, profile.about, profile.aboutEmoji)
-    setProfileAvatar(recipient, profile.avatar)
-    setProfileBadges(recipient, profile.badges)
-    setProfileCapabilities(recipient, profile.capabilities)
-    setUnidentifiedAccessMode(recipient, profile.unidentifiedAccess, profile.isUnrestrictedUnidentifiedAccess)
-    setPhoneNumberSharingMode(recipient, profile.phoneNumberSharing)
+    val updates: List<ProfileUpdate> = profiles.map { decrypted ->
+      val recipient = decrypted.recipient
+      val newProfileName = newProfileNames[recipient.id]
 
-    if (recipientProfileKey != null) {
-      expiringCredential?. let { credential -> setExpiringProfileKeyCredential(recipient, recipientProfileKey, credential) }
+      ProfileUpdate(
+        id = recipient.id,
+        profileName = newProfileName,
+        about = decrypted.about,
+        badges = getBadgesToWrite(decrypted),
+        capabilities = decrypted.profile.capabilities,
+        sealedSenderAccessMode = getSealedSenderAccessModeToWrite(decrypted),
+        phoneNumberSharing = getPhoneNumberSharingToWrite(decrypted),
+        expiringProfileKeyCredential = if (decrypted.profileKey != null && decrypted.credential != null) decrypted.profileKey to decrypted.credential else null,
+        clearUsername = recipient.hasNonUsernameDisplayName(context) || newProfileName != null
+      )
     }
 
-    if (recipient.hasNonUsernameDisplayName(context) || wroteNewProfileName) {
-      clearUsername(recipient)
+    SignalDatabase.recipients.applyProfileUpdates(updates)
+
+    for (decrypted in profiles) {
+      newProfileNames[decrypted.recipient.id]?.let { onProfileNameChanged(decrypted.recipient, it) }
+      setProfileAvatar(decrypted.recipient, decrypted.profile.avatar)
     }
   }
 
-  private fun setProfileBadges(recipient: Recipient, serviceBadges: List<SignalServiceProfile.Badge>?) {
-    if (serviceBadges == null) {
-      return
-    }
+  private fun getBadgesToWrite(decrypted: DecryptedProfile): List<Badge>? {
+    val badges = decrypted.badges ?: return null
+    val recipient = decrypted.recipient
 
-    val badges = serviceBadges.map { Badges.fromServiceBadge(it) }
     if (badges.size != recipient.badges.size) {
       Log.i(TAG, "Likely change in badges for ${recipient.id}. Going from ${recipient.badges.size} badge(s) to ${badges.size}.")
     }
 
-    SignalDatabase.recipients.setBadges(recipient.id, badges)
-  }
-
-  private fun setExpiringProfileKeyCredential(
-    recipient: Recipient,
-    recipientProfileKey: ProfileKey,
-    credential: ExpiringProfileKeyCredential
-  ) {
-    SignalDatabase.recipients.setProfileKeyCredential(recipient.id, recipientProfileKey, credential)
+    return badges
   }
 
   private fun setIdentityKey(recipient: Recipient, identityKeyValue: String?) {
@@ -347,21 +432,23 @@ class RetrieveProfileJob private constructor(parameters: Parameters, private val
     }
   }
 
-  private fun setUnidentifiedAccessMode(recipient: Recipient, unidentifiedAccessVerifier: String?, unrestrictedUnidentifiedAccess: Boolean) {
-    val profileKey = ProfileKeyUtil.profileKeyOrNull(recipient.profileKey)
-    val newMode = deriveUnidentifiedAccessMode(profileKey, unidentifiedAccessVerifier, unrestrictedUnidentifiedAccess)
+  private fun getSealedSenderAccessModeToWrite(decrypted: DecryptedProfile): SealedSenderAccessMode? {
+    val recipient = decrypted.recipient
+    val newMode = decrypted.sealedSenderAccessMode
 
-    if (recipient.sealedSenderAccessMode !== newMode) {
-      if (newMode === SealedSenderAccessMode.UNRESTRICTED) {
-        Log.i(TAG, "Marking recipient UD status as unrestricted.")
-      } else if (profileKey == null || unidentifiedAccessVerifier == null) {
-        Log.i(TAG, "Marking recipient UD status as disabled.")
-      } else {
-        Log.i(TAG, "Marking recipient UD status as " + newMode.name + " after verification.")
-      }
+    if (recipient.sealedSenderAccessMode === newMode) {
+      return null
+    }
 
-      SignalDatabase.recipients.setSealedSenderAccessMode(recipient.id, newMode)
+    if (newMode === SealedSenderAccessMode.UNRESTRICTED) {
+      Log.i(TAG, "Marking recipient UD status as unrestricted.")
+    } else if (decrypted.profileKey == null || decrypted.profile.unidentifiedAccess == null) {
+      Log.i(TAG, "Marking recipient UD status as disabled.")
+    } else {
+      Log.i(TAG, "Marking recipient UD status as " + newMode.name + " after verification.")
     }
+
+    return newMode
   }
 
   private fun deriveUnidentifiedAccessMode(profileKey: ProfileKey?, unidentifiedAccessVerifier: String?, unrestrictedUnidentifiedAccess: Boolean): SealedSenderAccessMode {
@@ -386,133 +473,96 @@ class RetrieveProfileJob private constructor(parameters: Parameters, private val
     }
   }
 
-  private fun setProfileName(recipient: Recipient, profileName: String?): Boolean {
-    try {
-      val profileKey = ProfileKeyUtil.profileKeyOrNull(recipient.profileKey) ?: return false
-      val plaintextProfileName = Util.emptyIfNull(ProfileUtil.decryptString(profileKey, profileName))
-
-      if (plaintextProfileName.isNullOrBlank()) {
-        Log.w(TAG, "No name set on the profile for ${recipient.id} -- Leaving it alone")
-        return false
-      }
-
-      val remoteProfileName = ProfileName.fromSerialized(plaintextProfileName)
-      val localProfileName = recipient.profileName
-
-      if (localProfileName.isEmpty &&
-        !recipient.isSystemContact &&
-        recipient.isProfileSharing &&
-        !recipient.isGroup &&
-        !recipient.isSelf
-      ) {
-        val username = SignalDatabase.recipients.getUsername(recipient.id)
-        val e164 = if (username == null) SignalDatabase.recipients.getE164sForIds(listOf(recipient.id)).firstOrNull() else null
-
-        if (username != null || e164 != null) {
-          Log.i(TAG, "Learned profile name for first time, inserting event")
-          SignalDatabase.messages.insertLearnedProfileNameChangeMessage(recipient, e164, username)
-        } else {
-          Log.w(TAG, "Learned profile name for first time, but do not have username or e164 for ${recipient.id}")
-        }
-      }
+  /**
+   * @return The remote profile name if it should replace the local one, otherwise null.
+   */
+  private fun getNewProfileName(decrypted: DecryptedProfile): ProfileName? {
+    val recipient = decrypted.recipient
+    val plaintextProfileName = decrypted.name ?: return null
 
-      if (remoteProfileName != localProfileName) {
-        Log.i(TAG, "Profile name updated. Writing new value.")
-        SignalDatabase.recipients.setProfileName(recipient.id, remoteProfileName)
-
-        val remoteDisplayName = remoteProfileName.toString()
-        val localDisplayName = localProfileName.toString()
-        val writeChangeEvent = !recipient.isBlocked &&
-          !recipient.isGroup &&
-          !recipient.isSelf &&
-          localDisplayName.isNotEmpty() &&
-          remoteDisplayName != localDisplayName
-
-        if (writeChangeEvent) {
-          Log.i(TAG, "Writing a profile name change event for ${recipient.id}")
-          SignalDatabase.messages.insertProfileNameChangeMessages(recipient, remoteDisplayName, localDisplayName)
-        } else {
-          Log.i(TAG, "Name changed, but wasn't relevant to write an event. blocked: ${recipient.isBlocked}, group: ${recipient.isGroup}, self: ${recipient.isSelf}, firstSet: ${localDisplayName.isEmpty()}, displayChange: ${remoteDisplayName != localDisplayName}")
-        }
-
-        if (recipient.isIndividual &&
-          !recipient.isSystemContact &&
-          !recipient.nickname.isEmpty &&
-          !recipient.isProfileSharing &&
-          !recipient.isBlocked &&
-          !recipient.isSelf &&
-          !recipient.isHidden
-        ) {
-          val threadId = SignalDatabase.threads.getThreadIdFor(recipient.id)
-          if (threadId != null && !RecipientUtil.isMessageRequestAccepted(threadId, recipient)) {
-            SignalDatabase.nameCollisions.handleIndividualNameCollision(recipient.id)
-          }
-        }
-
-        if (writeChangeEvent || localDisplayName.isEmpty()) {
-          AppDependencies.databaseObserver.notifyConversationListListeners()
-          val threadId = SignalDatabase.threads.getThreadIdFor(recipient.id)
-          if (threadId != null) {
-            SignalDatabase.runPostSuccessfulTransaction {
-              AppDependencies.messageNotifier.updateNotification(context, forConversation(threadId))
-            }
-          }
-        }
-
-        return true
-      }
-    } catch (e: InvalidCiphertextException) {
-      Log.w(TAG, "Bad profile key for ${recipient.id}")
-    } catch (e: IOException) {
-      Log.w(TAG, e)
+    if (plaintextProfileName.isBlank()) {
+      Log.w(TAG, "No name set on the profile for ${recipient.id} -- Leaving it alone")
+      return null
     }
 
-    return false
+    val remoteProfileName = ProfileName.fromSerialized(plaintextProfileName)
+    return if (remoteProfileName != recipient.profileName) remoteProfileName else null
   }
 
-  private fun setProfileAbout(recipient: Recipient, encryptedAbout: String?, encryptedEmoji: String?) {
-    try {
-      val profileKey = ProfileKeyUtil.profileKeyOrNull(recipient.profileKey) ?: return
-      val plaintextAbout = ProfileUtil.decryptString(profileKey, encryptedAbout)
-      val plaintextEmoji = ProfileUtil.decryptString(profileKey, encryptedEmoji)
-
-      SignalDatabase.recipients.setAbout(recipient.id, plaintextAbout, plaintextEmoji)
-    } catch (e: InvalidCiphertextException) {
-      Log.w(TAG, e)
-    } catch (e: IOException) {
-      Log.w(TAG, e)
+  /**
+   * Must be called before the new name (and any username clear) is written, since it needs the recipient's current username.
+   */
+  private fun insertLearnedProfileNameEventIfNecessary(recipient: Recipient) {
+    if (recipient.profileName.isEmpty &&
+      !recipient.isSystemContact &&
+      recipient.isProfileSharing &&
+      !recipient.isGroup &&
+      !recipient.isSelf
+    ) {
+      val username = SignalDatabase.recipients.getUsername(recipient.id)
+      val e164 = if (username == null) SignalDatabase.recipients.getE164sForIds(listOf(recipient.id)).firstOrNull() else null
+
+      if (username != null || e164 != null) {
+        Log.i(TAG, "Learned profile name for first time, inserting event")
+        SignalDatabase.messages.insertLearnedProfileNameChangeMessage(recipient, e164, username)
+      } else {
+        Log.w(TAG, "Learned profile name for first time, but do not have username or e164 for ${recipient.id}")
+      }
     }
   }
 
-  private fun clearUsername(recipient: Recipient) {
-    SignalDatabase.recipients.setUsername(recipient.id, null)
-  }
+  private fun onProfileNameChanged(recipient: Recipient, remoteProfileName: ProfileName) {
+    Log.i(TAG, "Profile name updated for ${recipient.id}.")
 
-  private fun setProfileCapabilities(recipient: Recipient, capabilities: SignalServiceProfile.Capabilities?) {
-    if (capabilities == null) {
-      return
+    val remoteDisplayName = remoteProfileName.toString()
+    val localDisplayName = recipient.profileName.toString()
+    val writeChangeEvent = !recipient.isBlocked &&
+      !recipient.isGroup &&
+      !recipient.isSelf &&
+      localDisplayName.isNotEmpty() &&
+      remoteDisplayName != localDisplayName
+
+    if (writeChangeEvent) {
+      Log.i(TAG, "Writing a profile name change event for ${recipient.id}")
+      SignalDatabase.messages.insertProfileNameChangeMessages(recipient, remoteDisplayName, localDisplayName)
+    } else {
+      Log.i(TAG, "Name changed, but wasn't relevant to write an event. blocked: ${recipient.isBlocked}, group: ${recipient.isGroup}, self: ${recipient.isSelf}, firstSet: ${localDisplayName.isEmpty()}, displayChange: ${remoteDisplayName != localDisplayName}")
+    }
+
+    if (recipient.isIndividual &&
+      !recipient.isSystemContact &&
+      !recipient.nickname.isEmpty &&
+      !recipient.isProfileSharing &&
+      !recipient.isBlocked &&
+      !recipient.isSelf &&
+      !recipient.isHidden
+    ) {
+      val threadId = SignalDatabase.threads.getThreadIdFor(recipient.id)
+      if (threadId != null && !RecipientUtil.isMessageRequestAccepted(threadId, recipient)) {
+        SignalDatabase.nameCollisions.handleIndividualNameCollision(recipient.id)
+      }
     }
 
-    SignalDatabase.recipients.setCapabilities(recipient.id, capabilities)
+    if (writeChangeEvent || localDisplayName.isEmpty()) {
+      AppDependencies.databaseObserver.notifyConversationListListeners()
+      val threadId = SignalDatabase.threads.getThreadIdFor(recipient.id)
+      if (threadId != null) {
+        SignalDatabase.runPostSuccessfulTransaction {
+          AppDependencies.messageNotifier.updateNotification(context, forConversation(threadId))
+        }
+      }
+    }
   }
 
-  private fun setPhoneNumberSharingMode(recipient: Recipient, phoneNumberSharing: String?) {
-    val profileKey = ProfileKeyUtil.profileKeyOrNull(recipient.profileKey) ?: return
-
-    try {
-      val remotePhoneNumberSharing = ProfileUtil.decryptBoolean(profileKey, phoneNumberSharing)
-        .map { value: Boolean -> if (value) PhoneNumberSharingState.ENABLED else PhoneNumberSharingState.DISABLED }
-        .orElse(PhoneNumberSharingState.UNKNOWN)
+  private fun getPhoneNumberSharingToWrite(decrypted: DecryptedProfile): PhoneNumberSharingState? {
+    val remotePhoneNumberSharing = decrypted.phoneNumberSharing ?: return null
 
-      if (recipient.phoneNumberSharing !== remotePhoneNumberSharing) {
-        Log.i(TAG, "Updating phone number sharing state for " + recipient.id + " to " + remotePhoneNumberSharing)
-        SignalDatabase.recipients.setPhoneNumberSharing(recipient.id, remotePhoneNumberSharing)
-      }
-    } catch (e: InvalidCiphertextException) {
-      Log.w(TAG, "Failed to set the phone number sharing setting!", e)
-    } catch (e: IOException) {
-      Log.w(TAG, "Failed to set the phone number sharing setting!", e)
+    if (decrypted.recipient.phoneNumberSharing === remotePhoneNumberSharing) {
+      return null
     }
+
+    Log.i(TAG, "Updating phone number sharing state for " + decrypted.recipient.id + " to " + remotePhoneNumberSharing)
+    return remotePhoneNumberSharing
   }
 
   private fun setProfileAvatar(recipient: Recipient, profileAvatar: String?) {
@@ -539,6 +589,23 @@ class RetrieveProfileJob private constructor(parameters: Parameters, private val
     }
   }
 
+  /**
+   * A fetched profile with its encrypted fields already decrypted. The decrypted fields are null if we don't have a profile key, or if they failed
+   * to decrypt (in which case [decryptionFailed] is set), and are left alone when writing.
+   */
+  private class DecryptedProfile(
+    val recipient: Recipient,
+    val profile: SignalServiceProfile,
+    val credential: ExpiringProfileKeyCredential?,
+    val profileKey: ProfileKey?,
+    val name: String?,
+    val about: Pair<String?, String?>?,
+    val phoneNumberSharing: PhoneNumberSharingState?,
+    val sealedSenderAccessMode: SealedSenderAccessMode,
+    val badges: List<Badge>?,
+    val decryptionFailed: Boolean
+  )
+
   companion object {
     const val KEY = "RetrieveProfileJob"
     private val TAG = Log.tag(RetrieveProfileJob::class.java)
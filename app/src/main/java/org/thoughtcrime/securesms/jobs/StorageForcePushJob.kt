@@ -88,8 +88,7 @@ class StorageForcePushJob private constructor(parameters: Parameters) : BaseJob(
 
     val newVersion = currentVersion + 1
     val newContactStorageIds = generateContactStorageIds(oldContactStorageIds)
-    val inserts: MutableList<SignalStorageRecord> = oldContactStorageIds.keys
-      .mapNotNull { SignalDatabase.recipients.getRecordForSync(it) }
+    val inserts: MutableList<SignalStorageRecord> = SignalDatabase.recipients.getRecordsForSync(oldContactStorageIds.keys)
       .filter { it.recipientType != RecipientTable.RecipientType.INDIVIDUAL || (it.aci != null || it.pni != null || it.e164 != null) }
       .map { record -> StorageSyncModels.localToRemoteRecord(record, newContactStorageIds[record.id]!!.raw) }
       .toMutableList()
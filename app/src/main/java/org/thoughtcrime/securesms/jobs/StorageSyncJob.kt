@@ -2,6 +2,8 @@ package org.thoughtcrime.securesms.jobs
 
 import android.content.Context
 import com.annimon.stream.Stream
+import okio.ByteString
+import okio.ByteString.Companion.toByteString
 import org.signal.core.util.Base64
 import org.signal.core.util.SqlUtil
 import org.signal.core.util.Stopwatch
@@ -12,6 +14,7 @@ import org.thoughtcrime.securesms.database.ChatFolderTables.ChatFolderTable
 import org.thoughtcrime.securesms.database.NotificationProfileTables
 import org.thoughtcrime.securesms.database.RecipientTable
 import org.thoughtcrime.securesms.database.SignalDatabase
+import org.thoughtcrime.securesms.database.model.RecipientRecord
 import org.thoughtcrime.securesms.dependencies.AppDependencies
 import org.thoughtcrime.securesms.jobmanager.Job
 import org.thoughtcrime.securesms.jobmanager.impl.NetworkConstraint
@@ -142,6 +145,15 @@ class StorageSyncJob private constructor(parameters: Parameters, private var loc
 
     private val TAG = Log.tag(StorageSyncJob::class.java)
 
+    /** Storage record types whose local data lives in the recipient table, and so can be loaded in bulk by storage ID. */
+    private val RECIPIENT_BACKED_TYPES: Set<Int> = setOf(
+      ManifestRecord.Identifier.Type.CONTACT.value,
+      ManifestRecord.Identifier.Type.GROUPV1.value,
+      ManifestRecord.Identifier.Type.GROUPV2.value,
+      ManifestRecord.Identifier.Type.STORY_DISTRIBUTION_LIST.value,
+      ManifestRecord.Identifier.Type.CALL_LINK.value
+    )
+
     @JvmStatic
     fun forLocalChange(): StorageSyncJob {
       return StorageSyncJob(localManifestOutOfDate = false)
@@ -485,6 +497,11 @@ class StorageSyncJob private constructor(parameters: Parameters, private var loc
     }
 
     val records: MutableList<SignalStorageRecord> = ArrayList(ids.size)
+    val recipientRecords: Map<ByteString, RecipientRecord> = SignalDatabase.recipients.getByStorageIds(
+      ids
+        .filter { it.type in RECIPIENT_BACKED_TYPES }
+        .map { it.raw }
+    )
 
     for (id in ids) {
       var type = ManifestRecord.Identifier.Type.fromValue(id.type)
@@ -494,7 +511,7 @@ class StorageSyncJob private constructor(parameters: Parameters, private var loc
 
       when (type) {
         ManifestRecord.Identifier.Type.CONTACT, ManifestRecord.Identifier.Type.GROUPV1, ManifestRecord.Identifier.Type.GROUPV2 -> {
-          val settings = SignalDatabase.recipients.getByStorageId(id.raw)
+          val settings = recipientRecords[id.raw.toByteString()]
           if (settings != null) {
             if (settings.recipientType == RecipientTable.RecipientType.GV2 && settings.syncExtras.groupMasterKey == null) {
               throw MissingGv2MasterKeyError()
@@ -514,7 +531,7 @@ class StorageSyncJob private constructor(parameters: Parameters, private var loc
         }
 
         ManifestRecord.Identifier.Type.STORY_DISTRIBUTION_LIST -> {
-          val record = SignalDatabase.recipients.getByStorageId(id.raw)
+          val record = recipientRecords[id.raw.toByteString()]
           if (record != null) {
             if (record.distributionListId != null) {
               records.add(StorageSyncModels.localToRemoteRecord(record))
@@ -527,7 +544,7 @@ class StorageSyncJob private constructor(parameters: Parameters, private var loc
         }
 
         ManifestRecord.Identifier.Type.CALL_LINK -> {
-          val callLinkRecord = SignalDatabase.recipients.getByStorageId(id.raw)
+          val callLinkRecord = recipientRecords[id.raw.toByteString()]
           if (callLinkRecord != null) {
             if (callLinkRecord.callLinkRoomId != null) {
               records.add(StorageSyncModels.localToRemoteRecord(callLinkRecord))
@@ -79,6 +79,7 @@ class BackupValues(store: KeyValueStore) : SignalStoreValues(store) {
     private const val KEY_MANUAL_NO_BACKUP_NOTIFIED = "backup.manual.no.backup.notified"
 
     private const val KEY_USER_MANUALLY_SKIPPED_MEDIA_RESTORE = "backup.user.manually.skipped.media.restore"
+    private const val KEY_MEDIA_RESTORE_SCHEDULED = "backup.media.restore.scheduled"
     private const val KEY_BACKUP_EXPIRED_AND_DOWNGRADED = "backup.expired.and.downgraded"
     private const val KEY_BACKUP_DELETION_STATE = "backup.deletion.state"
     private const val KEY_REMOTE_STORAGE_GARBAGE_COLLECTION_PENDING = "backup.remoteStorageGarbageCollectionPending"
@@ -158,6 +159,9 @@ class BackupValues(store: KeyValueStore) : SignalStoreValues(store) {
 
   var userManuallySkippedMediaRestore: Boolean by booleanValue(KEY_USER_MANUALLY_SKIPPED_MEDIA_RESTORE, false)
 
+  /** Whether the current media restore is being run by the restore media scheduler rather than by jobs, so it can be picked back up after a restart. */
+  var isMediaRestoreScheduled: Boolean by booleanValue(KEY_MEDIA_RESTORE_SCHEDULED, false)
+
   var backupExpiredAndDowngraded: Boolean by booleanValue(KEY_BACKUP_EXPIRED_AND_DOWNGRADED, false)
 
   /**
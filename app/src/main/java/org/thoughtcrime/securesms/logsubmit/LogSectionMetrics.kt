@@ -0,0 +1,27 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.logsubmit
+
+import android.content.Context
+import org.signal.core.util.metrics.Metrics
+
+/**
+ * Dumps everything recorded in [Metrics] since the process started, e.g. job durations, SQL timings by table and websocket latencies by endpoint.
+ */
+class LogSectionMetrics : LogSection {
+
+  companion object {
+    /** Keeps the section readable when something like a job histogram has a label for every job type. */
+    private const val MAX_LABELS = 15
+  }
+
+  override fun getTitle(): String = "METRICS"
+
+  override fun getContent(context: Context): CharSequence {
+    val content = Metrics.snapshot().format(MAX_LABELS)
+    return content.ifEmpty { "No metrics recorded." }
+  }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.logsubmit
+
+import android.content.Context
+import org.thoughtcrime.securesms.database.SlowQueryDetector
+
+/**
+ * The query shapes that have taken the most time, along with the plans of the slow ones and any full scans of large tables.
+ */
+class LogSectionSlowQueries : LogSection {
+
+  companion object {
+    private const val MAX_SHAPES = 25
+  }
+
+  override fun getTitle(): String = "SLOW QUERIES"
+
+  override fun getContent(context: Context): CharSequence {
+    return SlowQueryDetector.getReport(MAX_SHAPES)
+  }
+}
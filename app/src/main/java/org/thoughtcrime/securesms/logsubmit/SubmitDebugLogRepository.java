@@ -78,6 +78,7 @@ public class SubmitDebugLogRepository {
     add(new LogSectionCapabilities());
     add(new LogSectionMemory());
     add(new LogSectionLocalMetrics());
+    add(new LogSectionMetrics());
     add(new LogSectionRemoteConfig());
     add(new LogSectionPin());
     if (Build.VERSION.SDK_INT >= 28) {
@@ -100,6 +101,7 @@ public class SubmitDebugLogRepository {
       add(new LogSectionSenderKey());
     }
     add(new LogSectionDatabaseSchema());
+    add(new LogSectionSlowQueries());
     add(new LogSectionRemappedRecords());
     add(new LogSectionAnr());
     add(new LogSectionLogcat());
@@ -122,12 +124,12 @@ public class SubmitDebugLogRepository {
     SignalExecutors.UNBOUNDED.execute(() -> {
       Log.blockUntilAllWritesFinished();
       LogDatabase.getInstance(context).logs().trimToSize();
-      callback.onResult(submitLogInternal(System.currentTimeMillis(), getPrefixLogLinesInternal(), Tracer.getInstance().serialize()));
+      callback.onResult(submitLogInternal(System.currentTimeMillis(), getPrefixLogLinesInternal()));
     });
   }
 
-  public void submitLogFromReader(DebugLogsViewer.LogReader logReader, @Nullable byte[] trace, Callback<Optional<String>> callback) {
-    SignalExecutors.UNBOUNDED.execute(() -> callback.onResult(submitLogFromReaderInternal(logReader, trace)));
+  public void submitLogFromReader(DebugLogsViewer.LogReader logReader, Callback<Optional<String>> callback) {
+    SignalExecutors.UNBOUNDED.execute(() -> callback.onResult(submitLogFromReaderInternal(logReader)));
   }
 
   public void writeLogToDisk(@NonNull Uri uri, long untilTime, Callback<Boolean> callback) {
@@ -152,7 +154,7 @@ public class SubmitDebugLogRepository {
         outputStream.closeEntry();
 
         outputStream.putNextEntry(new ZipEntry("signal.trace"));
-        outputStream.write(Tracer.getInstance().serialize());
+        Tracer.getInstance().serialize(outputStream);
         outputStream.closeEntry();
 
         callback.onResult(true);
@@ -163,16 +165,14 @@ public class SubmitDebugLogRepository {
   }
 
   @WorkerThread
-  private @NonNull Optional<String> submitLogFromReaderInternal(DebugLogsViewer.LogReader logReader, @Nullable byte[] trace) {
+  private @NonNull Optional<String> submitLogFromReaderInternal(DebugLogsViewer.LogReader logReader) {
     Stopwatch stopwatch = new Stopwatch("log-upload");
-    String traceUrl = null;
-    if (trace != null) {
-      try {
-        traceUrl = uploadContent("application/octet-stream", RequestBody.create(MediaType.get("application/octet-stream"), trace));
-      } catch (IOException e) {
-        Log.w(TAG, "Error during trace upload.", e);
-        return Optional.empty();
-      }
+    String traceUrl;
+    try {
+      traceUrl = uploadTrace();
+    } catch (IOException e) {
+      Log.w(TAG, "Error during trace upload.", e);
+      return Optional.empty();
     }
     stopwatch.split("trace");
 
@@ -186,7 +186,7 @@ public class SubmitDebugLogRepository {
 
       OutputStream gzipOutput = new GZIPOutputStream(new ParcelFileDescriptor.AutoCloseOutputStream(fds[1]));
 
-      boolean traceFound = trace == null;
+      boolean traceFound = false;
       String next;
       while ((next = logReader.nextChunk(10_000)) != null) {
         if (!traceFound) {
@@ -206,22 +206,7 @@ public class SubmitDebugLogRepository {
 
       stopwatch.split("body");
 
-      String logUrl = uploadContent("application/gzip", new RequestBody() {
-        @Override
-        public @NonNull MediaType contentType() {
-          return MediaType.get("application/gzip");
-        }
-
-        @Override public long contentLength() {
-          return BlobProvider.getInstance().calculateFileSize(context, gzipUri);
-        }
-
-        @Override
-        public void writeTo(@NonNull BufferedSink sink) throws IOException {
-          Source source = Okio.source(BlobProvider.getInstance().getStream(context, gzipUri));
-          sink.writeAll(source);
-        }
-      });
+      String logUrl = uploadContent("application/gzip", blobRequestBody("application/gzip", gzipUri));
 
       stopwatch.split("upload");
       stopwatch.stop(TAG);
@@ -236,15 +221,13 @@ public class SubmitDebugLogRepository {
   }
 
   @WorkerThread
-  private @NonNull Optional<String> submitLogInternal(long untilTime, @NonNull List<LogLine> prefixLines, @Nullable byte[] trace) {
-    String traceUrl = null;
-    if (trace != null) {
-      try {
-        traceUrl = uploadContent("application/octet-stream", RequestBody.create(MediaType.get("application/octet-stream"), trace));
-      } catch (IOException e) {
-        Log.w(TAG, "Error during trace upload.", e);
-        return Optional.empty();
-      }
+  private @NonNull Optional<String> submitLogInternal(long untilTime, @NonNull List<LogLine> prefixLines) {
+    String traceUrl;
+    try {
+      traceUrl = uploadTrace();
+    } catch (IOException e) {
+      Log.w(TAG, "Error during trace upload.", e);
+      return Optional.empty();
     }
 
     StringBuilder prefixStringBuilder = linesToStringBuilder(prefixLines, traceUrl);
@@ -279,22 +262,7 @@ public class SubmitDebugLogRepository {
 
       stopwatch.split("body");
 
-      String logUrl = uploadContent("application/gzip", new RequestBody() {
-        @Override
-        public @NonNull MediaType contentType() {
-          return MediaType.get("application/gzip");
-        }
-
-        @Override public long contentLength() {
-          return BlobProvider.getInstance().calculateFileSize(context, gzipUri);
-        }
-
-        @Override
-        public void writeTo(@NonNull BufferedSink sink) throws IOException {
-          Source source = Okio.source(BlobProvider.getInstance().getStream(context, gzipUri));
-          sink.writeAll(source);
-        }
-      });
+      String logUrl = uploadContent("application/gzip", blobRequestBody("application/gzip", gzipUri));
 
       stopwatch.split("upload");
       stopwatch.stop(TAG);
@@ -308,6 +276,56 @@ public class SubmitDebugLogRepository {
     }
   }
 
+  /**
+   * Streams the trace into a temporary blob rather than holding it in memory, since it can be tens of megabytes when tracing is streamed to disk,
+   * and uploads it from there.
+   */
+  @WorkerThread
+  private @NonNull String uploadTrace() throws IOException {
+    Uri traceUri;
+
+    try {
+      ParcelFileDescriptor[] fds       = ParcelFileDescriptor.createPipe();
+      Future<Uri>            futureUri = BlobProvider.getInstance()
+                                                     .forData(new ParcelFileDescriptor.AutoCloseInputStream(fds[0]), 0)
+                                                     .withMimeType("application/octet-stream")
+                                                     .createForSingleSessionOnDiskAsync(context);
+
+      try (OutputStream traceOutput = new ParcelFileDescriptor.AutoCloseOutputStream(fds[1])) {
+        Tracer.getInstance().serialize(traceOutput);
+      }
+
+      traceUri = futureUri.get();
+    } catch (ExecutionException | InterruptedException e) {
+      throw new IOException(e);
+    }
+
+    try {
+      return uploadContent("application/octet-stream", blobRequestBody("application/octet-stream", traceUri));
+    } finally {
+      BlobProvider.getInstance().delete(context, traceUri);
+    }
+  }
+
+  private @NonNull RequestBody blobRequestBody(@NonNull String contentType, @NonNull Uri uri) {
+    return new RequestBody() {
+      @Override
+      public @NonNull MediaType contentType() {
+        return MediaType.get(contentType);
+      }
+
+      @Override public long contentLength() {
+        return BlobProvider.getInstance().calculateFileSize(context, uri);
+      }
+
+      @Override
+      public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        Source source = Okio.source(BlobProvider.getInstance().getStream(context, uri));
+        sink.writeAll(source);
+      }
+    };
+  }
+
   @WorkerThread
   private @NonNull String uploadContent(@NonNull String contentType, @NonNull RequestBody requestBody) throws IOException {
     OkHttpClient client = new OkHttpClient.Builder().addInterceptor(new StandardUserAgentInterceptor()).dns(SignalServiceNetworkAccess.DNS).build();
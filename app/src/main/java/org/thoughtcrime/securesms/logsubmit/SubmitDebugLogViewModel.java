@@ -11,7 +11,6 @@ import androidx.lifecycle.ViewModelProvider;
 
 import org.signal.core.util.Stopwatch;
 import org.signal.core.util.logging.Log;
-import org.signal.core.util.tracing.Tracer;
 import org.signal.debuglogsviewer.DebugLogsViewer;
 import org.thoughtcrime.securesms.database.LogDatabase;
 import org.thoughtcrime.securesms.dependencies.AppDependencies;
@@ -34,12 +33,10 @@ public class SubmitDebugLogViewModel extends ViewModel {
   private final MutableLiveData<Mode>       mode;
   private final SingleLiveEvent<Event>      event;
   private final long                        firstViewTime;
-  private final byte[]                      trace;
 
   private SubmitDebugLogViewModel() {
     this.repo          = new SubmitDebugLogRepository();
     this.mode          = new MutableLiveData<>();
-    this.trace         = Tracer.getInstance().serialize();
     this.firstViewTime = System.currentTimeMillis();
     this.event         = new SingleLiveEvent<>();
   }
@@ -124,7 +121,7 @@ public class SubmitDebugLogViewModel extends ViewModel {
 
     MutableLiveData<Optional<String>> result = new MutableLiveData<>();
 
-    repo.submitLogFromReader(logReader, trace, value -> {
+    repo.submitLogFromReader(logReader, value -> {
       mode.postValue(Mode.NORMAL);
       result.postValue(value);
     });
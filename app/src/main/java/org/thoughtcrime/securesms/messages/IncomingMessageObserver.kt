@@ -35,6 +35,7 @@ import org.thoughtcrime.securesms.util.AlarmSleepTimer
 import org.thoughtcrime.securesms.util.AppForegroundObserver
 import org.thoughtcrime.securesms.util.SignalLocalMetrics
 import org.thoughtcrime.securesms.util.asChain
+import org.whispersystems.signalservice.api.messages.EnvelopeResponse
 import org.whispersystems.signalservice.api.push.ServiceId
 import org.whispersystems.signalservice.api.util.SleepTimer
 import org.whispersystems.signalservice.api.util.UptimeSleepTimer
@@ -428,22 +429,41 @@ class IncomingMessageObserver(
                   val startTime = System.currentTimeMillis()
                   GroupsV2ProcessingLock.acquireGroupProcessingLock().use {
                     ReentrantSessionLock.INSTANCE.acquire().use {
-                      batch.forEach { response ->
-                        Log.d(TAG, "Beginning database transaction...")
-                        val followUpOperations = SignalDatabase.runInTransaction { db ->
-                          val followUps: List<FollowUpOperation>? = processEnvelope(bufferedStore, response.envelope, response.serverDeliveredTimestamp)
-                          bufferedStore.flushToDisk()
-                          followUps
+                      ReceiptMessageProcessor.batching { receiptBatch ->
+                        val deferredAcks = mutableListOf<EnvelopeResponse>()
+
+                        batch.forEach { response ->
+                          val pendingReceipts = receiptBatch.size
+
+                          // Jobs enqueued while processing the envelope and by its follow-ups are written to the job database together
+                          AppDependencies.jobManager.runInBatch {
+                            Log.d(TAG, "Beginning database transaction...")
+                            val followUpOperations = SignalDatabase.runInTransaction { db ->
+                              val followUps: List<FollowUpOperation>? = processEnvelope(bufferedStore, response.envelope, response.serverDeliveredTimestamp)
+                              bufferedStore.flushToDisk()
+                              followUps
+                            }
+                            Log.d(TAG, "Ended database transaction.")
+
+                            if (followUpOperations != null) {
+                              Log.d(TAG, "Running ${followUpOperations.size} follow-up operations...")
+                              val jobs = followUpOperations.mapNotNull { it.run() }
+                              AppDependencies.jobManager.addAllChains(jobs)
+                            }
+                          }
+
+                          // Receipts held for the batch aren't in the database yet, so we can't ack them until they are
+                          if (receiptBatch.size > pendingReceipts) {
+                            deferredAcks += response
+                          } else {
+                            authWebSocket.sendAck(response)
+                          }
                         }
-                        Log.d(TAG, "Ended database transaction.")
 
-                        if (followUpOperations != null) {
-                          Log.d(TAG, "Running ${followUpOperations.size} follow-up operations...")
-                          val jobs = followUpOperations.mapNotNull { it.run() }
-                          AppDependencies.jobManager.addAllChains(jobs)
+                        if (deferredAcks.isNotEmpty()) {
+                          SignalDatabase.runInTransaction { receiptBatch.flush(context) }
+                          deferredAcks.forEach { authWebSocket.sendAck(it) }
                         }
-
-                        authWebSocket.sendAck(response)
                       }
                     }
                   }
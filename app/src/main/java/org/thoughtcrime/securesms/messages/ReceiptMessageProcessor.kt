@@ -3,6 +3,8 @@ package org.thoughtcrime.securesms.messages
 import android.annotation.SuppressLint
 import android.content.Context
 import org.signal.core.util.Stopwatch
+import org.signal.core.util.logging.Log
+import org.thoughtcrime.securesms.database.MessageTable
 import org.thoughtcrime.securesms.database.SignalDatabase
 import org.thoughtcrime.securesms.dependencies.AppDependencies
 import org.thoughtcrime.securesms.jobs.PushProcessEarlyMessagesJob
@@ -23,9 +25,31 @@ object ReceiptMessageProcessor {
 
   private const val VERBOSE = false
 
+  private val activeBatch = ThreadLocal<Batch?>()
+
+  /**
+   * Runs [block] with receipt batching enabled on this thread. Delivery and read receipts processed inside it are held in the returned [Batch]
+   * rather than applied immediately, and must be applied with [Batch.flush]. Anything else is processed as usual.
+   */
+  fun <T> batching(block: (Batch) -> T): T {
+    val batch = Batch()
+    activeBatch.set(batch)
+    try {
+      return block(batch)
+    } finally {
+      activeBatch.remove()
+    }
+  }
+
   fun process(context: Context, senderRecipient: Recipient, envelope: Envelope, content: Content, metadata: EnvelopeMetadata, earlyMessageCacheEntry: EarlyMessageCacheEntry?) {
     val receiptMessage = content.receiptMessage!!
 
+    val batch = activeBatch.get()
+    if (batch != null && earlyMessageCacheEntry != null && (receiptMessage.type == ReceiptMessage.Type.DELIVERY || receiptMessage.type == ReceiptMessage.Type.READ)) {
+      batch.add(PendingReceipt(receiptMessage.type, senderRecipient.id, metadata.sourceDeviceId, envelope.timestamp!!, receiptMessage.timestamp, earlyMessageCacheEntry))
+      return
+    }
+
     when (receiptMessage.type) {
       ReceiptMessage.Type.DELIVERY -> handleDeliveryReceipt(envelope, metadata, receiptMessage, senderRecipient.id)
       ReceiptMessage.Type.READ -> handleReadReceipt(context, senderRecipient.id, envelope, metadata, receiptMessage, earlyMessageCacheEntry)
@@ -142,4 +166,100 @@ object ReceiptMessageProcessor {
       PushProcessEarlyMessagesJob.enqueue()
     }
   }
+
+  /**
+   * Delivery and read receipts collected from a batch of envelopes. In a busy group nearly every member sends us both for every message, so applying
+   * them together lets duplicates collapse and turns thousands of single-row lookups and updates into a few set-based ones, with one round of
+   * observer notifications at the end.
+   */
+  class Batch internal constructor() {
+    private val pending: MutableList<PendingReceipt> = mutableListOf()
+
+    val size: Int
+      get() = pending.size
+
+    internal fun add(receipt: PendingReceipt) {
+      pending += receipt
+    }
+
+    /**
+     * Applies everything collected so far. Should be called in a transaction.
+     */
+    fun flush(context: Context) {
+      if (pending.isEmpty()) {
+        return
+      }
+
+      val (deliveries, reads) = pending.partition { it.type == ReceiptMessage.Type.DELIVERY }
+      pending.clear()
+
+      if (deliveries.isNotEmpty()) {
+        flushDeliveryReceipts(deliveries)
+      }
+
+      if (reads.isNotEmpty()) {
+        flushReadReceipts(context, reads)
+      }
+    }
+
+    private fun flushDeliveryReceipts(receipts: List<PendingReceipt>) {
+      Log.i(TAG, "Processing ${receipts.sumOf { it.targetTimestamps.size }} batched delivery receipts from ${receipts.size} envelopes.")
+
+      val missing: Set<MessageTable.BatchedReceipt> = SignalDatabase.messages.incrementDeliveryReceiptCounts(receipts.flatMap { it.toBatchedReceipts() })
+
+      for (receipt in missing) {
+        warn(receipt.receiptSentTimestamp, "[handleDeliveryReceipt] Could not find matching message! targetTimestamp: ${receipt.targetTimestamp}, receiptAuthor: ${receipt.author}")
+      }
+
+      if (missing.isNotEmpty()) {
+        PushProcessEarlyMessagesJob.enqueue()
+      }
+
+      for (receipt in receipts) {
+        SignalDatabase.pendingPniSignatureMessages.acknowledgeReceipts(receipt.senderRecipientId, receipt.targetTimestamps, receipt.sourceDeviceId)
+        SignalDatabase.messageLog.deleteEntriesForRecipient(receipt.targetTimestamps, receipt.senderRecipientId, receipt.sourceDeviceId)
+      }
+    }
+
+    private fun flushReadReceipts(context: Context, receipts: List<PendingReceipt>) {
+      if (!TextSecurePreferences.isReadReceiptsEnabled(context)) {
+        Log.i(TAG, "Ignoring ${receipts.size} batched read receipts.")
+        return
+      }
+
+      Log.i(TAG, "Processing ${receipts.sumOf { it.targetTimestamps.size }} batched read receipts from ${receipts.size} envelopes.")
+
+      val missing: Set<MessageTable.BatchedReceipt> = SignalDatabase.messages.incrementReadReceiptCounts(receipts.flatMap { it.toBatchedReceipts() })
+      if (missing.isEmpty()) {
+        return
+      }
+
+      val selfId = Recipient.self().id
+      val missingKeys: Set<Pair<RecipientId, Long>> = missing.map { it.author to it.targetTimestamp }.toSet()
+
+      for (receipt in receipts) {
+        for (targetTimestamp in receipt.targetTimestamps) {
+          if ((receipt.senderRecipientId to targetTimestamp) in missingKeys) {
+            warn(receipt.envelopeTimestamp, "[handleReadReceipt] Could not find matching message! targetTimestamp: $targetTimestamp, receiptAuthor: ${receipt.senderRecipientId} | Receipt, so associating with message from self ($selfId)")
+            AppDependencies.earlyMessageCache.store(selfId, targetTimestamp, receipt.earlyMessageCacheEntry)
+          }
+        }
+      }
+
+      PushProcessEarlyMessagesJob.enqueue()
+    }
+  }
+
+  internal class PendingReceipt(
+    val type: ReceiptMessage.Type,
+    val senderRecipientId: RecipientId,
+    val sourceDeviceId: Int,
+    val envelopeTimestamp: Long,
+    val targetTimestamps: List<Long>,
+    val earlyMessageCacheEntry: EarlyMessageCacheEntry
+  ) {
+    fun toBatchedReceipts(): List<MessageTable.BatchedReceipt> {
+      return targetTimestamps.map { MessageTable.BatchedReceipt(senderRecipientId, it, envelopeTimestamp) }
+    }
+  }
 }
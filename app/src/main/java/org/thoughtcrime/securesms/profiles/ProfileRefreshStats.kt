@@ -0,0 +1,109 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.profiles
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Process-lifetime counters for profile refreshes, so that throughput and failure rates of large fetches are visible in the logs.
+ */
+object ProfileRefreshStats {
+
+  private val batches = AtomicLong()
+  private val requested = AtomicLong()
+  private val fetched = AtomicLong()
+  private val updated = AtomicLong()
+  private val unregistered = AtomicLong()
+  private val retryableFailures = AtomicLong()
+  private val verificationFailures = AtomicLong()
+  private val decryptionFailures = AtomicLong()
+  private val rateLimited = AtomicLong()
+  private val fetchMs = AtomicLong()
+  private val decryptMs = AtomicLong()
+  private val writeMs = AtomicLong()
+
+  fun record(batch: Batch) {
+    batches.incrementAndGet()
+    requested.addAndGet(batch.requested.toLong())
+    fetched.addAndGet(batch.fetched.toLong())
+    updated.addAndGet(batch.updated.toLong())
+    unregistered.addAndGet(batch.unregistered.toLong())
+    retryableFailures.addAndGet(batch.retryableFailures.toLong())
+    verificationFailures.addAndGet(batch.verificationFailures.toLong())
+    decryptionFailures.addAndGet(batch.decryptionFailures.toLong())
+    if (batch.rateLimited) {
+      rateLimited.incrementAndGet()
+    }
+    fetchMs.addAndGet(batch.fetchMs)
+    decryptMs.addAndGet(batch.decryptMs)
+    writeMs.addAndGet(batch.writeMs)
+  }
+
+  fun snapshot(): Snapshot {
+    return Snapshot(
+      batches = batches.get(),
+      requested = requested.get(),
+      fetched = fetched.get(),
+      updated = updated.get(),
+      unregistered = unregistered.get(),
+      retryableFailures = retryableFailures.get(),
+      verificationFailures = verificationFailures.get(),
+      decryptionFailures = decryptionFailures.get(),
+      rateLimited = rateLimited.get(),
+      fetchMs = fetchMs.get(),
+      decryptMs = decryptMs.get(),
+      writeMs = writeMs.get()
+    )
+  }
+
+  /**
+   * The outcome of a single refresh of a batch of profiles.
+   */
+  data class Batch(
+    val requested: Int,
+    val fetched: Int,
+    val updated: Int,
+    val unregistered: Int,
+    val retryableFailures: Int,
+    val verificationFailures: Int,
+    val decryptionFailures: Int,
+    val rateLimited: Boolean,
+    val fetchMs: Long,
+    val decryptMs: Long,
+    val writeMs: Long
+  ) {
+    val profilesPerSecond: Long
+      get() = perSecond(fetched.toLong(), fetchMs + decryptMs + writeMs)
+  }
+
+  data class Snapshot(
+    val batches: Long,
+    val requested: Long,
+    val fetched: Long,
+    val updated: Long,
+    val unregistered: Long,
+    val retryableFailures: Long,
+    val verificationFailures: Long,
+    val decryptionFailures: Long,
+    val rateLimited: Long,
+    val fetchMs: Long,
+    val decryptMs: Long,
+    val writeMs: Long
+  ) {
+    val profilesPerSecond: Long
+      get() = perSecond(fetched, fetchMs + decryptMs + writeMs)
+
+    override fun toString(): String {
+      return "batches: $batches, requested: $requested, fetched: $fetched, updated: $updated, unregistered: $unregistered, " +
+        "retryable: $retryableFailures, verification failures: $verificationFailures, decryption failures: $decryptionFailures, rate limited: $rateLimited, " +
+        "fetch: $fetchMs ms, decrypt: $decryptMs ms, write: $writeMs ms, throughput: $profilesPerSecond profiles/s"
+    }
+  }
+
+  private fun perSecond(count: Long, elapsedMs: Long): Long {
+    return if (elapsedMs <= 0) count else count * 1000 / elapsedMs
+  }
+}
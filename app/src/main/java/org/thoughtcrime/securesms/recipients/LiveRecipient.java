@@ -181,6 +181,19 @@ public final class LiveRecipient {
     refreshForceNotify.postValue(new Object());
   }
 
+  /**
+   * Like {@link #refresh()}, but uses a record that the caller has already read from disk, so that many recipients can be refreshed with one read.
+   */
+  @WorkerThread
+  void refresh(@NonNull RecipientRecord record) {
+    if (getId().isUnknown()) return;
+
+    Recipient recipient = RecipientCreator.forRecord(context, record);
+    RecipientIdCache.INSTANCE.put(recipient);
+    set(recipient);
+    refreshForceNotify.postValue(new Object());
+  }
+
   public @NonNull LiveData<Recipient> getLiveData() {
     return observableLiveData;
   }
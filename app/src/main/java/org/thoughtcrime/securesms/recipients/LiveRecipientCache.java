@@ -7,6 +7,7 @@ import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 
 import org.signal.core.util.ThreadUtil;
 import org.signal.core.util.concurrent.SignalExecutors;
@@ -15,6 +16,7 @@ import org.thoughtcrime.securesms.database.RecipientTable;
 import org.thoughtcrime.securesms.database.RecipientTable.MissingRecipientException;
 import org.thoughtcrime.securesms.database.SignalDatabase;
 import org.thoughtcrime.securesms.database.ThreadTable;
+import org.thoughtcrime.securesms.database.model.RecipientRecord;
 import org.thoughtcrime.securesms.database.model.ThreadRecord;
 import org.thoughtcrime.securesms.keyvalue.SignalStore;
 import org.signal.core.util.CursorUtil;
@@ -25,8 +27,10 @@ import org.whispersystems.signalservice.api.push.ServiceId.ACI;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -257,6 +261,45 @@ public final class LiveRecipientCache {
     });
   }
 
+  /**
+   * Refreshes every cached recipient in the collection using a single bulk read. Recipients that aren't in the cache are skipped, since they'll be
+   * read fresh from disk whenever they're next requested.
+   */
+  @WorkerThread
+  public void refresh(@NonNull Collection<RecipientId> ids) {
+    List<LiveRecipient> cached = new ArrayList<>(ids.size());
+
+    synchronized (recipients) {
+      for (RecipientId id : ids) {
+        LiveRecipient live = recipients.get(id);
+        if (live != null) {
+          cached.add(live);
+        }
+      }
+    }
+
+    if (cached.isEmpty()) {
+      return;
+    }
+
+    Set<RecipientId> cachedIds = new HashSet<>(cached.size());
+    for (LiveRecipient live : cached) {
+      cachedIds.add(live.getId());
+    }
+
+    Map<RecipientId, RecipientRecord> records = recipientTable.getExistingRecords(cachedIds);
+
+    for (LiveRecipient live : cached) {
+      RecipientRecord record = records.get(live.getId());
+
+      if (record != null) {
+        live.refresh(record);
+      } else {
+        live.refresh();
+      }
+    }
+  }
+
   @AnyThread
   public void clearSelf() {
     synchronized (localRecipientId) {
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.search
+
+import org.thoughtcrime.securesms.database.SearchTable
+import java.text.Normalizer
+
+/**
+ * Narrows down a previous set of message search hits when the user keeps typing, instead of asking the full-text index again.
+ *
+ * Every term in a search is a prefix match, and all terms have to match. So if the new query only extends the old one, by typing more of the
+ * last word or by adding words, whatever it matches is a subset of what the old one matched. This mirrors how the index tokenizes text
+ * (unicode61, case and diacritics folded, letters, numbers and symbols as token characters) closely enough to filter those hits in memory.
+ */
+object MessageSearchRefiner {
+
+  private val COMBINING_MARKS = Regex("\\p{Mn}+")
+
+  /**
+   * @return True if the hits for [previousQuery] are guaranteed to contain every hit for [query].
+   */
+  @JvmStatic
+  fun canRefine(previousQuery: String, query: String): Boolean {
+    return previousQuery.isNotBlank() &&
+      query.startsWith(previousQuery) &&
+      query.codePoints().allMatch { it == ' '.code || isTokenCharacter(it) }
+  }
+
+  /**
+   * @return The [hits] that [query] matches, in the same order.
+   */
+  @JvmStatic
+  fun refine(hits: List<SearchTable.MessageSearchHit>, query: String): List<SearchTable.MessageSearchHit> {
+    val terms = tokenize(query)
+    if (terms.isEmpty()) {
+      return emptyList()
+    }
+
+    return hits.filter { hit -> matches(tokenize(hit.body), terms) }
+  }
+
+  @JvmStatic
+  fun matches(body: String, query: String): Boolean {
+    val terms = tokenize(query)
+    return terms.isNotEmpty() && matches(tokenize(body), terms)
+  }
+
+  private fun matches(tokens: List<String>, terms: List<String>): Boolean {
+    return terms.all { term -> tokens.any { it.startsWith(term) } }
+  }
+
+  private fun tokenize(text: String): List<String> {
+    val folded = COMBINING_MARKS.replace(Normalizer.normalize(text, Normalizer.Form.NFD), "").lowercase()
+    val tokens = mutableListOf<String>()
+    val current = StringBuilder()
+
+    var i = 0
+    while (i < folded.length) {
+      val codePoint = folded.codePointAt(i)
+
+      if (isTokenCharacter(codePoint)) {
+        current.appendCodePoint(codePoint)
+      } else if (current.isNotEmpty()) {
+        tokens += current.toString()
+        current.setLength(0)
+      }
+
+      i += Character.charCount(codePoint)
+    }
+
+    if (current.isNotEmpty()) {
+      tokens += current.toString()
+    }
+
+    return tokens
+  }
+
+  /**
+   * Matches the `categories 'L* N* Co Sc So'` the index was created with.
+   */
+  private fun isTokenCharacter(codePoint: Int): Boolean {
+    return when (Character.getType(codePoint).toByte()) {
+      Character.UPPERCASE_LETTER,
+      Character.LOWERCASE_LETTER,
+      Character.TITLECASE_LETTER,
+      Character.MODIFIER_LETTER,
+      Character.OTHER_LETTER,
+      Character.DECIMAL_DIGIT_NUMBER,
+      Character.LETTER_NUMBER,
+      Character.OTHER_NUMBER,
+      Character.PRIVATE_USE,
+      Character.CURRENCY_SYMBOL,
+      Character.OTHER_SYMBOL -> true
+      else -> false
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.search
+
+import org.thoughtcrime.securesms.database.SearchTable
+
+/**
+ * Message search results that are only turned into [MessageResult]s a page at a time, as they are read.
+ *
+ * Building a result means loading its snippet and resolving and styling mentions and body ranges, which is most of the cost of a search. Since only
+ * the first page or two are usually ever looked at, everything past that is never built at all.
+ */
+class PagedMessageResults(
+  private val items: List<Item>,
+  private val pageSize: Int,
+  private val loader: PageLoader
+) : AbstractList<MessageResult>() {
+
+  private val results = arrayOfNulls<MessageResult>(items.size)
+
+  override val size: Int
+    get() = items.size
+
+  @Synchronized
+  override fun get(index: Int): MessageResult {
+    results[index]?.let { return it }
+
+    val page = (index / pageSize * pageSize) until minOf(items.size, (index / pageSize + 1) * pageSize)
+    val hits = page.mapNotNull { (items[it] as? Item.Hit)?.hit }
+    val loaded = if (hits.isNotEmpty()) loader.load(hits).iterator() else null
+
+    for (i in page) {
+      results[i] = when (val item = items[i]) {
+        is Item.Hit -> loaded!!.next()
+        is Item.Loaded -> item.result
+      }
+    }
+
+    return results[index]!!
+  }
+
+  sealed interface Item {
+    val receivedTimestampMs: Long
+
+    /** A hit that still needs to be loaded. */
+    data class Hit(val hit: SearchTable.MessageSearchHit) : Item {
+      override val receivedTimestampMs: Long = hit.receivedTimestampMs
+    }
+
+    /** A result that was built up front. */
+    data class Loaded(val result: MessageResult) : Item {
+      override val receivedTimestampMs: Long = result.receivedTimestampMs
+    }
+  }
+
+  fun interface PageLoader {
+    /**
+     * @return One result for each of [hits], in the same order.
+     */
+    fun load(hits: List<SearchTable.MessageSearchHit>): List<MessageResult>
+  }
+}
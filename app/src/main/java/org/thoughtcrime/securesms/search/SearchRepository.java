@@ -2,6 +2,8 @@ package org.thoughtcrime.securesms.search;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.text.Spannable;
 import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
@@ -19,6 +21,7 @@ import org.thoughtcrime.securesms.contacts.ContactRepository;
 import org.thoughtcrime.securesms.conversation.MessageStyler;
 import org.thoughtcrime.securesms.database.BodyAdjustment;
 import org.thoughtcrime.securesms.database.BodyRangeUtil;
+import org.thoughtcrime.securesms.database.DatabaseObserver;
 import org.thoughtcrime.securesms.database.GroupTable;
 import org.thoughtcrime.securesms.database.MentionTable;
 import org.thoughtcrime.securesms.database.MentionUtil;
@@ -35,6 +38,7 @@ import org.thoughtcrime.securesms.database.model.databaseprotos.BodyRangeList;
 import org.thoughtcrime.securesms.dependencies.AppDependencies;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.recipients.RecipientId;
+import org.thoughtcrime.securesms.util.SignalLocalMetrics;
 import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.concurrent.SerialExecutor;
 
@@ -42,6 +46,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -50,6 +55,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.thoughtcrime.securesms.database.SearchTable.SNIPPET_WRAP;
 
@@ -60,6 +66,9 @@ public class SearchRepository {
 
   private static final String TAG = Log.tag(SearchRepository.class);
 
+  /** How many message results are loaded and styled at a time. */
+  private static final int MESSAGE_PAGE_SIZE = 20;
+
   private final Context           context;
   private final String            noteToSelfTitle;
   private final SearchTable       searchDatabase;
@@ -71,6 +80,14 @@ public class SearchRepository {
 
   private final Executor serialExecutor;
 
+  private final Object                    messageSearchLock = new Object();
+  private final DatabaseObserver.Observer messageObserver   = this::onMessagesChanged;
+
+  private @Nullable MessageHits lastMessageHits;
+  private           long        messagesVersion;
+  private           boolean     observingMessages;
+  private @Nullable String      pendingMessageMetric;
+
   public SearchRepository(@NonNull String noteToSelfTitle) {
     this.context           = AppDependencies.getApplication().getApplicationContext();
     this.noteToSelfTitle   = noteToSelfTitle;
@@ -93,17 +110,57 @@ public class SearchRepository {
     return new ThreadSearchResult(result, query);
   }
 
+  /**
+   * Searches all messages for [query]. Results are only loaded and styled a page at a time, as they're read, so this returns as soon as the matches
+   * are known.
+   *
+   * When [query] just extends the previous query, the previous matches are narrowed down in memory instead of searching the index again.
+   *
+   * @param cancellationSignal Canceled once [query] is no longer wanted, e.g. because the user kept typing. An empty result is returned in that case.
+   */
   @WorkerThread
-  public @NonNull MessageSearchResult queryMessagesSync(@NonNull String query) {
-    long start = System.currentTimeMillis();
+  public @NonNull MessageSearchResult queryMessagesSync(@NonNull String query, @Nullable CancellationSignal cancellationSignal) {
+    long   start    = System.currentTimeMillis();
+    String metricId = startMessageSearchMetric(query);
 
-    List<MessageResult> messages        = queryMessages(query);
-    List<MessageResult> mentionMessages = queryMentions(convertMentionsQueryToTokens(query));
-    List<MessageResult> combined        = mergeMessagesAndMentions(messages, mentionMessages);
+    try {
+      throwIfCanceled(cancellationSignal);
 
-    Log.d(TAG, "[messages] Search took " + (System.currentTimeMillis() - start) + " ms");
+      List<SearchTable.MessageSearchHit> hits = findMessageHits(query, cancellationSignal);
+      SignalLocalMetrics.MessageSearch.onHitsFound(metricId);
 
-    return new MessageSearchResult(combined, query);
+      List<MessageResult> mentionMessages = queryMentions(convertMentionsQueryToTokens(query));
+      throwIfCanceled(cancellationSignal);
+
+      List<MessageResult> combined = mergeHitsAndMentions(query, hits, mentionMessages, metricId);
+
+      if (combined.isEmpty()) {
+        finishMessageSearchMetric(metricId, false);
+      }
+
+      Log.d(TAG, "[messages] Search took " + (System.currentTimeMillis() - start) + " ms");
+
+      return new MessageSearchResult(combined, query);
+    } catch (OperationCanceledException e) {
+      Log.d(TAG, "[messages] Search canceled after " + (System.currentTimeMillis() - start) + " ms");
+      finishMessageSearchMetric(metricId, false);
+
+      return new MessageSearchResult(Collections.emptyList(), query);
+    }
+  }
+
+  /**
+   * Stops listening for message changes. Call this once the repository is no longer used.
+   */
+  public void close() {
+    synchronized (messageSearchLock) {
+      if (observingMessages) {
+        AppDependencies.getDatabaseObserver().unregisterObserver(messageObserver);
+        observingMessages = false;
+      }
+
+      lastMessageHits = null;
+    }
   }
 
   public void query(@NonNull String query, long threadId, @NonNull Callback<List<MessageResult>> callback) {
@@ -164,16 +221,157 @@ public class SearchRepository {
     }
   }
 
-  private @NonNull List<MessageResult> queryMessages(@NonNull String query) {
-    if (Util.isEmpty(query)) {
-      return Collections.emptyList();
+  private @NonNull List<SearchTable.MessageSearchHit> findMessageHits(@NonNull String query, @Nullable CancellationSignal cancellationSignal) {
+    MessageHits previous;
+    long        version;
+
+    synchronized (messageSearchLock) {
+      if (!observingMessages) {
+        AppDependencies.getDatabaseObserver().registerConversationListObserver(messageObserver);
+        observingMessages = true;
+      }
+
+      previous = lastMessageHits;
+      version  = messagesVersion;
     }
 
-    List<MessageResult> results;
-    try (Cursor cursor = searchDatabase.queryMessages(query)) {
-      results = readToList(cursor, new MessageModelBuilder());
+    List<SearchTable.MessageSearchHit> hits;
+    if (previous != null && MessageSearchRefiner.canRefine(previous.query, query)) {
+      hits = MessageSearchRefiner.refine(previous.hits, query);
+      Log.d(TAG, "[messages] Refined " + previous.hits.size() + " hits down to " + hits.size());
+    } else {
+      hits = searchDatabase.getMessageSearchHits(query, cancellationSignal);
     }
 
+    synchronized (messageSearchLock) {
+      if (version == messagesVersion) {
+        // A capped set of hits may be missing matches for the longer query, so it can't be refined.
+        lastMessageHits = hits.size() < SearchTable.MESSAGE_SEARCH_LIMIT ? new MessageHits(query, hits) : null;
+      }
+    }
+
+    return hits;
+  }
+
+  private void onMessagesChanged() {
+    synchronized (messageSearchLock) {
+      messagesVersion++;
+      lastMessageHits = null;
+    }
+  }
+
+  private @NonNull List<MessageResult> mergeHitsAndMentions(@NonNull String query,
+                                                            @NonNull List<SearchTable.MessageSearchHit> hits,
+                                                            @NonNull List<MessageResult> mentionMessages,
+                                                            @NonNull String metricId)
+  {
+    Set<Long>                      hitIds = new HashSet<>(hits.size());
+    List<PagedMessageResults.Item> items  = new ArrayList<>(hits.size() + mentionMessages.size());
+
+    for (SearchTable.MessageSearchHit hit : hits) {
+      items.add(new PagedMessageResults.Item.Hit(hit));
+      hitIds.add(hit.getMessageId());
+    }
+
+    for (MessageResult result : mentionMessages) {
+      if (!hitIds.contains(result.getMessageId())) {
+        items.add(new PagedMessageResults.Item.Loaded(result));
+      }
+    }
+
+    Collections.sort(items, (left, right) -> Long.compare(right.getReceivedTimestampMs(), left.getReceivedTimestampMs()));
+
+    AtomicBoolean firstPage = new AtomicBoolean(true);
+
+    return new PagedMessageResults(items, MESSAGE_PAGE_SIZE, page -> {
+      List<MessageResult> results = loadMessageResults(query, page);
+
+      if (firstPage.compareAndSet(true, false)) {
+        finishMessageSearchMetric(metricId, true);
+      }
+
+      return results;
+    });
+  }
+
+  /**
+   * Builds the results for a page of [hits], with snippets and styling.
+   */
+  @WorkerThread
+  private @NonNull List<MessageResult> loadMessageResults(@NonNull String query, @NonNull List<SearchTable.MessageSearchHit> hits) {
+    List<Long> messageIds = new ArrayList<>(hits.size());
+    for (SearchTable.MessageSearchHit hit : hits) {
+      messageIds.add(hit.getMessageId());
+    }
+
+    List<MessageResult> loaded;
+    try (Cursor cursor = searchDatabase.queryMessages(query, messageIds)) {
+      loaded = styleMessages(readToList(cursor, new MessageModelBuilder()));
+    }
+
+    Map<Long, MessageResult> loadedById = new HashMap<>(loaded.size());
+    for (MessageResult result : loaded) {
+      loadedById.put(result.getMessageId(), result);
+    }
+
+    List<String>        tokens  = Arrays.asList(query.trim().split("\\s+"));
+    List<MessageResult> results = new ArrayList<>(hits.size());
+
+    for (SearchTable.MessageSearchHit hit : hits) {
+      MessageResult result = loadedById.get(hit.getMessageId());
+
+      if (result == null) {
+        // The message was edited or deleted since we searched, so fall back to what it looked like then.
+        result = new MessageResult(Recipient.live(hit.getConversationRecipientId()).get(),
+                                   Recipient.live(hit.getMessageRecipientId()).get(),
+                                   hit.getBody(),
+                                   makeSnippet(tokens, hit.getBody()),
+                                   hit.getThreadId(),
+                                   hit.getMessageId(),
+                                   hit.getReceivedTimestampMs(),
+                                   true);
+      }
+
+      results.add(result);
+    }
+
+    return results;
+  }
+
+  private @NonNull String startMessageSearchMetric(@NonNull String query) {
+    synchronized (messageSearchLock) {
+      if (pendingMessageMetric != null) {
+        SignalLocalMetrics.MessageSearch.cancel(pendingMessageMetric);
+      }
+
+      pendingMessageMetric = SignalLocalMetrics.MessageSearch.start(query.length());
+      return pendingMessageMetric;
+    }
+  }
+
+  private void finishMessageSearchMetric(@NonNull String metricId, boolean firstPageLoaded) {
+    synchronized (messageSearchLock) {
+      if (!metricId.equals(pendingMessageMetric)) {
+        return;
+      }
+
+      pendingMessageMetric = null;
+    }
+
+    if (firstPageLoaded) {
+      SignalLocalMetrics.MessageSearch.onFirstPageLoaded(metricId);
+    } else {
+      SignalLocalMetrics.MessageSearch.cancel(metricId);
+    }
+  }
+
+  private static void throwIfCanceled(@Nullable CancellationSignal cancellationSignal) {
+    if (cancellationSignal != null) {
+      cancellationSignal.throwIfCanceled();
+    }
+  }
+
+  private @NonNull List<MessageResult> styleMessages(@NonNull List<MessageResult> results) {
     List<Long> messageIds = new LinkedList<>();
     for (MessageResult result : results) {
       if (result.isMms()) {
@@ -486,6 +684,16 @@ public class SearchRepository {
     }
   }
 
+  private static final class MessageHits {
+    private final String                             query;
+    private final List<SearchTable.MessageSearchHit> hits;
+
+    private MessageHits(@NonNull String query, @NonNull List<SearchTable.MessageSearchHit> hits) {
+      this.query = query;
+      this.hits  = hits;
+    }
+  }
+
   public interface Callback<E> {
     void onResult(@NonNull E result);
   }
@@ -4,7 +4,6 @@ import android.content.Context
 import androidx.annotation.VisibleForTesting
 import okio.ByteString
 import okio.ByteString.Companion.toByteString
-import org.signal.core.util.Base64.encodeWithPadding
 import org.signal.core.util.SqlUtil
 import org.signal.core.util.logging.Log
 import org.thoughtcrime.securesms.backup.v2.MessageBackupTier
@@ -58,6 +57,9 @@ object StorageSyncHelper {
    * Given a list of all the local and remote keys you know about, this will return a result telling
    * you which keys are exclusively remote and which are exclusively local.
    *
+   * This is done in a single pass over each list using a hash of the raw IDs, since both lists can be
+   * tens of thousands of entries long for large accounts.
+   *
    * @param remoteIds All remote keys available.
    * @param localIds  All local keys available.
    * @return An object describing which keys are exclusive to the remote data set and which keys are
@@ -68,29 +70,31 @@ object StorageSyncHelper {
     remoteIds: Collection<StorageId>,
     localIds: Collection<StorageId>
   ): IdDifferenceResult {
-    val remoteByRawId: Map<String, StorageId> = remoteIds.associateBy { encodeWithPadding(it.raw) }
-    val localByRawId: Map<String, StorageId> = localIds.associateBy { encodeWithPadding(it.raw) }
+    val remoteByRawId: MutableMap<ByteString, StorageId> = LinkedHashMap(remoteIds.size)
+    for (remote in remoteIds) {
+      remoteByRawId[remote.raw.toByteString()] = remote
+    }
 
-    var hasTypeMismatch = remoteByRawId.size != remoteIds.size || localByRawId.size != localIds.size
+    val localByRawId: MutableMap<ByteString, StorageId> = LinkedHashMap(localIds.size)
+    for (local in localIds) {
+      localByRawId[local.raw.toByteString()] = local
+    }
 
-    val remoteOnlyRawIds: MutableSet<String> = (remoteByRawId.keys - localByRawId.keys).toMutableSet()
-    val localOnlyRawIds: MutableSet<String> = (localByRawId.keys - remoteByRawId.keys).toMutableSet()
-    val sharedRawIds: Set<String> = localByRawId.keys.intersect(remoteByRawId.keys)
+    var hasTypeMismatch = remoteByRawId.size != remoteIds.size || localByRawId.size != localIds.size
 
-    for (rawId in sharedRawIds) {
-      val remote = remoteByRawId[rawId]!!
-      val local = localByRawId[rawId]!!
+    val remoteOnlyKeys: MutableList<StorageId> = ArrayList()
 
-      if (remote.type != local.type) {
-        remoteOnlyRawIds.remove(rawId)
-        localOnlyRawIds.remove(rawId)
+    for ((rawId, remote) in remoteByRawId) {
+      val local = localByRawId[rawId]
+      if (local == null) {
+        remoteOnlyKeys += remote
+      } else if (remote.type != local.type) {
         hasTypeMismatch = true
         Log.w(TAG, "Remote type ${remote.type} did not match local type ${local.type}!")
       }
     }
 
-    val remoteOnlyKeys = remoteOnlyRawIds.mapNotNull { remoteByRawId[it] }
-    val localOnlyKeys = localOnlyRawIds.mapNotNull { localByRawId[it] }
+    val localOnlyKeys: List<StorageId> = localByRawId.filterKeys { it !in remoteByRawId }.values.toList()
 
     return IdDifferenceResult(remoteOnlyKeys, localOnlyKeys, hasTypeMismatch)
   }
@@ -1168,6 +1168,60 @@ object RemoteConfig {
     hotSwappable = true
   )
 
+  /** Whether to spread decryption of group state and history across a thread pool. */
+  @JvmStatic
+  @get:JvmName("parallelGroupDecryption")
+  val parallelGroupDecryption: Boolean by remoteBoolean(
+    key = "android.parallelGroupDecryption",
+    defaultValue = false,
+    hotSwappable = false
+  )
+
+  /** Whether to decode media thumbnails ahead of the scroll position in conversations. */
+  @JvmStatic
+  @get:JvmName("conversationMediaPrefetch")
+  val conversationMediaPrefetch: Boolean by remoteBoolean(
+    key = "android.conversationMediaPrefetch",
+    defaultValue = false,
+    hotSwappable = true
+  )
+
+  /** Whether to download restored media through [org.thoughtcrime.securesms.backup.v2.RestoreMediaScheduler] instead of a job per attachment. */
+  @JvmStatic
+  @get:JvmName("restoreMediaScheduler")
+  val restoreMediaScheduler: Boolean by remoteBoolean(
+    key = "android.restoreMediaScheduler",
+    defaultValue = false,
+    hotSwappable = false
+  )
+
+  /** Whether to download large attachments and backups as several byte ranges in parallel. */
+  @JvmStatic
+  @get:JvmName("segmentedDownloads")
+  val segmentedDownloads: Boolean by remoteBoolean(
+    key = "android.segmentedDownloads",
+    defaultValue = false,
+    hotSwappable = true
+  )
+
+  /** Whether to upload large attachments in checkpointed chunks rather than in a single request. */
+  @JvmStatic
+  @get:JvmName("chunkedAttachmentUploads")
+  val chunkedAttachmentUploads: Boolean by remoteBoolean(
+    key = "android.chunkedAttachmentUploads",
+    defaultValue = false,
+    hotSwappable = true
+  )
+
+  /** Whether to stream traces into a bounded buffer that spills to disk, so they can cover the last several minutes. */
+  @JvmStatic
+  @get:JvmName("streamingTraces")
+  val streamingTraces: Boolean by remoteBoolean(
+    key = "android.streamingTraces",
+    defaultValue = false,
+    hotSwappable = false
+  )
+
   /**
    * Also determines how long an unregistered/deleted record should remain in storage service
    */
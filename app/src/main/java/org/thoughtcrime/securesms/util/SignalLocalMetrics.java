@@ -533,4 +533,40 @@ public final class SignalLocalMetrics {
       LocalMetrics.getInstance().end(NAME + id);
     }
   }
+
+  /**
+   * Tracks how long a message search takes to get its first page of results on screen. Traced per query length, so each keystroke can be measured.
+   */
+  public static final class MessageSearch {
+    private static final String NAME = "message-search";
+
+    private static final String SPLIT_HITS       = "hits";
+    private static final String SPLIT_FIRST_PAGE = "first-page";
+
+    /** When a search begins. */
+    public static @NonNull String start(int queryLength) {
+      String id = NAME + "-" + System.currentTimeMillis();
+      SignalTrace.beginSection("MessageSearch-FirstPage-" + queryLength);
+      LocalMetrics.getInstance().start(id, NAME);
+      return id;
+    }
+
+    /** When the matching messages are known, but none of them are loaded. */
+    public static void onHitsFound(@NonNull String id) {
+      LocalMetrics.getInstance().split(id, SPLIT_HITS);
+    }
+
+    /** When the first page of results is loaded and styled. */
+    public static void onFirstPageLoaded(@NonNull String id) {
+      LocalMetrics.getInstance().split(id, SPLIT_FIRST_PAGE);
+      LocalMetrics.getInstance().end(id);
+      SignalTrace.endSection();
+    }
+
+    /** When a search is superseded or has nothing to show. */
+    public static void cancel(@NonNull String id) {
+      LocalMetrics.getInstance().cancel(id);
+      SignalTrace.endSection();
+    }
+  }
 }
@@ -6,13 +6,16 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
+import org.signal.core.util.StreamUtil;
 import org.thoughtcrime.securesms.crypto.AttachmentSecret;
+import org.thoughtcrime.securesms.crypto.DecryptingPartChannel;
 import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream;
 import org.thoughtcrime.securesms.video.videoconverter.mediadatasource.InputStreamMediaDataSource;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Create via {@link EncryptedMediaDataSource}.
@@ -21,6 +24,9 @@ import java.io.InputStream;
  * <p>
  * It is "modern" compared to the {@link ClassicEncryptedMediaDataSource}. And "modern" refers to
  * the presence of a random part of the key supplied in the constructor.
+ * <p>
+ * Reads go through a single {@link DecryptingPartChannel} that's kept open until {@link #close()}, so the frequent random-access reads the media
+ * framework makes don't each reopen the file and re-derive the key.
  */
 @RequiresApi(23)
 final class ModernEncryptedMediaDataSource extends InputStreamMediaDataSource {
@@ -30,6 +36,8 @@ final class ModernEncryptedMediaDataSource extends InputStreamMediaDataSource {
   private final byte[]           random;
   private final long             length;
 
+  private DecryptingPartChannel channel;
+
   ModernEncryptedMediaDataSource(@NonNull AttachmentSecret attachmentSecret, @NonNull File mediaFile, @Nullable byte[] random, long length) {
     this.attachmentSecret = attachmentSecret;
     this.mediaFile        = mediaFile;
@@ -38,13 +46,48 @@ final class ModernEncryptedMediaDataSource extends InputStreamMediaDataSource {
   }
 
   @Override
-  public void close() {}
+  public synchronized int readAt(long position, @Nullable byte[] bytes, int offset, int length) throws IOException {
+    if (position >= this.length) {
+      return -1;
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+    while (buffer.hasRemaining()) {
+      int read = getChannel().read(buffer, position + buffer.position() - offset);
+      if (read == -1) {
+        break;
+      }
+    }
+
+    int totalRead = buffer.position() - offset;
+    return totalRead > 0 ? totalRead : -1;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (channel != null) {
+      StreamUtil.close(channel);
+      channel = null;
+    }
+  }
 
   @Override
   public long getSize() {
     return length;
   }
 
+  private @NonNull DecryptingPartChannel getChannel() throws IOException {
+    if (channel == null) {
+      if (random == null) {
+        channel = ModernDecryptingPartInputStream.createChannelFor(attachmentSecret, mediaFile);
+      } else {
+        channel = ModernDecryptingPartInputStream.createChannelFor(attachmentSecret, random, mediaFile);
+      }
+    }
+
+    return channel;
+  }
+
   @NonNull
   public InputStream createInputStream(long position) throws IOException {
     if (random == null) {
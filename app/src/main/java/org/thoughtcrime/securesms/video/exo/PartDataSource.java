@@ -33,6 +33,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -46,6 +48,7 @@ class PartDataSource implements DataSource {
 
   private Uri         uri;
   private InputStream inputStream;
+  private SeekableByteChannel channel;
   private DataSpec    activeDataSpec;
 
   PartDataSource(@Nullable TransferListener listener) {
@@ -119,7 +122,13 @@ class PartDataSource implements DataSource {
       Log.d(TAG, "Successfully loaded partial attachment file.");
     } else if (!inProgress || hasData) {
       Log.d(TAG, "Playing a fully downloaded attachment.");
-      this.inputStream = attachmentDatabase.getAttachmentStream(partUri.getPartId(), dataSpec.position);
+      this.channel = attachmentDatabase.getAttachmentChannel(partUri.getPartId());
+
+      if (channel != null) {
+        channel.position(dataSpec.position);
+      } else {
+        this.inputStream = attachmentDatabase.getAttachmentStream(partUri.getPartId(), dataSpec.position);
+      }
 
       Log.d(TAG, "Successfully loaded completed attachment file.");
     } else {
@@ -140,7 +149,8 @@ class PartDataSource implements DataSource {
 
   @Override
   public int read(@NonNull byte[] buffer, int offset, int readLength) throws IOException {
-    int read = inputStream.read(buffer, offset, readLength);
+    int read = channel != null ? channel.read(ByteBuffer.wrap(buffer, offset, readLength))
+                               : inputStream.read(buffer, offset, readLength);
 
     if (read > 0 && listener != null) {
       listener.onBytesTransferred(this, activeDataSpec, false, read);
@@ -162,5 +172,9 @@ class PartDataSource implements DataSource {
   @Override
   public void close() throws IOException {
     if (inputStream != null) inputStream.close();
+    if (channel != null) channel.close();
+
+    inputStream = null;
+    channel     = null;
   }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.backup.v2
+
+import assertk.assertThat
+import assertk.assertions.isBetween
+import assertk.assertions.isEqualTo
+import org.junit.Test
+
+class RestoreConcurrencyControllerTest {
+
+  companion object {
+    private const val MIN = 2
+    private const val MAX = 8
+    private const val WINDOW_MS = 1000L
+  }
+
+  private val controller = RestoreConcurrencyController(MIN, MAX, WINDOW_MS)
+  private var now = 0L
+
+  @Test
+  fun `Given downloads within a single window, when they finish, then I expect the limit to stay put`() {
+    repeat(10) {
+      now += WINDOW_MS / 20
+      controller.onDownloaded(1_000_000, now)
+    }
+
+    assertThat(controller.limit).isEqualTo(MIN)
+  }
+
+  @Test
+  fun `Given throughput that stops improving past five workers, when I run many windows, then I expect the limit to settle around five`() {
+    runWindows(50) { limit -> minOf(limit, 5) * 100_000L }
+
+    assertThat(controller.limit).isBetween(4, 6)
+  }
+
+  @Test
+  fun `Given throughput that always improves, when I run many windows, then I expect the limit to reach but never exceed the max`() {
+    var highest = 0
+    var bytes = 100_000L
+
+    runWindows(20) {
+      bytes *= 2
+      bytes
+    }.forEach { highest = maxOf(highest, it) }
+
+    assertThat(highest).isEqualTo(MAX)
+  }
+
+  @Test
+  fun `Given throughput that gets worse with more workers, when I run many windows, then I expect the limit to stay at the min`() {
+    runWindows(20) { limit -> 1_000_000L / limit }
+
+    assertThat(controller.limit).isEqualTo(MIN)
+  }
+
+  /**
+   * Runs [count] windows, each downloading however many bytes [bytesForLimit] says the current limit gets through.
+   *
+   * @return The limit after each window.
+   */
+  private fun runWindows(count: Int, bytesForLimit: (Int) -> Long): List<Int> {
+    controller.onDownloaded(0, now)
+
+    return List(count) {
+      now += WINDOW_MS
+      controller.onDownloaded(bytesForLimit(controller.limit), now)
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.contacts.paged
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isSameInstanceAs
+import org.junit.Test
+import org.thoughtcrime.securesms.recipients.RecipientId
+
+class ContactSearchIndexTest {
+
+  private val alice = contact(1, "alice", username = "wonderland.01")
+  private val bob = contact(2, "bob", e164 = "+15555550102")
+  private val andre = contact(3, "andré", e164 = "+15555550103", isE164Searchable = false)
+  private val number = contact(4, "1800 flowers")
+  private val carol = contact(5, "carol")
+
+  private val index = ContactSearchIndex.ContactIndex(listOf(number, alice, andre, bob, carol))
+
+  @Test
+  fun `Given no query, when I search, then I expect everyone starting from the first name beginning with a letter`() {
+    val result = index.search(null)
+
+    assertThat(result.recipientIds).containsExactly(alice.id, andre.id, bob.id, carol.id, number.id)
+  }
+
+  @Test
+  fun `Given no query, when I search, then I expect a header above the first contact for each letter`() {
+    val result = index.search("")
+
+    assertThat(result.headerLetters).isEqualTo(mapOf(alice.id to "A", bob.id to "B", carol.id to "C", number.id to "1"))
+  }
+
+  @Test
+  fun `Given a name starting with a non-ASCII letter, when I search, then I expect its header letter to keep its case`() {
+    val emile = contact(6, "émile")
+    val result = ContactSearchIndex.ContactIndex(listOf(alice, emile)).search("")
+
+    assertThat(result.headerLetters).isEqualTo(mapOf(alice.id to "A", emile.id to "é"))
+  }
+
+  @Test
+  fun `Given a query in the middle of a name, when I search, then I expect it to match`() {
+    assertThat(index.search("aro").recipientIds).containsExactly(carol.id)
+  }
+
+  @Test
+  fun `Given a query with different case and accents, when I search, then I expect them to be ignored`() {
+    assertThat(index.search("ANDRE").recipientIds).containsExactly(andre.id)
+    assertThat(index.search("andré").recipientIds).containsExactly(andre.id)
+  }
+
+  @Test
+  fun `Given a username, when I search for it, then I expect a match`() {
+    assertThat(index.search("wonder").recipientIds).containsExactly(alice.id)
+  }
+
+  @Test
+  fun `Given a number that is not shared, when I search for it, then I expect no match`() {
+    assertThat(index.search("5550102").recipientIds).containsExactly(bob.id)
+    assertThat(index.search("5550103").recipientIds).isEmpty()
+  }
+
+  @Test
+  fun `Given the same query twice, when I search, then I expect the same result`() {
+    val first = index.search(" al ")
+    val second = index.search("al")
+
+    assertThat(second).isSameInstanceAs(first)
+  }
+
+  @Test
+  fun `Given a query that extends the last one, when I search, then I expect only matches for the longer query`() {
+    index.search("a")
+
+    assertThat(index.search("an").recipientIds).containsExactly(andre.id)
+  }
+
+  @Test
+  fun `Given a renamed contact, when I update the index, then I expect it to move to its new place`() {
+    index.search("")
+
+    index.update(setOf(carol.id), listOf(contact(5, "abby")))
+
+    assertThat(index.search("").recipientIds).containsExactly(carol.id, alice.id, andre.id, bob.id, number.id)
+  }
+
+  @Test
+  fun `Given a contact that is no longer a Signal contact, when I update the index, then I expect it to be removed`() {
+    index.update(setOf(bob.id), emptyList())
+
+    assertThat(index.search("").recipientIds).containsExactly(alice.id, andre.id, carol.id, number.id)
+  }
+
+  private fun contact(id: Long, name: String, username: String? = null, e164: String? = null, isE164Searchable: Boolean = true): ContactSearchIndex.Contact {
+    return ContactSearchIndex.Contact(
+      id = RecipientId.from(id),
+      sortName = name,
+      systemJoinedName = name,
+      searchProfileName = null,
+      username = username,
+      e164 = e164,
+      isE164Searchable = isE164Searchable
+    )
+  }
+}
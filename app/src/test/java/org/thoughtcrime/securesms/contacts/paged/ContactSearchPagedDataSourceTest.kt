@@ -34,6 +34,7 @@ class ContactSearchPagedDataSourceTest {
 
     every { repository.getRecipientFromGroupRecord(any()) } returns Recipient.UNKNOWN
     every { repository.getRecipientFromSearchCursor(any()) } returns Recipient.UNKNOWN
+    every { repository.getRecipient(any()) } returns Recipient.UNKNOWN
     every { repository.getRecipientFromThreadCursor(cursor) } returns Recipient.UNKNOWN
     every { repository.getRecipientFromDistributionListCursor(cursor) } returns Recipient.UNKNOWN
     every { repository.getPrivacyModeFromDistributionListCursor(cursor) } returns DistributionListPrivacyMode.ALL
@@ -203,7 +204,7 @@ class ContactSearchPagedDataSourceTest {
     }
 
     every { repository.getRecents(recents) } returns cursor
-    every { repository.querySignalContacts(any()) } returns cursor
+    every { repository.searchSignalContacts(any(), any()) } returns ContactSearchIndex.SearchResult(List(10) { RecipientId.UNKNOWN }, emptyMap())
     every { cursor.count } returns 10
 
     return ContactSearchPagedDataSource(configuration, repository)
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.crypto
+
+import android.app.Application
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.signal.core.util.Conversions
+import org.signal.core.util.readFully
+import java.io.File
+import java.io.FileInputStream
+import java.io.InputStream
+import java.nio.ByteBuffer
+import javax.crypto.Cipher
+import javax.crypto.CipherInputStream
+import javax.crypto.Mac
+import javax.crypto.spec.IvParameterSpec
+import javax.crypto.spec.SecretKeySpec
+import kotlin.random.Random
+
+/**
+ * Checks that [DecryptingPartChannel] reads the same bytes as decrypting the file front to back, and as reopening a decrypting stream at each
+ * offset, which is what we used to do.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE, application = Application::class)
+class DecryptingPartChannelTest {
+
+  companion object {
+    private const val FILE_SIZE = 8 * 1024 * 1024
+    private const val SEEK_COUNT = 500
+    private const val READ_SIZE = 16 * 1024
+  }
+
+  private val random = Random(1)
+  private val attachmentSecret = AttachmentSecret(random.nextBytes(32), random.nextBytes(32), random.nextBytes(32))
+  private val plaintext = random.nextBytes(FILE_SIZE)
+
+  private lateinit var file: File
+
+  @Before
+  fun setUp() {
+    file = File.createTempFile("part", ".mms")
+  }
+
+  @After
+  fun tearDown() {
+    file.delete()
+  }
+
+  @Test
+  fun givenAFileWithSeparateRandom_whenIReadAtRandomPositions_thenIExpectThePlaintext() {
+    val partRandom = write(inline = false)
+
+    ModernDecryptingPartInputStream.createChannelFor(attachmentSecret, partRandom, file).use { channel ->
+      assertThat(channel.size()).isEqualTo(FILE_SIZE.toLong())
+
+      repeat(SEEK_COUNT) {
+        val position = random.nextInt(FILE_SIZE)
+        val buffer = ByteBuffer.allocate(READ_SIZE)
+        val read = channel.read(buffer, position.toLong())
+
+        assertThat(read).isEqualTo(minOf(READ_SIZE, FILE_SIZE - position))
+        assertThat(buffer.array().copyOf(read).toList()).isEqualTo(plaintext.copyOfRange(position, position + read).toList())
+      }
+    }
+  }
+
+  @Test
+  fun givenAFullBuffer_whenIReadAtOrPastTheEnd_thenIExpectZero() {
+    val partRandom = write(inline = false)
+
+    ModernDecryptingPartInputStream.createChannelFor(attachmentSecret, partRandom, file).use { channel ->
+      val full = ByteBuffer.allocate(0)
+
+      assertThat(channel.read(full, 0)).isEqualTo(0)
+      assertThat(channel.read(full, FILE_SIZE.toLong())).isEqualTo(0)
+      assertThat(channel.read(full, FILE_SIZE + 100L)).isEqualTo(0)
+      assertThat(channel.read(ByteBuffer.allocate(1), FILE_SIZE.toLong())).isEqualTo(-1)
+      assertThat(channel.position(FILE_SIZE.toLong()).asInputStream().read(ByteArray(1), 0, 0)).isEqualTo(0)
+    }
+  }
+
+  @Test
+  fun givenAnInlineFile_whenIReadItAsAStream_thenIExpectThePlaintext() {
+    write(inline = true)
+
+    val decrypted = ModernDecryptingPartInputStream.createFor(attachmentSecret, file, 0).use { it.readFully() }
+
+    assertThat(decrypted.toList()).isEqualTo(plaintext.toList())
+  }
+
+  @Test
+  fun givenAStream_whenISkipAndRead_thenIExpectThePlaintextAfterTheSkip() {
+    val partRandom = write(inline = false)
+
+    ModernDecryptingPartInputStream.createFor(attachmentSecret, partRandom, file, 17).use { stream ->
+      assertThat(stream.skip(1_000_003)).isEqualTo(1_000_003L)
+
+      val buffer = ByteArray(100)
+      stream.readFully(buffer)
+
+      assertThat(buffer.toList()).isEqualTo(plaintext.copyOfRange(1_000_020, 1_000_120).toList())
+    }
+  }
+
+  @Test
+  fun givenRandomSeeks_whenICompareToReopeningAStream_thenIExpectTheSameBytes() {
+    val partRandom = write(inline = false)
+    val positions = List(SEEK_COUNT) { random.nextInt(FILE_SIZE - READ_SIZE).toLong() }
+
+    val reopened = positions.map { position -> legacyStreamAt(partRandom, position).use { stream -> ByteArray(READ_SIZE).also { stream.readFully(it) } } }
+
+    val seeked = ModernDecryptingPartInputStream.createChannelFor(attachmentSecret, partRandom, file).use { channel ->
+      positions.map { position -> ByteBuffer.allocate(READ_SIZE).also { channel.position(position).read(it) }.array() }
+    }
+
+    assertThat(seeked.map { it.toList() }).isEqualTo(reopened.map { it.toList() })
+  }
+
+  private fun write(inline: Boolean): ByteArray {
+    val (partRandom, outputStream) = ModernEncryptingPartOutputStream.createFor(attachmentSecret, file, inline).let { it.first to it.second }
+    outputStream.use { it.write(plaintext) }
+    return partRandom
+  }
+
+  /**
+   * How [ModernDecryptingPartInputStream] used to open a file at an offset: derive the key, skip through the file, and decrypt the partial block.
+   */
+  private fun legacyStreamAt(partRandom: ByteArray, offset: Long): InputStream {
+    val mac = Mac.getInstance("HmacSHA256")
+    mac.init(SecretKeySpec(attachmentSecret.modernKey, "HmacSHA256"))
+
+    val iv = ByteArray(16)
+    val remainder = (offset % 16).toInt()
+    Conversions.longTo4ByteArray(iv, 12, offset / 16)
+
+    val cipher = Cipher.getInstance("AES/CTR/NoPadding")
+    cipher.init(Cipher.DECRYPT_MODE, SecretKeySpec(mac.doFinal(partRandom), "AES"), IvParameterSpec(iv))
+
+    val inputStream = FileInputStream(file)
+    inputStream.skip(offset - remainder)
+
+    val cipherInputStream = CipherInputStream(inputStream, cipher)
+    cipherInputStream.readFully(ByteArray(remainder))
+
+    return cipherInputStream
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.database
+
+import android.app.Application
+import assertk.assertThat
+import assertk.assertions.hasSize
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import io.mockk.every
+import io.mockk.mockkObject
+import io.mockk.unmockkAll
+import org.junit.After
+import org.junit.Before
+import org.junit.BeforeClass
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.signal.core.util.insertInto
+import org.signal.core.util.logging.Log
+import org.signal.core.util.requireLong
+import org.signal.core.util.select
+import org.signal.core.util.withinTransaction
+import org.thoughtcrime.securesms.recipients.Recipient
+import org.thoughtcrime.securesms.recipients.RecipientId
+import org.thoughtcrime.securesms.testutil.MockAppDependenciesRule
+import org.thoughtcrime.securesms.testutil.SignalDatabaseRule
+import org.thoughtcrime.securesms.testutil.SystemOutLogger
+import java.util.UUID
+import kotlin.random.Random
+
+/**
+ * Applies 10k delivery and read receipts to a message sent to a 1,000 member group, once receipt by receipt and once batched, making sure both end
+ * up in the same state.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE, application = Application::class)
+class BatchedReceiptsTest {
+
+  @get:Rule val signalDatabaseRule = SignalDatabaseRule()
+
+  @get:Rule val applicationDependencies = MockAppDependenciesRule()
+
+  companion object {
+    private const val MEMBER_COUNT = 1_000
+    private const val RECEIPTS_PER_MEMBER_PER_TYPE = 5
+
+    @BeforeClass
+    @JvmStatic
+    fun setUpClass() {
+      Log.initialize(SystemOutLogger())
+    }
+  }
+
+  private lateinit var selfId: RecipientId
+  private lateinit var groupId: RecipientId
+  private lateinit var members: List<RecipientId>
+
+  @Before
+  fun setUp() {
+    signalDatabaseRule.writeableDatabase.withinTransaction {
+      selfId = insertRecipient(RecipientTable.RecipientType.INDIVIDUAL)
+      groupId = insertRecipient(RecipientTable.RecipientType.GV2)
+      members = List(MEMBER_COUNT) { insertRecipient(RecipientTable.RecipientType.INDIVIDUAL) }
+    }
+
+    mockkObject(Recipient)
+    every { Recipient.self() } returns Recipient(id = selfId, isResolving = false, isSelf = true)
+  }
+
+  @After
+  fun tearDown() {
+    unmockkAll()
+  }
+
+  @Test
+  fun given10kReceiptsForA1000MemberGroup_whenIApplyThemBatched_thenIExpectTheSameStateAsApplyingThemOneByOne() {
+    val unbatchedTimestamp = 1000L
+    val batchedTimestamp = 2000L
+    val unbatchedMessageId = insertGroupMessage(unbatchedTimestamp)
+    val batchedMessageId = insertGroupMessage(batchedTimestamp)
+
+    val random = Random(1)
+    val deliveries = receipts(random, 10_000L)
+    val reads = receipts(random, 20_000L)
+
+    for (receipt in deliveries) {
+      SignalDatabase.messages.incrementDeliveryReceiptCount(unbatchedTimestamp, receipt.author, receipt.receiptSentTimestamp)
+    }
+    for (receipt in reads) {
+      SignalDatabase.messages.incrementReadReceiptCount(unbatchedTimestamp, receipt.author, receipt.receiptSentTimestamp)
+    }
+
+    val missingDeliveries = SignalDatabase.messages.incrementDeliveryReceiptCounts(deliveries.map { it.copy(targetTimestamp = batchedTimestamp) })
+    val missingReads = SignalDatabase.messages.incrementReadReceiptCounts(reads.map { it.copy(targetTimestamp = batchedTimestamp) })
+
+    assertThat(missingDeliveries).isEmpty()
+    assertThat(missingReads).isEmpty()
+
+    val unbatchedReceipts = SignalDatabase.groupReceipts.getGroupReceiptInfo(unbatchedMessageId).associate { it.recipientId to (it.status to it.timestamp) }
+    val batchedReceipts = SignalDatabase.groupReceipts.getGroupReceiptInfo(batchedMessageId).associate { it.recipientId to (it.status to it.timestamp) }
+
+    assertThat(batchedReceipts).hasSize(MEMBER_COUNT)
+    assertThat(batchedReceipts).isEqualTo(unbatchedReceipts)
+    assertThat(batchedReceipts.values.map { it.first }.toSet()).isEqualTo(setOf(GroupReceiptTable.STATUS_READ))
+    assertThat(receiptState(batchedMessageId)).isEqualTo(receiptState(unbatchedMessageId))
+  }
+
+  @Test
+  fun givenReceiptsForAnUnknownMessage_whenIApplyThemBatched_thenIExpectThemToBeReturnedAsMissing() {
+    insertGroupMessage(1000L)
+
+    val unknown = MessageTable.BatchedReceipt(members[0], 3000L, 1L)
+    val missing = SignalDatabase.messages.incrementReadReceiptCounts(listOf(unknown, unknown.copy(receiptSentTimestamp = 2L)))
+
+    assertThat(missing).isEqualTo(setOf(unknown))
+  }
+
+  /**
+   * Several receipts per member in a random order, as if members were sending from multiple devices or we were seeing retries.
+   */
+  private fun receipts(random: Random, baseTimestamp: Long): List<MessageTable.BatchedReceipt> {
+    return members
+      .flatMap { member -> List(RECEIPTS_PER_MEMBER_PER_TYPE) { MessageTable.BatchedReceipt(member, 0, baseTimestamp + random.nextLong(1_000)) } }
+      .shuffled(random)
+  }
+
+  private fun insertRecipient(type: RecipientTable.RecipientType): RecipientId {
+    val id = signalDatabaseRule.writeableDatabase
+      .insertInto(RecipientTable.TABLE_NAME)
+      .values(
+        RecipientTable.TYPE to type.id,
+        RecipientTable.ACI_COLUMN to if (type == RecipientTable.RecipientType.INDIVIDUAL) UUID.randomUUID().toString() else null
+      )
+      .run()
+
+    return RecipientId.from(id)
+  }
+
+  private fun insertGroupMessage(sentTimestamp: Long): Long {
+    val messageId = signalDatabaseRule.writeableDatabase
+      .insertInto(MessageTable.TABLE_NAME)
+      .values(
+        MessageTable.DATE_SENT to sentTimestamp,
+        MessageTable.DATE_RECEIVED to sentTimestamp,
+        MessageTable.TYPE to MessageTypes.BASE_SENT_TYPE,
+        MessageTable.THREAD_ID to 1,
+        MessageTable.FROM_RECIPIENT_ID to selfId.toLong(),
+        MessageTable.TO_RECIPIENT_ID to groupId.toLong()
+      )
+      .run()
+
+    SignalDatabase.groupReceipts.insert(members, messageId, GroupReceiptTable.STATUS_UNDELIVERED, sentTimestamp)
+
+    return messageId
+  }
+
+  private fun receiptState(messageId: Long): List<Long> {
+    return signalDatabaseRule.readableDatabase
+      .select(MessageTable.HAS_DELIVERY_RECEIPT, MessageTable.HAS_READ_RECEIPT, MessageTable.RECEIPT_TIMESTAMP)
+      .from(MessageTable.TABLE_NAME)
+      .where("${MessageTable.ID} = ?", messageId)
+      .run()
+      .use { cursor ->
+        cursor.moveToFirst()
+        listOf(
+          cursor.requireLong(MessageTable.HAS_DELIVERY_RECEIPT),
+          cursor.requireLong(MessageTable.HAS_READ_RECEIPT),
+          cursor.requireLong(MessageTable.RECEIPT_TIMESTAMP)
+        )
+      }
+  }
+}
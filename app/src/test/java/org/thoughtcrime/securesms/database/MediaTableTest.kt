@@ -0,0 +1,281 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.database
+
+import android.app.Application
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import org.junit.Before
+import org.junit.BeforeClass
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.signal.core.util.delete
+import org.signal.core.util.insertInto
+import org.signal.core.util.logging.Log
+import org.signal.core.util.update
+import org.thoughtcrime.securesms.attachments.AttachmentId
+import org.thoughtcrime.securesms.testutil.MockAppDependenciesRule
+import org.thoughtcrime.securesms.testutil.SignalDatabaseRule
+import org.thoughtcrime.securesms.testutil.SystemOutLogger
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE, application = Application::class)
+class MediaTableTest {
+
+  @get:Rule val signalDatabaseRule = SignalDatabaseRule()
+
+  @get:Rule val applicationDependencies = MockAppDependenciesRule()
+
+  private var threadA: Long = 0
+  private var threadB: Long = 0
+
+  companion object {
+    @BeforeClass
+    @JvmStatic
+    fun setUpClass() {
+      Log.initialize(SystemOutLogger())
+    }
+  }
+
+  @Before
+  fun setUp() {
+    threadA = insertThread(recipientId = 1)
+    threadB = insertThread(recipientId = 2)
+  }
+
+  @Test
+  fun givenNoAttachments_whenIGetStorageBreakdown_thenIExpectEmptyBreakdown() {
+    assertThat(SignalDatabase.media.getStorageBreakdown()).isEqualTo(MediaTable.StorageBreakdown(0, 0, 0, 0))
+  }
+
+  @Test
+  fun givenAttachmentsOfEachCategory_whenIGetStorageBreakdown_thenIExpectSizesBucketedByCategory() {
+    val message = insertMessage(threadA)
+    insertAttachment(message, "image/jpeg", "a", 10)
+    insertAttachment(message, "image/gif", "b", 20)
+    insertAttachment(message, "video/mp4", "c", 30)
+    insertAttachment(message, "audio/aac", "d", 40)
+    insertAttachment(message, "application/pdf", "e", 50)
+    insertAttachment(message, "text/x-signal-plain", "f", 60)
+    insertAttachment(message, "image/svg+xml", "g", 70)
+
+    val expected = MediaTable.StorageBreakdown(photoSize = 30, videoSize = 30, audioSize = 40, documentSize = 180)
+    assertThat(SignalDatabase.media.getStorageBreakdown()).isEqualTo(expected)
+    assertConsistent()
+  }
+
+  @Test
+  fun givenStickersAndIncompleteTransfers_whenIGetStorageBreakdown_thenIExpectThemExcluded() {
+    val message = insertMessage(threadA)
+    insertAttachment(message, "image/webp", "a", 10, stickerPackId = "pack")
+    insertAttachment(message, "image/jpeg", "b", 20, transferState = AttachmentTable.TRANSFER_PROGRESS_STARTED)
+    insertAttachment(message, "image/jpeg", null, 30)
+
+    assertThat(SignalDatabase.media.getStorageBreakdown()).isEqualTo(MediaTable.StorageBreakdown(0, 0, 0, 0))
+    assertConsistent()
+  }
+
+  @Test
+  fun givenSharedDataFile_whenIGetStorageBreakdown_thenIExpectItCountedOnce() {
+    insertAttachment(insertMessage(threadA), "image/jpeg", "shared", 100)
+    insertAttachment(insertMessage(threadB), "image/jpeg", "shared", 100)
+
+    assertThat(SignalDatabase.media.getStorageBreakdown().photoSize).isEqualTo(100)
+    assertConsistent()
+  }
+
+  @Test
+  fun givenSharedDataFile_whenIDeleteOneUsage_thenIExpectGlobalToStillCountIt() {
+    val first = insertAttachment(insertMessage(threadA), "image/jpeg", "shared", 100)
+    insertAttachment(insertMessage(threadB), "image/jpeg", "shared", 100)
+
+    deleteAttachment(first)
+
+    assertThat(SignalDatabase.media.getStorageBreakdown().photoSize).isEqualTo(100)
+    assertConsistent()
+  }
+
+  @Test
+  fun givenSharedDataFile_whenOneUsageShrinks_thenIExpectGlobalToUseTheLargestRemainingSize() {
+    val first = insertAttachment(insertMessage(threadA), "image/jpeg", "shared", 100)
+    insertAttachment(insertMessage(threadB), "image/jpeg", "shared", 40)
+
+    updateAttachment(first, AttachmentTable.DATA_SIZE to 60)
+
+    assertThat(SignalDatabase.media.getStorageBreakdown().photoSize).isEqualTo(60)
+    assertConsistent()
+  }
+
+  @Test
+  fun givenSharedDataFile_whenItsContentTypeChanges_thenIExpectGlobalToMoveCategory() {
+    val first = insertAttachment(insertMessage(threadA), "image/jpeg", "shared", 100)
+    val second = insertAttachment(insertMessage(threadB), "image/jpeg", "shared", 100)
+
+    updateAttachment(first, AttachmentTable.CONTENT_TYPE to "video/mp4")
+    updateAttachment(second, AttachmentTable.CONTENT_TYPE to "video/mp4")
+
+    assertThat(SignalDatabase.media.getStorageBreakdown()).isEqualTo(MediaTable.StorageBreakdown(photoSize = 0, videoSize = 100, audioSize = 0, documentSize = 0))
+    assertConsistent()
+  }
+
+  @Test
+  fun givenSharedDataFile_whenTheUsageThatSetItsSizeIsDeleted_thenIExpectGlobalToShrink() {
+    val first = insertAttachment(insertMessage(threadA), "image/jpeg", "shared", 100)
+    insertAttachment(insertMessage(threadB), "image/jpeg", "shared", 40)
+
+    deleteAttachment(first)
+
+    assertThat(SignalDatabase.media.getStorageBreakdown().photoSize).isEqualTo(40)
+    assertConsistent()
+  }
+
+  @Test
+  fun givenPendingAttachment_whenTransferCompletes_thenIExpectItCounted() {
+    val attachment = insertAttachment(insertMessage(threadA), "video/mp4", null, 0, transferState = AttachmentTable.TRANSFER_PROGRESS_PENDING)
+
+    updateAttachment(
+      attachment,
+      AttachmentTable.DATA_FILE to "video",
+      AttachmentTable.DATA_SIZE to 500,
+      AttachmentTable.TRANSFER_STATE to AttachmentTable.TRANSFER_PROGRESS_DONE
+    )
+
+    assertThat(SignalDatabase.media.getStorageBreakdown().videoSize).isEqualTo(500)
+    assertConsistent()
+  }
+
+  @Test
+  fun givenMessageWithMedia_whenMessageDeletedBeforeAttachments_thenIExpectUsageClearedWithTheAttachments() {
+    val message = insertMessage(threadA)
+    val attachment = insertAttachment(message, "image/jpeg", "a", 10)
+
+    signalDatabaseRule.writeableDatabase.delete(MessageTable.TABLE_NAME).where("${MessageTable.ID} = ?", message).run()
+    assertThat(SignalDatabase.media.getStorageBreakdown().photoSize).isEqualTo(10)
+
+    deleteAttachment(attachment)
+    assertThat(SignalDatabase.media.getStorageBreakdown().photoSize).isEqualTo(0)
+    assertConsistent()
+  }
+
+  @Test
+  fun givenCountersOutOfSync_whenIRebuildUsage_thenIExpectThemConsistent() {
+    val message = insertMessage(threadA)
+    insertAttachment(message, "image/jpeg", "a", 10)
+    insertAttachment(message, "video/mp4", "b", 20)
+    signalDatabaseRule.writeableDatabase.execSQL("UPDATE ${MediaTable.USAGE_TABLE_NAME} SET size = 12345")
+
+    assertThat(SignalDatabase.media.isUsageConsistent()).isFalse()
+
+    SignalDatabase.media.rebuildUsage()
+
+    assertConsistent()
+  }
+
+  @Test
+  fun givenManyRandomOperations_whenIVerifyUsage_thenIExpectCountersToMatchFullScan() {
+    val random = kotlin.random.Random(42)
+    val contentTypes = listOf("image/jpeg", "image/gif", "video/mp4", "audio/aac", "application/pdf", "application/x-signal-view-once")
+    val threads = listOf(threadA, threadB, insertThread(recipientId = 3))
+    val messages = mutableListOf<Long>()
+    val attachments = mutableListOf<AttachmentId>()
+
+    repeat(500) {
+      when (random.nextInt(7)) {
+        0 -> messages += insertMessage(threads.random(random))
+        1, 2 -> if (messages.isNotEmpty()) {
+          val file = random.nextInt(1, 20)
+          attachments += insertAttachment(messages.random(random), contentTypes[file % contentTypes.size], "file-$file", file * 10L, transferState = if (random.nextInt(4) == 0) AttachmentTable.TRANSFER_PROGRESS_STARTED else AttachmentTable.TRANSFER_PROGRESS_DONE)
+        }
+        3 -> if (attachments.isNotEmpty()) {
+          deleteAttachment(attachments.removeAt(random.nextInt(attachments.size)))
+        }
+        4 -> if (attachments.isNotEmpty()) {
+          updateAttachment(attachments.random(random), AttachmentTable.TRANSFER_STATE to AttachmentTable.TRANSFER_PROGRESS_DONE)
+        }
+        5 -> if (attachments.isNotEmpty()) {
+          updateAttachment(attachments.random(random), AttachmentTable.DATA_SIZE to random.nextLong(1, 200))
+        }
+        6 -> {
+          signalDatabaseRule.writeableDatabase
+            .update(AttachmentTable.TABLE_NAME)
+            .values(AttachmentTable.CONTENT_TYPE to contentTypes.random(random))
+            .where("${AttachmentTable.DATA_FILE} = ?", "file-${random.nextInt(1, 20)}")
+            .run()
+        }
+      }
+    }
+
+    assertConsistent()
+  }
+
+  private fun assertConsistent() {
+    assertThat(SignalDatabase.media.isUsageConsistent()).isTrue()
+  }
+
+  private fun insertThread(recipientId: Long): Long {
+    return signalDatabaseRule.writeableDatabase
+      .insertInto(ThreadTable.TABLE_NAME)
+      .values(ThreadTable.RECIPIENT_ID to recipientId)
+      .run()
+  }
+
+  private fun insertMessage(threadId: Long): Long {
+    return signalDatabaseRule.writeableDatabase
+      .insertInto(MessageTable.TABLE_NAME)
+      .values(
+        MessageTable.THREAD_ID to threadId,
+        MessageTable.FROM_RECIPIENT_ID to 1,
+        MessageTable.TO_RECIPIENT_ID to 1,
+        MessageTable.DATE_SENT to System.currentTimeMillis(),
+        MessageTable.DATE_RECEIVED to System.currentTimeMillis(),
+        MessageTable.TYPE to MessageTypes.BASE_INBOX_TYPE
+      )
+      .run()
+  }
+
+  private fun insertAttachment(
+    messageId: Long,
+    contentType: String,
+    dataFile: String?,
+    size: Long,
+    transferState: Int = AttachmentTable.TRANSFER_PROGRESS_DONE,
+    stickerPackId: String? = null
+  ): AttachmentId {
+    val id = signalDatabaseRule.writeableDatabase
+      .insertInto(AttachmentTable.TABLE_NAME)
+      .values(
+        AttachmentTable.MESSAGE_ID to messageId,
+        AttachmentTable.CONTENT_TYPE to contentType,
+        AttachmentTable.DATA_FILE to dataFile,
+        AttachmentTable.DATA_SIZE to size,
+        AttachmentTable.TRANSFER_STATE to transferState,
+        AttachmentTable.STICKER_PACK_ID to stickerPackId
+      )
+      .run()
+
+    return AttachmentId(id)
+  }
+
+  private fun updateAttachment(attachmentId: AttachmentId, vararg values: Pair<String, Any?>) {
+    signalDatabaseRule.writeableDatabase
+      .update(AttachmentTable.TABLE_NAME)
+      .values(*values)
+      .where("${AttachmentTable.ID} = ?", attachmentId.id)
+      .run()
+  }
+
+  private fun deleteAttachment(attachmentId: AttachmentId) {
+    signalDatabaseRule.writeableDatabase
+      .delete(AttachmentTable.TABLE_NAME)
+      .where("${AttachmentTable.ID} = ?", attachmentId.id)
+      .run()
+  }
+}
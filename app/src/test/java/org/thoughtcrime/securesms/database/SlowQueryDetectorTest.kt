@@ -0,0 +1,57 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.database
+
+import assertk.assertThat
+import assertk.assertions.containsOnly
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import org.junit.Test
+
+class SlowQueryDetectorTest {
+
+  @Test
+  fun `Given queries that differ only by literals, when I normalize them, then I expect the same shape`() {
+    val first = SlowQueryDetector.normalize(null, "SELECT * FROM message WHERE thread_id = 12 AND body = 'hi'")
+    val second = SlowQueryDetector.normalize(null, "SELECT *  FROM message\n  WHERE thread_id = 3400 AND body = 'it''s'")
+
+    assertThat(first).isEqualTo("SELECT * FROM message WHERE thread_id = ? AND body = ?")
+    assertThat(second).isEqualTo(first)
+  }
+
+  @Test
+  fun `Given IN lists of different sizes, when I normalize them, then I expect the same shape`() {
+    val first = SlowQueryDetector.normalize("message", "_id IN (?, ?)")
+    val second = SlowQueryDetector.normalize("message", "_id IN (1,2,3,4)")
+
+    assertThat(first).isEqualTo("message: _id IN (?...)")
+    assertThat(second).isEqualTo(first)
+  }
+
+  @Test
+  fun `Given identifiers with digits, when I normalize them, then I expect them to be left alone`() {
+    assertThat(SlowQueryDetector.normalize(null, "SELECT t1._id FROM v2_table t1")).isEqualTo("SELECT t1._id FROM v2_table t1")
+  }
+
+  @Test
+  fun `Given a plan that scans a large table, when I check it, then I expect it to be flagged`() {
+    val plan = listOf("SCAN message", "SEARCH recipient USING INTEGER PRIMARY KEY (rowid=?)")
+
+    assertThat(SlowQueryDetector.findFullScans(plan)).containsOnly(MessageTable.TABLE_NAME)
+  }
+
+  @Test
+  fun `Given a plan that uses an index, when I check it, then I expect nothing to be flagged`() {
+    val plan = listOf("SEARCH message USING INDEX message_thread_date_index (thread_id=?)", "SCAN attachment USING COVERING INDEX attachment_message_id_index")
+
+    assertThat(SlowQueryDetector.findFullScans(plan)).isEmpty()
+  }
+
+  @Test
+  fun `Given a plan that scans a small table, when I check it, then I expect nothing to be flagged`() {
+    assertThat(SlowQueryDetector.findFullScans(listOf("SCAN TABLE sticker"))).isEmpty()
+  }
+}
@@ -46,6 +46,9 @@ class JobControllerTest {
   @MockK
   private lateinit var callback: JobController.Callback
 
+  @MockK
+  private lateinit var runnerLimiter: JobRunnerLimiter
+
   private lateinit var jobController: JobController
 
   companion object {
@@ -60,6 +63,9 @@ class JobControllerTest {
     // Mock default behavior
     every { jobStorage.updateAllJobsToBePending() } returns Unit
     every { debouncer.publish(any()) } returns Unit
+    every { jobStorage.runInTransaction(any()) } answers { firstArg<Runnable>().run() }
+    every { runnerLimiter.getMaxGeneralRunners() } returns MAX_RUNNERS
+    every { runnerLimiter.getMaxCpuRunners() } returns 1
 
     jobController = JobController(
       application,
@@ -73,7 +79,9 @@ class JobControllerTest {
       MIN_RUNNERS,
       MAX_RUNNERS,
       1.seconds.inWholeMilliseconds,
-      emptyList()
+      emptyList(),
+      JobWorkloadClassifier(emptySet()),
+      runnerLimiter
     )
   }
 
@@ -104,6 +112,24 @@ class JobControllerTest {
     verify { testJob.onSubmit() }
   }
 
+  @Test
+  fun `submitNewJobChains inserts jobs in one transaction and schedules them once`() {
+    // Given
+    val chains = (1..3).map { listOf(listOf(createTestJob("test-job-$it", "TestFactory"))) }
+
+    every { jobStorage.insertJobs(any()) } returns Unit
+    every { scheduler.schedule(any(), any<List<Constraint>>()) } returns Unit
+
+    // When
+    jobController.submitNewJobChains(chains)
+
+    // Then
+    verify(exactly = 1) { jobStorage.runInTransaction(any()) }
+    verify(exactly = 3) { jobStorage.insertJobs(any()) }
+    verify(exactly = 1) { scheduler.schedule(0L, emptyList()) }
+    chains.forEach { chain -> verify { chain[0][0].onSubmit() } }
+  }
+
   @Test
   fun `submitNewJobChain handles chain that exceeds maximum instances`() {
     // Given
@@ -442,70 +468,86 @@ class JobControllerTest {
   @Test
   fun `startJobRunners - creates minimum number of runners, even with no eligible jobs`() {
     // Given
-    every { jobStorage.getEligibleJobCount(any()) } returns 0
+    every { jobStorage.getEligibleJobCount(any(), any()) } returns 0
 
     // When
     jobController.startJobRunners()
 
     // Then
-    assertThat(jobController.activeGeneralRunners.size).isEqualTo(MIN_RUNNERS)
+    assertThat(jobController.generalPool.activeRunners.size).isEqualTo(MIN_RUNNERS)
   }
 
   @Test
   fun `startJobRunners - creates runners to satisfy demand`() {
     // Given
-    every { jobStorage.getEligibleJobCount(any()) } returns MAX_RUNNERS
+    every { jobStorage.getEligibleJobCount(any(), any()) } returns MAX_RUNNERS
 
     // When
     jobController.startJobRunners()
 
     // Then
-    assertThat(jobController.activeGeneralRunners.size).isEqualTo(MAX_RUNNERS)
+    assertThat(jobController.generalPool.activeRunners.size).isEqualTo(MAX_RUNNERS)
   }
 
   @Test
   fun `startJobRunners - does not exceed max runners`() {
     // Given
-    every { jobStorage.getEligibleJobCount(any()) } returns MAX_RUNNERS * 2
+    every { jobStorage.getEligibleJobCount(any(), any()) } returns MAX_RUNNERS * 2
 
     // When
     jobController.startJobRunners()
 
     // Then
-    assertThat(jobController.activeGeneralRunners.size).isEqualTo(MAX_RUNNERS)
+    assertThat(jobController.generalPool.activeRunners.size).isEqualTo(MAX_RUNNERS)
   }
 
   @Test
   fun `maybeScaleUpRunners - creates runners to satisfy demand`() {
     // When
     jobController.runnersStarted.set(true)
-    jobController.maybeScaleUpRunners { MAX_RUNNERS }
+    jobController.maybeScaleUpRunners(jobController.generalPool) { MAX_RUNNERS }
 
     // Then
-    assertThat(jobController.activeGeneralRunners.size).isEqualTo(MAX_RUNNERS)
+    assertThat(jobController.generalPool.activeRunners.size).isEqualTo(MAX_RUNNERS)
   }
 
   @Test
   fun `maybeScaleUpRunners - does not exceed max runners`() {
     // When
     jobController.runnersStarted.set(true)
-    jobController.maybeScaleUpRunners { MAX_RUNNERS * 2 }
+    jobController.maybeScaleUpRunners(jobController.generalPool) { MAX_RUNNERS * 2 }
 
     // Then
-    assertThat(jobController.activeGeneralRunners.size).isEqualTo(MAX_RUNNERS)
+    assertThat(jobController.generalPool.activeRunners.size).isEqualTo(MAX_RUNNERS)
   }
 
   @Test
   fun `onRunnerTerminated - decrements active runners`() {
     // Given
-    every { jobStorage.getEligibleJobCount(any()) } returns MAX_RUNNERS
+    every { jobStorage.getEligibleJobCount(any(), any()) } returns MAX_RUNNERS
+    jobController.startJobRunners()
+
+    // When
+    jobController.onRunnerTerminated(jobController.generalPool.activeRunners.first())
+
+    // Then
+    assertThat(jobController.generalPool.activeRunners.size).isEqualTo(MAX_RUNNERS - 1)
+  }
+
+  @Test
+  fun `maybeRetireRunner - retires runners while the pool is over its limit`() {
+    // Given
+    every { jobStorage.getEligibleJobCount(any(), any()) } returns MAX_RUNNERS
     jobController.startJobRunners()
+    every { runnerLimiter.getMaxGeneralRunners() } returns MAX_RUNNERS - 1
 
     // When
-    jobController.onRunnerTerminated(jobController.activeGeneralRunners.first())
+    val runners = jobController.generalPool.activeRunners.toList()
+    val retired = runners.map { jobController.maybeRetireRunner(it) }
 
     // Then
-    assertThat(jobController.activeGeneralRunners.size).isEqualTo(MAX_RUNNERS - 1)
+    assertThat(retired.count { it }).isEqualTo(1)
+    assertThat(jobController.generalPool.activeRunners.size).isEqualTo(MAX_RUNNERS - 1)
   }
 
   /**
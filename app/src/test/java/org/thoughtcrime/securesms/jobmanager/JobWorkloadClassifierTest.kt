@@ -0,0 +1,80 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.jobmanager
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import org.junit.BeforeClass
+import org.junit.Test
+import org.signal.core.util.logging.Log
+import org.thoughtcrime.securesms.testutil.EmptyLogger
+import java.util.concurrent.TimeUnit
+
+class JobWorkloadClassifierTest {
+
+  companion object {
+    @BeforeClass
+    @JvmStatic
+    fun setUpClass() {
+      Log.initialize(EmptyLogger())
+    }
+  }
+
+  private val wall = TimeUnit.MILLISECONDS.toNanos(100)
+
+  @Test
+  fun `Given a declared factory, when I check it, then I expect it to be CPU-bound`() {
+    val classifier = JobWorkloadClassifier(setOf("a"))
+
+    assertThat(classifier.isCpuBound("a")).isTrue()
+    assertThat(classifier.isCpuBound("b")).isFalse()
+  }
+
+  @Test
+  fun `Given a factory that keeps the CPU busy, when it has run a few times, then I expect it to become CPU-bound`() {
+    val classifier = JobWorkloadClassifier(emptySet())
+
+    classifier.onJobRan("a", wall, wall * 9 / 10)
+    classifier.onJobRan("a", wall, wall * 9 / 10)
+    assertThat(classifier.isCpuBound("a")).isFalse()
+
+    classifier.onJobRan("a", wall, wall * 9 / 10)
+    assertThat(classifier.isCpuBound("a")).isTrue()
+  }
+
+  @Test
+  fun `Given a CPU-bound factory, when it starts waiting on I-O, then I expect it to go back to the general pool`() {
+    val classifier = JobWorkloadClassifier(emptySet())
+
+    repeat(3) { classifier.onJobRan("a", wall, wall) }
+    assertThat(classifier.isCpuBound("a")).isTrue()
+
+    repeat(5) { classifier.onJobRan("a", wall, 0) }
+    assertThat(classifier.isCpuBound("a")).isFalse()
+  }
+
+  @Test
+  fun `Given short runs or unknown CPU time, when they're reported, then I expect them to be ignored`() {
+    val classifier = JobWorkloadClassifier(emptySet())
+
+    repeat(5) { classifier.onJobRan("a", TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(1)) }
+    repeat(5) { classifier.onJobRan("b", wall, -1) }
+
+    assertThat(classifier.isCpuBound("a")).isFalse()
+    assertThat(classifier.isCpuBound("b")).isFalse()
+  }
+
+  @Test
+  fun `Given a device under thermal pressure, when I get the limits, then I expect fewer CPU runners`() {
+    assertThat(JobRunnerLimiter.limitsFor(8, 16, 0, false)).isEqualTo(JobRunnerLimiter.Limits(16, 7))
+    assertThat(JobRunnerLimiter.limitsFor(8, 16, 2, false)).isEqualTo(JobRunnerLimiter.Limits(16, 3))
+    assertThat(JobRunnerLimiter.limitsFor(8, 16, 0, true)).isEqualTo(JobRunnerLimiter.Limits(16, 3))
+    assertThat(JobRunnerLimiter.limitsFor(8, 16, 3, false)).isEqualTo(JobRunnerLimiter.Limits(8, 1))
+    assertThat(JobRunnerLimiter.limitsFor(1, 16, 0, false)).isEqualTo(JobRunnerLimiter.Limits(16, 1))
+  }
+}
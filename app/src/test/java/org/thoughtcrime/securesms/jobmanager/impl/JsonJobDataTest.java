@@ -3,12 +3,16 @@ package org.thoughtcrime.securesms.jobmanager.impl;
 import org.junit.Test;
 import org.signal.core.util.StreamUtil;
 import org.thoughtcrime.securesms.jobmanager.JsonJobData;
+import org.thoughtcrime.securesms.jobs.protos.GroupCallPeekJobData;
+import org.thoughtcrime.securesms.util.JsonUtils;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public final class JsonJobDataTest {
@@ -47,4 +51,83 @@ public final class JsonJobDataTest {
     assertFalse(data.getBoolean("b2"));
     assertArrayEquals(new boolean[]{ false, true }, data.getBooleanArray("b_array_1"));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void serialize_roundTripsAllTypes() {
+    byte[] serialized = new JsonJobData.Builder()
+                                       .putString("s1", "s1 value")
+                                       .putString("null", null)
+                                       .putStringArray("s_array_1", new String[]{ "a", "b", "c" })
+                                       .putInt("max", Integer.MAX_VALUE)
+                                       .putIntArray("i_array_1", new int[]{ 1, -1, Integer.MIN_VALUE })
+                                       .putLong("min", Long.MIN_VALUE)
+                                       .putLongArray("l_array_1", new long[]{ 1, 2, Long.MAX_VALUE })
+                                       .putFloat("f1", 1.2f)
+                                       .putFloatArray("f_array_1", new float[]{ 5.6f, 7.8f })
+                                       .putDouble("d1", 10.2)
+                                       .putDoubleArray("d_array_1", new double[]{ 50.6, 70.8 })
+                                       .putBoolean("b1", true)
+                                       .putBooleanArray("b_array_1", new boolean[]{ false, true })
+                                       .serialize();
+
+    assertEquals(0, serialized[0]);
+
+    JsonJobData data = JsonJobData.deserialize(serialized);
+
+    assertEquals("s1 value", data.getString("s1"));
+    assertTrue(data.hasString("null"));
+    assertNull(data.getString("null"));
+    assertArrayEquals(new String[]{ "a", "b", "c" }, data.getStringArray("s_array_1"));
+    assertEquals(Integer.MAX_VALUE, data.getInt("max"));
+    assertArrayEquals(new int[]{ 1, -1, Integer.MIN_VALUE }, data.getIntegerArray("i_array_1"));
+    assertEquals(Long.MIN_VALUE, data.getLong("min"));
+    assertArrayEquals(new long[]{ 1, 2, Long.MAX_VALUE }, data.getLongArray("l_array_1"));
+    assertEquals(1.2f, data.getFloat("f1"), FloatDelta);
+    assertArrayEquals(new float[]{ 5.6f, 7.8f }, data.getFloatArray("f_array_1"), FloatDelta);
+    assertEquals(10.2, data.getDouble("d1"), FloatDelta);
+    assertArrayEquals(new double[]{ 50.6, 70.8 }, data.getDoubleArray("d_array_1"), FloatDelta);
+    assertTrue(data.getBoolean("b1"));
+    assertArrayEquals(new boolean[]{ false, true }, data.getBooleanArray("b_array_1"));
+  }
+
+  @Test
+  public void serialize_nullInStringArray_fallsBackToJson() {
+    byte[] serialized = new JsonJobData.Builder()
+                                       .putStringArray("s_array_1", new String[]{ "a", null })
+                                       .serialize();
+
+    assertEquals('{', serialized[0]);
+    assertArrayEquals(new String[]{ "a", null }, JsonJobData.deserialize(serialized).getStringArray("s_array_1"));
+  }
+
+  @Test
+  public void deserializeOrNull_otherProto_returnsNull() {
+    byte[] proto = new GroupCallPeekJobData.Builder().groupRecipientId(1L).build().encode();
+
+    assertNull(JsonJobData.deserializeOrNull(proto));
+  }
+
+  /**
+   * Compares the size of the serialized data held by a full job spec cache in each format, using data shaped like a typical send job's.
+   */
+  @Test
+  public void serialize_fullCache_isSmallerThanJson() throws IOException {
+    long jsonBytes   = 0;
+    long binaryBytes = 0;
+
+    for (int i = 0; i < 1000; i++) {
+      JsonJobData data = new JsonJobData.Builder()
+                                        .putLong("message_id", 100_000L + i)
+                                        .putString("recipient_id", String.valueOf(i))
+                                        .putStringArray("filtered_recipient_ids", new String[]{ "1", "2", "3" })
+                                        .putLong("timestamp", 1_700_000_000_000L + i)
+                                        .putBoolean("is_story", false)
+                                        .build();
+
+      jsonBytes   += JsonUtils.toJson(data).getBytes(StandardCharsets.UTF_8).length;
+      binaryBytes += data.serialize().length;
+    }
+
+    assertTrue("Binary: " + binaryBytes + " bytes, JSON: " + jsonBytes + " bytes", binaryBytes * 2 < jsonBytes);
+  }
+}
@@ -837,6 +837,15 @@ class FastJobStorageTest {
     assertThat(subject.getEligibleJobCount(0)).isEqualTo(1)
   }
 
+  @Test
+  fun `getEligibleJobCount - filtered`() {
+    val subject = FastJobStorage(mockDatabase(DataSet1.FULL_SPECS))
+    subject.init()
+
+    assertThat(subject.getEligibleJobCount(0) { it.factoryKey == "f1" }).isEqualTo(1)
+    assertThat(subject.getEligibleJobCount(0) { it.factoryKey != "f1" }).isEqualTo(0)
+  }
+
   @Test
   fun `deleteJobs - writes to database`() {
     val database = mockDatabase(DataSet1.FULL_SPECS)
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.search
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import org.junit.Test
+import org.thoughtcrime.securesms.database.SearchTable
+import org.thoughtcrime.securesms.recipients.RecipientId
+
+class MessageSearchRefinerTest {
+
+  @Test
+  fun `Given a query that types more of the last word, when I check it, then I expect it can be refined`() {
+    assertThat(MessageSearchRefiner.canRefine("hel", "hello")).isTrue()
+  }
+
+  @Test
+  fun `Given a query that adds a word, when I check it, then I expect it can be refined`() {
+    assertThat(MessageSearchRefiner.canRefine("hello", "hello wor")).isTrue()
+  }
+
+  @Test
+  fun `Given a query that does not extend the previous one, when I check it, then I expect it cannot be refined`() {
+    assertThat(MessageSearchRefiner.canRefine("hello", "help")).isFalse()
+    assertThat(MessageSearchRefiner.canRefine("hello", "hell")).isFalse()
+  }
+
+  @Test
+  fun `Given a blank previous query, when I check it, then I expect it cannot be refined`() {
+    assertThat(MessageSearchRefiner.canRefine(" ", " hello")).isFalse()
+  }
+
+  @Test
+  fun `Given a query with punctuation, when I check it, then I expect it cannot be refined`() {
+    assertThat(MessageSearchRefiner.canRefine("don", "don't")).isFalse()
+    assertThat(MessageSearchRefiner.canRefine("a", "a-b")).isFalse()
+  }
+
+  @Test
+  fun `Given a body with different case and accents, when I match it, then I expect them to be ignored`() {
+    assertThat(MessageSearchRefiner.matches("Café au LAIT", "cafe lait")).isTrue()
+    assertThat(MessageSearchRefiner.matches("cafe", "CAFÉ")).isTrue()
+  }
+
+  @Test
+  fun `Given a term in the middle of a word, when I match it, then I expect no match`() {
+    assertThat(MessageSearchRefiner.matches("breakfast", "fast")).isFalse()
+  }
+
+  @Test
+  fun `Given two terms, when only one is in the body, then I expect no match`() {
+    assertThat(MessageSearchRefiner.matches("hello there", "hello world")).isFalse()
+  }
+
+  @Test
+  fun `Given symbols and emoji, when I match them, then I expect them to be treated as part of words`() {
+    assertThat(MessageSearchRefiner.matches("that costs \$20", "\$2")).isTrue()
+    assertThat(MessageSearchRefiner.matches("nice 🎉 party", "🎉")).isTrue()
+  }
+
+  @Test
+  fun `Given hits, when I refine them, then I expect only the matches in their original order`() {
+    val hits = listOf(
+      hit(1, "hello world"),
+      hit(2, "hello there"),
+      hit(3, "world, hello!"),
+      hit(4, "goodbye world")
+    )
+
+    val refined = MessageSearchRefiner.refine(hits, "hello wor")
+
+    assertThat(refined.map { it.messageId }).containsExactly(1L, 3L)
+  }
+
+  private fun hit(id: Long, body: String): SearchTable.MessageSearchHit {
+    return SearchTable.MessageSearchHit(
+      messageId = id,
+      threadId = 1,
+      conversationRecipientId = RecipientId.from(1),
+      messageRecipientId = RecipientId.from(2),
+      receivedTimestampMs = 1000 - id,
+      body = body
+    )
+  }
+}
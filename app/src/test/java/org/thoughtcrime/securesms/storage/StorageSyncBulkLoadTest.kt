@@ -0,0 +1,112 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.thoughtcrime.securesms.storage
+
+import android.app.Application
+import assertk.assertThat
+import assertk.assertions.hasSize
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import okio.ByteString.Companion.toByteString
+import org.junit.Before
+import org.junit.BeforeClass
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.signal.core.util.Base64
+import org.signal.core.util.insertInto
+import org.signal.core.util.logging.Log
+import org.signal.core.util.withinTransaction
+import org.thoughtcrime.securesms.database.RecipientTable
+import org.thoughtcrime.securesms.database.SignalDatabase
+import org.thoughtcrime.securesms.testutil.MockAppDependenciesRule
+import org.thoughtcrime.securesms.testutil.SignalDatabaseRule
+import org.thoughtcrime.securesms.testutil.SystemOutLogger
+import org.whispersystems.signalservice.api.storage.StorageId
+import java.util.UUID
+import kotlin.random.Random
+
+/**
+ * Runs the local half of a storage sync -- diffing a synthetic 10k record manifest against local state and loading the local records we'd need
+ * to upload -- to check that the bulk paths return the same records as the one-by-one lookups for very large accounts.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE, application = Application::class)
+class StorageSyncBulkLoadTest {
+
+  @get:Rule val signalDatabaseRule = SignalDatabaseRule()
+
+  @get:Rule val applicationDependencies = MockAppDependenciesRule()
+
+  companion object {
+    private const val RECORD_COUNT = 10_000
+    private const val LOCAL_ONLY_COUNT = 1_000
+    private const val REMOTE_ONLY_COUNT = 1_000
+
+    @BeforeClass
+    @JvmStatic
+    fun setUpClass() {
+      Log.initialize(SystemOutLogger())
+    }
+  }
+
+  private lateinit var localIds: List<StorageId>
+  private lateinit var remoteIds: List<StorageId>
+
+  @Before
+  fun setUp() {
+    val random = Random(1)
+
+    localIds = (0 until RECORD_COUNT).map { StorageId.forContact(random.nextBytes(16)) }
+    remoteIds = localIds.drop(LOCAL_ONLY_COUNT) + (0 until REMOTE_ONLY_COUNT).map { StorageId.forContact(random.nextBytes(16)) }
+
+    signalDatabaseRule.writeableDatabase.withinTransaction { db ->
+      for (id in localIds) {
+        db.insertInto(RecipientTable.TABLE_NAME)
+          .values(
+            RecipientTable.TYPE to RecipientTable.RecipientType.INDIVIDUAL.id,
+            RecipientTable.ACI_COLUMN to UUID.randomUUID().toString(),
+            RecipientTable.STORAGE_SERVICE_ID to Base64.encodeWithPadding(id.raw)
+          )
+          .run()
+      }
+    }
+  }
+
+  @Test
+  fun given10kRecordManifest_whenIFindTheIdDifference_thenIExpectOnlyTheUnsharedIds() {
+    val difference = StorageSyncHelper.findIdDifference(remoteIds, localIds)
+
+    assertThat(difference.localOnlyIds).hasSize(LOCAL_ONLY_COUNT)
+    assertThat(difference.remoteOnlyIds).hasSize(REMOTE_ONLY_COUNT)
+    assertThat(difference.hasTypeMismatches).isFalse()
+    assertThat(difference.localOnlyIds.toSet()).isEqualTo(localIds.take(LOCAL_ONLY_COUNT).toSet())
+  }
+
+  @Test
+  fun given10kLocalRecords_whenILoadThemByStorageId_thenIExpectOneRecordPerId() {
+    val records = SignalDatabase.recipients.getByStorageIds(localIds.map { it.raw })
+
+    assertThat(records.size).isEqualTo(RECORD_COUNT)
+
+    val sample = localIds.shuffled(Random(2)).take(100)
+    for (id in sample) {
+      assertThat(records[id.raw.toByteString()]?.id).isEqualTo(SignalDatabase.recipients.getByStorageId(id.raw)?.id)
+    }
+  }
+
+  @Test
+  fun given10kLocalRecords_whenILoadThemByRecipientId_thenIExpectOneRecordPerId() {
+    val recipientIds = SignalDatabase.recipients.getByStorageIds(localIds.map { it.raw }).values.map { it.id }
+
+    val records = SignalDatabase.recipients.getRecordsForSync(recipientIds)
+
+    assertThat(records).hasSize(RECORD_COUNT)
+    assertThat(records.map { it.id }.toSet()).isEqualTo(recipientIds.toSet())
+  }
+}
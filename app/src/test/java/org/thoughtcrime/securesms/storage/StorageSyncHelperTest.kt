@@ -114,6 +114,30 @@ class StorageSyncHelperTest {
     assertTrue(result.hasTypeMismatches)
   }
 
+  @Test
+  fun findIdDifference_duplicateIds_lastOccurrenceWins() {
+    every { RemoteConfig.messageQueueTime } returns 45.days.inWholeMilliseconds
+
+    val result = findIdDifference(
+      listOf(
+        StorageId.forType(TestHelpers.byteArray(100), 1),
+        StorageId.forType(TestHelpers.byteArray(100), 2),
+        StorageId.forType(TestHelpers.byteArray(300), 1),
+        StorageId.forType(TestHelpers.byteArray(300), 2)
+      ),
+      listOf(
+        StorageId.forType(TestHelpers.byteArray(100), 1),
+        StorageId.forType(TestHelpers.byteArray(100), 2),
+        StorageId.forType(TestHelpers.byteArray(400), 2),
+        StorageId.forType(TestHelpers.byteArray(400), 1)
+      )
+    )
+
+    TestHelpers.assertContentsEqual(listOf(StorageId.forType(TestHelpers.byteArray(300), 2)), result.remoteOnlyIds)
+    TestHelpers.assertContentsEqual(listOf(StorageId.forType(TestHelpers.byteArray(400), 1)), result.localOnlyIds)
+    assertTrue(result.hasTypeMismatches)
+  }
+
   @Test
   fun test_ContactUpdate_equals_sameProfileKeys() {
     every { RemoteConfig.messageQueueTime } returns 45.days.inWholeMilliseconds
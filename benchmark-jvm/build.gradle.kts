@@ -0,0 +1,60 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+val signalJavaVersion: JavaVersion by rootProject.extra
+val signalKotlinJvmTarget: String by rootProject.extra
+
+plugins {
+  id("java-library")
+  id("org.jetbrains.kotlin.jvm")
+  id("ktlint")
+}
+
+java {
+  sourceCompatibility = signalJavaVersion
+  targetCompatibility = signalJavaVersion
+}
+
+kotlin {
+  jvmToolchain {
+    languageVersion = JavaLanguageVersion.of(signalKotlinJvmTarget)
+  }
+}
+
+dependencies {
+  implementation(project(":core-util-jvm"))
+  implementation(project(":libsignal-service"))
+  implementation(testFixtures(project(":libsignal-service")))
+  implementation(libs.libsignal.client)
+
+  implementation(benchmarkLibs.jmh.core)
+  annotationProcessor(benchmarkLibs.jmh.generator.annprocess)
+}
+
+/**
+ * Runs every benchmark, or only the ones matching -PjmhInclude=<regex>, and writes the results as JSON so runs can be compared by tooling.
+ */
+tasks.register<JavaExec>("jmh") {
+  group = "benchmark"
+  description = "Runs the JMH benchmarks."
+
+  dependsOn(tasks.named("classes"))
+  classpath = sourceSets["main"].runtimeClasspath
+  mainClass = "org.openjdk.jmh.Main"
+
+  val results = layout.buildDirectory.file("reports/jmh/results.json")
+  outputs.file(results)
+  outputs.upToDateWhen { false }
+
+  doFirst {
+    results.get().asFile.parentFile.mkdirs()
+  }
+
+  args = listOfNotNull(
+    findProperty("jmhInclude")?.toString(),
+    "-rf", "json",
+    "-rff", results.get().asFile.absolutePath
+  )
+}
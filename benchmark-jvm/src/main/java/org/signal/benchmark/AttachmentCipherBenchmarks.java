@@ -0,0 +1,109 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.core.util.StreamUtil;
+import org.signal.libsignal.protocol.InvalidMessageException;
+import org.signal.libsignal.protocol.incrementalmac.ChunkSizeChoice;
+import org.whispersystems.signalservice.api.crypto.AttachmentCipherInputStream;
+import org.whispersystems.signalservice.api.crypto.DigestingOutputStream;
+import org.whispersystems.signalservice.internal.crypto.PaddingInputStream;
+import org.whispersystems.signalservice.internal.push.http.AttachmentCipherOutputStreamFactory;
+import org.whispersystems.signalservice.internal.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The attachment send and receive paths: padding, encrypting with an incremental MAC, and decrypting with digest and incremental MAC validation.
+ *
+ * Everything is in memory and written to a discarding stream, so the numbers are the cost of the streams themselves rather than disk or network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttachmentCipherBenchmarks {
+
+  @Param({ "65536", "1048576", "10485760" })
+  public int size;
+
+  private byte[] plaintext;
+  private byte[] key;
+  private byte[] iv;
+  private long   paddedSize;
+
+  private byte[] ciphertext;
+  private byte[] digest;
+  private byte[] incrementalDigest;
+  private int    chunkSize;
+
+  @Setup
+  public void setup() throws IOException {
+    plaintext  = Util.getSecretBytes(size);
+    key        = Util.getSecretBytes(64);
+    iv         = Util.getSecretBytes(16);
+    paddedSize = PaddingInputStream.getPaddedSize(size);
+
+    ByteArrayOutputStream ciphertextOut        = new ByteArrayOutputStream();
+    ByteArrayOutputStream incrementalDigestOut = new ByteArrayOutputStream();
+    ChunkSizeChoice       sizeChoice           = ChunkSizeChoice.inferChunkSize((int) paddedSize);
+    DigestingOutputStream encryptStream        = new AttachmentCipherOutputStreamFactory(key, iv).createIncrementalFor(ciphertextOut, paddedSize, sizeChoice, incrementalDigestOut);
+
+    StreamUtil.copy(new PaddingInputStream(new ByteArrayInputStream(plaintext), size), encryptStream);
+    incrementalDigestOut.close();
+
+    ciphertext        = ciphertextOut.toByteArray();
+    digest            = encryptStream.getTransmittedDigest();
+    incrementalDigest = incrementalDigestOut.toByteArray();
+    chunkSize         = sizeChoice.getSizeInBytes();
+  }
+
+  @Benchmark
+  public long pad() throws IOException {
+    return StreamUtil.copy(new PaddingInputStream(new ByteArrayInputStream(plaintext), size), OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public byte[] encrypt() throws IOException {
+    DigestingOutputStream encryptStream = new AttachmentCipherOutputStreamFactory(key, iv).createIncrementalFor(OutputStream.nullOutputStream(),
+                                                                                                               paddedSize,
+                                                                                                               ChunkSizeChoice.inferChunkSize((int) paddedSize),
+                                                                                                               OutputStream.nullOutputStream());
+
+    StreamUtil.copy(new PaddingInputStream(new ByteArrayInputStream(plaintext), size), encryptStream);
+
+    return encryptStream.getTransmittedDigest();
+  }
+
+  @Benchmark
+  public long decrypt() throws IOException, InvalidMessageException {
+    return StreamUtil.copy(AttachmentCipherInputStream.createForAttachment(() -> new ByteArrayInputStream(ciphertext),
+                                                                           ciphertext.length,
+                                                                           size,
+                                                                           key,
+                                                                           AttachmentCipherInputStream.IntegrityCheck.forEncryptedDigest(digest),
+                                                                           incrementalDigest,
+                                                                           chunkSize),
+                           OutputStream.nullOutputStream());
+  }
+}
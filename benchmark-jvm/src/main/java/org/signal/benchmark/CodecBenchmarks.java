@@ -0,0 +1,132 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.core.util.Base64;
+import org.signal.core.util.Base64Codec;
+import org.signal.core.util.Hex;
+import org.signal.core.util.HexCodec;
+import org.signal.core.util.LegacyBase64;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64 and hex encoding, across sizes from a key up to a small attachment.
+ * <p>
+ * The *_buffer benchmarks reuse their output buffers, to show the cost of the codecs without any allocation. base64_encode_legacy is the
+ * {@code Base64Tools} encoder that base64_encode used before, as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmarks {
+
+  @Param({ "32", "1024", "65536" })
+  public int size;
+
+  private byte[]     bytes;
+  private String     base64;
+  private String     hex;
+  private ByteBuffer byteBuffer;
+  private CharBuffer charBuffer;
+
+  @Setup
+  public void setup() {
+    bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+
+    base64 = Base64.encodeWithPadding(bytes);
+    hex    = Hex.toStringCondensed(bytes);
+
+    byteBuffer = ByteBuffer.allocate(size);
+    charBuffer = CharBuffer.allocate(hex.length());
+  }
+
+  @Benchmark
+  public String base64_encode() {
+    return Base64.encodeWithPadding(bytes);
+  }
+
+  @Benchmark
+  public String base64_encode_legacy() {
+    return LegacyBase64.encodeWithPadding(bytes);
+  }
+
+  @Benchmark
+  public byte[] base64_decode() throws IOException {
+    return Base64.decode(base64);
+  }
+
+  @Benchmark
+  public CharBuffer base64_encode_buffer() {
+    charBuffer.clear();
+    Base64Codec.encode(ByteBuffer.wrap(bytes), charBuffer);
+    return charBuffer;
+  }
+
+  @Benchmark
+  public CharBuffer base64_encode_constantTime_buffer() {
+    charBuffer.clear();
+    Base64Codec.encodeConstantTime(ByteBuffer.wrap(bytes), charBuffer);
+    return charBuffer;
+  }
+
+  @Benchmark
+  public ByteBuffer base64_decode_buffer() throws IOException {
+    byteBuffer.clear();
+    Base64Codec.decode(CharBuffer.wrap(base64), byteBuffer);
+    return byteBuffer;
+  }
+
+  @Benchmark
+  public ByteBuffer base64_decode_constantTime_buffer() throws IOException {
+    byteBuffer.clear();
+    Base64Codec.decodeConstantTime(CharBuffer.wrap(base64), byteBuffer);
+    return byteBuffer;
+  }
+
+  @Benchmark
+  public String hex_encode() {
+    return Hex.toStringCondensed(bytes);
+  }
+
+  @Benchmark
+  public byte[] hex_decode() throws IOException {
+    return Hex.fromStringCondensed(hex);
+  }
+
+  @Benchmark
+  public CharBuffer hex_encode_buffer() {
+    charBuffer.clear();
+    HexCodec.encode(ByteBuffer.wrap(bytes), charBuffer);
+    return charBuffer;
+  }
+
+  @Benchmark
+  public ByteBuffer hex_decode_buffer() throws IOException {
+    byteBuffer.clear();
+    HexCodec.decode(CharBuffer.wrap(hex), byteBuffer);
+    return byteBuffer;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.signalservice.api.messages.EnvelopeContentValidator;
+import org.whispersystems.signalservice.api.push.ServiceId.ACI;
+import org.whispersystems.signalservice.internal.push.AttachmentPointer;
+import org.whispersystems.signalservice.internal.push.BodyRange;
+import org.whispersystems.signalservice.internal.push.Content;
+import org.whispersystems.signalservice.internal.push.DataMessage;
+import org.whispersystems.signalservice.internal.push.Envelope;
+import org.whispersystems.signalservice.internal.push.SyncMessage;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating the envelope and content of a busy incoming message and of the sync transcript for one we sent, which is run on every message we receive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvelopeContentValidatorBenchmarks {
+
+  private ACI      localAci;
+  private Envelope incomingEnvelope;
+  private Content  incomingContent;
+  private Envelope syncEnvelope;
+  private Content  syncContent;
+
+  @Setup
+  public void setup() {
+    long timestamp = System.currentTimeMillis();
+    ACI  sender    = ACI.from(UUID.randomUUID());
+
+    localAci = ACI.from(UUID.randomUUID());
+
+    DataMessage dataMessage = new DataMessage.Builder()
+                                             .body("Hey @you, look at these")
+                                             .timestamp(timestamp)
+                                             .bodyRanges(List.of(new BodyRange.Builder().start(4).length(4).mentionAci(localAci.toString()).build(),
+                                                                 new BodyRange.Builder().start(10).length(4).style(BodyRange.Style.BOLD).build()))
+                                             .quote(new DataMessage.Quote.Builder().id(timestamp - 1000).authorAci(localAci.toString()).text("Send pictures").build())
+                                             .attachments(List.of(attachment(), attachment(), attachment()))
+                                             .build();
+
+    incomingEnvelope = new Envelope.Builder()
+                                   .type(Envelope.Type.CIPHERTEXT)
+                                   .sourceServiceId(sender.toString())
+                                   .sourceDevice(1)
+                                   .destinationServiceId(localAci.toString())
+                                   .timestamp(timestamp)
+                                   .serverTimestamp(timestamp)
+                                   .build();
+
+    incomingContent = new Content.Builder().dataMessage(dataMessage).build();
+
+    syncEnvelope = incomingEnvelope.newBuilder()
+                                   .sourceServiceId(localAci.toString())
+                                   .sourceDevice(2)
+                                   .build();
+
+    syncContent = new Content.Builder()
+                             .syncMessage(new SyncMessage.Builder()
+                                                         .sent(new SyncMessage.Sent.Builder()
+                                                                                   .destinationServiceId(sender.toString())
+                                                                                   .timestamp(timestamp)
+                                                                                   .message(dataMessage)
+                                                                                   .build())
+                                                         .build())
+                             .build();
+  }
+
+  @Benchmark
+  public EnvelopeContentValidator.Result validate_dataMessage() {
+    return EnvelopeContentValidator.INSTANCE.validate(incomingEnvelope, incomingContent, localAci);
+  }
+
+  @Benchmark
+  public EnvelopeContentValidator.Result validate_syncSent() {
+    return EnvelopeContentValidator.INSTANCE.validate(syncEnvelope, syncContent, localAci);
+  }
+
+  private static AttachmentPointer attachment() {
+    return new AttachmentPointer.Builder()
+                                .cdnKey(UUID.randomUUID().toString())
+                                .cdnNumber(3)
+                                .contentType("image/jpeg")
+                                .size(123456)
+                                .build();
+  }
+}
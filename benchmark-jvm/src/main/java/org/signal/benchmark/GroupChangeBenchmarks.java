@@ -0,0 +1,128 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.storageservice.protos.groups.Member;
+import org.signal.storageservice.protos.groups.local.DecryptedGroup;
+import org.signal.storageservice.protos.groups.local.DecryptedGroupChange;
+import org.signal.storageservice.protos.groups.local.DecryptedMember;
+import org.signal.storageservice.protos.groups.local.DecryptedModifyMemberRole;
+import org.whispersystems.signalservice.api.groupsv2.DecryptedGroupUtil;
+import org.whispersystems.signalservice.api.groupsv2.MutableDecryptedGroup;
+import org.whispersystems.signalservice.api.groupsv2.NotAbleToApplyGroupV2ChangeException;
+import org.whispersystems.signalservice.api.util.UuidUtil;
+import org.whispersystems.signalservice.internal.util.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+
+/**
+ * Applying a typical group change (a join, a leave, a profile key update and a promotion) to groups of different sizes.
+ * <p>
+ * The applyHistory_* benchmarks catch a group up on a run of such changes, either one by one or through a {@link MutableDecryptedGroup}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupChangeBenchmarks {
+
+  private static final int HISTORY_LENGTH = 100;
+
+  @Param({ "10", "100", "1000" })
+  public int memberCount;
+
+  private DecryptedGroup             group;
+  private DecryptedGroupChange       change;
+  private List<DecryptedGroupChange> history;
+
+  @Setup
+  public void setup() {
+    List<DecryptedMember> members = new ArrayList<>(memberCount);
+    for (int i = 0; i < memberCount; i++) {
+      members.add(member(UUID.randomUUID(), 0));
+    }
+
+    group = new DecryptedGroup.Builder()
+                              .revision(10)
+                              .members(members)
+                              .build();
+
+    DecryptedMember last   = members.get(members.size() - 1);
+    DecryptedMember middle = members.get(members.size() / 2);
+    DecryptedMember first  = members.get(0);
+
+    change = new DecryptedGroupChange.Builder()
+                                     .revision(11)
+                                     .newMembers(List.of(member(UUID.randomUUID(), 11)))
+                                     .deleteMembers(List.of(last.aciBytes))
+                                     .modifiedProfileKeys(List.of(middle.newBuilder().profileKey(ByteString.of(Util.getSecretBytes(32))).build()))
+                                     .modifyMemberRoles(List.of(new DecryptedModifyMemberRole.Builder().aciBytes(first.aciBytes).role(Member.Role.ADMINISTRATOR).build()))
+                                     .build();
+
+    List<DecryptedMember> current = new ArrayList<>(members);
+    history = new ArrayList<>(HISTORY_LENGTH);
+    for (int revision = 11; revision < 11 + HISTORY_LENGTH; revision++) {
+      DecryptedMember joined  = member(UUID.randomUUID(), revision);
+      DecryptedMember left    = current.remove(0);
+      DecryptedMember updated = current.get(current.size() / 2);
+
+      history.add(new DecryptedGroupChange.Builder()
+                                          .revision(revision)
+                                          .newMembers(List.of(joined))
+                                          .deleteMembers(List.of(left.aciBytes))
+                                          .modifiedProfileKeys(List.of(updated.newBuilder().profileKey(ByteString.of(Util.getSecretBytes(32))).build()))
+                                          .build());
+
+      current.add(joined);
+    }
+  }
+
+  @Benchmark
+  public DecryptedGroup apply() throws NotAbleToApplyGroupV2ChangeException {
+    return DecryptedGroupUtil.apply(group, change);
+  }
+
+  @Benchmark
+  public DecryptedGroup applyHistory_oneByOne() throws NotAbleToApplyGroupV2ChangeException {
+    DecryptedGroup current = group;
+    for (DecryptedGroupChange next : history) {
+      current = DecryptedGroupUtil.apply(current, next);
+    }
+    return current;
+  }
+
+  @Benchmark
+  public DecryptedGroup applyHistory_indexed() throws NotAbleToApplyGroupV2ChangeException {
+    return MutableDecryptedGroup.applyAll(group, history);
+  }
+
+  private static DecryptedMember member(UUID uuid, int joinedAtRevision) {
+    return new DecryptedMember.Builder()
+                              .aciBytes(UuidUtil.toByteString(uuid))
+                              .role(Member.Role.DEFAULT)
+                              .profileKey(ByteString.of(Util.getSecretBytes(32)))
+                              .joinedAtRevision(joinedAtRevision)
+                              .build();
+  }
+}
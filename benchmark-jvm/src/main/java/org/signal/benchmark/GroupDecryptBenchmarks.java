@@ -0,0 +1,118 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.zkgroup.InvalidInputException;
+import org.signal.libsignal.zkgroup.ServerSecretParams;
+import org.signal.libsignal.zkgroup.VerificationFailedException;
+import org.signal.libsignal.zkgroup.groups.ClientZkGroupCipher;
+import org.signal.libsignal.zkgroup.groups.GroupMasterKey;
+import org.signal.libsignal.zkgroup.groups.GroupSecretParams;
+import org.signal.libsignal.zkgroup.profiles.ProfileKey;
+import org.signal.storageservice.protos.groups.BannedMember;
+import org.signal.storageservice.protos.groups.Group;
+import org.signal.storageservice.protos.groups.Member;
+import org.signal.storageservice.protos.groups.local.DecryptedGroup;
+import org.whispersystems.signalservice.api.groupsv2.ClientZkOperations;
+import org.whispersystems.signalservice.api.groupsv2.GroupsV2Operations;
+import org.whispersystems.signalservice.api.groupsv2.InvalidGroupStateException;
+import org.whispersystems.signalservice.api.push.ServiceId.ACI;
+import org.whispersystems.signalservice.internal.util.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+
+/**
+ * Decrypting the state of groups of different sizes, either on the calling thread or spread across a decryption pool.
+ * <p>
+ * Each benchmark decrypts through a fresh {@link GroupsV2Operations.GroupOperations}, so the parallel one can't lean on service IDs it cached in an
+ * earlier invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupDecryptBenchmarks {
+
+  @Param({ "100", "1000" })
+  public int memberCount;
+
+  private ForkJoinPool       pool;
+  private GroupsV2Operations sequential;
+  private GroupsV2Operations parallel;
+  private GroupSecretParams  groupSecretParams;
+  private Group              group;
+
+  @Setup
+  public void setup() throws InvalidInputException, VerificationFailedException {
+    ClientZkOperations clientZkOperations = new ClientZkOperations(ServerSecretParams.generate().getPublicParams());
+
+    pool              = new ForkJoinPool(4);
+    sequential        = new GroupsV2Operations(clientZkOperations, 1000);
+    parallel          = new GroupsV2Operations(clientZkOperations, 1000, pool);
+    groupSecretParams = GroupSecretParams.deriveFromMasterKey(new GroupMasterKey(Util.getSecretBytes(32)));
+
+    GroupsV2Operations.GroupOperations operations = sequential.forGroup(groupSecretParams);
+    ClientZkGroupCipher                cipher     = new ClientZkGroupCipher(groupSecretParams);
+
+    List<Member> members = new ArrayList<>(memberCount);
+    for (int i = 0; i < memberCount; i++) {
+      ACI aci = ACI.from(UUID.randomUUID());
+      members.add(new Member.Builder()
+                            .role(Member.Role.DEFAULT)
+                            .userId(operations.encryptServiceId(aci))
+                            .profileKey(ByteString.of(cipher.encryptProfileKey(new ProfileKey(Util.getSecretBytes(32)), aci.getLibSignalAci()).serialize()))
+                            .build());
+    }
+
+    List<BannedMember> bannedMembers = new ArrayList<>(memberCount / 10);
+    for (int i = 0; i < memberCount / 10; i++) {
+      bannedMembers.add(new BannedMember.Builder()
+                                        .userId(operations.encryptServiceId(ACI.from(UUID.randomUUID())))
+                                        .build());
+    }
+
+    group = new Group.Builder()
+                     .revision(1)
+                     .members(members)
+                     .bannedMembers(bannedMembers)
+                     .build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Benchmark
+  public DecryptedGroup decryptGroup_sequential() throws VerificationFailedException, InvalidGroupStateException {
+    return sequential.forGroup(groupSecretParams).decryptGroup(group);
+  }
+
+  @Benchmark
+  public DecryptedGroup decryptGroup_parallel() throws VerificationFailedException, InvalidGroupStateException {
+    return parallel.forGroup(groupSecretParams).decryptGroup(group);
+  }
+}
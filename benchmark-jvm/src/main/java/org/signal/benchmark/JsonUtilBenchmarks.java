@@ -0,0 +1,77 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.core.util.Base64;
+import org.whispersystems.signalservice.api.profiles.SignalServiceProfile;
+import org.whispersystems.signalservice.internal.push.OutgoingPushMessage;
+import org.whispersystems.signalservice.internal.push.OutgoingPushMessageList;
+import org.whispersystems.signalservice.internal.util.JsonUtil;
+import org.whispersystems.signalservice.internal.util.Util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing an outgoing message to a recipient with several devices, and parsing a profile, which are the JSON payloads we handle most.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilBenchmarks {
+
+  private OutgoingPushMessageList messageList;
+  private String                  profileJson;
+
+  @Setup
+  public void setup() {
+    List<OutgoingPushMessage> messages = new ArrayList<>();
+    for (int deviceId = 1; deviceId <= 4; deviceId++) {
+      messages.add(new OutgoingPushMessage(1, deviceId, 1234 + deviceId, Base64.encodeWithPadding(Util.getSecretBytes(512))));
+    }
+
+    messageList = new OutgoingPushMessageList(UUID.randomUUID().toString(), System.currentTimeMillis(), messages, false, true);
+
+    profileJson = "{" +
+                  "\"identityKey\":\"" + Base64.encodeWithPadding(Util.getSecretBytes(33)) + "\"," +
+                  "\"name\":\"" + Base64.encodeWithPadding(Util.getSecretBytes(81)) + "\"," +
+                  "\"about\":\"" + Base64.encodeWithPadding(Util.getSecretBytes(156)) + "\"," +
+                  "\"aboutEmoji\":\"" + Base64.encodeWithPadding(Util.getSecretBytes(60)) + "\"," +
+                  "\"avatar\":\"profiles/" + UUID.randomUUID() + "\"," +
+                  "\"unidentifiedAccess\":\"" + Base64.encodeWithPadding(Util.getSecretBytes(16)) + "\"," +
+                  "\"unrestrictedUnidentifiedAccess\":false," +
+                  "\"capabilities\":{\"storage\":true,\"ssre2\":true}," +
+                  "\"uuid\":\"" + UUID.randomUUID() + "\"," +
+                  "\"badges\":[{\"id\":\"BOOST\",\"category\":\"donor\",\"name\":\"Boost\",\"description\":\"A badge\",\"sprites6\":[\"a.png\",\"b.png\",\"c.png\",\"d.png\",\"e.png\",\"f.png\"],\"expiration\":1700000000,\"visible\":true,\"duration\":2592000}]" +
+                  "}";
+  }
+
+  @Benchmark
+  public String toJson_outgoingMessages() {
+    return JsonUtil.toJson(messageList);
+  }
+
+  @Benchmark
+  public SignalServiceProfile fromJson_profile() throws IOException {
+    return JsonUtil.fromJson(profileJson, SignalServiceProfile.class);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.signalservice.api.push.DistributionId;
+import org.whispersystems.signalservice.internal.push.Envelope;
+import org.whispersystems.signalservice.test.SignalClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypting and decrypting messages. The JVM counterpart of the on-device ProtocolBenchmarks in :microbenchmark.
+ *
+ * Note that in order to isolate all costs to just the process of encryption and decryption itself,
+ * all operations are performed in in-memory stores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtocolBenchmarks {
+
+  private static final int GROUP_SIZE = 10;
+
+  @Benchmark
+  public Envelope encrypt_unsealedSender(Pair pair) {
+    return pair.alice.encryptUnsealedSender(pair.bob);
+  }
+
+  @Benchmark
+  public Envelope encrypt_sealedSender(Pair pair) {
+    return pair.alice.encryptSealedSender(pair.bob);
+  }
+
+  @Benchmark
+  public void decrypt_unsealedSender(UnsealedEnvelope state) {
+    state.bob.decryptMessage(state.envelope);
+  }
+
+  @Benchmark
+  public void decrypt_sealedSender(SealedEnvelope state) {
+    state.bob.decryptMessage(state.envelope);
+  }
+
+  @Benchmark
+  public byte[] multiEncrypt_sealedSender(Group group) {
+    return group.alice.multiEncryptSealedSender(group.distributionId, group.others, Optional.empty());
+  }
+
+  @State(Scope.Thread)
+  public static class Pair {
+    SignalClient alice;
+    SignalClient bob;
+
+    @Setup
+    public void setup() {
+      List<SignalClient> clients = buildAndInitializeClients(2);
+      alice = clients.get(0);
+      bob   = clients.get(1);
+    }
+  }
+
+  /**
+   * A fresh message from alice for every invocation, with bob responding first so that the session ratchets like a real conversation.
+   */
+  @State(Scope.Thread)
+  public static class UnsealedEnvelope extends Pair {
+    Envelope envelope;
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+      alice.decryptMessage(bob.encryptUnsealedSender(alice));
+      envelope = alice.encryptUnsealedSender(bob);
+    }
+  }
+
+  /**
+   * The sealed sender equivalent of {@link UnsealedEnvelope}.
+   */
+  @State(Scope.Thread)
+  public static class SealedEnvelope extends Pair {
+    Envelope envelope;
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+      alice.decryptMessage(bob.encryptSealedSender(alice));
+      envelope = alice.encryptSealedSender(bob);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Group {
+    SignalClient       alice;
+    List<SignalClient> others;
+    DistributionId     distributionId;
+
+    @Setup
+    public void setup() {
+      List<SignalClient> clients = buildAndInitializeClients(GROUP_SIZE);
+
+      alice          = clients.get(0);
+      others         = clients.subList(1, clients.size());
+      distributionId = DistributionId.create();
+
+      for (SignalClient client : clients) {
+        client.initializedGroupSession(distributionId);
+      }
+    }
+  }
+
+  private static List<SignalClient> buildAndInitializeClients(int count) {
+    List<SignalClient> clients = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      clients.add(new SignalClient());
+    }
+
+    for (SignalClient alice : clients) {
+      for (SignalClient bob : clients) {
+        if (alice == bob) {
+          continue;
+        }
+
+        alice.initializeSession(bob);
+        bob.initializeSession(alice);
+
+        alice.decryptMessage(bob.encryptUnsealedSender(alice));
+        bob.decryptMessage(alice.encryptUnsealedSender(bob));
+        alice.decryptMessage(bob.encryptSealedSender(alice));
+        bob.decryptMessage(alice.encryptSealedSender(bob));
+      }
+    }
+
+    return clients;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.core.util.logging.Scrubber;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scrubbing log lines, both the common case of nothing to scrub and a line full of things that need it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScrubberBenchmarks {
+
+  private String cleanLine;
+  private String dirtyLine;
+  private String logDump;
+
+  @Setup
+  public void setup() {
+    cleanLine = "[JobRunner-1] PushProcessMessageJob :: Completed job in 34 ms. (Time since submission: 35 ms, Lifespan: 96 ms, Run attempts: 1)";
+    dirtyLine = "Sending to +14155552671 (6bd3c8a1-5a6e-4f4b-9c0b-2f0d1e6c9a3b) at user@example.com, group __signal_group__v2__!0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef, from 192.168.1.10";
+
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      builder.append(i % 10 == 0 ? dirtyLine : cleanLine).append('\n');
+    }
+    logDump = builder.toString();
+  }
+
+  @Benchmark
+  public CharSequence scrub_clean() {
+    return Scrubber.scrub(cleanLine);
+  }
+
+  @Benchmark
+  public CharSequence scrub_dirty() {
+    return Scrubber.scrub(dirtyLine);
+  }
+
+  @Benchmark
+  public CharSequence scrub_logDump() {
+    return Scrubber.scrub(logDump);
+  }
+}
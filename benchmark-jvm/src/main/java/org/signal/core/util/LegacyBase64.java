@@ -0,0 +1,19 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util;
+
+/**
+ * Exposes the package-private {@link Base64Tools} encoder that {@link Base64} used before {@link Base64Codec}, so the benchmarks can use it as a
+ * baseline.
+ */
+public final class LegacyBase64 {
+
+  private LegacyBase64() {}
+
+  public static String encodeWithPadding(byte[] bytes) {
+    return Base64Tools.encodeBytes(bytes);
+  }
+}
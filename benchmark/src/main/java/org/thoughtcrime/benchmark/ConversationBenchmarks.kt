@@ -4,10 +4,12 @@ import android.Manifest
 import android.os.Build
 import androidx.benchmark.macro.CompilationMode
 import androidx.benchmark.macro.ExperimentalMetricApi
+import androidx.benchmark.macro.FrameTimingMetric
 import androidx.benchmark.macro.TraceSectionMetric
 import androidx.benchmark.macro.junit4.MacrobenchmarkRule
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Direction
 import androidx.test.uiautomator.Until
 import org.junit.Rule
 import org.junit.Test
@@ -51,4 +53,40 @@ class ConversationBenchmarks {
       device.wait(Until.hasObject(By.textContains("Test")), 5_000L)
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Measures jank while flinging through a long chat of mixed media and text, which is dominated by how much work each bind does on the main thread.
+   */
+  @Test
+  fun conversationFling() {
+    var setup = false
+    benchmarkRule.measureRepeated(
+      packageName = "org.thoughtcrime.securesms",
+      metrics = listOf(FrameTimingMetric()),
+      iterations = 5,
+      compilationMode = CompilationMode.Partial(),
+      setupBlock = {
+        if (!setup) {
+          BenchmarkSetup.setup("conversation-scroll", device)
+          setup = true
+        }
+        killProcess()
+        if (Build.VERSION.SDK_INT >= 33) {
+          device.executeShellCommand("pm grant $packageName ${Manifest.permission.POST_NOTIFICATIONS}")
+        }
+        startActivityAndWait()
+        device.waitForIdle()
+        device.findObject(By.textContains("Buddy")).click()
+        device.wait(Until.hasObject(By.res(packageName, "conversation_item_recycler")), 10_000L)
+        device.waitForIdle()
+      }) {
+      val list = device.findObject(By.res(packageName, "conversation_item_recycler"))
+      list.setGestureMargin(device.displayWidth / 5)
+
+      repeat(5) {
+        list.fling(Direction.UP)
+        device.waitForIdle()
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package org.thoughtcrime.benchmark
+
+import android.Manifest
+import android.os.Build
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.ExperimentalMetricApi
+import androidx.benchmark.macro.TraceSectionMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Until
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class SearchBenchmarks {
+  @get:Rule
+  val benchmarkRule = MacrobenchmarkRule()
+
+  /**
+   * Types a query one character at a time into chat search over a 500k message index, measuring how long each keystroke takes to show its first
+   * page of message results.
+   */
+  @OptIn(ExperimentalMetricApi::class)
+  @Test
+  fun messageSearchAsYouType() {
+    val query = "hello wor"
+    var setup = false
+
+    benchmarkRule.measureRepeated(
+      packageName = "org.thoughtcrime.securesms",
+      metrics = (1..query.length).map { TraceSectionMetric("MessageSearch-FirstPage-$it") },
+      iterations = 5,
+      compilationMode = CompilationMode.Partial(),
+      setupBlock = {
+        if (!setup) {
+          BenchmarkSetup.setup("message-search", device, timeoutMs = 600_000L)
+          setup = true
+        }
+        killProcess()
+        if (Build.VERSION.SDK_INT >= 33) {
+          device.executeShellCommand("pm grant $packageName ${Manifest.permission.POST_NOTIFICATIONS}")
+        }
+        startActivityAndWait()
+        device.waitForIdle()
+      }) {
+      device.findObject(By.desc("Search")).click()
+      device.wait(Until.hasObject(By.clazz("android.widget.EditText")), 5_000L)
+
+      val searchField = device.findObject(By.clazz("android.widget.EditText"))
+      for (i in 1..query.length) {
+        searchField.text = query.substring(0, i)
+        device.waitForIdle()
+      }
+
+      device.wait(Until.hasObject(By.textContains("hello")), 10_000L)
+    }
+  }
+}
@@ -19,7 +19,7 @@ object Base64 {
   @JvmOverloads
   @JvmStatic
   fun encodeWithPadding(bytes: ByteArray, offset: Int = 0, length: Int = bytes.size): String {
-    return Base64Tools.encodeBytes(bytes, offset, length)
+    return Base64Codec.encodeToString(bytes, offset, length)
   }
 
   /**
@@ -27,7 +27,7 @@ object Base64 {
    */
   @JvmStatic
   fun encodeWithoutPadding(bytes: ByteArray): String {
-    return Base64Tools.encodeBytes(bytes).stripPadding()
+    return Base64Codec.encodeToString(bytes, padding = false)
   }
 
   /**
@@ -36,7 +36,7 @@ object Base64 {
    */
   @JvmStatic
   fun encodeUrlSafeWithPadding(bytes: ByteArray): String {
-    return Base64Tools.encodeBytes(bytes, Base64Tools.URL_SAFE or Base64Tools.DONT_GUNZIP)
+    return Base64Codec.encodeToString(bytes, urlSafe = true)
   }
 
   /**
@@ -45,7 +45,7 @@ object Base64 {
    */
   @JvmStatic
   fun encodeUrlSafeWithoutPadding(bytes: ByteArray): String {
-    return Base64Tools.encodeBytes(bytes, Base64Tools.URL_SAFE or Base64Tools.DONT_GUNZIP).stripPadding()
+    return Base64Codec.encodeToString(bytes, urlSafe = true, padding = false)
   }
 
   /**
@@ -127,10 +127,6 @@ object Base64 {
     }
   }
 
-  private fun String.stripPadding(): String {
-    return this.replace("=", "")
-  }
-
   fun String.decodeBase64OrThrow(): ByteArray {
     return try {
       decode(this)
@@ -0,0 +1,538 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util
+
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.CharBuffer
+
+/**
+ * Base64 encoding and decoding directly between [ByteBuffer]s, [CharBuffer]s and [OutputStream]s, without the intermediate arrays and strings
+ * that [Base64] creates along the way.
+ *
+ * The regular methods are table-driven, and work on 6 bytes (8 characters) at a time: each 12 bits are looked up as a pair of characters when
+ * encoding, and each character is looked up as 6 bits when decoding. Table lookups take a different amount of time depending on the data, so
+ * keys and other secrets should use the `ConstantTime` variants instead, which work out each character with arithmetic alone.
+ *
+ * Like [Base64.decode], decoding accepts both the standard and url-safe alphabets, with or without padding. Unlike it, whitespace is an error.
+ * All methods consume their input from its position to its limit, and advance the position of their output by what they wrote.
+ */
+object Base64Codec {
+
+  private const val PAD = '='.code
+
+  private val STANDARD_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray()
+  private val URL_SAFE_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray()
+
+  /** Every 12-bit value as the two characters it encodes to, packed into one char with the first in the high byte. */
+  private val STANDARD_PAIRS = pairTable(STANDARD_ALPHABET)
+  private val URL_SAFE_PAIRS = pairTable(URL_SAFE_ALPHABET)
+
+  /** The 6-bit value of each ASCII character, from either alphabet, or -1 if it isn't part of one. */
+  private val DECODE_TABLE = IntArray(256) { -1 }.also { table ->
+    STANDARD_ALPHABET.forEachIndexed { i, c -> table[c.code] = i }
+    URL_SAFE_ALPHABET.forEachIndexed { i, c -> table[c.code] = i }
+  }
+
+  /**
+   * The number of characters that [length] bytes encode to.
+   */
+  @JvmStatic
+  @JvmOverloads
+  fun encodedLength(length: Int, padding: Boolean = true): Int {
+    val remainder = length % 3
+    val full = (length / 3) * 4
+
+    return when {
+      remainder == 0 -> full
+      padding -> full + 4
+      else -> full + remainder + 1
+    }
+  }
+
+  @JvmStatic
+  @JvmOverloads
+  fun encode(src: ByteBuffer, dst: CharBuffer, urlSafe: Boolean = false, padding: Boolean = true) {
+    requireSpace(dst.remaining(), encodedLength(src.remaining(), padding))
+
+    if (dst.hasArray()) {
+      val array = dst.array()
+      var i = dst.arrayOffset() + dst.position()
+
+      encode(
+        src = src,
+        urlSafe = urlSafe,
+        padding = padding,
+        put8 = { packed ->
+          for (shift in 56 downTo 0 step 8) {
+            array[i++] = ((packed ushr shift).toInt() and 0xFF).toChar()
+          }
+        },
+        put1 = { c -> array[i++] = c.toChar() }
+      )
+
+      dst.position(i - dst.arrayOffset())
+    } else {
+      encode(
+        src = src,
+        urlSafe = urlSafe,
+        padding = padding,
+        put8 = { packed ->
+          for (shift in 56 downTo 0 step 8) {
+            dst.put(((packed ushr shift).toInt() and 0xFF).toChar())
+          }
+        },
+        put1 = { c -> dst.put(c.toChar()) }
+      )
+    }
+  }
+
+  /**
+   * Encodes into [dst] as ASCII bytes.
+   */
+  @JvmStatic
+  @JvmOverloads
+  fun encode(src: ByteBuffer, dst: ByteBuffer, urlSafe: Boolean = false, padding: Boolean = true) {
+    requireSpace(dst.remaining(), encodedLength(src.remaining(), padding))
+
+    encode(
+      src = src,
+      urlSafe = urlSafe,
+      padding = padding,
+      put8 = { packed -> dst.putLong(if (dst.order() == ByteOrder.BIG_ENDIAN) packed else java.lang.Long.reverseBytes(packed)) },
+      put1 = { c -> dst.put(c.toByte()) }
+    )
+  }
+
+  /**
+   * Encodes to [out] as ASCII bytes, a chunk at a time.
+   */
+  @JvmStatic
+  @JvmOverloads
+  @Throws(IOException::class)
+  fun encode(src: ByteBuffer, out: OutputStream, urlSafe: Boolean = false, padding: Boolean = true) {
+    val chunk = ByteArray(STREAM_CHUNK_SIZE)
+    var i = 0
+
+    encode(
+      src = src,
+      urlSafe = urlSafe,
+      padding = padding,
+      put8 = { packed ->
+        if (i > STREAM_CHUNK_SIZE - 8) {
+          out.write(chunk, 0, i)
+          i = 0
+        }
+        for (shift in 56 downTo 0 step 8) {
+          chunk[i++] = (packed ushr shift).toByte()
+        }
+      },
+      put1 = { c ->
+        if (i == STREAM_CHUNK_SIZE) {
+          out.write(chunk, 0, i)
+          i = 0
+        }
+        chunk[i++] = c.toByte()
+      }
+    )
+
+    if (i > 0) {
+      out.write(chunk, 0, i)
+    }
+  }
+
+  @JvmStatic
+  @JvmOverloads
+  fun encodeToString(src: ByteArray, offset: Int = 0, length: Int = src.size, urlSafe: Boolean = false, padding: Boolean = true): String {
+    val chars = CharArray(encodedLength(length, padding))
+    encode(ByteBuffer.wrap(src, offset, length), CharBuffer.wrap(chars), urlSafe, padding)
+    return String(chars)
+  }
+
+  /**
+   * Decodes into [dst].
+   *
+   * @throws IOException If [src] isn't valid base64. [dst] may have been partially written to.
+   */
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decode(src: CharBuffer, dst: ByteBuffer) {
+    decode(src.position(), src.limit(), { src.get(it).code }, dst)
+    src.position(src.limit())
+  }
+
+  /**
+   * Decodes ASCII bytes, like those read straight off the network, into [dst].
+   *
+   * @throws IOException If [src] isn't valid base64. [dst] may have been partially written to.
+   */
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decode(src: ByteBuffer, dst: ByteBuffer) {
+    decode(src.position(), src.limit(), { src.get(it).toInt() and 0xFF }, dst)
+    src.position(src.limit())
+  }
+
+  /**
+   * Decodes to [out], a chunk at a time.
+   *
+   * @throws IOException If [src] isn't valid base64, or writing to [out] fails. Anything before the invalid data may have been written.
+   */
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decode(src: CharBuffer, out: OutputStream) {
+    // Room for a full chunk, plus the partial group the last one can have
+    val chunk = ByteBuffer.allocate(STREAM_CHUNK_SIZE / 4 * 3 + 2)
+    val end = src.limit()
+
+    while (src.hasRemaining()) {
+      // Chunks other than the last must be a multiple of 4 characters, so they don't end partway through a group or before padding
+      val chunkEnd = if (end - src.position() > STREAM_CHUNK_SIZE + 3) src.position() + STREAM_CHUNK_SIZE else end
+
+      decode(src.position(), chunkEnd, { src.get(it).code }, chunk, isLast = chunkEnd == end)
+      src.position(chunkEnd)
+
+      out.write(chunk.array(), 0, chunk.position())
+      chunk.clear()
+    }
+  }
+
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decode(src: CharSequence): ByteArray {
+    val bytes = ByteArray(decodedLength(src))
+    decode(CharBuffer.wrap(src), ByteBuffer.wrap(bytes))
+    return bytes
+  }
+
+  /**
+   * Like [encode], but the time it takes only depends on the length of [src].
+   */
+  @JvmStatic
+  @JvmOverloads
+  fun encodeConstantTime(src: ByteBuffer, dst: CharBuffer, urlSafe: Boolean = false, padding: Boolean = true) {
+    requireSpace(dst.remaining(), encodedLength(src.remaining(), padding))
+
+    val end = src.limit()
+    var i = src.position()
+
+    while (end - i >= 3) {
+      val bits = ((src.get(i).toInt() and 0xFF) shl 16) or ((src.get(i + 1).toInt() and 0xFF) shl 8) or (src.get(i + 2).toInt() and 0xFF)
+      dst.put(encode6ConstantTime(bits ushr 18, urlSafe))
+      dst.put(encode6ConstantTime((bits ushr 12) and 0x3F, urlSafe))
+      dst.put(encode6ConstantTime((bits ushr 6) and 0x3F, urlSafe))
+      dst.put(encode6ConstantTime(bits and 0x3F, urlSafe))
+      i += 3
+    }
+
+    when (end - i) {
+      1 -> {
+        val bits = src.get(i).toInt() and 0xFF
+        dst.put(encode6ConstantTime(bits ushr 2, urlSafe))
+        dst.put(encode6ConstantTime((bits shl 4) and 0x3F, urlSafe))
+        if (padding) {
+          dst.put(PAD.toChar()).put(PAD.toChar())
+        }
+      }
+      2 -> {
+        val bits = ((src.get(i).toInt() and 0xFF) shl 8) or (src.get(i + 1).toInt() and 0xFF)
+        dst.put(encode6ConstantTime(bits ushr 10, urlSafe))
+        dst.put(encode6ConstantTime((bits ushr 4) and 0x3F, urlSafe))
+        dst.put(encode6ConstantTime((bits shl 2) and 0x3F, urlSafe))
+        if (padding) {
+          dst.put(PAD.toChar())
+        }
+      }
+    }
+
+    src.position(end)
+  }
+
+  @JvmStatic
+  @JvmOverloads
+  fun encodeToStringConstantTime(src: ByteArray, urlSafe: Boolean = false, padding: Boolean = true): String {
+    val chars = CharArray(encodedLength(src.size, padding))
+    encodeConstantTime(ByteBuffer.wrap(src), CharBuffer.wrap(chars), urlSafe, padding)
+    return String(chars)
+  }
+
+  /**
+   * Like [decode], but the time it takes only depends on the length of [src] and how much padding it has. Validity is only checked at the end,
+   * so [dst] is always fully written to, even if [src] turns out to be invalid.
+   *
+   * @throws IOException If [src] isn't valid base64.
+   */
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decodeConstantTime(src: CharBuffer, dst: ByteBuffer) {
+    val start = src.position()
+    val end = start + unpaddedLength(start, src.limit()) { src.get(it).code }
+    requireSpace(dst.remaining(), decodedLength(end - start))
+
+    var invalid = 0
+    var i = start
+
+    while (end - i >= 4) {
+      val d0 = decode6ConstantTime(src.get(i).code)
+      val d1 = decode6ConstantTime(src.get(i + 1).code)
+      val d2 = decode6ConstantTime(src.get(i + 2).code)
+      val d3 = decode6ConstantTime(src.get(i + 3).code)
+      invalid = invalid or d0 or d1 or d2 or d3
+
+      val bits = (d0 shl 18) or (d1 shl 12) or (d2 shl 6) or d3
+      dst.put((bits ushr 16).toByte()).put((bits ushr 8).toByte()).put(bits.toByte())
+      i += 4
+    }
+
+    when (end - i) {
+      2 -> {
+        val d0 = decode6ConstantTime(src.get(i).code)
+        val d1 = decode6ConstantTime(src.get(i + 1).code)
+        invalid = invalid or d0 or d1
+
+        dst.put(((d0 shl 2) or (d1 ushr 4)).toByte())
+      }
+      3 -> {
+        val d0 = decode6ConstantTime(src.get(i).code)
+        val d1 = decode6ConstantTime(src.get(i + 1).code)
+        val d2 = decode6ConstantTime(src.get(i + 2).code)
+        invalid = invalid or d0 or d1 or d2
+
+        val bits = (d0 shl 10) or (d1 shl 4) or (d2 ushr 2)
+        dst.put((bits ushr 8).toByte()).put(bits.toByte())
+      }
+    }
+
+    src.position(src.limit())
+
+    if (invalid < 0) {
+      throw IOException("Invalid base64 character.")
+    }
+  }
+
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decodeConstantTime(src: CharSequence): ByteArray {
+    val bytes = ByteArray(decodedLength(src))
+    decodeConstantTime(CharBuffer.wrap(src), ByteBuffer.wrap(bytes))
+    return bytes
+  }
+
+  /**
+   * The number of bytes that [src] decodes to.
+   *
+   * @throws IOException If [src] has a length that no valid base64 can have.
+   */
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decodedLength(src: CharSequence): Int {
+    return decodedLength(unpaddedLength(0, src.length) { src[it].code })
+  }
+
+  private inline fun encode(src: ByteBuffer, urlSafe: Boolean, padding: Boolean, put8: (Long) -> Unit, put1: (Int) -> Unit) {
+    val pairs = if (urlSafe) URL_SAFE_PAIRS else STANDARD_PAIRS
+    val alphabet = if (urlSafe) URL_SAFE_ALPHABET else STANDARD_ALPHABET
+    val bigEndian = src.order() == ByteOrder.BIG_ENDIAN
+    val end = src.limit()
+    var i = src.position()
+
+    // Reads 8 bytes and uses the top 6, so stops while there are at least 8 left to read
+    while (end - i >= 8) {
+      val word = src.getLong(i).let { if (bigEndian) it else java.lang.Long.reverseBytes(it) }
+
+      put8(
+        (pairs[(word ushr 52).toInt() and 0xFFF].code.toLong() shl 48) or
+          (pairs[(word ushr 40).toInt() and 0xFFF].code.toLong() shl 32) or
+          (pairs[(word ushr 28).toInt() and 0xFFF].code.toLong() shl 16) or
+          pairs[(word ushr 16).toInt() and 0xFFF].code.toLong()
+      )
+      i += 6
+    }
+
+    while (end - i >= 3) {
+      val bits = ((src.get(i).toInt() and 0xFF) shl 16) or ((src.get(i + 1).toInt() and 0xFF) shl 8) or (src.get(i + 2).toInt() and 0xFF)
+      val first = pairs[bits ushr 12].code
+      val second = pairs[bits and 0xFFF].code
+
+      put1(first ushr 8)
+      put1(first and 0xFF)
+      put1(second ushr 8)
+      put1(second and 0xFF)
+      i += 3
+    }
+
+    when (end - i) {
+      1 -> {
+        val pair = pairs[(src.get(i).toInt() and 0xFF) shl 4].code
+        put1(pair ushr 8)
+        put1(pair and 0xFF)
+        if (padding) {
+          put1(PAD)
+          put1(PAD)
+        }
+      }
+      2 -> {
+        val bits = (((src.get(i).toInt() and 0xFF) shl 8) or (src.get(i + 1).toInt() and 0xFF)) shl 2
+        val pair = pairs[bits ushr 6].code
+        put1(pair ushr 8)
+        put1(pair and 0xFF)
+        put1(alphabet[bits and 0x3F].code)
+        if (padding) {
+          put1(PAD)
+        }
+      }
+    }
+
+    src.position(end)
+  }
+
+  /**
+   * @param isLast Whether this is the end of the input. Padding is only allowed there, so for earlier chunks of a stream it's left in to be rejected.
+   */
+  private inline fun decode(start: Int, limit: Int, charAt: (Int) -> Int, dst: ByteBuffer, isLast: Boolean = true) {
+    val end = if (isLast) start + unpaddedLength(start, limit, charAt) else limit
+    requireSpace(dst.remaining(), decodedLength(end - start))
+
+    var i = start
+
+    while (end - i >= 8) {
+      val d0 = decode6(charAt(i))
+      val d1 = decode6(charAt(i + 1))
+      val d2 = decode6(charAt(i + 2))
+      val d3 = decode6(charAt(i + 3))
+      val d4 = decode6(charAt(i + 4))
+      val d5 = decode6(charAt(i + 5))
+      val d6 = decode6(charAt(i + 6))
+      val d7 = decode6(charAt(i + 7))
+
+      if ((d0 or d1 or d2 or d3 or d4 or d5 or d6 or d7) < 0) {
+        throw IOException("Invalid base64 character.")
+      }
+
+      val high = (d0 shl 18) or (d1 shl 12) or (d2 shl 6) or d3
+      val low = (d4 shl 18) or (d5 shl 12) or (d6 shl 6) or d7
+
+      // Puts 6 bytes as an int and a short, so nothing past the end of the output is touched
+      val int = (high shl 8) or (low ushr 16)
+      val short = low.toShort()
+      if (dst.order() == ByteOrder.BIG_ENDIAN) {
+        dst.putInt(int).putShort(short)
+      } else {
+        dst.putInt(Integer.reverseBytes(int)).putShort(java.lang.Short.reverseBytes(short))
+      }
+      i += 8
+    }
+
+    while (end - i >= 4) {
+      val d0 = decode6(charAt(i))
+      val d1 = decode6(charAt(i + 1))
+      val d2 = decode6(charAt(i + 2))
+      val d3 = decode6(charAt(i + 3))
+
+      if ((d0 or d1 or d2 or d3) < 0) {
+        throw IOException("Invalid base64 character.")
+      }
+
+      val bits = (d0 shl 18) or (d1 shl 12) or (d2 shl 6) or d3
+      dst.put((bits ushr 16).toByte()).put((bits ushr 8).toByte()).put(bits.toByte())
+      i += 4
+    }
+
+    when (end - i) {
+      2 -> {
+        val d0 = decode6(charAt(i))
+        val d1 = decode6(charAt(i + 1))
+        if ((d0 or d1) < 0) {
+          throw IOException("Invalid base64 character.")
+        }
+
+        dst.put(((d0 shl 2) or (d1 ushr 4)).toByte())
+      }
+      3 -> {
+        val d0 = decode6(charAt(i))
+        val d1 = decode6(charAt(i + 1))
+        val d2 = decode6(charAt(i + 2))
+        if ((d0 or d1 or d2) < 0) {
+          throw IOException("Invalid base64 character.")
+        }
+
+        val bits = (d0 shl 10) or (d1 shl 4) or (d2 ushr 2)
+        dst.put((bits ushr 8).toByte()).put(bits.toByte())
+      }
+    }
+  }
+
+  /**
+   * @return The length without up to two characters of trailing padding.
+   */
+  private inline fun unpaddedLength(start: Int, limit: Int, charAt: (Int) -> Int): Int {
+    var end = limit
+    if (end > start && charAt(end - 1) == PAD) end--
+    if (end > start && charAt(end - 1) == PAD) end--
+    return end - start
+  }
+
+  private fun decodedLength(unpaddedLength: Int): Int {
+    return when (unpaddedLength % 4) {
+      0 -> unpaddedLength / 4 * 3
+      2 -> unpaddedLength / 4 * 3 + 1
+      3 -> unpaddedLength / 4 * 3 + 2
+      else -> throw IOException("Invalid base64 length.")
+    }
+  }
+
+  /**
+   * @return The 6-bit value of the character, or -1 if it isn't base64.
+   */
+  private fun decode6(c: Int): Int {
+    return if (c < 256) DECODE_TABLE[c] else -1
+  }
+
+  /**
+   * Maps a 6-bit value to its character without branching or indexing on it. Each step adds the offset between one range of the alphabet and
+   * the next if the value is past the start of that range, using the sign of a subtraction as the mask.
+   */
+  private fun encode6ConstantTime(value: Int, urlSafe: Boolean): Char {
+    var diff = 'A'.code
+    diff += ((25 - value) shr 8) and 6
+    diff -= ((51 - value) shr 8) and 75
+    diff -= ((61 - value) shr 8) and (if (urlSafe) 13 else 15)
+    diff += ((62 - value) shr 8) and (if (urlSafe) 49 else 3)
+    return (value + diff).toChar()
+  }
+
+  /**
+   * Maps a character from either alphabet to its 6-bit value, or -1, without branching or indexing on it. Each range adds its offset only if
+   * the character is inside it, which is when both bounds checks come out negative.
+   */
+  private fun decode6ConstantTime(c: Int): Int {
+    val b = c and 0xFF
+    var value = -1
+    value += (((0x40 - b) and (b - 0x5B)) shr 8) and (b - 64) // A-Z
+    value += (((0x60 - b) and (b - 0x7B)) shr 8) and (b - 70) // a-z
+    value += (((0x2F - b) and (b - 0x3A)) shr 8) and (b + 5) // 0-9
+    value += (((0x2A - b) and (b - 0x2C)) shr 8) and 63 // +
+    value += (((0x2E - b) and (b - 0x30)) shr 8) and 64 // /
+    value += (((0x2C - b) and (b - 0x2E)) shr 8) and 63 // -
+    value += (((0x5E - b) and (b - 0x60)) shr 8) and 64 // _
+    return value or ((0xFF - c) shr 31)
+  }
+
+  private fun requireSpace(remaining: Int, needed: Int) {
+    if (remaining < needed) {
+      throw BufferOverflowException()
+    }
+  }
+
+  private fun pairTable(alphabet: CharArray): CharArray {
+    return CharArray(4096) { ((alphabet[it ushr 6].code shl 8) or alphabet[it and 0x3F].code).toChar() }
+  }
+
+  private const val STREAM_CHUNK_SIZE = 4096
+}
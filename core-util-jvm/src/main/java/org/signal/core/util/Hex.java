@@ -34,11 +34,7 @@ public class Hex {
   }
 
   public static String toStringCondensed(byte[] bytes) {
-    StringBuffer buf = new StringBuffer();
-    for (int i=0;i<bytes.length;i++) {
-      appendHexChar(buf, bytes[i]);
-    }
-    return buf.toString();
+    return HexCodec.encodeToString(bytes);
   }
 
   public static byte[] fromStringCondensed(String encoded) throws IOException {
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util
+
+import java.io.IOException
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.CharBuffer
+
+/**
+ * Lowercase hex encoding and decoding directly between [ByteBuffer]s and [CharBuffer]s, the buffer-based counterpart to [Hex.toStringCondensed].
+ *
+ * The regular methods are table-driven and work on 8 bytes at a time. For secrets, use the `ConstantTime` variants, which don't index tables by
+ * the data. Decoding accepts either case. All methods consume their input from its position to its limit, and advance the position of their
+ * output by what they wrote.
+ */
+object HexCodec {
+
+  private val DIGITS = "0123456789abcdef".toCharArray()
+
+  /** Every byte as its two digits, packed into one char with the first in the high byte. */
+  private val PAIRS = CharArray(256) { ((DIGITS[it ushr 4].code shl 8) or DIGITS[it and 0xF].code).toChar() }
+
+  /** The value of each ASCII hex digit, or -1 if it isn't one. */
+  private val DECODE_TABLE = IntArray(256) { Character.digit(it, 16) }
+
+  @JvmStatic
+  fun encode(src: ByteBuffer, dst: CharBuffer) {
+    requireSpace(dst.remaining(), src.remaining() * 2)
+
+    val bigEndian = src.order() == ByteOrder.BIG_ENDIAN
+    val end = src.limit()
+    var i = src.position()
+
+    while (end - i >= 8) {
+      val word = src.getLong(i).let { if (bigEndian) it else java.lang.Long.reverseBytes(it) }
+
+      for (shift in 56 downTo 0 step 8) {
+        val pair = PAIRS[(word ushr shift).toInt() and 0xFF].code
+        dst.put((pair ushr 8).toChar()).put((pair and 0xFF).toChar())
+      }
+      i += 8
+    }
+
+    while (i < end) {
+      val pair = PAIRS[src.get(i).toInt() and 0xFF].code
+      dst.put((pair ushr 8).toChar()).put((pair and 0xFF).toChar())
+      i++
+    }
+
+    src.position(end)
+  }
+
+  @JvmStatic
+  fun encodeToString(src: ByteArray): String {
+    val chars = CharArray(src.size * 2)
+    encode(ByteBuffer.wrap(src), CharBuffer.wrap(chars))
+    return String(chars)
+  }
+
+  /**
+   * @throws IOException If [src] isn't valid hex. [dst] may have been partially written to.
+   */
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decode(src: CharBuffer, dst: ByteBuffer) {
+    val start = src.position()
+    val end = src.limit()
+    requireEvenLength(end - start)
+    requireSpace(dst.remaining(), (end - start) / 2)
+
+    var i = start
+
+    while (end - i >= 16) {
+      var word = 0L
+      var invalid = 0
+
+      for (j in 0 until 16) {
+        val digit = decode4(src.get(i + j).code)
+        invalid = invalid or digit
+        word = (word shl 4) or digit.toLong()
+      }
+
+      if (invalid < 0) {
+        throw IOException("Invalid hex character.")
+      }
+
+      dst.putLong(if (dst.order() == ByteOrder.BIG_ENDIAN) word else java.lang.Long.reverseBytes(word))
+      i += 16
+    }
+
+    while (i < end) {
+      val high = decode4(src.get(i).code)
+      val low = decode4(src.get(i + 1).code)
+      if ((high or low) < 0) {
+        throw IOException("Invalid hex character.")
+      }
+
+      dst.put(((high shl 4) or low).toByte())
+      i += 2
+    }
+
+    src.position(end)
+  }
+
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decode(src: CharSequence): ByteArray {
+    requireEvenLength(src.length)
+
+    val bytes = ByteArray(src.length / 2)
+    decode(CharBuffer.wrap(src), ByteBuffer.wrap(bytes))
+    return bytes
+  }
+
+  /**
+   * Like [encode], but the time it takes only depends on the length of [src].
+   */
+  @JvmStatic
+  fun encodeConstantTime(src: ByteBuffer, dst: CharBuffer) {
+    requireSpace(dst.remaining(), src.remaining() * 2)
+
+    val end = src.limit()
+    for (i in src.position() until end) {
+      val b = src.get(i).toInt() and 0xFF
+      dst.put(encode4ConstantTime(b ushr 4)).put(encode4ConstantTime(b and 0xF))
+    }
+
+    src.position(end)
+  }
+
+  @JvmStatic
+  fun encodeToStringConstantTime(src: ByteArray): String {
+    val chars = CharArray(src.size * 2)
+    encodeConstantTime(ByteBuffer.wrap(src), CharBuffer.wrap(chars))
+    return String(chars)
+  }
+
+  /**
+   * Like [decode], but the time it takes only depends on the length of [src]. Validity is only checked at the end, so [dst] is always fully
+   * written to, even if [src] turns out to be invalid.
+   *
+   * @throws IOException If [src] isn't valid hex.
+   */
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decodeConstantTime(src: CharBuffer, dst: ByteBuffer) {
+    val start = src.position()
+    val end = src.limit()
+    requireEvenLength(end - start)
+    requireSpace(dst.remaining(), (end - start) / 2)
+
+    var invalid = 0
+
+    for (i in start until end step 2) {
+      val high = decode4ConstantTime(src.get(i).code)
+      val low = decode4ConstantTime(src.get(i + 1).code)
+      invalid = invalid or high or low
+
+      dst.put(((high shl 4) or low).toByte())
+    }
+
+    src.position(end)
+
+    if (invalid < 0) {
+      throw IOException("Invalid hex character.")
+    }
+  }
+
+  @JvmStatic
+  @Throws(IOException::class)
+  fun decodeConstantTime(src: CharSequence): ByteArray {
+    requireEvenLength(src.length)
+
+    val bytes = ByteArray(src.length / 2)
+    decodeConstantTime(CharBuffer.wrap(src), ByteBuffer.wrap(bytes))
+    return bytes
+  }
+
+  /**
+   * @return The value of the digit, or -1 if it isn't one.
+   */
+  private fun decode4(c: Int): Int {
+    return if (c < 256) DECODE_TABLE[c] else -1
+  }
+
+  /**
+   * Maps a nibble to its digit, adding the offset from '0'-'9' to 'a'-'f' only if it's past 9, using the sign of a subtraction as the mask.
+   */
+  private fun encode4ConstantTime(value: Int): Char {
+    return (value + '0'.code + (((9 - value) shr 8) and 39)).toChar()
+  }
+
+  /**
+   * Maps a digit in either case to its value, or -1, adding each range's offset only if the character is inside it.
+   */
+  private fun decode4ConstantTime(c: Int): Int {
+    val b = c and 0xFF
+    var value = -1
+    value += (((0x2F - b) and (b - 0x3A)) shr 8) and (b - 47) // 0-9
+    value += (((0x60 - b) and (b - 0x67)) shr 8) and (b - 86) // a-f
+    value += (((0x40 - b) and (b - 0x47)) shr 8) and (b - 54) // A-F
+    return value or ((0xFF - c) shr 31)
+  }
+
+  private fun requireEvenLength(length: Int) {
+    if ((length and 1) != 0) {
+      throw IOException("Odd number of characters.")
+    }
+  }
+
+  private fun requireSpace(remaining: Int, needed: Int) {
+    if (remaining < needed) {
+      throw BufferOverflowException()
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.metrics
+
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * A lock-free histogram of durations, in nanoseconds.
+ *
+ * Durations are counted in log-linear buckets, each within 12.5% of the durations in it, so memory use doesn't depend on how many are recorded.
+ * Threads record into one of a few stripes based on their id, so threads rarely contend with each other, and stripes are only allocated once a
+ * thread needs them.
+ *
+ * For hot paths, a histogram can be created with a [sampleInterval], in which case [start] only times roughly one in that many events, and each
+ * one that is timed counts for [sampleInterval] of them.
+ *
+ * Get one from [Metrics.histogram].
+ */
+class Histogram internal constructor(val sampleInterval: Int) {
+
+  companion object {
+    /** Returned by [start] for events that aren't being timed. */
+    const val NOT_SAMPLED = Long.MIN_VALUE
+
+    private const val SUB_BUCKET_BITS = 3
+    private const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+
+    /** Anything slower (about 18 minutes) is counted as this. */
+    private const val MAX_VALUE = (1L shl 40) - 1
+
+    internal const val BUCKET_COUNT = (40 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS
+
+    private const val STRIPES = 4
+    private const val SUM = BUCKET_COUNT
+    private const val MAX = BUCKET_COUNT + 1
+
+    internal fun bucketOf(value: Long): Int {
+      if (value < SUB_BUCKETS) {
+        return value.toInt()
+      }
+
+      val magnitude = 63 - java.lang.Long.numberOfLeadingZeros(value)
+      val subBucket = (value ushr (magnitude - SUB_BUCKET_BITS)).toInt() and (SUB_BUCKETS - 1)
+
+      return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket
+    }
+
+    /** The largest value that lands in the given bucket. */
+    internal fun upperBoundOf(bucket: Int): Long {
+      if (bucket < SUB_BUCKETS) {
+        return bucket.toLong()
+      }
+
+      val magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1
+      val subBucket = (bucket % SUB_BUCKETS).toLong()
+      val width = 1L shl (magnitude - SUB_BUCKET_BITS)
+
+      return (1L shl magnitude) + (subBucket + 1) * width - 1
+    }
+  }
+
+  /** Each stripe holds the bucket counts, followed by the sum and max. */
+  private val stripes = AtomicReferenceArray<AtomicLongArray>(STRIPES)
+
+  init {
+    require(sampleInterval > 0) { "sampleInterval must be positive!" }
+  }
+
+  /**
+   * Marks the start of an event, to be passed to [stop] once it's over.
+   *
+   * @return The start time, or [NOT_SAMPLED] if this event shouldn't be timed.
+   */
+  fun start(): Long {
+    return if (sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0) {
+      System.nanoTime()
+    } else {
+      NOT_SAMPLED
+    }
+  }
+
+  /**
+   * Records the time since [startNanos], as returned by [start].
+   */
+  fun stop(startNanos: Long) {
+    if (startNanos != NOT_SAMPLED) {
+      record(System.nanoTime() - startNanos, sampleInterval.toLong())
+    }
+  }
+
+  /**
+   * Records a single duration, regardless of the [sampleInterval].
+   */
+  fun record(durationNanos: Long) {
+    record(durationNanos, 1)
+  }
+
+  fun snapshot(): HistogramSnapshot {
+    val buckets = LongArray(BUCKET_COUNT)
+    var sum = 0L
+    var max = 0L
+
+    for (i in 0 until STRIPES) {
+      val stripe = stripes.get(i) ?: continue
+
+      for (bucket in 0 until BUCKET_COUNT) {
+        buckets[bucket] += stripe.get(bucket)
+      }
+      sum += stripe.get(SUM)
+      max = maxOf(max, stripe.get(MAX))
+    }
+
+    return HistogramSnapshot(buckets, sum, max)
+  }
+
+  private fun record(durationNanos: Long, weight: Long) {
+    val value = durationNanos.coerceIn(0, MAX_VALUE)
+    val stripe = stripeForCurrentThread()
+
+    stripe.addAndGet(bucketOf(value), weight)
+    stripe.addAndGet(SUM, value * weight)
+
+    var max = stripe.get(MAX)
+    while (value > max && !stripe.compareAndSet(MAX, max, value)) {
+      max = stripe.get(MAX)
+    }
+  }
+
+  private fun stripeForCurrentThread(): AtomicLongArray {
+    val index = (Thread.currentThread().id and (STRIPES - 1).toLong()).toInt()
+
+    val stripe = stripes.get(index)
+    if (stripe != null) {
+      return stripe
+    }
+
+    stripes.compareAndSet(index, null, AtomicLongArray(BUCKET_COUNT + 2))
+    return stripes.get(index)
+  }
+}
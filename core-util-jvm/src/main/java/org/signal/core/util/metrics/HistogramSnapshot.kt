@@ -0,0 +1,69 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.metrics
+
+import org.signal.core.util.roundedString
+import kotlin.time.Duration.Companion.nanoseconds
+import kotlin.time.DurationUnit
+
+/**
+ * The durations a [Histogram] had recorded at some point. Snapshots can be merged, e.g. to see every table's queries as a whole.
+ */
+class HistogramSnapshot internal constructor(
+  private val buckets: LongArray,
+  /** The sum of all durations, in nanoseconds. */
+  val sumNanos: Long,
+  /** The longest duration, in nanoseconds. */
+  val maxNanos: Long
+) {
+
+  companion object {
+    @JvmField
+    val EMPTY = HistogramSnapshot(LongArray(Histogram.BUCKET_COUNT), 0, 0)
+  }
+
+  val count: Long = buckets.sum()
+
+  val meanNanos: Long
+    get() = if (count == 0L) 0 else sumNanos / count
+
+  /**
+   * An upper bound for the given percentile (0-100), accurate to within the bucket it falls in.
+   */
+  fun percentileNanos(percentile: Int): Long {
+    if (count == 0L) {
+      return 0
+    }
+
+    val target = ((count * percentile.coerceIn(0, 100) + 99) / 100).coerceAtLeast(1)
+    var seen = 0L
+
+    for (i in buckets.indices) {
+      seen += buckets[i]
+      if (seen >= target) {
+        return minOf(Histogram.upperBoundOf(i), maxNanos)
+      }
+    }
+
+    return maxNanos
+  }
+
+  fun merge(other: HistogramSnapshot): HistogramSnapshot {
+    return HistogramSnapshot(
+      buckets = LongArray(buckets.size) { buckets[it] + other.buckets[it] },
+      sumNanos = sumNanos + other.sumNanos,
+      maxNanos = maxOf(maxNanos, other.maxNanos)
+    )
+  }
+
+  override fun toString(): String {
+    return "count: $count, total: ${sumNanos.ms()} ms, mean: ${meanNanos.ms()} ms, p50: ${percentileNanos(50).ms()} ms, p90: ${percentileNanos(90).ms()} ms, p99: ${percentileNanos(99).ms()} ms, max: ${maxNanos.ms()} ms"
+  }
+
+  private fun Long.ms(): String {
+    return this.nanoseconds.toDouble(DurationUnit.MILLISECONDS).roundedString(2)
+  }
+}
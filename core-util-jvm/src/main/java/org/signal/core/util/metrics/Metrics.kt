@@ -0,0 +1,82 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A process-wide registry of counters, gauges and [Histogram]s, meant to be cheap enough to leave on in hot paths.
+ *
+ * Each metric has a name (e.g. "job.run") and a label that breaks it down (e.g. the job's factory key). Looking up a metric doesn't allocate once
+ * it exists, so callers can look one up every time rather than holding onto it.
+ *
+ * Everything is cumulative since the process started. Use [snapshot] to read it all, e.g. for the debug log or to export elsewhere.
+ */
+object Metrics {
+
+  private val counters = ConcurrentHashMap<String, ConcurrentHashMap<String, LongAdder>>()
+  private val gauges = ConcurrentHashMap<String, ConcurrentHashMap<String, Gauge>>()
+  private val histograms = ConcurrentHashMap<String, ConcurrentHashMap<String, Histogram>>()
+
+  /**
+   * Adds [amount] to a counter.
+   */
+  @JvmStatic
+  @JvmOverloads
+  fun increment(name: String, label: String = "", amount: Long = 1) {
+    val labels = counters.labels(name)
+    val counter = labels[label] ?: labels.computeIfAbsent(label) { LongAdder() }
+    counter.add(amount)
+  }
+
+  /**
+   * Registers a value to be read whenever a snapshot is taken, replacing any gauge already registered with the same name and label.
+   */
+  @JvmStatic
+  fun registerGauge(name: String, label: String, gauge: Gauge) {
+    gauges.labels(name)[label] = gauge
+  }
+
+  /**
+   * @param sampleInterval Only used when the histogram is first created. See [Histogram].
+   */
+  @JvmStatic
+  @JvmOverloads
+  fun histogram(name: String, label: String = "", sampleInterval: Int = 1): Histogram {
+    val labels = histograms.labels(name)
+    return labels[label] ?: labels.computeIfAbsent(label) { Histogram(sampleInterval) }
+  }
+
+  @JvmStatic
+  fun snapshot(): MetricsSnapshot {
+    return MetricsSnapshot(
+      counters = counters.read { it.sum() },
+      gauges = gauges.read { it.read() },
+      histograms = histograms.read { it.snapshot() }
+    )
+  }
+
+  internal fun clear() {
+    counters.clear()
+    gauges.clear()
+    histograms.clear()
+  }
+
+  private fun <T> ConcurrentHashMap<String, ConcurrentHashMap<String, T>>.labels(name: String): ConcurrentHashMap<String, T> {
+    return this[name] ?: this.computeIfAbsent(name) { ConcurrentHashMap() }
+  }
+
+  private fun <T, R> Map<String, Map<String, T>>.read(reader: (T) -> R): Map<String, Map<String, R>> {
+    return this
+      .mapValues { (_, labels) -> labels.mapValues { reader(it.value) }.toSortedMap() }
+      .toSortedMap()
+  }
+
+  fun interface Gauge {
+    fun read(): Long
+  }
+}
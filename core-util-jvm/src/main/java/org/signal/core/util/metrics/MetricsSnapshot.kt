@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.metrics
+
+/**
+ * Everything in [Metrics] at the time [Metrics.snapshot] was called, keyed by name and then by label.
+ */
+class MetricsSnapshot(
+  val counters: Map<String, Map<String, Long>>,
+  val gauges: Map<String, Map<String, Long>>,
+  val histograms: Map<String, Map<String, HistogramSnapshot>>
+) {
+
+  /**
+   * All of the labels of a histogram merged together, or [HistogramSnapshot.EMPTY] if there's nothing recorded under that name.
+   */
+  fun histogramTotal(name: String): HistogramSnapshot {
+    return histograms[name]?.values?.fold(HistogramSnapshot.EMPTY) { total, snapshot -> total.merge(snapshot) } ?: HistogramSnapshot.EMPTY
+  }
+
+  /**
+   * A human-readable dump, listing at most [maxLabels] labels per histogram, ordered by the total time spent in each.
+   */
+  @JvmOverloads
+  fun format(maxLabels: Int = Int.MAX_VALUE): String {
+    val output = StringBuilder()
+
+    for ((name, labels) in counters) {
+      for ((label, value) in labels) {
+        output.append("[counter] ${name.withLabel(label)}: $value\n")
+      }
+    }
+
+    for ((name, labels) in gauges) {
+      for ((label, value) in labels) {
+        output.append("[gauge] ${name.withLabel(label)}: $value\n")
+      }
+    }
+
+    for ((name, labels) in histograms) {
+      output.append("[histogram] $name (total) ${histogramTotal(name)}\n")
+
+      val sorted = labels.entries.sortedByDescending { it.value.sumNanos }
+      for ((label, snapshot) in sorted.take(maxLabels)) {
+        output.append("  ${label.ifEmpty { "(none)" }}: $snapshot\n")
+      }
+
+      if (sorted.size > maxLabels) {
+        output.append("  ...and ${sorted.size - maxLabels} more\n")
+      }
+    }
+
+    return output.toString()
+  }
+
+  override fun toString(): String = format()
+
+  private fun String.withLabel(label: String): String {
+    return if (label.isEmpty()) this else "$this[$label]"
+  }
+}
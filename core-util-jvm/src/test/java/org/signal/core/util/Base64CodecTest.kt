@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.CharBuffer
+import kotlin.random.Random
+import java.util.Base64 as JavaBase64
+
+class Base64CodecTest {
+
+  @Test
+  fun `encodeToString - matches the JDK for every length and alphabet`() {
+    for (len in 0 until 300) {
+      val bytes = Random.nextBytes(len)
+
+      assertEquals(JavaBase64.getEncoder().encodeToString(bytes), Base64Codec.encodeToString(bytes))
+      assertEquals(JavaBase64.getEncoder().withoutPadding().encodeToString(bytes), Base64Codec.encodeToString(bytes, padding = false))
+      assertEquals(JavaBase64.getUrlEncoder().encodeToString(bytes), Base64Codec.encodeToString(bytes, urlSafe = true))
+      assertEquals(JavaBase64.getEncoder().encodeToString(bytes), Base64Codec.encodeToStringConstantTime(bytes))
+      assertEquals(JavaBase64.getUrlEncoder().withoutPadding().encodeToString(bytes), Base64Codec.encodeToStringConstantTime(bytes, urlSafe = true, padding = false))
+    }
+  }
+
+  @Test
+  fun `decode - round trips every length, alphabet and padding`() {
+    for (len in 0 until 300) {
+      val bytes = Random.nextBytes(len)
+
+      for (encoded in listOf(JavaBase64.getEncoder().encodeToString(bytes), JavaBase64.getUrlEncoder().withoutPadding().encodeToString(bytes))) {
+        assertArrayEquals(bytes, Base64Codec.decode(encoded))
+        assertArrayEquals(bytes, Base64Codec.decodeConstantTime(encoded))
+      }
+    }
+  }
+
+  @Test
+  fun `encode and decode - work on direct little-endian buffers with offsets`() {
+    val bytes = Random.nextBytes(1000)
+
+    val src = ByteBuffer.allocateDirect(1010).order(ByteOrder.LITTLE_ENDIAN)
+    src.position(5)
+    src.put(bytes)
+    src.position(5).limit(1005)
+
+    val ascii = ByteBuffer.allocateDirect(2000).order(ByteOrder.LITTLE_ENDIAN)
+    ascii.position(3)
+    Base64Codec.encode(src, ascii)
+
+    assertEquals(1005, src.position())
+    assertEquals(3 + 1336, ascii.position())
+
+    val encoded = ByteArray(1336)
+    ascii.flip().position(3)
+    ascii.duplicate().get(encoded)
+    assertEquals(JavaBase64.getEncoder().encodeToString(bytes), String(encoded, Charsets.US_ASCII))
+
+    val decoded = ByteBuffer.allocateDirect(1000).order(ByteOrder.LITTLE_ENDIAN)
+    Base64Codec.decode(ascii, decoded)
+
+    val result = ByteArray(1000)
+    decoded.flip()
+    decoded.get(result)
+    assertArrayEquals(bytes, result)
+  }
+
+  @Test
+  fun `encode and decode - stream through multiple chunks`() {
+    val bytes = Random.nextBytes(20_001)
+    val encoded = JavaBase64.getEncoder().encodeToString(bytes)
+
+    val encodedOut = ByteArrayOutputStream()
+    Base64Codec.encode(ByteBuffer.wrap(bytes), encodedOut)
+    assertEquals(encoded, encodedOut.toString("US-ASCII"))
+
+    val decodedOut = ByteArrayOutputStream()
+    Base64Codec.decode(CharBuffer.wrap(encoded), decodedOut)
+    assertArrayEquals(bytes, decodedOut.toByteArray())
+  }
+
+  @Test
+  fun `decode - only accepts padding at the end of a stream`() {
+    val endsOnChunkBoundary = Random.nextBytes(3070)
+    val encoded = JavaBase64.getEncoder().encodeToString(endsOnChunkBoundary)
+    assertEquals(4096, encoded.length)
+
+    val decodedOut = ByteArrayOutputStream()
+    Base64Codec.decode(CharBuffer.wrap(encoded), decodedOut)
+    assertArrayEquals(endsOnChunkBoundary, decodedOut.toByteArray())
+
+    val paddedMidStream = encoded + "AAAAAAAA"
+    assertThrows(paddedMidStream) { Base64Codec.decode(CharBuffer.wrap(paddedMidStream), ByteArrayOutputStream()) }
+    assertThrows(paddedMidStream) { Base64Codec.decode(paddedMidStream) }
+  }
+
+  @Test
+  fun `decode - rejects invalid characters and lengths`() {
+    val invalid = listOf("AAAA AAA", "AAAAAAA!", "A===", "AAAAA", "AA=A", "AAAAAAAŁ", "AAAAĀAAA")
+
+    for (value in invalid) {
+      assertThrows(value) { Base64Codec.decode(value) }
+      assertThrows(value) { Base64Codec.decodeConstantTime(value) }
+    }
+  }
+
+  private fun assertThrows(value: String, block: () -> Unit) {
+    try {
+      block()
+      throw AssertionError("Expected $value to be rejected")
+    } catch (e: IOException) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.CharBuffer
+import kotlin.random.Random
+
+class HexCodecTest {
+
+  @Test
+  fun `encode and decode - round trip every length in either case`() {
+    for (len in 0 until 100) {
+      val bytes = Random.nextBytes(len)
+      val expected = bytes.joinToString("") { "%02x".format(it) }
+
+      assertEquals(expected, HexCodec.encodeToString(bytes))
+      assertEquals(expected, HexCodec.encodeToStringConstantTime(bytes))
+
+      for (encoded in listOf(expected, expected.uppercase())) {
+        assertArrayEquals(bytes, HexCodec.decode(encoded))
+        assertArrayEquals(bytes, HexCodec.decodeConstantTime(encoded))
+      }
+    }
+  }
+
+  @Test
+  fun `encode and decode - work on little-endian buffers`() {
+    val bytes = Random.nextBytes(37)
+
+    val chars = CharBuffer.allocate(74)
+    HexCodec.encode(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN), chars)
+    chars.flip()
+    assertEquals(Hex.toStringCondensed(bytes), chars.toString())
+
+    val decoded = ByteBuffer.allocateDirect(37).order(ByteOrder.LITTLE_ENDIAN)
+    HexCodec.decode(chars, decoded)
+
+    val result = ByteArray(37)
+    decoded.flip()
+    decoded.get(result)
+    assertArrayEquals(bytes, result)
+  }
+
+  @Test
+  fun `decode - rejects invalid characters and odd lengths`() {
+    val invalid = listOf("0", "0g", "00112233445566778899aabbccddeefg", "0:", "0@", "0`", "0Ł")
+
+    for (value in invalid) {
+      assertThrows(value) { HexCodec.decode(value) }
+      assertThrows(value) { HexCodec.decodeConstantTime(value) }
+    }
+  }
+
+  private fun assertThrows(value: String, block: () -> Unit) {
+    try {
+      block()
+      throw AssertionError("Expected $value to be rejected")
+    } catch (e: IOException) {
+      // Expected
+    }
+  }
+}
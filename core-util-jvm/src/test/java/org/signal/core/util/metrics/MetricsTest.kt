@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.metrics
+
+import assertk.assertThat
+import assertk.assertions.isBetween
+import assertk.assertions.isEqualTo
+import assertk.assertions.isSameInstanceAs
+import assertk.assertions.isTrue
+import org.junit.After
+import org.junit.Test
+import kotlin.concurrent.thread
+
+class MetricsTest {
+
+  @After
+  fun tearDown() {
+    Metrics.clear()
+  }
+
+  @Test
+  fun `Given every value, when I find its bucket, then I expect the bucket to contain it`() {
+    val values = (0L..4096L) + listOf(1_000_000L, 123_456_789L, (1L shl 40) - 1)
+
+    for (value in values) {
+      val bucket = Histogram.bucketOf(value)
+      val lowerBound = if (bucket == 0) 0 else Histogram.upperBoundOf(bucket - 1) + 1
+
+      assertThat(value).isBetween(lowerBound, Histogram.upperBoundOf(bucket))
+      assertThat(Histogram.upperBoundOf(bucket) - value <= value / 8).isTrue()
+    }
+  }
+
+  @Test
+  fun `Given recorded durations, when I snapshot, then I expect percentiles within a bucket of the actual value`() {
+    val histogram = Metrics.histogram("test")
+
+    for (i in 1L..100L) {
+      histogram.record(i * 1_000_000)
+    }
+
+    val snapshot = histogram.snapshot()
+
+    assertThat(snapshot.count).isEqualTo(100L)
+    assertThat(snapshot.maxNanos).isEqualTo(100_000_000L)
+    assertThat(snapshot.meanNanos).isEqualTo(50_500_000L)
+    assertThat(snapshot.percentileNanos(50)).isBetween(50_000_000L, 56_250_000L)
+    assertThat(snapshot.percentileNanos(100)).isEqualTo(100_000_000L)
+  }
+
+  @Test
+  fun `Given two snapshots, when I merge them, then I expect the combined counts`() {
+    Metrics.histogram("test", "a").record(10)
+    Metrics.histogram("test", "b").record(1_000)
+    Metrics.histogram("test", "b").record(2_000)
+
+    val total = Metrics.snapshot().histogramTotal("test")
+
+    assertThat(total.count).isEqualTo(3L)
+    assertThat(total.sumNanos).isEqualTo(3_010L)
+    assertThat(total.maxNanos).isEqualTo(2_000L)
+  }
+
+  @Test
+  fun `Given a sample interval, when I time events, then I expect each sample to count for the whole interval`() {
+    val histogram = Metrics.histogram("test", sampleInterval = 4)
+
+    repeat(4_000) {
+      histogram.stop(histogram.start())
+    }
+
+    val count = histogram.snapshot().count
+
+    assertThat(count % 4).isEqualTo(0L)
+    assertThat(count).isBetween(3_000L, 5_000L)
+  }
+
+  @Test
+  fun `Given many threads, when they all record, then I expect nothing to be lost`() {
+    val threads = (1..8).map {
+      thread {
+        repeat(10_000) {
+          Metrics.histogram("test").record(it.toLong())
+          Metrics.increment("counter")
+        }
+      }
+    }
+    threads.forEach { it.join() }
+
+    val snapshot = Metrics.snapshot()
+
+    assertThat(snapshot.histograms["test"]!![""]!!.count).isEqualTo(80_000L)
+    assertThat(snapshot.counters["counter"]!![""]).isEqualTo(80_000L)
+  }
+
+  @Test
+  fun `Given the same name and label, when I look up a histogram, then I expect the same instance`() {
+    assertThat(Metrics.histogram("test", "label")).isSameInstanceAs(Metrics.histogram("test", "label"))
+  }
+
+  @Test
+  fun `Given a gauge, when I snapshot, then I expect its current value`() {
+    var value = 1L
+    Metrics.registerGauge("gauge", "label") { value }
+
+    value = 5
+
+    assertThat(Metrics.snapshot().gauges["gauge"]!!["label"]).isEqualTo(5L)
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.tracing;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed amount of off-heap memory that encoded trace packets are streamed into, so that tracing can be left on without its memory use growing.
+ * <p>
+ * The memory is split into chunks. Each thread appends to a chunk of its own, so appending only takes that chunk's uncontended lock, and hands the
+ * chunk off once it's full. Full chunks wait in order until they're drained (e.g. to disk), or until there are no empty chunks left, at which point
+ * the oldest one is reused and its packets are dropped.
+ * <p>
+ * A chunk stays with its thread until it fills up, which could leave every chunk held by threads that rarely trace. So draining also takes
+ * partially filled chunks away from their threads, and a thread that can't find any other chunk takes one from another thread, idle ones first.
+ * The thread that lost its chunk simply takes a new one the next time it appends.
+ * <p>
+ * Packets are written as length-delimited {@link Trace#packet} fields, so the contents of any chunk, or of several chunks one after another, are
+ * themselves a valid encoded {@link Trace}.
+ * <p>
+ * Like {@link Tracer}, this favors low overhead over perfect consistency. Reading a chunk while it's being reused is detected and the chunk is
+ * skipped, rather than prevented.
+ */
+final class TraceRingBuffer {
+
+  /** Field 1 ({@link Trace#packet}), wire type 2 (length-delimited). */
+  private static final int PACKET_TAG = (1 << 3) | 2;
+
+  private final int                 chunkSize;
+  private final List<Chunk>         chunks;
+  private final Queue<Chunk>        emptyChunks;
+  private final Queue<Chunk>        fullChunks;
+  private final AtomicInteger       fullChunkCount;
+  private final ThreadLocal<Chunk>  currentChunk;
+
+  TraceRingBuffer(int capacityBytes, int chunkSize) {
+    if (chunkSize <= 0 || capacityBytes < chunkSize) {
+      throw new IllegalArgumentException("Capacity must fit at least one chunk!");
+    }
+
+    ByteBuffer  memory = ByteBuffer.allocateDirect(capacityBytes);
+    List<Chunk> chunks = new ArrayList<>(capacityBytes / chunkSize);
+
+    for (int i = 0; i < capacityBytes / chunkSize; i++) {
+      memory.limit((i + 1) * chunkSize);
+      memory.position(i * chunkSize);
+      chunks.add(new Chunk(memory.slice()));
+    }
+
+    this.chunkSize      = chunkSize;
+    this.chunks         = Collections.unmodifiableList(chunks);
+    this.emptyChunks    = new ConcurrentLinkedQueue<>(chunks);
+    this.fullChunks     = new ConcurrentLinkedQueue<>();
+    this.fullChunkCount = new AtomicInteger(0);
+    this.currentChunk   = new ThreadLocal<>();
+  }
+
+  /**
+   * Appends an encoded {@link TracePacket} for the current thread. Packets that are larger than a chunk are dropped, as are packets that lose a race
+   * with other threads for the last chunk.
+   */
+  void append(@NonNull byte[] packet) {
+    int size = 1 + varintSize(packet.length) + packet.length;
+    if (size > chunkSize) {
+      return;
+    }
+
+    Thread current = Thread.currentThread();
+    Chunk  chunk   = currentChunk.get();
+
+    if (chunk != null && chunk.write(current, packet, size)) {
+      return;
+    }
+
+    if (chunk != null && chunk.claim(current)) {
+      addFullChunk(chunk);
+    }
+
+    chunk = takeChunk(current);
+    currentChunk.set(chunk);
+
+    if (chunk != null) {
+      chunk.write(current, packet, size);
+    }
+  }
+
+  /**
+   * @return How many chunks are full and waiting to be drained.
+   */
+  int getFullChunkCount() {
+    return fullChunkCount.get();
+  }
+
+  int getChunkCount() {
+    return chunks.size();
+  }
+
+  /**
+   * Writes every full chunk to the channel, oldest first, and frees them up for reuse. Partially filled chunks are taken away from their threads
+   * and written too, so nothing sits in memory for longer than the time between drains.
+   */
+  void drainTo(@NonNull WritableByteChannel channel) throws IOException {
+    for (Chunk chunk : chunks) {
+      Thread owner = chunk.owner;
+      if (owner != null && chunk.claim(owner)) {
+        release(chunk);
+      }
+    }
+
+    Chunk chunk;
+    while ((chunk = fullChunks.poll()) != null) {
+      fullChunkCount.decrementAndGet();
+
+      try {
+        chunk.writeTo(channel);
+      } finally {
+        chunk.reset(null);
+        emptyChunks.add(chunk);
+      }
+    }
+  }
+
+  /**
+   * Copies everything that's currently buffered, full chunks or not. Chunks that are reused while they're being copied are left out.
+   */
+  void copyTo(@NonNull OutputStream out) throws IOException {
+    for (Chunk chunk : chunks) {
+      chunk.copyTo(out);
+    }
+  }
+
+  /**
+   * Queues a chunk that was just taken from its thread to be drained, or frees it right away if nothing was written to it.
+   */
+  private void release(@NonNull Chunk chunk) {
+    if (chunk.length > 0) {
+      addFullChunk(chunk);
+    } else {
+      chunk.reset(null);
+      emptyChunks.add(chunk);
+    }
+  }
+
+  private void addFullChunk(@NonNull Chunk chunk) {
+    fullChunks.add(chunk);
+    fullChunkCount.incrementAndGet();
+  }
+
+  private @Nullable Chunk takeChunk(@NonNull Thread current) {
+    Chunk chunk = emptyChunks.poll();
+
+    if (chunk == null) {
+      chunk = fullChunks.poll();
+      if (chunk != null) {
+        fullChunkCount.decrementAndGet();
+      }
+    }
+
+    if (chunk == null) {
+      chunk = stealChunk(current);
+    }
+
+    if (chunk != null) {
+      chunk.reset(current);
+    }
+
+    return chunk;
+  }
+
+  /**
+   * Every chunk is held by some thread, so takes one away from another thread, preferring threads that have finished or aren't running. Like reusing
+   * the oldest full chunk, whatever was written to it is dropped.
+   */
+  private @Nullable Chunk stealChunk(@NonNull Thread current) {
+    Chunk fallback = null;
+
+    for (Chunk chunk : chunks) {
+      Thread owner = chunk.owner;
+      if (owner == null || owner == current) {
+        continue;
+      }
+
+      if (!owner.isAlive() || owner.getState() != Thread.State.RUNNABLE) {
+        if (chunk.claim(owner)) {
+          return chunk;
+        }
+      } else if (fallback == null) {
+        fallback = chunk;
+      }
+    }
+
+    if (fallback != null) {
+      Thread owner = fallback.owner;
+      if (owner != null && owner != current && fallback.claim(owner)) {
+        return fallback;
+      }
+    }
+
+    return null;
+  }
+
+  private static int varintSize(int value) {
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  private static final class Chunk {
+    private final ByteBuffer memory;
+    private final ByteBuffer writer;
+
+    /** How many bytes have been written and can be read. */
+    private volatile int    length;
+    /** Bumped every time the chunk is reset, so a reader can tell it was reused mid-copy. */
+    private volatile int    generation;
+    private volatile Thread owner;
+
+    private Chunk(@NonNull ByteBuffer memory) {
+      this.memory = memory;
+      this.writer = memory.duplicate();
+    }
+
+    int remaining() {
+      return memory.capacity() - length;
+    }
+
+    /**
+     * Appends the packet if the thread still owns the chunk and there's room for it. Holding the chunk's lock for the write means it can't be
+     * claimed by another thread halfway through.
+     *
+     * @return False if nothing was written.
+     */
+    synchronized boolean write(@NonNull Thread thread, @NonNull byte[] packet, int size) {
+      if (owner != thread || remaining() < size) {
+        return false;
+      }
+
+      writer.position(length);
+      writer.put((byte) PACKET_TAG);
+
+      int value = packet.length;
+      while ((value & ~0x7F) != 0) {
+        writer.put((byte) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      writer.put((byte) value);
+      writer.put(packet);
+
+      length = writer.position();
+      return true;
+    }
+
+    synchronized void reset(@Nullable Thread owner) {
+      generation++;
+      this.length = 0;
+      this.owner  = owner;
+    }
+
+    /**
+     * Takes the chunk away from a previous owner, unless another thread got to it first.
+     */
+    synchronized boolean claim(@NonNull Thread previousOwner) {
+      if (owner != previousOwner) {
+        return false;
+      }
+
+      owner = null;
+      return true;
+    }
+
+    void writeTo(@NonNull WritableByteChannel channel) throws IOException {
+      ByteBuffer view = memory.duplicate();
+      view.position(0);
+      view.limit(length);
+
+      while (view.hasRemaining()) {
+        channel.write(view);
+      }
+    }
+
+    void copyTo(@NonNull OutputStream out) throws IOException {
+      int startGeneration = generation;
+      int copyLength      = length;
+
+      if (copyLength == 0) {
+        return;
+      }
+
+      byte[]     bytes = new byte[copyLength];
+      ByteBuffer view  = memory.duplicate();
+      view.position(0);
+      view.get(bytes, 0, copyLength);
+
+      if (generation == startGeneration) {
+        out.write(bytes, 0, copyLength);
+      }
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.tracing;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A set of rotating files that drained {@link TraceRingBuffer} chunks are appended to. Each file is a valid encoded {@link Trace} on its own, and so
+ * are any number of them one after another.
+ * <p>
+ * Each write goes entirely into one file, and a new file is started first if the write would take the current one over its share of the disk
+ * budget, or if the current one is too old. The oldest files are deleted to stay within the disk budget and time window. {@link TraceRingBuffer}
+ * writes whole chunks at a time, so files always end on a packet boundary.
+ * Files from previous processes are deleted on the first spill, since their thread ids and timestamps can't be mixed with ours.
+ * <p>
+ * Not thread-safe. Only accessed by {@link TraceStream} under its lock.
+ */
+final class TraceSpillFiles implements WritableByteChannel {
+
+  private static final String SUFFIX = ".trace";
+
+  private final File        directory;
+  private final int         maxFiles;
+  private final long        maxFileBytes;
+  private final long        maxFileAgeMs;
+  private final Deque<File> files;
+
+  private boolean     initialized;
+  private FileChannel current;
+  private long        currentStartMs;
+  private long        lastFileId;
+
+  /**
+   * @param maxDiskBytes How much space all of the files can take up, together.
+   * @param windowMs     Roughly how far back the files should go. Files that only hold data older than this are deleted.
+   */
+  TraceSpillFiles(@NonNull File directory, int maxFiles, long maxDiskBytes, long windowMs) {
+    this.directory    = directory;
+    this.maxFiles     = maxFiles;
+    this.maxFileBytes = maxDiskBytes / maxFiles;
+    this.maxFileAgeMs = windowMs / maxFiles;
+    this.files        = new ArrayDeque<>(maxFiles);
+  }
+
+  /**
+   * Appends all of {@code src} to the current file, starting a new file first if needed. A single write larger than a file's share of the budget
+   * still goes into a file of its own.
+   */
+  @Override
+  public int write(@NonNull ByteBuffer src) throws IOException {
+    int  size  = src.remaining();
+    long nowMs = System.currentTimeMillis();
+
+    FileChannel channel = channel(size, nowMs);
+    while (src.hasRemaining()) {
+      channel.write(src);
+    }
+
+    return size;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return true;
+  }
+
+  /**
+   * Closes the current file. The next write starts a new one.
+   */
+  @Override
+  public void close() throws IOException {
+    if (current != null) {
+      current.close();
+      current = null;
+    }
+  }
+
+  private @NonNull FileChannel channel(int writeSize, long nowMs) throws IOException {
+    if (!initialized) {
+      deleteAll();
+      initialized = true;
+    }
+
+    if (current != null) {
+      long size = current.size();
+      if ((size > 0 && size + writeSize > maxFileBytes) || nowMs - currentStartMs >= maxFileAgeMs) {
+        close();
+      }
+    }
+
+    if (current == null) {
+      if (!directory.exists() && !directory.mkdirs()) {
+        throw new IOException("Failed to create " + directory);
+      }
+
+      lastFileId = Math.max(nowMs, lastFileId + 1);
+
+      File file = new File(directory, lastFileId + SUFFIX);
+
+      current        = new FileOutputStream(file, true).getChannel();
+      currentStartMs = nowMs;
+      files.addLast(file);
+
+      while (files.size() > maxFiles) {
+        delete(files.removeFirst());
+      }
+    }
+
+    return current;
+  }
+
+  /**
+   * Copies every file, oldest first.
+   */
+  void copyTo(@NonNull OutputStream out) throws IOException {
+    byte[] buffer = new byte[8192];
+
+    for (File file : files) {
+      try (InputStream in = new FileInputStream(file)) {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          out.write(buffer, 0, read);
+        }
+      }
+    }
+  }
+
+  private void deleteAll() {
+    File[] existing = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+
+    if (existing != null) {
+      for (File file : existing) {
+        delete(file);
+      }
+    }
+  }
+
+  private static void delete(@Nullable File file) {
+    if (file != null) {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+}
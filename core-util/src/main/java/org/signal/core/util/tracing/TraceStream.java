@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.tracing;
+
+import androidx.annotation.NonNull;
+
+import org.signal.core.util.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Where {@link Tracer} sends its packets when it's streaming. Packets go into a {@link TraceRingBuffer}, which is drained into {@link TraceSpillFiles}
+ * on a background thread every few seconds, or sooner if the buffer starts filling up.
+ */
+final class TraceStream {
+
+  private static final String TAG = Log.tag(TraceStream.class);
+
+  private static final int  CHUNK_SIZE        = 32 * 1024;
+  private static final int  MAX_FILES         = 8;
+  private static final long DRAIN_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
+
+  private final TraceRingBuffer          ringBuffer;
+  private final TraceSpillFiles          spillFiles;
+  private final ScheduledExecutorService executor;
+  private final AtomicBoolean            drainPending;
+  private final int                      drainThreshold;
+
+  TraceStream(@NonNull File directory, int bufferSizeBytes, long maxDiskBytes, long windowMs) {
+    this.ringBuffer     = new TraceRingBuffer(bufferSizeBytes, Math.min(CHUNK_SIZE, bufferSizeBytes));
+    this.spillFiles     = new TraceSpillFiles(directory, MAX_FILES, maxDiskBytes, windowMs);
+    this.drainPending   = new AtomicBoolean(false);
+    this.drainThreshold = Math.max(1, ringBuffer.getChunkCount() / 2);
+    this.executor       = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "signal-trace-spill");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+
+    executor.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  void append(@NonNull TracePacket packet) {
+    ringBuffer.append(packet.encode());
+
+    if (ringBuffer.getFullChunkCount() >= drainThreshold && drainPending.compareAndSet(false, true)) {
+      executor.execute(this::drain);
+    }
+  }
+
+  /**
+   * Copies everything that's been spilled to disk, followed by everything that's still in memory. Reads from disk, and holds off draining until
+   * it's done.
+   */
+  synchronized void copyTo(@NonNull OutputStream out) throws IOException {
+    spillFiles.copyTo(out);
+    ringBuffer.copyTo(out);
+  }
+
+  private synchronized void drain() {
+    drainPending.set(false);
+
+    try {
+      ringBuffer.drainTo(spillFiles);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to spill traces.", e);
+    }
+  }
+}
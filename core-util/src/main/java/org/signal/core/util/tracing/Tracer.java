@@ -4,7 +4,14 @@ import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
+import org.signal.core.util.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -21,8 +28,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 import okio.ByteString;
 
 /**
- * A class to create Perfetto-compatible traces. Currently keeps the entire trace in memory to
- * avoid weirdness with synchronizing to disk.
+ * A class to create Perfetto-compatible traces. By default keeps the entire trace in memory to
+ * avoid weirdness with synchronizing to disk. Alternatively, {@link #startStreaming} sends packets
+ * to a fixed-size off-heap buffer that is spilled to rotating files, so tracing can be left on for
+ * long sessions and still cover the last few minutes.
  * <p>
  * Some general info on how the Perfetto format works:
  * - The file format is just a Trace proto (see Trace.proto)
@@ -47,6 +56,8 @@ import okio.ByteString;
  */
 public final class Tracer {
 
+  private static final String TAG = Log.tag(Tracer.class);
+
   public static final class TrackId {
     public static final long DB_LOCK = -8675309;
 
@@ -67,6 +78,8 @@ public final class Tracer {
   private long lastSyncTime;
   private long maxBufferSize;
 
+  private volatile @Nullable TraceStream stream;
+
   private Tracer() {
     this.clock         = SystemClock::elapsedRealtimeNanos;
     this.threadPackets = new ConcurrentHashMap<>();
@@ -83,6 +96,30 @@ public final class Tracer {
     this.maxBufferSize = maxBufferSize;
   }
 
+  /**
+   * Starts sending packets to a bounded off-heap buffer that is periodically spilled to rotating files in {@code directory}, rather than keeping
+   * them on the heap. Anything already traced is carried over.
+   *
+   * @param bufferSizeBytes How much memory to buffer packets in before they're spilled.
+   * @param maxDiskBytes    How much space the spilled files can take up.
+   * @param windowMs        Roughly how far back the spilled files should go.
+   */
+  public synchronized void startStreaming(@NonNull File directory, int bufferSizeBytes, long maxDiskBytes, long windowMs) {
+    if (stream != null) {
+      return;
+    }
+
+    TraceStream newStream = new TraceStream(directory, bufferSizeBytes, maxDiskBytes, windowMs);
+
+    TracePacket packet;
+    while ((packet = eventPackets.poll()) != null) {
+      newStream.append(packet);
+    }
+    eventCount.set(0);
+
+    stream = newStream;
+  }
+
   public void start(@NonNull String methodName) {
     start(methodName, Thread.currentThread().getId(), null);
   }
@@ -126,7 +163,39 @@ public final class Tracer {
     addPacket(forMethodEnd(methodName, clock.getTimeNanos(), trackId));
   }
 
+  /**
+   * @return The whole trace. When streaming, this can be tens of megabytes read from disk, so prefer {@link #serialize(OutputStream)} there.
+   */
+  @WorkerThread
   public @NonNull byte[] serialize() {
+    TraceStream stream = this.stream;
+    if (stream != null) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try {
+        serializeStream(stream, out);
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to read streamed traces.", e);
+      }
+      return out.toByteArray();
+    }
+
+    return serializeInMemory();
+  }
+
+  /**
+   * Writes the whole trace to {@code out} without building it up in memory first. Reads from disk when streaming. Doesn't close {@code out}.
+   */
+  @WorkerThread
+  public void serialize(@NonNull OutputStream out) throws IOException {
+    TraceStream stream = this.stream;
+    if (stream != null) {
+      serializeStream(stream, out);
+    } else {
+      out.write(serializeInMemory());
+    }
+  }
+
+  private @NonNull byte[] serializeInMemory() {
     List<TracePacket> packets = new ArrayList<>();
     packets.addAll(threadPackets.values());
     packets.addAll(eventPackets);
@@ -135,6 +204,17 @@ public final class Tracer {
     return new Trace.Builder().packet(packets).build().encode();
   }
 
+  /**
+   * Encoded Traces can be concatenated, so the thread packets, the streamed packets and a final synchronization marker are each encoded separately.
+   */
+  private void serializeStream(@NonNull TraceStream stream, @NonNull OutputStream out) throws IOException {
+    new Trace.Builder().packet(new ArrayList<>(threadPackets.values())).build().encode(out);
+
+    stream.copyTo(out);
+
+    new Trace.Builder().packet(Collections.singletonList(forSynchronization(clock.getTimeNanos()))).build().encode(out);
+  }
+
   /**
    * Attempts to add a packet to our list while keeping the size of our circular buffer in-check.
    * The tracking of the event count is not perfectly thread-safe, but doing it in a thread-safe
@@ -145,6 +225,12 @@ public final class Tracer {
    * {@link ConcurrentLinkedQueue#size()} is NOT a constant-time operation.
    */
   private void addPacket(@NonNull TracePacket packet) {
+    TraceStream stream = this.stream;
+    if (stream != null) {
+      stream.append(packet);
+      return;
+    }
+
     eventPackets.add(packet);
 
     int size = eventCount.incrementAndGet();
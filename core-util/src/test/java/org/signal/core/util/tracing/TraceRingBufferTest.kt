@@ -0,0 +1,128 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.tracing
+
+import assertk.assertThat
+import assertk.assertions.contains
+import assertk.assertions.containsExactly
+import assertk.assertions.doesNotContain
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.nio.channels.Channels
+import java.util.concurrent.CountDownLatch
+import kotlin.concurrent.thread
+
+class TraceRingBufferTest {
+
+  @Test
+  fun `Given appended packets, when I copy the buffer, then I expect a trace containing them`() {
+    val buffer = TraceRingBuffer(1024, 256)
+
+    buffer.append(packet(1))
+    buffer.append(packet(2))
+
+    assertThat(copy(buffer)).containsExactly(1L, 2L)
+  }
+
+  @Test
+  fun `Given full chunks, when I drain the buffer, then I expect them to be written and removed`() {
+    val buffer = TraceRingBuffer(1024, 32)
+
+    for (i in 1L..10L) {
+      buffer.append(packet(i))
+    }
+
+    val out = ByteArrayOutputStream()
+    buffer.drainTo(Channels.newChannel(out))
+
+    val drained = decode(out.toByteArray())
+    val remaining = copy(buffer)
+
+    assertThat(buffer.getFullChunkCount()).isEqualTo(0)
+    assertThat(drained + remaining).isEqualTo((1L..10L).toList())
+  }
+
+  @Test
+  fun `Given a partially filled chunk, when I drain the buffer, then I expect its packets to be written`() {
+    val buffer = TraceRingBuffer(1024, 256)
+
+    buffer.append(packet(1))
+    buffer.append(packet(2))
+
+    val out = ByteArrayOutputStream()
+    buffer.drainTo(Channels.newChannel(out))
+
+    assertThat(decode(out.toByteArray())).containsExactly(1L, 2L)
+    assertThat(copy(buffer)).isEmpty()
+
+    buffer.append(packet(3))
+
+    assertThat(copy(buffer)).containsExactly(3L)
+  }
+
+  @Test
+  fun `Given more threads than chunks, when each appends, then I expect the last thread's packet to be kept`() {
+    val buffer = TraceRingBuffer(64, 32)
+    val done = CountDownLatch(1)
+
+    val threads = (1L..4L).map { timestamp ->
+      val appended = CountDownLatch(1)
+      val thread = thread {
+        buffer.append(packet(timestamp))
+        appended.countDown()
+        done.await()
+      }
+      appended.await()
+      thread
+    }
+
+    val copied = copy(buffer)
+
+    done.countDown()
+    threads.forEach { it.join() }
+
+    assertThat(copied).contains(4L)
+  }
+
+  @Test
+  fun `Given more packets than fit, when I copy the buffer, then I expect the oldest to have been dropped`() {
+    val buffer = TraceRingBuffer(64, 32)
+
+    for (i in 1L..20L) {
+      buffer.append(packet(i))
+    }
+
+    val copied = copy(buffer)
+
+    assertThat(copied).doesNotContain(1L)
+    assertThat(copied).contains(20L)
+  }
+
+  @Test
+  fun `Given a packet larger than a chunk, when I append it, then I expect it to be dropped`() {
+    val buffer = TraceRingBuffer(64, 32)
+
+    buffer.append(ByteArray(64))
+
+    assertThat(copy(buffer)).isEmpty()
+  }
+
+  private fun packet(timestamp: Long): ByteArray {
+    return TracePacket.Builder().timestamp(timestamp).build().encode()
+  }
+
+  private fun copy(buffer: TraceRingBuffer): List<Long> {
+    val out = ByteArrayOutputStream()
+    buffer.copyTo(out)
+    return decode(out.toByteArray())
+  }
+
+  private fun decode(bytes: ByteArray): List<Long> {
+    return Trace.ADAPTER.decode(bytes).packet.map { it.timestamp!! }
+  }
+}
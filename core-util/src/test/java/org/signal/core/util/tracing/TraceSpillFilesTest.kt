@@ -0,0 +1,44 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.core.util.tracing
+
+import assertk.assertThat
+import assertk.assertions.each
+import assertk.assertions.hasSize
+import assertk.assertions.isEqualTo
+import assertk.assertions.isLessThanOrEqualTo
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+
+class TraceSpillFilesTest {
+
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  @Test
+  fun `Given writes that don't divide the file size, when I write them, then I expect no file to exceed its share of the budget`() {
+    val directory = folder.newFolder()
+    val spillFiles = TraceSpillFiles(directory, 4, 400, Long.MAX_VALUE)
+
+    for (i in 0 until 10) {
+      spillFiles.write(ByteBuffer.wrap(ByteArray(30) { i.toByte() }))
+    }
+    spillFiles.close()
+
+    val files = directory.listFiles()!!.toList()
+
+    assertThat(files).hasSize(4)
+    assertThat(files.map { it.length() }).each { it.isLessThanOrEqualTo(100L) }
+
+    val out = ByteArrayOutputStream()
+    spillFiles.copyTo(out)
+
+    assertThat(out.toByteArray().toList()).isEqualTo((0 until 10).flatMap { i -> List(30) { i.toByte() } }.takeLast(out.size()))
+  }
+}
@@ -111,5 +111,6 @@ dependencies {
   testImplementation(testLibs.mockk)
 
   testFixturesImplementation(libs.libsignal.client)
+  testFixturesImplementation(project(":core-util-jvm"))
   testFixturesImplementation(testLibs.junit.junit)
 }
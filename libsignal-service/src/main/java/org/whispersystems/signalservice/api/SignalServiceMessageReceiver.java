@@ -22,6 +22,7 @@ import org.whispersystems.signalservice.api.messages.SignalServiceStickerManifes
 import org.whispersystems.signalservice.api.push.exceptions.MissingConfigurationException;
 import org.whispersystems.signalservice.internal.crypto.PaddingInputStream;
 import org.whispersystems.signalservice.internal.push.PushServiceSocket;
+import org.whispersystems.signalservice.internal.push.http.SegmentedDownloader;
 import org.whispersystems.signalservice.internal.sticker.Pack;
 import org.whispersystems.signalservice.internal.util.Util;
 
@@ -102,10 +103,24 @@ public class SignalServiceMessageReceiver {
    */
   public InputStream retrieveAttachment(SignalServiceAttachmentPointer pointer, File destination, long maxSizeBytes, IntegrityCheck integrityCheck, ProgressListener listener)
       throws IOException, InvalidMessageException, MissingConfigurationException {
+    return retrieveAttachment(pointer, destination, maxSizeBytes, integrityCheck, listener, null);
+  }
+
+  /**
+   * Like {@link #retrieveAttachment(SignalServiceAttachmentPointer, File, long, IntegrityCheck, ProgressListener)}, but downloads through
+   * {@code segmentedDownloader} when present.
+   */
+  public InputStream retrieveAttachment(SignalServiceAttachmentPointer pointer,
+                                        File destination,
+                                        long maxSizeBytes,
+                                        IntegrityCheck integrityCheck,
+                                        ProgressListener listener,
+                                        @Nullable SegmentedDownloader segmentedDownloader)
+      throws IOException, InvalidMessageException, MissingConfigurationException {
     if (integrityCheck == null) throw new InvalidMessageException("No integrity check!");
     if (pointer.getKey() == null) throw new InvalidMessageException("No key!");
 
-    socket.retrieveAttachment(pointer.getCdnNumber(), Collections.emptyMap(), pointer.getRemoteId(), destination, maxSizeBytes, listener);
+    socket.retrieveAttachment(pointer.getCdnNumber(), Collections.emptyMap(), pointer.getRemoteId(), destination, maxSizeBytes, listener, segmentedDownloader);
 
     byte[] iv = new byte[16];
     try (InputStream tempStream = new FileInputStream(destination)) {
@@ -142,12 +157,29 @@ public class SignalServiceMessageReceiver {
                                                 long maxSizeBytes,
                                                 @Nullable ProgressListener listener)
       throws IOException, InvalidMessageException, MissingConfigurationException
+  {
+    return retrieveArchivedAttachment(archivedMediaKeyMaterial, plaintextHash, readCredentialHeaders, archiveDestination, pointer, maxSizeBytes, listener, null);
+  }
+
+  /**
+   * Like {@link #retrieveArchivedAttachment(MediaRootBackupKey.MediaKeyMaterial, byte[], Map, File, SignalServiceAttachmentPointer, long, ProgressListener)},
+   * but downloads through {@code segmentedDownloader} when present.
+   */
+  public InputStream retrieveArchivedAttachment(@Nonnull MediaRootBackupKey.MediaKeyMaterial archivedMediaKeyMaterial,
+                                                @Nonnull byte[] plaintextHash,
+                                                @Nonnull Map<String, String> readCredentialHeaders,
+                                                @Nonnull File archiveDestination,
+                                                @Nonnull SignalServiceAttachmentPointer pointer,
+                                                long maxSizeBytes,
+                                                @Nullable ProgressListener listener,
+                                                @Nullable SegmentedDownloader segmentedDownloader)
+      throws IOException, InvalidMessageException, MissingConfigurationException
   {
     if (pointer.getKey() == null) {
       throw new InvalidMessageException("No key!");
     }
 
-    socket.retrieveAttachment(pointer.getCdnNumber(), readCredentialHeaders, pointer.getRemoteId(), archiveDestination, maxSizeBytes, listener);
+    socket.retrieveAttachment(pointer.getCdnNumber(), readCredentialHeaders, pointer.getRemoteId(), archiveDestination, maxSizeBytes, listener, segmentedDownloader);
 
     long originalCipherLength = pointer.getSize()
                                        .filter(s -> s > 0)
@@ -199,7 +231,13 @@ public class SignalServiceMessageReceiver {
   }
 
   public void retrieveBackup(int cdnNumber, Map<String, String> headers, String cdnPath, File destination, ProgressListener listener) throws MissingConfigurationException, IOException {
-    socket.retrieveBackup(cdnNumber, headers, cdnPath, destination, 1_000_000_000L, listener);
+    retrieveBackup(cdnNumber, headers, cdnPath, destination, listener, null);
+  }
+
+  public void retrieveBackup(int cdnNumber, Map<String, String> headers, String cdnPath, File destination, ProgressListener listener, @Nullable SegmentedDownloader segmentedDownloader)
+      throws MissingConfigurationException, IOException
+  {
+    socket.retrieveBackup(cdnNumber, headers, cdnPath, destination, 1_000_000_000L, listener, segmentedDownloader);
   }
 
   /**
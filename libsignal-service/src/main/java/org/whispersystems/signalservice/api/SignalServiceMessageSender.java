@@ -154,7 +154,6 @@ import io.reactivex.rxjava3.core.Scheduler;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.exceptions.CompositeException;
 import io.reactivex.rxjava3.schedulers.Schedulers;
-import kotlin.Unit;
 import okio.ByteString;
 import okio.Utf8;
 
@@ -169,6 +168,9 @@ public class SignalServiceMessageSender {
 
   private static final int RETRY_COUNT = 4;
 
+  /** The most individual sends that a fan-out to many recipients will have outstanding at once. */
+  private static final int MAX_IN_FLIGHT_SENDS = 32;
+
   private final PushServiceSocket             socket;
   private final SignalServiceAccountDataStore aciStore;
   private final SignalSessionLock             sessionLock;
@@ -2012,6 +2014,10 @@ public class SignalServiceMessageSender {
 
   /**
    * Send a message to multiple recipients.
+   * <p>
+   * Sends happen in rounds. Each round loads the devices of every pending recipient with a single session store query, then encrypts and sends
+   * with at most {@link #MAX_IN_FLIGHT_SENDS} requests outstanding at once. Recipients that hit a recoverable error (mismatched or stale devices,
+   * or a sealed sender failure) have it resolved as part of that round and are retried together in the next one, up to {@link #RETRY_COUNT} times.
    *
    * @return An unordered list of a {@link SendMessageResult} for each send.
    * @throws IOException - Unknown failure or a failure not representable by an unsuccessful {@code SendMessageResult}.
@@ -2031,44 +2037,74 @@ public class SignalServiceMessageSender {
     Log.d(TAG, "[" + timestamp + "] Sending to " + recipients.size() + " recipients.");
     enforceMaxContentSize(content);
 
-    long                                startTime                  = System.currentTimeMillis();
-    List<Observable<SendMessageResult>> singleResults              = new LinkedList<>();
-    Iterator<SignalServiceAddress>      recipientIterator          = recipients.iterator();
-    Iterator<SealedSenderAccess>        sealedSenderAccessIterator = sealedSenderAccesses.iterator();
+    long                           startTime                  = System.currentTimeMillis();
+    List<SendMessageResult>        results                    = new ArrayList<>(recipients.size());
+    List<FanOutSend>               pending                    = new ArrayList<>(recipients.size());
+    Iterator<SignalServiceAddress> recipientIterator          = recipients.iterator();
+    Iterator<SealedSenderAccess>   sealedSenderAccessIterator = sealedSenderAccesses.iterator();
+    IOException                    firstFailure               = null;
 
     while (recipientIterator.hasNext()) {
-      SignalServiceAddress recipient          = recipientIterator.next();
-      SealedSenderAccess   sealedSenderAccess = sealedSenderAccessIterator.next();
-
-      singleResults.add(sendMessageRx(recipient, sealedSenderAccess, timestamp, content, online, cancelationSignal, sendEvents, urgent, story, 0).toObservable());
+      pending.add(new FanOutSend(recipientIterator.next(), sealedSenderAccessIterator.next()));
     }
 
-    List<SendMessageResult> results;
-    try {
-      results = Observable.mergeDelayError(singleResults, Integer.MAX_VALUE, 1)
-                          .observeOn(scheduler, true)
-                          .scan(new ArrayList<SendMessageResult>(singleResults.size()), (state, result) -> {
-                            state.add(result);
-                            if (partialListener != null) {
-                              partialListener.onPartialSendComplete(result);
-                            }
-                            return state;
-                          })
-                          .lastOrError()
-                          .blockingGet();
-    } catch (RuntimeException e) {
-      Throwable cause = e instanceof CompositeException ? ((CompositeException) e).getExceptions().get(0)
-                                                        : e.getCause();
-
-      if (cause instanceof IOException) {
-        throw (IOException) cause;
-      } else if (cause instanceof InterruptedException) {
-        throw new CancelationException(e);
-      } else {
-        throw e;
+    for (int round = 0; !pending.isEmpty(); round++) {
+      if (cancelationSignal != null && cancelationSignal.isCanceled()) {
+        throw new CancelationException();
+      }
+
+      if (round > 0) {
+        Log.d(TAG, "[" + timestamp + "] Retrying " + pending.size() + " recipients (round " + round + ").");
+      }
+
+      Map<String, List<Integer>>      deviceIds = getDeviceIdsWithActiveSessions(pending);
+      List<Observable<FanOutAttempt>> attempts  = new ArrayList<>(pending.size());
+
+      for (FanOutSend send : pending) {
+        attempts.add(sendMessageRx(send, deviceIds.get(send.recipient.getIdentifier()), timestamp, content, online, cancelationSignal, sendEvents, urgent, story, round).toObservable());
+      }
+
+      List<FanOutAttempt> roundResults;
+      try {
+        roundResults = Observable.mergeDelayError(attempts, MAX_IN_FLIGHT_SENDS, 1)
+                                 .observeOn(scheduler, true)
+                                 .doOnNext(attempt -> {
+                                   if (attempt.result != null && partialListener != null) {
+                                     partialListener.onPartialSendComplete(attempt.result);
+                                   }
+                                 })
+                                 .toList()
+                                 .blockingGet();
+      } catch (RuntimeException e) {
+        Throwable cause = e instanceof CompositeException ? ((CompositeException) e).getExceptions().get(0)
+                                                          : e.getCause();
+
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof InterruptedException) {
+          throw new CancelationException(e);
+        } else {
+          throw e;
+        }
+      }
+
+      pending = new ArrayList<>();
+
+      for (FanOutAttempt attempt : roundResults) {
+        if (attempt.result != null) {
+          results.add(attempt.result);
+        } else if (attempt.retry != null) {
+          pending.add(attempt.retry);
+        } else if (firstFailure == null) {
+          firstFailure = attempt.failure;
+        }
       }
     }
 
+    if (firstFailure != null) {
+      throw firstFailure;
+    }
+
     double sendsForAverage = 0;
     for (SendMessageResult result : results) {
       if (result.getSuccess() != null && result.getSuccess().getDuration() != -1) {
@@ -2090,37 +2126,60 @@ public class SignalServiceMessageSender {
   }
 
   /**
-   * Sends a message over the appropriate websocket, falls back to REST when unavailable, and emits a {@link SendMessageResult} for most business
-   * logic error cases.
+   * Loads the devices to encrypt for across all of the provided sends with one session store query, rather than a query per recipient and device.
+   * Every recipient always includes {@link SignalServiceAddress#DEFAULT_DEVICE_ID}, matching {@link #getEncryptedMessages}.
+   */
+  private Map<String, List<Integer>> getDeviceIdsWithActiveSessions(List<FanOutSend> sends) {
+    Map<String, List<Integer>> deviceIds = new HashMap<>(sends.size());
+
+    for (FanOutSend send : sends) {
+      deviceIds.computeIfAbsent(send.recipient.getIdentifier(), name -> {
+        List<Integer> devices = new ArrayList<>(2);
+        devices.add(SignalServiceAddress.DEFAULT_DEVICE_ID);
+        return devices;
+      });
+    }
+
+    for (SignalProtocolAddress address : aciStore.getAllAddressesWithActiveSessions(new ArrayList<>(deviceIds.keySet())).keySet()) {
+      List<Integer> devices = deviceIds.get(address.getName());
+
+      if (devices != null && address.getDeviceId() != SignalServiceAddress.DEFAULT_DEVICE_ID) {
+        devices.add(address.getDeviceId());
+      }
+    }
+
+    return deviceIds;
+  }
+
+  /**
+   * Sends a message over the appropriate websocket, falls back to REST when unavailable, and emits a {@link FanOutAttempt} describing how the
+   * send went. Never emits an error.
    * <p>
    * Uses a "feature" or Rx where if no {@link Single#subscribeOn(Scheduler)} operator is used, the subscribing thread is used to perform the
    * initial work. This allows the calling thread to do the starting of the send work (encryption and putting it on the wire) and can be called
-   * multiple times in a loop, but allow the network transit/processing/error retry logic to run on a background thread.
+   * multiple times in a loop, but allow the network transit/processing/error handling to run on a background thread.
    * <p>
    * Processing happens on the background thread via an {@link Single#observeOn(Scheduler)} call after the encrypt and send. Error
-   * handling operators are added after the observe so they will also run on a background thread. Retry logic during error handling
-   * is a recursive call, so error handling thread becomes the method "calling and subscribing" thread so all retries will perform the
-   * encryption/send/processing on that background thread.
-   *
-   * @return A single that wraps success and business failures as a {@link SendMessageResult} but will still emit unhandled/unrecoverable
-   * errors via {@code onError}
+   * handling operators are added after the observe so they will also run on a background thread. Recoverable errors are not retried here,
+   * instead device conflicts are resolved and a {@link FanOutAttempt#retry} is emitted for the next round of the fan-out.
    */
-  private Single<SendMessageResult> sendMessageRx(SignalServiceAddress recipient,
-                                                  @Nullable SealedSenderAccess sealedSenderAccess,
-                                                  long timestamp,
-                                                  EnvelopeContent content,
-                                                  boolean online,
-                                                  CancelationSignal cancelationSignal,
-                                                  @Nullable SendEvents sendEvents,
-                                                  boolean urgent,
-                                                  boolean story,
-                                                  int retryCount)
+  private Single<FanOutAttempt> sendMessageRx(FanOutSend send,
+                                              List<Integer> deviceIds,
+                                              long timestamp,
+                                              EnvelopeContent content,
+                                              boolean online,
+                                              CancelationSignal cancelationSignal,
+                                              @Nullable SendEvents sendEvents,
+                                              boolean urgent,
+                                              boolean story,
+                                              int retryCount)
   {
-    long startTime = System.currentTimeMillis();
-    enforceMaxContentSize(content);
+    long                         startTime          = System.currentTimeMillis();
+    SignalServiceAddress         recipient          = send.recipient;
+    @Nullable SealedSenderAccess sealedSenderAccess = send.sealedSenderAccess;
 
     Single<OutgoingPushMessageList> messagesSingle = Single.fromCallable(() -> {
-      OutgoingPushMessageList messages = getEncryptedMessages(recipient, sealedSenderAccess, timestamp, content, online, urgent, story);
+      OutgoingPushMessageList messages = getEncryptedMessages(recipient, sealedSenderAccess, deviceIds, timestamp, content, online, urgent, story);
 
       if (retryCount == 0 && sendEvents != null) {
         sendEvents.onMessageEncrypted();
@@ -2209,47 +2268,24 @@ public class SignalServiceMessageSender {
           }
         });
 
-    return sendWithFallback.onErrorResumeNext(t -> {
+    return sendWithFallback.map(FanOutAttempt::success).onErrorResumeNext(t -> {
       if (cancelationSignal != null && cancelationSignal.isCanceled()) {
-        return Single.error(new CancelationException());
+        return Single.just(FanOutAttempt.failure(new CancelationException()));
       }
 
       if (retryCount >= RETRY_COUNT) {
-        return Single.error(t);
+        return Single.just(mapSendError(t, timestamp, recipient));
       }
 
       if (t instanceof InvalidKeyException) {
         Log.w(TAG, t);
-        return sendMessageRx(
-            recipient,
-            SealedSenderAccess.NONE,
-            timestamp,
-            content,
-            online,
-            cancelationSignal,
-            sendEvents,
-            urgent,
-            story,
-            retryCount + 1
-        );
+        return Single.just(FanOutAttempt.retry(new FanOutSend(recipient, SealedSenderAccess.NONE)));
       } else if (t instanceof AuthorizationFailedException) {
         if (sealedSenderAccess != null) {
           Log.w(TAG, "Got an AuthorizationFailedException when trying to send using sealed sender. Falling back.");
-          return sendMessageRx(
-              recipient,
-              sealedSenderAccess.switchToFallback(),
-              timestamp,
-              content,
-              online,
-              cancelationSignal,
-              sendEvents,
-              urgent,
-              story,
-              retryCount + 1
-          );
+          return Single.just(FanOutAttempt.retry(new FanOutSend(recipient, sealedSenderAccess.switchToFallback())));
         } else {
           Log.w(TAG, "Got an AuthorizationFailedException without using sealed sender!", t);
-          return Single.error(t);
         }
       } else if (t instanceof MismatchedDevicesException) {
         MismatchedDevicesException mde = (MismatchedDevicesException) t;
@@ -2257,53 +2293,32 @@ public class SignalServiceMessageSender {
 
         return Single.fromCallable(() -> {
                        handleMismatchedDevices(recipient, mde.getMismatchedDevices());
-                       return Unit.INSTANCE;
+                       return FanOutAttempt.retry(send);
                      })
-                     .flatMap(unused -> sendMessageRx(
-                         recipient,
-                         sealedSenderAccess,
-                         timestamp,
-                         content,
-                         online,
-                         cancelationSignal,
-                         sendEvents,
-                         urgent,
-                         story,
-                         retryCount + 1)
-                     );
+                     .onErrorReturn(e -> mapSendError(e, timestamp, recipient));
       } else if (t instanceof StaleDevicesException) {
         StaleDevicesException ste = (StaleDevicesException) t;
         Log.w(TAG, "[sendMessage][" + timestamp + "] Handling stale devices. (" + ste.getMessage() + ")");
 
         return Single.fromCallable(() -> {
                        handleStaleDevices(recipient, ste.getStaleDevices());
-                       return Unit.INSTANCE;
+                       return FanOutAttempt.retry(send);
                      })
-                     .flatMap(unused -> sendMessageRx(
-                         recipient,
-                         sealedSenderAccess,
-                         timestamp,
-                         content,
-                         online,
-                         cancelationSignal,
-                         sendEvents,
-                         urgent,
-                         story,
-                         retryCount + 1)
-                     );
+                     .onErrorReturn(e -> mapSendError(e, timestamp, recipient));
       }
 
-      return Single.error(t);
-    }).onErrorResumeNext(t -> {
-      try {
-        SendMessageResult result = mapSendErrorToSendResult(t, timestamp, recipient);
-        return Single.just(result);
-      } catch (IOException e) {
-        return Single.error(e);
-      }
+      return Single.just(mapSendError(t, timestamp, recipient));
     });
   }
 
+  private static FanOutAttempt mapSendError(Throwable t, long timestamp, SignalServiceAddress recipient) {
+    try {
+      return FanOutAttempt.success(mapSendErrorToSendResult(t, timestamp, recipient));
+    } catch (IOException e) {
+      return FanOutAttempt.failure(e);
+    }
+  }
+
   /**
    * Converts common exceptions thrown during message sending to the appropriate {@link SendMessageResult}.
    * <p>
@@ -2555,6 +2570,46 @@ public class SignalServiceMessageSender {
     }
   }
 
+  /**
+   * A recipient that still needs to be sent to as part of a fan-out, along with the sealed sender access to use for the next attempt.
+   */
+  private static final class FanOutSend {
+    private final SignalServiceAddress         recipient;
+    private final @Nullable SealedSenderAccess sealedSenderAccess;
+
+    private FanOutSend(SignalServiceAddress recipient, @Nullable SealedSenderAccess sealedSenderAccess) {
+      this.recipient          = recipient;
+      this.sealedSenderAccess = sealedSenderAccess;
+    }
+  }
+
+  /**
+   * The outcome of a single fan-out send attempt. Exactly one of {@link #result}, {@link #retry}, or {@link #failure} is set.
+   */
+  private static final class FanOutAttempt {
+    private final @Nullable SendMessageResult result;
+    private final @Nullable FanOutSend        retry;
+    private final @Nullable IOException       failure;
+
+    private FanOutAttempt(@Nullable SendMessageResult result, @Nullable FanOutSend retry, @Nullable IOException failure) {
+      this.result  = result;
+      this.retry   = retry;
+      this.failure = failure;
+    }
+
+    static FanOutAttempt success(SendMessageResult result) {
+      return new FanOutAttempt(result, null, null);
+    }
+
+    static FanOutAttempt retry(FanOutSend retry) {
+      return new FanOutAttempt(null, retry, null);
+    }
+
+    static FanOutAttempt failure(IOException failure) {
+      return new FanOutAttempt(null, null, failure);
+    }
+  }
+
   private List<SendMessageResult> transformGroupResponseToMessageResults(Map<SignalServiceAddress, List<Integer>> recipients, SendGroupMessageResponse response, Content content) {
     Set<ServiceId> unregistered = response.getUnsentTargets();
 
@@ -2670,22 +2725,42 @@ public class SignalServiceMessageSender {
                                                        boolean                      story)
       throws IOException, InvalidKeyException, UntrustedIdentityException
   {
-    List<OutgoingPushMessage> messages = new LinkedList<>();
-
     List<Integer> subDevices = aciStore.getSubDeviceSessions(recipient.getIdentifier());
 
     List<Integer> deviceIds = new ArrayList<>(subDevices.size() + 1);
     deviceIds.add(SignalServiceAddress.DEFAULT_DEVICE_ID);
-    deviceIds.addAll(subDevices);
 
-    if (recipient.matches(localAddress)) {
-      deviceIds.remove(Integer.valueOf(localDeviceId));
+    for (int deviceId : subDevices) {
+      if (aciStore.containsSession(new SignalProtocolAddress(recipient.getIdentifier(), deviceId))) {
+        deviceIds.add(deviceId);
+      }
     }
 
+    return getEncryptedMessages(recipient, sealedSenderAccess, deviceIds, timestamp, plaintext, online, urgent, story);
+  }
+
+  /**
+   * @param deviceIds The devices to encrypt for, which must already be limited to {@link SignalServiceAddress#DEFAULT_DEVICE_ID} and devices with an
+   *                  active session.
+   */
+  private OutgoingPushMessageList getEncryptedMessages(SignalServiceAddress         recipient,
+                                                       @Nullable SealedSenderAccess sealedSenderAccess,
+                                                       List<Integer>                deviceIds,
+                                                       long                         timestamp,
+                                                       EnvelopeContent              plaintext,
+                                                       boolean                      online,
+                                                       boolean                      urgent,
+                                                       boolean                      story)
+      throws IOException, InvalidKeyException, UntrustedIdentityException
+  {
+    List<OutgoingPushMessage> messages = new LinkedList<>();
+
     for (int deviceId : deviceIds) {
-      if (deviceId == SignalServiceAddress.DEFAULT_DEVICE_ID || aciStore.containsSession(new SignalProtocolAddress(recipient.getIdentifier(), deviceId))) {
-        messages.add(getEncryptedMessage(recipient, sealedSenderAccess, deviceId, plaintext, story));
+      if (recipient.matches(localAddress) && deviceId == localDeviceId) {
+        continue;
       }
+
+      messages.add(getEncryptedMessage(recipient, sealedSenderAccess, deviceId, plaintext, story));
     }
 
     return new OutgoingPushMessageList(recipient.getIdentifier(), timestamp, messages, online, urgent);
@@ -16,6 +16,7 @@ import org.whispersystems.signalservice.internal.push.AttachmentUploadForm
 import org.whispersystems.signalservice.internal.push.PushAttachmentData
 import org.whispersystems.signalservice.internal.push.PushServiceSocket
 import org.whispersystems.signalservice.internal.push.http.AttachmentCipherOutputStreamFactory
+import org.whispersystems.signalservice.internal.push.http.ChunkedAttachmentUploader
 import org.whispersystems.signalservice.internal.push.http.ResumableUploadSpec
 import org.whispersystems.signalservice.internal.websocket.WebSocketRequestMessage
 import java.io.InputStream
@@ -61,8 +62,15 @@ class AttachmentApi(
 
   /**
    * Uploads an attachment using the v4 upload scheme.
+   *
+   * @param chunkedUploader If present, the attachment is uploaded in chunks through it rather than in a single request, and each chunk the CDN acknowledges
+   *                        is reported to [checkpointListener].
    */
-  fun uploadAttachmentV4(attachmentStream: SignalServiceAttachmentStream): NetworkResult<AttachmentUploadResult> {
+  fun uploadAttachmentV4(
+    attachmentStream: SignalServiceAttachmentStream,
+    chunkedUploader: ChunkedAttachmentUploader? = null,
+    checkpointListener: ChunkedAttachmentUploader.CheckpointListener? = null
+  ): NetworkResult<AttachmentUploadResult> {
     if (attachmentStream.resumableUploadSpec.isEmpty) {
       throw IllegalStateException("Attachment must have a resumable upload spec!")
     }
@@ -85,7 +93,11 @@ class AttachmentApi(
         resumableUploadSpec = attachmentStream.resumableUploadSpec.get()
       )
 
-      val digestInfo = pushServiceSocket.uploadAttachment(attachmentData)
+      val digestInfo = if (chunkedUploader != null) {
+        pushServiceSocket.uploadAttachmentInChunks(attachmentData, chunkedUploader, checkpointListener)
+      } else {
+        pushServiceSocket.uploadAttachment(attachmentData)
+      }
 
       AttachmentUploadResult(
         remoteId = SignalServiceAttachmentRemoteId.V4(attachmentData.resumableUploadSpec.cdnKey),
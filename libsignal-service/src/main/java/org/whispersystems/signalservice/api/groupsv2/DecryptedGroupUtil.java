@@ -338,6 +338,22 @@ public final class DecryptedGroupUtil {
     return builder.build();
   }
 
+  /**
+   * Applies the parts of a change that don't touch any of the membership lists. Used by {@link MutableDecryptedGroup}, which handles the
+   * membership lists itself.
+   */
+  static void applyNonMembershipActions(DecryptedGroup.Builder builder, DecryptedGroupChange change) {
+    applyModifyTitleAction(builder, change);
+    applyModifyDescriptionAction(builder, change);
+    applyModifyIsAnnouncementGroupAction(builder, change);
+    applyModifyAvatarAction(builder, change);
+    applyModifyDisappearingMessagesTimerAction(builder, change);
+    applyModifyAttributesAccessControlAction(builder, change);
+    applyModifyMembersAccessControlAction(builder, change);
+    applyModifyAddFromInviteLinkAccessControlAction(builder, change);
+    applyInviteLinkPassword(builder, change);
+  }
+
   private static void applyAddMemberAction(DecryptedGroup.Builder builder, List<DecryptedMember> newMembersList) {
     if (newMembersList.isEmpty()) return;
 
@@ -627,7 +643,7 @@ public final class DecryptedGroupUtil {
     builder.pendingMembers(pendingMembers);
   }
 
-  private static DecryptedMember withNewProfileKey(DecryptedMember member, ByteString profileKey) {
+  static DecryptedMember withNewProfileKey(DecryptedMember member, ByteString profileKey) {
     return member.newBuilder()
                  .profileKey(profileKey)
                  .build();
@@ -685,7 +701,7 @@ public final class DecryptedGroupUtil {
     builder.requestingMembers(requestingMembers);
   }
 
-  private static void ensureKnownRole(Member.Role role) throws NotAbleToApplyGroupV2ChangeException {
+  static void ensureKnownRole(Member.Role role) throws NotAbleToApplyGroupV2ChangeException {
     if (role != Member.Role.ADMINISTRATOR && role != Member.Role.DEFAULT) {
       throw new NotAbleToApplyGroupV2ChangeException();
     }
@@ -21,6 +21,7 @@ import org.signal.storageservice.protos.groups.BannedMember;
 import org.signal.storageservice.protos.groups.Group;
 import org.signal.storageservice.protos.groups.GroupAttributeBlob;
 import org.signal.storageservice.protos.groups.GroupChange;
+import org.signal.storageservice.protos.groups.GroupChanges;
 import org.signal.storageservice.protos.groups.GroupJoinInfo;
 import org.signal.storageservice.protos.groups.Member;
 import org.signal.storageservice.protos.groups.PendingMember;
@@ -44,6 +45,8 @@ import org.whispersystems.signalservice.api.push.ServiceId.PNI;
 import org.whispersystems.signalservice.api.util.UuidUtil;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -51,9 +54,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
@@ -74,18 +82,31 @@ public final class GroupsV2Operations {
   /** Highest change epoch this class knows now to decrypt */
   public static final int HIGHEST_KNOWN_EPOCH = 5;
 
+  /** Lists shorter than this aren't worth splitting up for parallel decryption. */
+  private static final int PARALLEL_DECRYPTION_THRESHOLD = 16;
+
   private final ServerPublicParams        serverPublicParams;
   private final ClientZkProfileOperations clientZkProfileOperations;
   private final ClientZkAuthOperations    clientZkAuthOperations;
   private final int                       maxGroupSize;
   private final SecureRandom              random;
+  private final ForkJoinPool              decryptionPool;
 
   public GroupsV2Operations(ClientZkOperations clientZkOperations, int maxGroupSize) {
+    this(clientZkOperations, maxGroupSize, null);
+  }
+
+  /**
+   * @param decryptionPool If present, decryption of group state and history is spread across this pool, and each {@link GroupOperations} caches the
+   *                       service IDs it decrypts. Output is always in the same order as the input.
+   */
+  public GroupsV2Operations(ClientZkOperations clientZkOperations, int maxGroupSize, @Nullable ForkJoinPool decryptionPool) {
     this.serverPublicParams        = clientZkOperations.getServerPublicParams();
     this.clientZkProfileOperations = clientZkOperations.getProfileOperations();
     this.clientZkAuthOperations    = clientZkOperations.getAuthOperations();
     this.maxGroupSize              = maxGroupSize;
     this.random                    = new SecureRandom();
+    this.decryptionPool            = decryptionPool;
   }
 
   /**
@@ -157,12 +178,14 @@ public final class GroupsV2Operations {
    */
   public final class GroupOperations {
 
-    private final GroupSecretParams   groupSecretParams;
-    private final ClientZkGroupCipher clientZkGroupCipher;
+    private final GroupSecretParams          groupSecretParams;
+    private final ClientZkGroupCipher        clientZkGroupCipher;
+    private final Map<ByteString, ServiceId> decryptedServiceIds;
 
     public GroupOperations(GroupSecretParams groupSecretParams) {
       this.groupSecretParams   = groupSecretParams;
       this.clientZkGroupCipher = new ClientZkGroupCipher(groupSecretParams);
+      this.decryptedServiceIds = decryptionPool != null ? new ConcurrentHashMap<>() : null;
     }
 
     public GroupChange.Actions.Builder createModifyGroupTitle(final String title) {
@@ -440,36 +463,34 @@ public final class GroupsV2Operations {
       return new DecryptedGroupResponse(decryptedGroup, groupSendEndorsementsResponse);
     }
 
+    /**
+     * @throws InvalidGroupStateException Also if the thread is interrupted while waiting on parallel decryption, with an
+     *                                    {@link InterruptedIOException} as the cause. Its interrupt flag is set again.
+     */
     public DecryptedGroup decryptGroup(Group group)
         throws VerificationFailedException, InvalidGroupStateException
     {
-      List<Member>                    membersList                = group.members;
-      List<PendingMember>             pendingMembersList         = group.pendingMembers;
-      List<RequestingMember>          requestingMembersList      = group.requestingMembers;
-      List<DecryptedMember>           decryptedMembers           = new ArrayList<>(membersList.size());
-      List<DecryptedPendingMember>    decryptedPendingMembers    = new ArrayList<>(pendingMembersList.size());
-      List<DecryptedRequestingMember> decryptedRequestingMembers = new ArrayList<>(requestingMembersList.size());
-      List<DecryptedBannedMember>     decryptedBannedMembers     = new ArrayList<>(group.bannedMembers.size());
-
-      for (Member member : membersList) {
+      try {
+        return decryptGroup(group, decryptionPool != null);
+      } catch (UncheckedIOException e) {
+        throw new InvalidGroupStateException("Interrupted during decryption", e.getCause());
+      }
+    }
+
+    private DecryptedGroup decryptGroup(Group group, boolean parallel)
+        throws VerificationFailedException, InvalidGroupStateException
+    {
+      List<DecryptedMember> decryptedMembers = decryptAll(group.members, parallel, member -> {
         try {
-          decryptedMembers.add(decryptMember(member).build());
+          return decryptMember(member).build();
         } catch (InvalidInputException e) {
           throw new InvalidGroupStateException(e);
         }
-      }
-
-      for (PendingMember member : pendingMembersList) {
-        decryptedPendingMembers.add(decryptMember(member));
-      }
-
-      for (RequestingMember member : requestingMembersList) {
-        decryptedRequestingMembers.add(decryptRequestingMember(member));
-      }
+      });
 
-      for (BannedMember member : group.bannedMembers) {
-        decryptedBannedMembers.add(new DecryptedBannedMember.Builder().serviceIdBytes(decryptServiceIdToBinary(member.userId)).timestamp(member.timestamp).build());
-      }
+      List<DecryptedPendingMember>    decryptedPendingMembers    = decryptAll(group.pendingMembers, parallel, this::decryptMember);
+      List<DecryptedRequestingMember> decryptedRequestingMembers = decryptAll(group.requestingMembers, parallel, this::decryptRequestingMember);
+      List<DecryptedBannedMember>     decryptedBannedMembers     = decryptAll(group.bannedMembers, parallel, member -> new DecryptedBannedMember.Builder().serviceIdBytes(decryptServiceIdToBinary(member.userId)).timestamp(member.timestamp).build());
 
       return new DecryptedGroup.Builder()
                                .title(decryptTitle(group.title))
@@ -487,6 +508,33 @@ public final class GroupsV2Operations {
                                .build();
     }
 
+    /**
+     * Decrypts a page of group history, keeping the entries in order. With a decryption pool, the entries are decrypted in parallel with each
+     * other, rather than parallelizing within each one.
+     *
+     * @throws InterruptedIOException If the thread is interrupted while waiting on parallel decryption. Its interrupt flag is set again.
+     */
+    public List<DecryptedGroupChangeLog> decryptGroupHistory(List<GroupChanges.GroupChangeState> changes)
+        throws IOException, VerificationFailedException, InvalidGroupStateException
+    {
+      boolean parallelEntries = decryptionPool != null && changes.size() > 1;
+
+      try {
+        return decryptAll(changes, parallelEntries, change -> {
+          try {
+            DecryptedGroup       decryptedGroup  = change.groupState != null ? decryptGroup(change.groupState, !parallelEntries && decryptionPool != null) : null;
+            DecryptedGroupChange decryptedChange = change.groupChange != null ? decryptChange(change.groupChange, DecryptChangeVerificationMode.alreadyTrusted()).orElse(null) : null;
+
+            return new DecryptedGroupChangeLog(decryptedGroup, decryptedChange);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, 1);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+
     /**
      * @param verification You might want to avoid verification if you already know it's correct, or you are not going to pass to other clients.
      *                     <p>
@@ -901,12 +949,34 @@ public final class GroupsV2Operations {
 
     private ServiceId decryptServiceId(ByteString userId) throws InvalidGroupStateException, VerificationFailedException {
       try {
-        return ServiceId.fromLibSignal(clientZkGroupCipher.decrypt(new UuidCiphertext(userId.toByteArray())));
+        return decryptServiceIdOrThrow(userId);
       } catch (InvalidInputException e) {
         throw new InvalidGroupStateException(e);
       }
     }
 
+    /**
+     * Decrypts a service ID, consulting the cache of ones we've already decrypted for this group when in parallel mode. A service ID encrypts to
+     * the same ciphertext every time for a given group, so members that show up across many states and changes in a history page only get
+     * decrypted once.
+     */
+    private ServiceId decryptServiceIdOrThrow(ByteString userId) throws InvalidInputException, VerificationFailedException {
+      if (decryptedServiceIds != null) {
+        ServiceId cached = decryptedServiceIds.get(userId);
+        if (cached != null) {
+          return cached;
+        }
+      }
+
+      ServiceId serviceId = ServiceId.fromLibSignal(clientZkGroupCipher.decrypt(new UuidCiphertext(userId.toByteArray())));
+
+      if (decryptedServiceIds != null) {
+        decryptedServiceIds.put(userId, serviceId);
+      }
+
+      return serviceId;
+    }
+
     private ACI decryptAci(ByteString userId) throws InvalidGroupStateException, VerificationFailedException {
       ServiceId result = decryptServiceId(userId);
       if (result instanceof ACI) {
@@ -920,7 +990,7 @@ public final class GroupsV2Operations {
      */
     private ServiceId decryptServiceIdOrUnknown(ByteString userId) {
       try {
-        return ServiceId.fromLibSignal(clientZkGroupCipher.decrypt(new UuidCiphertext(userId.toByteArray())));
+        return decryptServiceIdOrThrow(userId);
       } catch (InvalidInputException | VerificationFailedException e) {
         return ACI.UNKNOWN;
       }
@@ -928,7 +998,7 @@ public final class GroupsV2Operations {
 
     private ACI decryptAciOrUnknown(ByteString userId) {
       try {
-        ServiceId result = ServiceId.fromLibSignal(clientZkGroupCipher.decrypt(new UuidCiphertext(userId.toByteArray())));
+        ServiceId result = decryptServiceIdOrThrow(userId);
         if (result instanceof ACI) {
           return (ACI) result;
         } else {
@@ -939,6 +1009,72 @@ public final class GroupsV2Operations {
       }
     }
 
+    private <T, R> List<R> decryptAll(List<T> inputs, boolean parallel, Decryptor<T, R> decryptor)
+        throws VerificationFailedException, InvalidGroupStateException
+    {
+      return decryptAll(inputs, parallel, decryptor, PARALLEL_DECRYPTION_THRESHOLD);
+    }
+
+    /**
+     * Decrypts each input, splitting the work into chunks across {@link GroupsV2Operations#decryptionPool} when {@code parallel} is set and there
+     * are at least {@code threshold} inputs. Results are always in input order, and the first failure is rethrown as-is.
+     *
+     * @throws UncheckedIOException Wrapping an {@link InterruptedIOException} if the thread is interrupted while waiting on the pool. Its interrupt
+     *                              flag is set again.
+     */
+    private <T, R> List<R> decryptAll(List<T> inputs, boolean parallel, Decryptor<T, R> decryptor, int threshold)
+        throws VerificationFailedException, InvalidGroupStateException
+    {
+      List<R> results = new ArrayList<>(inputs.size());
+
+      if (!parallel || decryptionPool == null || inputs.size() < Math.max(threshold, 2)) {
+        for (T input : inputs) {
+          results.add(decryptor.decrypt(input));
+        }
+        return results;
+      }
+
+      int                         chunkCount = Math.min(inputs.size(), decryptionPool.getParallelism() * 4);
+      int                         chunkSize  = (inputs.size() + chunkCount - 1) / chunkCount;
+      List<ForkJoinTask<List<R>>> tasks      = new ArrayList<>(chunkCount);
+
+      for (int start = 0; start < inputs.size(); start += chunkSize) {
+        List<T> chunk = inputs.subList(start, Math.min(inputs.size(), start + chunkSize));
+
+        tasks.add(decryptionPool.submit(() -> {
+          List<R> chunkResults = new ArrayList<>(chunk.size());
+          for (T input : chunk) {
+            chunkResults.add(decryptor.decrypt(input));
+          }
+          return chunkResults;
+        }));
+      }
+
+      try {
+        for (ForkJoinTask<List<R>> task : tasks) {
+          results.addAll(task.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException interrupted = new InterruptedIOException("Interrupted during decryption");
+        interrupted.initCause(e);
+        throw new UncheckedIOException(interrupted);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof VerificationFailedException) throw (VerificationFailedException) cause;
+        if (cause instanceof InvalidGroupStateException) throw (InvalidGroupStateException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw new AssertionError(cause);
+      } finally {
+        for (ForkJoinTask<List<R>> task : tasks) {
+          task.cancel(false);
+        }
+      }
+
+      return results;
+    }
+
     ByteString encryptTitle(String title) {
       try {
         GroupAttributeBlob blob = new GroupAttributeBlob.Builder().title(title).build();
@@ -1107,6 +1243,10 @@ public final class GroupsV2Operations {
     }
   }
 
+  private interface Decryptor<T, R> {
+    R decrypt(T input) throws VerificationFailedException, InvalidGroupStateException;
+  }
+
   public static class NewGroup {
     private final GroupSecretParams groupSecretParams;
     private final Group             newGroupMessage;
@@ -16,6 +16,10 @@ public final class InvalidGroupStateException extends Exception {
     super(message);
   }
 
+  InvalidGroupStateException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
   InvalidGroupStateException() {
   }
 }
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.api.groupsv2
+
+import okio.ByteString
+import org.signal.core.util.logging.Log
+import org.signal.storageservice.protos.groups.local.DecryptedBannedMember
+import org.signal.storageservice.protos.groups.local.DecryptedGroup
+import org.signal.storageservice.protos.groups.local.DecryptedGroupChange
+import org.signal.storageservice.protos.groups.local.DecryptedMember
+import org.signal.storageservice.protos.groups.local.DecryptedPendingMember
+import org.signal.storageservice.protos.groups.local.DecryptedRequestingMember
+import org.whispersystems.signalservice.api.push.ServiceId
+import org.whispersystems.signalservice.api.push.ServiceId.ACI
+
+/**
+ * A mutable, indexed copy of a [DecryptedGroup] that changes can be applied to one after another, only building a new [DecryptedGroup] when asked.
+ *
+ * [DecryptedGroupUtil.applyWithoutRevisionCheck] rebuilds each membership list and linearly scans it for every action, which adds up when
+ * catching up on hundreds of revisions of a large group. Here each list is kept in insertion order and hashed by its identifier, so each action
+ * is a constant time lookup. Applying a change gives exactly the same result as [DecryptedGroupUtil.applyWithoutRevisionCheck].
+ *
+ * The one thing a hash can't represent is a list with two entries for the same identifier. Groups like that can't be created with [from], and if a
+ * change would create one, [applyWithoutRevisionCheck] returns false and the instance must be thrown away in favor of [DecryptedGroupUtil].
+ */
+class MutableDecryptedGroup private constructor(
+  private val builder: DecryptedGroup.Builder,
+  private val members: LinkedHashMap<ByteString, DecryptedMember>,
+  private val pendingMembers: LinkedHashMap<ByteString, DecryptedPendingMember>,
+  private val pendingCipherTextsByServiceId: HashMap<ByteString, ByteString>,
+  private val requestingMembers: LinkedHashMap<ByteString, DecryptedRequestingMember>,
+  private val bannedMembers: LinkedHashMap<ByteString, DecryptedBannedMember>
+) {
+
+  companion object {
+    private val TAG = Log.tag(MutableDecryptedGroup::class)
+
+    /**
+     * @return An indexed copy of [group], or null if any of its membership lists contain duplicates.
+     */
+    @JvmStatic
+    fun from(group: DecryptedGroup): MutableDecryptedGroup? {
+      val members: LinkedHashMap<ByteString, DecryptedMember> = LinkedHashMap(group.members.size)
+      for (member in group.members) {
+        if (members.put(member.aciBytes, member) != null) {
+          return null
+        }
+      }
+
+      val pendingMembers: LinkedHashMap<ByteString, DecryptedPendingMember> = LinkedHashMap(group.pendingMembers.size)
+      val pendingCipherTextsByServiceId: HashMap<ByteString, ByteString> = HashMap(group.pendingMembers.size)
+      for (pendingMember in group.pendingMembers) {
+        if (pendingMembers.put(pendingMember.serviceIdCipherText, pendingMember) != null) {
+          return null
+        }
+
+        if (pendingMember.serviceIdBytes.size > 0 && pendingCipherTextsByServiceId.put(pendingMember.serviceIdBytes, pendingMember.serviceIdCipherText) != null) {
+          return null
+        }
+      }
+
+      val requestingMembers: LinkedHashMap<ByteString, DecryptedRequestingMember> = LinkedHashMap(group.requestingMembers.size)
+      for (requestingMember in group.requestingMembers) {
+        if (requestingMembers.put(requestingMember.aciBytes, requestingMember) != null) {
+          return null
+        }
+      }
+
+      val bannedMembers: LinkedHashMap<ByteString, DecryptedBannedMember> = LinkedHashMap(group.bannedMembers.size)
+      for (bannedMember in group.bannedMembers) {
+        if (bannedMembers.put(bannedMember.serviceIdBytes, bannedMember) != null) {
+          return null
+        }
+      }
+
+      return MutableDecryptedGroup(group.newBuilder(), members, pendingMembers, pendingCipherTextsByServiceId, requestingMembers, bannedMembers)
+    }
+
+    /**
+     * Applies a run of changes to [group], only materializing the final state. The result is the same as calling [DecryptedGroupUtil.apply] on
+     * each change in turn.
+     */
+    @JvmStatic
+    @Throws(NotAbleToApplyGroupV2ChangeException::class)
+    fun applyAll(group: DecryptedGroup, changes: List<DecryptedGroupChange>): DecryptedGroup {
+      val indexed = from(group) ?: return applyAllUnindexed(group, changes)
+
+      for (change in changes) {
+        if (change.revision != indexed.revision + 1) {
+          throw NotAbleToApplyGroupV2ChangeException()
+        }
+
+        if (!indexed.applyWithoutRevisionCheck(change)) {
+          Log.w(TAG, "Change V${change.revision} can't be indexed, falling back.")
+          return applyAllUnindexed(group, changes)
+        }
+      }
+
+      return indexed.toDecryptedGroup()
+    }
+
+    private fun applyAllUnindexed(group: DecryptedGroup, changes: List<DecryptedGroupChange>): DecryptedGroup {
+      var current = group
+      for (change in changes) {
+        current = DecryptedGroupUtil.apply(current, change)
+      }
+      return current
+    }
+  }
+
+  val revision: Int
+    get() = builder.revision
+
+  fun findMemberByAci(aci: ACI): DecryptedMember? {
+    return members[aci.toByteString()]
+  }
+
+  fun findPendingByServiceId(serviceId: ServiceId): DecryptedPendingMember? {
+    return pendingCipherTextsByServiceId[serviceId.toByteString()]?.let { pendingMembers[it] }
+  }
+
+  fun findRequestingByAci(aci: ACI): DecryptedRequestingMember? {
+    return requestingMembers[aci.toByteString()]
+  }
+
+  fun isBanned(serviceId: ServiceId): Boolean {
+    return bannedMembers.containsKey(serviceId.toByteString())
+  }
+
+  /**
+   * Applies [change] in place, in the same order as [DecryptedGroupUtil.applyWithoutRevisionCheck].
+   *
+   * If this throws or returns false, the change may have been partially applied and this instance should no longer be used.
+   *
+   * @return False if the change would leave a duplicate entry in one of the membership lists, which can't be represented here.
+   */
+  @Throws(NotAbleToApplyGroupV2ChangeException::class)
+  fun applyWithoutRevisionCheck(change: DecryptedGroupChange): Boolean {
+    builder.revision(change.revision)
+
+    applyAddMembers(change.newMembers)
+    applyDeleteMembers(change.deleteMembers)
+    applyModifyMemberRoles(change)
+    applyModifyMemberProfileKeys(change.modifiedProfileKeys)
+
+    if (!applyAddPendingMembers(change.newPendingMembers)) return false
+    applyDeletePendingMembers(change)
+    if (!applyPromotePendingMembers(change.promotePendingMembers) { it.aciBytes }) return false
+
+    DecryptedGroupUtil.applyNonMembershipActions(builder, change)
+
+    if (!applyAddRequestingMembers(change.newRequestingMembers)) return false
+    applyDeleteRequestingMembers(change.deleteRequestingMembers)
+    if (!applyPromoteRequestingMembers(change)) return false
+
+    if (!applyAddBannedMembers(change.newBannedMembers)) return false
+    applyDeleteBannedMembers(change.deleteBannedMembers)
+
+    return applyPromotePendingMembers(change.promotePendingPniAciMembers) { it.pniBytes }
+  }
+
+  fun toDecryptedGroup(): DecryptedGroup {
+    return builder
+      .members(ArrayList(members.values))
+      .pendingMembers(ArrayList(pendingMembers.values))
+      .requestingMembers(ArrayList(requestingMembers.values))
+      .bannedMembers(ArrayList(bannedMembers.values))
+      .build()
+  }
+
+  private fun applyAddMembers(newMembers: List<DecryptedMember>) {
+    if (newMembers.isEmpty()) return
+
+    for (member in newMembers) {
+      members[member.aciBytes] = member
+    }
+
+    val pendingIterator = pendingMembers.values.iterator()
+    while (pendingIterator.hasNext()) {
+      val pendingMember = pendingIterator.next()
+      if (members.containsKey(pendingMember.serviceIdBytes)) {
+        pendingIterator.remove()
+        pendingCipherTextsByServiceId.remove(pendingMember.serviceIdBytes)
+      }
+    }
+
+    requestingMembers.keys.removeAll { members.containsKey(it) }
+  }
+
+  private fun applyDeleteMembers(deleteMembers: List<ByteString>) {
+    for (aci in deleteMembers) {
+      if (members.remove(aci) == null) {
+        Log.w(TAG, "Deleted member on change not found in group")
+      }
+    }
+  }
+
+  @Throws(NotAbleToApplyGroupV2ChangeException::class)
+  private fun applyModifyMemberRoles(change: DecryptedGroupChange) {
+    for (modifyMemberRole in change.modifyMemberRoles) {
+      val member = members[modifyMemberRole.aciBytes] ?: throw NotAbleToApplyGroupV2ChangeException()
+
+      DecryptedGroupUtil.ensureKnownRole(modifyMemberRole.role)
+
+      members[modifyMemberRole.aciBytes] = member.newBuilder().role(modifyMemberRole.role).build()
+    }
+  }
+
+  @Throws(NotAbleToApplyGroupV2ChangeException::class)
+  private fun applyModifyMemberProfileKeys(modifiedProfileKeys: List<DecryptedMember>) {
+    for (modifyProfileKey in modifiedProfileKeys) {
+      val member = members[modifyProfileKey.aciBytes] ?: throw NotAbleToApplyGroupV2ChangeException()
+
+      members[modifyProfileKey.aciBytes] = DecryptedGroupUtil.withNewProfileKey(member, modifyProfileKey.profileKey)
+    }
+  }
+
+  @Throws(NotAbleToApplyGroupV2ChangeException::class)
+  private fun applyAddPendingMembers(newPendingMembers: List<DecryptedPendingMember>): Boolean {
+    val added: MutableSet<ByteString> = HashSet()
+
+    for (pendingMember in newPendingMembers) {
+      if (members.containsKey(pendingMember.serviceIdBytes)) {
+        throw NotAbleToApplyGroupV2ChangeException()
+      }
+
+      if (pendingMember.serviceIdCipherText in added) {
+        return false
+      }
+
+      if (!pendingMembers.containsKey(pendingMember.serviceIdCipherText)) {
+        if (pendingMember.serviceIdBytes.size > 0 && pendingCipherTextsByServiceId.containsKey(pendingMember.serviceIdBytes)) {
+          return false
+        }
+
+        pendingMembers[pendingMember.serviceIdCipherText] = pendingMember
+        if (pendingMember.serviceIdBytes.size > 0) {
+          pendingCipherTextsByServiceId[pendingMember.serviceIdBytes] = pendingMember.serviceIdCipherText
+        }
+        added += pendingMember.serviceIdCipherText
+      }
+    }
+
+    return true
+  }
+
+  private fun applyDeletePendingMembers(change: DecryptedGroupChange) {
+    for (removedMember in change.deletePendingMembers) {
+      val pendingMember = pendingMembers.remove(removedMember.serviceIdCipherText)
+
+      if (pendingMember == null) {
+        Log.w(TAG, "Deleted pending member on change not found in group")
+        continue
+      }
+
+      if (pendingCipherTextsByServiceId[pendingMember.serviceIdBytes] == pendingMember.serviceIdCipherText) {
+        pendingCipherTextsByServiceId.remove(pendingMember.serviceIdBytes)
+      }
+    }
+  }
+
+  /**
+   * Promotes pending members, matching on the pending member's service ID with [pendingServiceId] of each new member.
+   */
+  @Throws(NotAbleToApplyGroupV2ChangeException::class)
+  private fun applyPromotePendingMembers(promotePendingMembers: List<DecryptedMember>, pendingServiceId: (DecryptedMember) -> ByteString): Boolean {
+    for (newMember in promotePendingMembers) {
+      val serviceId = pendingServiceId(newMember)
+      if (serviceId.size == 0) {
+        return false
+      }
+
+      val cipherText = pendingCipherTextsByServiceId.remove(serviceId) ?: throw NotAbleToApplyGroupV2ChangeException()
+      pendingMembers.remove(cipherText)
+
+      if (members.containsKey(newMember.aciBytes)) {
+        return false
+      }
+
+      members[newMember.aciBytes] = newMember
+    }
+
+    return true
+  }
+
+  private fun applyAddRequestingMembers(newRequestingMembers: List<DecryptedRequestingMember>): Boolean {
+    for (requestingMember in newRequestingMembers) {
+      if (requestingMembers.containsKey(requestingMember.aciBytes)) {
+        return false
+      }
+
+      requestingMembers[requestingMember.aciBytes] = requestingMember
+    }
+
+    return true
+  }
+
+  private fun applyDeleteRequestingMembers(deleteRequestingMembers: List<ByteString>) {
+    for (aci in deleteRequestingMembers) {
+      if (requestingMembers.remove(aci) == null) {
+        Log.w(TAG, "Deleted member on change not found in group")
+      }
+    }
+  }
+
+  @Throws(NotAbleToApplyGroupV2ChangeException::class)
+  private fun applyPromoteRequestingMembers(change: DecryptedGroupChange): Boolean {
+    for (approvedMember in change.promoteRequestingMembers) {
+      val requestingMember = requestingMembers[approvedMember.aciBytes]
+
+      if (requestingMember == null) {
+        Log.w(TAG, "Deleted member on change not found in group")
+        continue
+      }
+
+      DecryptedGroupUtil.ensureKnownRole(approvedMember.role)
+
+      requestingMembers.remove(approvedMember.aciBytes)
+
+      if (members.containsKey(approvedMember.aciBytes)) {
+        return false
+      }
+
+      members[approvedMember.aciBytes] = DecryptedMember.Builder()
+        .aciBytes(approvedMember.aciBytes)
+        .profileKey(requestingMember.profileKey)
+        .role(approvedMember.role)
+        .build()
+    }
+
+    return true
+  }
+
+  private fun applyAddBannedMembers(newBannedMembers: List<DecryptedBannedMember>): Boolean {
+    val added: MutableSet<ByteString> = HashSet()
+
+    for (bannedMember in newBannedMembers) {
+      if (bannedMember.serviceIdBytes in added) {
+        return false
+      }
+
+      if (bannedMembers.containsKey(bannedMember.serviceIdBytes)) {
+        Log.w(TAG, "Banned member already in banned list")
+      } else {
+        bannedMembers[bannedMember.serviceIdBytes] = bannedMember
+        added += bannedMember.serviceIdBytes
+      }
+    }
+
+    return true
+  }
+
+  private fun applyDeleteBannedMembers(deleteBannedMembers: List<DecryptedBannedMember>) {
+    for (removedMember in deleteBannedMembers) {
+      if (bannedMembers.remove(removedMember.serviceIdBytes) == null) {
+        Log.w(TAG, "Deleted banned member on change not found in banned list")
+      }
+    }
+  }
+}
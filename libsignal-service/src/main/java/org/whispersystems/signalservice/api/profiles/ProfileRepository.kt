@@ -8,9 +8,11 @@ package org.whispersystems.signalservice.api.profiles
 import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.async
 import kotlinx.coroutines.awaitAll
-import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.supervisorScope
 import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
 import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
 import org.signal.core.util.logging.Log
 import org.signal.libsignal.zkgroup.VerificationFailedException
 import org.signal.libsignal.zkgroup.profiles.ExpiringProfileKeyCredential
@@ -28,13 +30,16 @@ class ProfileRepository(private val profileApi: ProfileApi) {
 
   companion object {
     private val TAG = Log.tag(ProfileRepository::class)
+
+    /** Matches the default in-flight window of the websocket, so a large fetch keeps the socket full without queueing behind itself. */
+    const val DEFAULT_MAX_CONCURRENCY = 32
   }
 
   /**
-   * Fetches all profiles in parallel, returning an overall result.
+   * Fetches all profiles in parallel, with at most [maxConcurrency] requests outstanding at a time, returning an overall result.
    * If we hit a rate limit exception or an unexpected runtime exception, execution halts immediately.
    */
-  suspend fun <Id> fetchProfiles(requests: List<ProfileFetchRequest<Id>>): ProfileFetchResult<Id> = coroutineScope {
+  suspend fun <Id> fetchProfiles(requests: List<ProfileFetchRequest<Id>>, maxConcurrency: Int = DEFAULT_MAX_CONCURRENCY): ProfileFetchResult<Id> = supervisorScope {
     val successes: MutableList<IdProfilePair<Id>> = mutableListOf()
     val unregistered: MutableList<Id> = mutableListOf()
     val retryableFailures: MutableSet<Id> = requests.map { it.id }.toMutableSet()
@@ -42,21 +47,24 @@ class ProfileRepository(private val profileApi: ProfileApi) {
     var retryAfter: Duration? = null
 
     val mutex = Mutex()
+    val permits = Semaphore(maxConcurrency)
 
     val tasks: List<Deferred<Any>> = requests.map { request ->
       async {
-        val response: NetworkResult<SignalServiceProfileWithCredential> = if (request.serviceId is ServiceId.ACI && request.profileKey != null && request.fetchExpiringCredential) {
-          profileApi
-            .getVersionedProfileAndCredential(request.serviceId, request.profileKey, request.sealedSenderAccess)
-            .map { SignalServiceProfileWithCredential(it.first, it.second) } // to handle nullability conversion
-        } else if (request.serviceId is ServiceId.ACI && request.profileKey != null) {
-          profileApi
-            .getVersionedProfile(request.serviceId, request.profileKey, request.sealedSenderAccess)
-            .map { SignalServiceProfileWithCredential(it, null) }
-        } else {
-          profileApi
-            .getUnversionedProfile(request.serviceId, request.sealedSenderAccess)
-            .map { SignalServiceProfileWithCredential(it, null) }
+        val response: NetworkResult<SignalServiceProfileWithCredential> = permits.withPermit {
+          if (request.serviceId is ServiceId.ACI && request.profileKey != null && request.fetchExpiringCredential) {
+            profileApi
+              .getVersionedProfileAndCredential(request.serviceId, request.profileKey, request.sealedSenderAccess)
+              .map { SignalServiceProfileWithCredential(it.first, it.second) } // to handle nullability conversion
+          } else if (request.serviceId is ServiceId.ACI && request.profileKey != null) {
+            profileApi
+              .getVersionedProfile(request.serviceId, request.profileKey, request.sealedSenderAccess)
+              .map { SignalServiceProfileWithCredential(it, null) }
+          } else {
+            profileApi
+              .getUnversionedProfile(request.serviceId, request.sealedSenderAccess)
+              .map { SignalServiceProfileWithCredential(it, null) }
+          }
         }
 
         when (response) {
@@ -103,9 +111,10 @@ class ProfileRepository(private val profileApi: ProfileApi) {
       tasks.awaitAll()
     } catch (e: Exception) {
       Log.w(TAG, "Hit an exception that caused us to end early.", e)
+      tasks.forEach { it.cancel() }
     }
 
-    return@coroutineScope ProfileFetchResult(
+    return@supervisorScope ProfileFetchResult(
       successes = successes,
       unregistered = unregistered.toSet(),
       retryableFailures = retryableFailures,
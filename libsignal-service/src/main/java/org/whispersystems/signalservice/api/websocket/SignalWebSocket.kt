@@ -20,6 +20,7 @@ import org.whispersystems.signalservice.api.messages.EnvelopeResponse
 import org.whispersystems.signalservice.api.util.SleepTimer
 import org.whispersystems.signalservice.internal.push.Envelope
 import org.whispersystems.signalservice.internal.websocket.WebSocketConnection
+import org.whispersystems.signalservice.internal.websocket.WebSocketRequestPipeline
 import org.whispersystems.signalservice.internal.websocket.WebSocketRequestMessage
 import org.whispersystems.signalservice.internal.websocket.WebSocketResponseMessage
 import org.whispersystems.signalservice.internal.websocket.WebsocketResponse
@@ -34,12 +35,16 @@ private typealias Listener = () -> Unit
 /**
  * Base wrapper around a [WebSocketConnection] to provide a more developer friend interface to websocket
  * interactions.
+ *
+ * Requests are sent through a [WebSocketRequestPipeline], which allows up to `maxInFlightRequests` to be outstanding at once
+ * across connections, queueing a bounded number beyond that.
  */
 sealed class SignalWebSocket(
   private val connectionFactory: WebSocketFactory,
   private val canConnect: CanConnect,
   val sleepTimer: SleepTimer,
-  private val disconnectTimeout: Duration
+  private val disconnectTimeout: Duration,
+  maxInFlightRequests: Int
 ) {
 
   companion object {
@@ -62,6 +67,10 @@ sealed class SignalWebSocket(
 
   private var delayedDisconnectThread: DelayedDisconnectThread? = null
 
+  private val pipeline = WebSocketRequestPipeline(maxInFlightRequests) { request, timeoutSeconds ->
+    getWebSocket().sendRequest(request, timeoutSeconds)
+  }
+
   val state: Observable<WebSocketConnectionState> = _state
   val stateSnapshot: WebSocketConnectionState
     get() = _state.value!!
@@ -80,6 +89,8 @@ sealed class SignalWebSocket(
    */
   @Synchronized
   fun disconnect() {
+    pipeline.failQueued("$connectionName Disconnected.")
+
     if (connection != null) {
       disposable.dispose()
 
@@ -147,21 +158,12 @@ sealed class SignalWebSocket(
   }
 
   fun request(request: WebSocketRequestMessage): Single<WebsocketResponse> {
-    return try {
-      delayedDisconnectThread?.resetLastInteractionTime()
-      getWebSocket().sendRequest(request)
-    } catch (e: IOException) {
-      Single.error(e)
-    }
+    return request(request, WebSocketConnection.DEFAULT_SEND_TIMEOUT)
   }
 
   fun request(request: WebSocketRequestMessage, timeout: Duration): Single<WebsocketResponse> {
-    return try {
-      delayedDisconnectThread?.resetLastInteractionTime()
-      getWebSocket().sendRequest(request, timeout.inWholeSeconds)
-    } catch (e: IOException) {
-      Single.error(e)
-    }
+    delayedDisconnectThread?.resetLastInteractionTime()
+    return pipeline.request(request, timeout.inWholeSeconds)
   }
 
   @Throws(IOException::class)
@@ -297,7 +299,13 @@ sealed class SignalWebSocket(
   /**
    * WebSocket type for communicating with the server without authenticating. Also known as "unidentified".
    */
-  class UnauthenticatedWebSocket(connectionFactory: WebSocketFactory, canConnect: CanConnect, sleepTimer: SleepTimer, disconnectTimeoutMs: Long) : SignalWebSocket(connectionFactory, canConnect, sleepTimer, disconnectTimeoutMs.milliseconds) {
+  class UnauthenticatedWebSocket @JvmOverloads constructor(
+    connectionFactory: WebSocketFactory,
+    canConnect: CanConnect,
+    sleepTimer: SleepTimer,
+    disconnectTimeoutMs: Long,
+    maxInFlightRequests: Int = WebSocketRequestPipeline.DEFAULT_MAX_IN_FLIGHT
+  ) : SignalWebSocket(connectionFactory, canConnect, sleepTimer, disconnectTimeoutMs.milliseconds, maxInFlightRequests) {
     fun request(requestMessage: WebSocketRequestMessage, sealedSenderAccess: SealedSenderAccess): Single<WebsocketResponse> {
       val headers: MutableList<String> = requestMessage.headers.toMutableList()
       if (sealedSenderAccess.applyHeader()) {
@@ -333,7 +341,13 @@ sealed class SignalWebSocket(
   /**
    * WebSocket type for communicating with the server with authentication. Also known as "identified".
    */
-  class AuthenticatedWebSocket(connectionFactory: WebSocketFactory, canConnect: CanConnect, sleepTimer: SleepTimer, disconnectTimeoutMs: Long) : SignalWebSocket(connectionFactory, canConnect, sleepTimer, disconnectTimeoutMs.milliseconds) {
+  class AuthenticatedWebSocket @JvmOverloads constructor(
+    connectionFactory: WebSocketFactory,
+    canConnect: CanConnect,
+    sleepTimer: SleepTimer,
+    disconnectTimeoutMs: Long,
+    maxInFlightRequests: Int = WebSocketRequestPipeline.DEFAULT_MAX_IN_FLIGHT
+  ) : SignalWebSocket(connectionFactory, canConnect, sleepTimer, disconnectTimeoutMs.milliseconds, maxInFlightRequests) {
 
     /**
      * The reads a batch of messages off of the websocket.
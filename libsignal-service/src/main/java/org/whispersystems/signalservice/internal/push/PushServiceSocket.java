@@ -87,10 +87,12 @@ import org.whispersystems.signalservice.internal.push.exceptions.MismatchedDevic
 import org.whispersystems.signalservice.internal.push.exceptions.NotInGroupException;
 import org.whispersystems.signalservice.internal.push.exceptions.StaleDevicesException;
 import org.whispersystems.signalservice.internal.push.http.CancelationSignal;
+import org.whispersystems.signalservice.internal.push.http.ChunkedAttachmentUploader;
 import org.whispersystems.signalservice.internal.push.http.DigestingRequestBody;
 import org.whispersystems.signalservice.internal.push.http.NoCipherOutputStreamFactory;
 import org.whispersystems.signalservice.internal.push.http.OutputStreamFactory;
 import org.whispersystems.signalservice.internal.push.http.ResumableUploadSpec;
+import org.whispersystems.signalservice.internal.push.http.SegmentedDownloader;
 import org.whispersystems.signalservice.internal.storage.protos.ReadOperation;
 import org.whispersystems.signalservice.internal.storage.protos.StorageItems;
 import org.whispersystems.signalservice.internal.storage.protos.StorageManifest;
@@ -103,6 +105,7 @@ import org.whispersystems.signalservice.internal.util.Util;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -427,11 +430,33 @@ public class PushServiceSocket {
   public void retrieveBackup(int cdnNumber, Map<String, String> headers, String cdnPath, File destination, long maxSizeBytes, ProgressListener listener)
       throws MissingConfigurationException, IOException
   {
-    downloadFromCdn(destination, cdnNumber, headers, cdnPath, maxSizeBytes, listener);
+    retrieveBackup(cdnNumber, headers, cdnPath, destination, maxSizeBytes, listener, null);
+  }
+
+  /**
+   * @param segmentedDownloader If present, the backup is downloaded as parallel byte ranges through it rather than in a single request.
+   */
+  public void retrieveBackup(int cdnNumber, Map<String, String> headers, String cdnPath, File destination, long maxSizeBytes, ProgressListener listener, @Nullable SegmentedDownloader segmentedDownloader)
+      throws MissingConfigurationException, IOException
+  {
+    if (segmentedDownloader != null) {
+      downloadFromCdnInSegments(destination, cdnNumber, headers, cdnPath, maxSizeBytes, listener, segmentedDownloader);
+    } else {
+      downloadFromCdn(destination, cdnNumber, headers, cdnPath, maxSizeBytes, listener);
+    }
   }
 
   public void retrieveAttachment(int cdnNumber, Map<String, String> headers, SignalServiceAttachmentRemoteId remoteId, File destination, long maxSizeBytes, ProgressListener listener)
       throws IOException, MissingConfigurationException
+  {
+    retrieveAttachment(cdnNumber, headers, remoteId, destination, maxSizeBytes, listener, null);
+  }
+
+  /**
+   * @param segmentedDownloader If present, the attachment is downloaded as parallel byte ranges through it rather than in a single request.
+   */
+  public void retrieveAttachment(int cdnNumber, Map<String, String> headers, SignalServiceAttachmentRemoteId remoteId, File destination, long maxSizeBytes, ProgressListener listener, @Nullable SegmentedDownloader segmentedDownloader)
+      throws IOException, MissingConfigurationException
   {
     final String path;
     if (remoteId instanceof SignalServiceAttachmentRemoteId.V2) {
@@ -446,7 +471,12 @@ public class PushServiceSocket {
     } else {
       throw new IllegalArgumentException("Invalid cdnPath type: " + remoteId.getClass().getSimpleName());
     }
-    downloadFromCdn(destination, cdnNumber, headers, path, maxSizeBytes, listener);
+
+    if (segmentedDownloader != null) {
+      downloadFromCdnInSegments(destination, cdnNumber, headers, path, maxSizeBytes, listener, segmentedDownloader);
+    } else {
+      downloadFromCdn(destination, cdnNumber, headers, path, maxSizeBytes, listener);
+    }
   }
 
   public byte[] retrieveSticker(byte[] packId, int stickerId)
@@ -612,6 +642,50 @@ public class PushServiceSocket {
     }
   }
 
+  /**
+   * Like {@link #uploadAttachment(PushAttachmentData)}, but sends the attachment in chunks through {@code uploader}, reporting each chunk the CDN
+   * acknowledges to {@code checkpointListener}.
+   */
+  public AttachmentDigest uploadAttachmentInChunks(PushAttachmentData attachment,
+                                                   ChunkedAttachmentUploader uploader,
+                                                   ChunkedAttachmentUploader.CheckpointListener checkpointListener)
+      throws IOException
+  {
+    ResumableUploadSpec spec = attachment.getResumableUploadSpec();
+
+    if (spec.getExpirationTimestamp() < System.currentTimeMillis()) {
+      throw new ResumeLocationInvalidException();
+    }
+
+    ConnectionHolder connectionHolder = getRandom(cdnClientsMap.get(spec.getCdnNumber() == 2 ? 2 : 3), random);
+    OkHttpClient     okHttpClient     = connectionHolder.getClient()
+                                                        .newBuilder()
+                                                        .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
+                                                        .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
+                                                        .build();
+
+    long                                     startOffset;
+    ChunkedAttachmentUploader.ChunkTransport transport;
+
+    if (spec.getCdnNumber() == 2) {
+      startOffset = getResumeInfoCdn2(spec.getResumeLocation(), attachment.getDataSize()).contentStart;
+      transport   = (data, dataOffset, length, uploadOffset, uploadLength) -> uploadChunkToCdn2(okHttpClient, connectionHolder, spec.getResumeLocation(), data, dataOffset, length, uploadOffset, uploadLength);
+    } else {
+      startOffset = getResumeInfoCdn3(spec.getResumeLocation(), spec.getHeaders()).contentStart;
+      transport   = (data, dataOffset, length, uploadOffset, uploadLength) -> uploadChunkToCdn3(okHttpClient, connectionHolder, spec.getResumeLocation(), spec.getHeaders(), data, dataOffset, length, uploadOffset, uploadLength);
+    }
+
+    return uploader.upload(attachment.getData(),
+                           attachment.getOutputStreamFactory(),
+                           attachment.getDataSize(),
+                           attachment.getIncremental(),
+                           startOffset,
+                           transport,
+                           attachment.getListener(),
+                           attachment.getCancelationSignal(),
+                           checkpointListener);
+  }
+
   private void downloadFromCdn(File destination, int cdnNumber, Map<String, String> headers, String path, long maxSizeBytes, ProgressListener listener)
       throws IOException, MissingConfigurationException
   {
@@ -695,6 +769,145 @@ public class PushServiceSocket {
     }
   }
 
+  private void downloadFromCdnInSegments(File destination, int cdnNumber, Map<String, String> headers, String path, long maxSizeBytes, ProgressListener listener, SegmentedDownloader downloader)
+      throws IOException, MissingConfigurationException
+  {
+    ConnectionHolder[] cdnNumberClients = cdnClientsMap.get(cdnNumber);
+    if (cdnNumberClients == null) {
+      throw new MissingConfigurationException("Attempted to download from unsupported CDN number: " + cdnNumber + ", Our configuration supports: " + cdnClientsMap.keySet());
+    }
+    ConnectionHolder   connectionHolder = getRandom(cdnNumberClients, random);
+    OkHttpClient       okHttpClient     = connectionHolder.getClient()
+                                                          .newBuilder()
+                                                          .connectTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
+                                                          .readTimeout(soTimeoutMillis, TimeUnit.MILLISECONDS)
+                                                          .build();
+
+    downloader.download(destination, new SegmentedDownloader.RangeTransport() {
+      @Override
+      public long getLength() throws IOException {
+        return getCdnContentLength(okHttpClient, connectionHolder, headers, path);
+      }
+
+      @Override
+      public @Nonnull InputStream openRange(long start, long endInclusive) throws IOException {
+        return openCdnRange(okHttpClient, connectionHolder, headers, path, start, endInclusive);
+      }
+    }, maxSizeBytes, listener);
+  }
+
+  private long getCdnContentLength(OkHttpClient okHttpClient, ConnectionHolder connectionHolder, Map<String, String> headers, String path)
+      throws PushNetworkException, NonSuccessfulResponseCodeException
+  {
+    Request.Builder request = new Request.Builder().url(connectionHolder.getUrl() + "/" + path).head();
+
+    if (connectionHolder.getHostHeader().isPresent()) {
+      request.addHeader("Host", connectionHolder.getHostHeader().get());
+    }
+
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      request.addHeader(header.getKey(), header.getValue());
+    }
+
+    Call call = okHttpClient.newCall(request.build());
+
+    synchronized (connections) {
+      connections.add(call);
+    }
+
+    try (Response response = call.execute()) {
+      if (response.isSuccessful()) {
+        String contentLength = response.header("Content-Length");
+        if (contentLength == null) {
+          throw new PushNetworkException("No Content-Length in response!");
+        }
+        return Long.parseLong(contentLength);
+      } else {
+        throw new NonSuccessfulResponseCodeException(response.code(), "Response: " + response);
+      }
+    } catch (NonSuccessfulResponseCodeException | PushNetworkException e) {
+      throw e;
+    } catch (IOException | NumberFormatException e) {
+      throw new PushNetworkException(e);
+    } finally {
+      synchronized (connections) {
+        connections.remove(call);
+      }
+    }
+  }
+
+  /**
+   * Opens a stream over one byte range of a CDN file. The call stays tracked in {@link #connections} until the stream is closed.
+   */
+  private InputStream openCdnRange(OkHttpClient okHttpClient, ConnectionHolder connectionHolder, Map<String, String> headers, String path, long start, long endInclusive)
+      throws PushNetworkException, NonSuccessfulResponseCodeException
+  {
+    Request.Builder request = new Request.Builder().url(connectionHolder.getUrl() + "/" + path)
+                                                   .get()
+                                                   .addHeader("Range", "bytes=" + start + "-" + endInclusive)
+                                                   .addHeader("Accept-Encoding", "identity");
+
+    if (connectionHolder.getHostHeader().isPresent()) {
+      request.addHeader("Host", connectionHolder.getHostHeader().get());
+    }
+
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      request.addHeader(header.getKey(), header.getValue());
+    }
+
+    Call call = okHttpClient.newCall(request.build());
+
+    synchronized (connections) {
+      connections.add(call);
+    }
+
+    Response response  = null;
+    boolean  handedOff = false;
+    try {
+      response = call.execute();
+
+      if (response.code() == 416) {
+        throw new RangeException(start);
+      } else if (response.code() != 206) {
+        throw new NonSuccessfulResponseCodeException(response.code(), "Response: " + response);
+      }
+
+      String contentRange = response.header("Content-Range");
+      if (contentRange == null || !contentRange.startsWith("bytes " + start + "-" + endInclusive + "/")) {
+        throw new PushNetworkException("Unexpected Content-Range: " + contentRange);
+      }
+
+      final Response rangeResponse = response;
+      handedOff = true;
+
+      return new FilterInputStream(rangeResponse.body().byteStream()) {
+        @Override
+        public void close() throws IOException {
+          try {
+            rangeResponse.close();
+          } finally {
+            synchronized (connections) {
+              connections.remove(call);
+            }
+          }
+        }
+      };
+    } catch (NonSuccessfulResponseCodeException | PushNetworkException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new PushNetworkException(e);
+    } finally {
+      if (!handedOff) {
+        if (response != null) {
+          response.close();
+        }
+        synchronized (connections) {
+          connections.remove(call);
+        }
+      }
+    }
+  }
+
   public @Nonnull ZonedDateTime getCdnLastModifiedTime(int cdnNumber, Map<String, String> headers, String path) throws MissingConfigurationException, PushNetworkException, NonSuccessfulResponseCodeException, MalformedResponseException {
     ConnectionHolder[] cdnNumberClients = cdnClientsMap.get(cdnNumber);
     if (cdnNumberClients == null) {
@@ -989,6 +1202,104 @@ public class PushServiceSocket {
     }
   }
 
+  /**
+   * Sends one chunk of a GCS resumable upload.
+   *
+   * @return How much of the upload GCS has committed.
+   */
+  private long uploadChunkToCdn2(OkHttpClient okHttpClient, ConnectionHolder connectionHolder, String resumableUrl, byte[] data, int dataOffset, int length, long uploadOffset, long uploadLength)
+      throws IOException
+  {
+    String contentRange = String.format(Locale.US, "bytes %d-%d/%d", uploadOffset, uploadOffset + length - 1, uploadLength);
+
+    Request.Builder request = new Request.Builder().url(buildConfiguredUrl(connectionHolder, resumableUrl))
+                                                   .put(RequestBody.create(MediaType.get("application/octet-stream"), data, dataOffset, length))
+                                                   .addHeader("Content-Range", contentRange);
+
+    if (connectionHolder.getHostHeader().isPresent()) {
+      request.header("host", connectionHolder.getHostHeader().get());
+    }
+
+    Call call = okHttpClient.newCall(request.build());
+
+    synchronized (connections) {
+      connections.add(call);
+    }
+
+    try (Response response = call.execute()) {
+      if (response.isSuccessful()) {
+        return uploadLength;
+      } else if (response.code() == 308) {
+        String rangeCompleted = response.header("Range");
+        return rangeCompleted == null ? 0 : Long.parseLong(rangeCompleted.split("-")[1]) + 1;
+      } else if (response.code() == 404) {
+        throw new ResumeLocationInvalidException();
+      } else {
+        throw new NonSuccessfulResumableUploadResponseCodeException(response.code(), "Response: " + response);
+      }
+    } catch (PushNetworkException | NonSuccessfulResponseCodeException e) {
+      throw e;
+    } catch (IOException e) {
+      if (e instanceof StreamResetException) {
+        throw e;
+      }
+      throw new PushNetworkException(e);
+    } finally {
+      synchronized (connections) {
+        connections.remove(call);
+      }
+    }
+  }
+
+  /**
+   * Sends one chunk of a TUS upload.
+   *
+   * @return How much of the upload the CDN has committed.
+   */
+  private long uploadChunkToCdn3(OkHttpClient okHttpClient, ConnectionHolder connectionHolder, String resumableUrl, Map<String, String> headers, byte[] data, int dataOffset, int length, long uploadOffset, long uploadLength)
+      throws IOException
+  {
+    Request.Builder request = new Request.Builder().url(buildConfiguredUrl(connectionHolder, resumableUrl))
+                                                   .patch(RequestBody.create(MediaType.get("application/offset+octet-stream"), data, dataOffset, length))
+                                                   .addHeader("Upload-Offset", String.valueOf(uploadOffset))
+                                                   .addHeader("Upload-Length", String.valueOf(uploadLength))
+                                                   .addHeader("Tus-Resumable", "1.0.0");
+
+    for (Map.Entry<String, String> entry : headers.entrySet()) {
+      request.addHeader(entry.getKey(), entry.getValue());
+    }
+
+    if (connectionHolder.getHostHeader().isPresent()) {
+      request.header("host", connectionHolder.getHostHeader().get());
+    }
+
+    Call call = okHttpClient.newCall(request.build());
+
+    synchronized (connections) {
+      connections.add(call);
+    }
+
+    try (Response response = call.execute()) {
+      if (response.isSuccessful()) {
+        String committed = response.header("Upload-Offset");
+        return committed != null ? Long.parseLong(committed) : uploadOffset + length;
+      } else {
+        throw new NonSuccessfulResponseCodeException(response.code(), "Response: " + response, response.body().string());
+      }
+    } catch (PushNetworkException | NonSuccessfulResponseCodeException e) {
+      throw e;
+    } catch (IOException e) {
+      if (e instanceof StreamResetException) {
+        throw e;
+      }
+      throw new PushNetworkException(e);
+    } finally {
+      synchronized (connections) {
+        connections.remove(call);
+      }
+    }
+  }
+
   private ResumeInfo getResumeInfoCdn2(String resumableUrl, long contentLength) throws IOException {
     ConnectionHolder connectionHolder = getRandom(cdnClientsMap.get(2), random);
     OkHttpClient     okHttpClient     = connectionHolder.getClient()
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.internal.push.http
+
+import org.signal.libsignal.protocol.logging.Log
+import org.whispersystems.signalservice.api.messages.AttachmentTransferProgress
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachment
+import org.whispersystems.signalservice.internal.crypto.AttachmentDigest
+import java.io.IOException
+import java.io.InputStream
+import java.io.InterruptedIOException
+import java.io.OutputStream
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.LinkedBlockingQueue
+import kotlin.math.min
+
+/**
+ * Uploads an attachment to a resumable upload location in fixed-size chunks, encrypting ahead of the network on a separate thread.
+ *
+ * Both of our CDNs' resumable protocols require data to arrive in order, so chunks are sent one at a time, and the concurrency is between encryption and
+ * upload: while one chunk is in flight, up to [maxChunksAhead] more are encrypted and waiting. That bounds memory use to roughly
+ * `chunkSize * (maxChunksAhead + 1)`.
+ *
+ * Every acknowledged chunk is reported to a [CheckpointListener] with how much the CDN now has. Digest and MAC state can't be serialized, so resuming
+ * re-encrypts the prefix the CDN already has without sending it, the same way [DigestingRequestBody] does.
+ */
+class ChunkedAttachmentUploader @JvmOverloads constructor(
+  private val chunkSize: Int = DEFAULT_CHUNK_SIZE,
+  private val maxChunksAhead: Int = DEFAULT_MAX_CHUNKS_AHEAD
+) {
+
+  companion object {
+    private const val TAG = "ChunkedAttachmentUploader"
+
+    /** GCS requires every chunk but the last to be a multiple of this. */
+    const val CHUNK_ALIGNMENT = 256 * 1024
+
+    const val DEFAULT_CHUNK_SIZE = 16 * CHUNK_ALIGNMENT
+    const val DEFAULT_MAX_CHUNKS_AHEAD = 2
+
+    /** How many times we'll follow up on a chunk the CDN only partially committed before giving up. */
+    private const val MAX_PARTIAL_COMMITS = 3
+  }
+
+  init {
+    require(chunkSize > 0 && chunkSize % CHUNK_ALIGNMENT == 0) { "Chunk size must be a positive multiple of $CHUNK_ALIGNMENT" }
+    require(maxChunksAhead > 0)
+  }
+
+  /**
+   * Encrypts [inputStream] with [outputStreamFactory] and sends everything from [startOffset] onwards through [transport].
+   *
+   * @param contentLength The length of the ciphertext, which is the total length of the upload.
+   * @param startOffset How much of the upload the CDN already has, as reported by its resume endpoint.
+   * @return The digests of the whole ciphertext, including any prefix that was already uploaded.
+   */
+  @Throws(IOException::class)
+  fun upload(
+    inputStream: InputStream,
+    outputStreamFactory: OutputStreamFactory,
+    contentLength: Long,
+    incremental: Boolean,
+    startOffset: Long,
+    transport: ChunkTransport,
+    progressListener: SignalServiceAttachment.ProgressListener?,
+    cancelationSignal: CancelationSignal?,
+    checkpointListener: CheckpointListener?
+  ): AttachmentDigest {
+    require(startOffset in 0..contentLength)
+
+    if (startOffset > 0) {
+      Log.i(TAG, "Resuming upload at $startOffset of $contentLength bytes.")
+    }
+
+    val freeBuffers = ArrayBlockingQueue<ByteArray>(maxChunksAhead + 1)
+    val results = LinkedBlockingQueue<EncryptResult>()
+    val chunker = ChunkingOutputStream(startOffset, contentLength, freeBuffers, results)
+
+    val encryptor = Thread({
+      try {
+        val digest = DigestingRequestBody.encrypt(inputStream, outputStreamFactory, chunker, contentLength, incremental, null, cancelationSignal)
+        chunker.finish()
+        results.put(EncryptResult.Done(digest))
+      } catch (e: InterruptedException) {
+        results.offer(EncryptResult.Failed(InterruptedIOException()))
+      } catch (e: Throwable) {
+        results.offer(EncryptResult.Failed(e))
+      }
+    }, "chunked-upload-encryptor")
+
+    encryptor.start()
+
+    try {
+      while (true) {
+        when (val result = results.take()) {
+          is EncryptResult.Chunk -> {
+            if (cancelationSignal?.isCanceled == true) {
+              throw IOException("Canceled!")
+            }
+
+            val committed = sendChunk(transport, result, contentLength)
+            freeBuffers.offer(result.data)
+
+            checkpointListener?.onCheckpoint(committed)
+            progressListener?.onAttachmentProgress(AttachmentTransferProgress(total = contentLength, transmitted = committed))
+          }
+          is EncryptResult.Done -> return result.digest
+          is EncryptResult.Failed -> throw result.error as? IOException ?: IOException(result.error)
+        }
+      }
+    } catch (e: InterruptedException) {
+      throw InterruptedIOException()
+    } finally {
+      encryptor.interrupt()
+      encryptor.join()
+    }
+  }
+
+  /**
+   * Sends a chunk, following up with whatever the CDN didn't commit if it only takes part of it.
+   *
+   * @return How much of the upload the CDN has after this chunk.
+   */
+  private fun sendChunk(transport: ChunkTransport, chunk: EncryptResult.Chunk, contentLength: Long): Long {
+    val end = chunk.offset + chunk.length
+    var committed = chunk.offset
+    var partialCommits = 0
+
+    while (committed < end) {
+      val sendOffset = (committed - chunk.offset).toInt()
+      val newCommitted = transport.uploadChunk(chunk.data, sendOffset, chunk.length - sendOffset, committed, contentLength)
+
+      if (newCommitted < committed || newCommitted > end) {
+        throw IOException("CDN reported $newCommitted bytes committed after we sent from $committed!")
+      }
+
+      if (newCommitted < end) {
+        partialCommits++
+        Log.w(TAG, "CDN only committed up to $newCommitted of a chunk ending at $end. ($partialCommits)")
+        if (partialCommits > MAX_PARTIAL_COMMITS) {
+          throw IOException("CDN keeps partially committing chunks!")
+        }
+      }
+
+      committed = newCommitted
+    }
+
+    return committed
+  }
+
+  /**
+   * Sends one chunk of an upload to the CDN.
+   */
+  fun interface ChunkTransport {
+    /**
+     * Sends [length] bytes of [data], starting at [dataOffset], which belong at [uploadOffset] in an upload of [uploadLength] bytes.
+     *
+     * @return How many bytes of the upload the CDN now has, which is where the next chunk should start.
+     */
+    @Throws(IOException::class)
+    fun uploadChunk(data: ByteArray, dataOffset: Int, length: Int, uploadOffset: Long, uploadLength: Long): Long
+  }
+
+  /**
+   * Told how much of an upload the CDN has committed after each chunk, so the caller can persist it.
+   */
+  fun interface CheckpointListener {
+    fun onCheckpoint(committedLength: Long)
+  }
+
+  private sealed interface EncryptResult {
+    class Chunk(val offset: Long, val data: ByteArray, val length: Int) : EncryptResult
+    class Done(val digest: AttachmentDigest) : EncryptResult
+    class Failed(val error: Throwable) : EncryptResult
+  }
+
+  /**
+   * Cuts the ciphertext into chunks starting at [startOffset], dropping everything before it. Buffers are recycled through [freeBuffers], and no more
+   * than `maxChunksAhead + 1` are ever allocated, which is what keeps encryption from running too far ahead.
+   */
+  private inner class ChunkingOutputStream(
+    private val startOffset: Long,
+    private val contentLength: Long,
+    private val freeBuffers: ArrayBlockingQueue<ByteArray>,
+    private val results: LinkedBlockingQueue<EncryptResult>
+  ) : OutputStream() {
+
+    private var position = 0L
+    private var allocated = 0
+
+    private var current: ByteArray? = null
+    private var currentOffset = 0L
+    private var currentLength = 0
+
+    override fun write(b: Int) {
+      write(byteArrayOf(b.toByte()), 0, 1)
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+      var offset = off
+      var remaining = len
+
+      if (position < startOffset) {
+        val skip = min(remaining.toLong(), startOffset - position).toInt()
+        position += skip
+        offset += skip
+        remaining -= skip
+      }
+
+      if (position + remaining > contentLength) {
+        throw IOException("Ciphertext is longer than the expected $contentLength bytes!")
+      }
+
+      while (remaining > 0) {
+        val buffer = current ?: obtainBuffer().also {
+          current = it
+          currentOffset = position
+          currentLength = 0
+        }
+
+        val toCopy = min(remaining, buffer.size - currentLength)
+        System.arraycopy(b, offset, buffer, currentLength, toCopy)
+
+        currentLength += toCopy
+        position += toCopy
+        offset += toCopy
+        remaining -= toCopy
+
+        if (currentLength == buffer.size) {
+          emit()
+        }
+      }
+    }
+
+    /**
+     * Sends off the final partial chunk. Not done in [close], since the cipher streams close their output on error paths too.
+     */
+    fun finish() {
+      if (position != contentLength) {
+        throw IOException("Ciphertext is $position bytes, but expected $contentLength!")
+      }
+
+      if (current != null && currentLength > 0) {
+        emit()
+      }
+    }
+
+    private fun emit() {
+      results.put(EncryptResult.Chunk(currentOffset, current!!, currentLength))
+      current = null
+    }
+
+    private fun obtainBuffer(): ByteArray {
+      val size = min(chunkSize.toLong(), contentLength - position).toInt()
+
+      val buffer = freeBuffers.poll() ?: when {
+        allocated <= maxChunksAhead -> {
+          allocated++
+          ByteArray(size)
+        }
+        else -> {
+          try {
+            freeBuffers.take()
+          } catch (e: InterruptedException) {
+            throw InterruptedIOException()
+          }
+        }
+      }
+
+      return if (buffer.size == size) buffer else buffer.copyOf(size)
+    }
+  }
+}
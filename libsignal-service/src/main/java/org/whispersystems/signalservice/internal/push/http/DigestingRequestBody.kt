@@ -15,6 +15,7 @@ import org.whispersystems.signalservice.internal.crypto.AttachmentDigest
 import java.io.ByteArrayOutputStream
 import java.io.IOException
 import java.io.InputStream
+import java.io.OutputStream
 
 /**
  * This [RequestBody] encrypts the data written to it before it is sent.
@@ -42,66 +43,84 @@ class DigestingRequestBody(
 
   @Throws(IOException::class)
   override fun writeTo(sink: BufferedSink) {
-    val digestStream = ByteArrayOutputStream()
     val inner = SkippingOutputStream(contentStart, NonClosingOutputStream(sink.outputStream()))
-    val isIncremental = incremental && outputStreamFactory is AttachmentCipherOutputStreamFactory
-    val sizeChoice: ChunkSizeChoice = ChunkSizeChoice.inferChunkSize(contentLength.toInt())
-    val outputStream: DigestingOutputStream = if (isIncremental) {
-      (outputStreamFactory as AttachmentCipherOutputStreamFactory).createIncrementalFor(inner, contentLength, sizeChoice, digestStream)
-    } else {
-      outputStreamFactory.createFor(inner)
-    }
+    attachmentDigest = encrypt(inputStream, outputStreamFactory, inner, contentLength, incremental, progressListener, cancelationSignal)
+  }
 
-    val buffer = ByteArray(16 * 1024)
-    var read: Int
+  override fun contentLength(): Long {
+    return if (contentLength > 0) contentLength - contentStart else -1
+  }
 
-    while (inputStream.read(buffer, 0, buffer.size).also { read = it } != -1) {
-      if (cancelationSignal?.isCanceled == true) {
-        throw IOException("Canceled!")
-      }
-      outputStream.write(buffer, 0, read)
-      progressListener?.onAttachmentProgress(AttachmentTransferProgress(total = contentLength, transmitted = outputStream.totalBytesWritten))
-    }
+  override fun isOneShot(): Boolean {
+    return true
+  }
 
-    outputStream.flush()
+  companion object {
+    const val TAG = "DigestingRequestBody"
 
-    val incrementalDigest: ByteArray? = if (isIncremental) {
-      if (contentLength != outputStream.totalBytesWritten) {
-        Log.w(TAG, "Content uploaded ${logMessage(outputStream.totalBytesWritten, contentLength)} bytes compared to expected!")
+    /**
+     * Encrypts all of [inputStream] into [output] and returns the resulting digests. Shared with [ChunkedAttachmentUploader], so that both upload paths
+     * produce the same ciphertext and digests.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun encrypt(
+      inputStream: InputStream,
+      outputStreamFactory: OutputStreamFactory,
+      output: OutputStream,
+      contentLength: Long,
+      incremental: Boolean,
+      progressListener: SignalServiceAttachment.ProgressListener?,
+      cancelationSignal: CancelationSignal?
+    ): AttachmentDigest {
+      val digestStream = ByteArrayOutputStream()
+      val isIncremental = incremental && outputStreamFactory is AttachmentCipherOutputStreamFactory
+      val sizeChoice: ChunkSizeChoice = ChunkSizeChoice.inferChunkSize(contentLength.toInt())
+      val outputStream: DigestingOutputStream = if (isIncremental) {
+        (outputStreamFactory as AttachmentCipherOutputStreamFactory).createIncrementalFor(output, contentLength, sizeChoice, digestStream)
       } else {
-        Log.d(TAG, "Wrote the expected number of bytes.")
+        outputStreamFactory.createFor(output)
       }
-      outputStream.close()
-      digestStream.close()
-      digestStream.toByteArray()
-    } else {
-      outputStream.close()
-      null
-    }
 
-    val incrementalDigestChunkSize: Int = if (incrementalDigest?.isNotEmpty() == true) sizeChoice.sizeInBytes else 0
+      val buffer = ByteArray(16 * 1024)
+      var read: Int
 
-    attachmentDigest = AttachmentDigest(outputStream.transmittedDigest, incrementalDigest, incrementalDigestChunkSize)
-  }
+      while (inputStream.read(buffer, 0, buffer.size).also { read = it } != -1) {
+        if (cancelationSignal?.isCanceled == true) {
+          throw IOException("Canceled!")
+        }
+        outputStream.write(buffer, 0, read)
+        progressListener?.onAttachmentProgress(AttachmentTransferProgress(total = contentLength, transmitted = outputStream.totalBytesWritten))
+      }
 
-  override fun contentLength(): Long {
-    return if (contentLength > 0) contentLength - contentStart else -1
-  }
+      outputStream.flush()
 
-  override fun isOneShot(): Boolean {
-    return true
-  }
+      val incrementalDigest: ByteArray? = if (isIncremental) {
+        if (contentLength != outputStream.totalBytesWritten) {
+          Log.w(TAG, "Content uploaded ${logMessage(outputStream.totalBytesWritten, contentLength)} bytes compared to expected!")
+        } else {
+          Log.d(TAG, "Wrote the expected number of bytes.")
+        }
+        outputStream.close()
+        digestStream.close()
+        digestStream.toByteArray()
+      } else {
+        outputStream.close()
+        null
+      }
 
-  private fun logMessage(actual: Long, expected: Long): String {
-    val difference = actual - expected
-    return if (difference > 0) {
-      "+$difference"
-    } else {
-      difference.toString()
+      val incrementalDigestChunkSize: Int = if (incrementalDigest?.isNotEmpty() == true) sizeChoice.sizeInBytes else 0
+
+      return AttachmentDigest(outputStream.transmittedDigest, incrementalDigest, incrementalDigestChunkSize)
     }
-  }
 
-  companion object {
-    const val TAG = "DigestingRequestBody"
+    private fun logMessage(actual: Long, expected: Long): String {
+      val difference = actual - expected
+      return if (difference > 0) {
+        "+$difference"
+      } else {
+        difference.toString()
+      }
+    }
   }
 }
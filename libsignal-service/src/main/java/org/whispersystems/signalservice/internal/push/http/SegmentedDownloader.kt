@@ -0,0 +1,341 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.internal.push.http
+
+import org.signal.libsignal.protocol.logging.Log
+import org.whispersystems.signalservice.api.messages.AttachmentTransferProgress
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachment
+import org.whispersystems.signalservice.api.push.exceptions.PushNetworkException
+import org.whispersystems.signalservice.api.push.exceptions.RangeException
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.BitSet
+import java.util.Collections
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Downloads a file from the CDN as several byte ranges in parallel, writing each one into place in a preallocated destination file.
+ *
+ * Which segments are complete is kept in a small state file next to the destination, so an interrupted download resumes with exactly the segments it
+ * was missing. A segment's data is synced to disk before it's recorded as complete, so a crash can't leave the state claiming data that was never
+ * written. A destination left behind by a plain sequential download is also picked up, since that is always a contiguous prefix. Callers that give up
+ * on a download should remove it with [deletePartialDownload], so the state file doesn't outlive it.
+ *
+ * Segments are only checked for length here. The digest and incremental MAC are still verified when the finished file is decrypted: libsignal's
+ * incremental MAC validator only works front to back, so it can't check segments that arrive out of order.
+ */
+class SegmentedDownloader @JvmOverloads constructor(
+  private val segmentSize: Int = DEFAULT_SEGMENT_SIZE,
+  private val parallelism: Int = DEFAULT_PARALLELISM
+) {
+
+  companion object {
+    private const val TAG = "SegmentedDownloader"
+
+    const val DEFAULT_SEGMENT_SIZE = 2 * 1024 * 1024
+    const val DEFAULT_PARALLELISM = 4
+
+    private const val STATE_VERSION = 1
+    private const val BUFFER_SIZE = 32 * 1024
+
+    /**
+     * Where the segment state for [destination] is kept.
+     */
+    @JvmStatic
+    fun getStateFile(destination: File): File {
+      return File(destination.path + ".segments")
+    }
+
+    /**
+     * Deletes a partially downloaded [destination] along with its segment state.
+     *
+     * @return True if [destination] no longer exists.
+     */
+    @JvmStatic
+    fun deletePartialDownload(destination: File): Boolean {
+      val stateFile = getStateFile(destination)
+      File(stateFile.path + ".tmp").delete()
+      stateFile.delete()
+      return destination.delete() || !destination.exists()
+    }
+  }
+
+  init {
+    require(segmentSize > 0)
+    require(parallelism > 0)
+  }
+
+  /**
+   * Downloads everything [transport] serves into [destination], resuming whatever is already there.
+   */
+  @Throws(IOException::class)
+  fun download(destination: File, transport: RangeTransport, maxSizeBytes: Long, listener: SignalServiceAttachment.ProgressListener?) {
+    val totalLength = transport.getLength()
+    if (totalLength > maxSizeBytes) {
+      throw PushNetworkException("Response exceeds max size!")
+    }
+
+    val stateFile = getStateFile(destination)
+    val state = loadState(destination, stateFile, totalLength)
+    val missing = (0 until state.segmentCount).filterNot { state.isDone(it) }
+
+    if (missing.size < state.segmentCount) {
+      Log.i(TAG, "Resuming download with ${missing.size} of ${state.segmentCount} segments missing.")
+    }
+
+    RandomAccessFile(destination, "rw").use { file ->
+      file.setLength(totalLength)
+      state.save(stateFile)
+
+      val downloaded = AtomicLong(totalLength - missing.sumOf { state.lengthOf(it) })
+      val next = AtomicInteger(0)
+      val failure = AtomicReference<Throwable?>(null)
+      val openStreams: MutableSet<Closeable> = Collections.synchronizedSet(HashSet())
+      val executor = Executors.newFixedThreadPool(minOf(parallelism, missing.size).coerceAtLeast(1))
+
+      try {
+        val workers: List<Future<*>> = List(minOf(parallelism, missing.size)) {
+          executor.submit(
+            Runnable {
+              try {
+                while (failure.get() == null) {
+                  val index = missing.getOrNull(next.getAndIncrement()) ?: break
+                  downloadSegment(file.channel, transport, state, index, totalLength, downloaded, failure, openStreams, listener)
+                  file.channel.force(false)
+                  state.markDone(index, stateFile)
+                }
+              } catch (e: Throwable) {
+                if (failure.compareAndSet(null, e)) {
+                  synchronized(openStreams) {
+                    openStreams.forEach { it.closeQuietly() }
+                  }
+                }
+              }
+            }
+          )
+        }
+
+        try {
+          workers.forEach { it.get() }
+        } catch (e: InterruptedException) {
+          failure.compareAndSet(null, e)
+        }
+      } finally {
+        executor.shutdownNow()
+      }
+
+      when (val error = failure.get()) {
+        null -> Unit
+        is IOException -> throw error
+        is RuntimeException -> throw error
+        else -> throw PushNetworkException(Exception(error))
+      }
+
+      file.channel.force(false)
+    }
+
+    if (!stateFile.delete()) {
+      Log.w(TAG, "Failed to delete segment state.")
+    }
+  }
+
+  private fun downloadSegment(
+    channel: FileChannel,
+    transport: RangeTransport,
+    state: SegmentState,
+    index: Int,
+    totalLength: Long,
+    downloaded: AtomicLong,
+    failure: AtomicReference<Throwable?>,
+    openStreams: MutableSet<Closeable>,
+    listener: SignalServiceAttachment.ProgressListener?
+  ) {
+    val start = state.startOf(index)
+    val length = state.lengthOf(index)
+    val buffer = ByteArray(BUFFER_SIZE)
+
+    transport.openRange(start, start + length - 1).use { input ->
+      openStreams += input
+
+      try {
+        var position = start
+        var read: Int
+
+        while (input.read(buffer).also { read = it } != -1) {
+          if (failure.get() != null) {
+            throw PushNetworkException("Another segment failed.")
+          }
+
+          if (position + read > start + length) {
+            throw PushNetworkException("Segment $index was longer than requested!")
+          }
+
+          val byteBuffer = ByteBuffer.wrap(buffer, 0, read)
+          while (byteBuffer.hasRemaining()) {
+            position += channel.write(byteBuffer, position)
+          }
+
+          val total = downloaded.addAndGet(read.toLong())
+          if (listener != null) {
+            listener.onAttachmentProgress(AttachmentTransferProgress(totalLength, total))
+            if (listener.shouldCancel()) {
+              throw PushNetworkException("Canceled by listener check.")
+            }
+          }
+        }
+
+        if (position != start + length) {
+          throw PushNetworkException("Segment $index ended after ${position - start} of $length bytes!")
+        }
+      } finally {
+        openStreams -= input
+      }
+    }
+  }
+
+  private fun loadState(destination: File, stateFile: File, totalLength: Long): SegmentState {
+    val persisted = SegmentState.read(stateFile)
+
+    if (persisted != null) {
+      if (persisted.totalLength == totalLength && persisted.segmentSize == segmentSize && destination.length() == totalLength) {
+        return persisted
+      }
+
+      Log.w(TAG, "Segment state doesn't match the download. Starting over.")
+      FileOutputStream(destination).close()
+      return SegmentState(totalLength, segmentSize)
+    }
+
+    val state = SegmentState(totalLength, segmentSize)
+    val existingLength = destination.length()
+
+    if (existingLength >= totalLength && existingLength > 0) {
+      throw RangeException(existingLength)
+    }
+
+    if (existingLength > 0) {
+      Log.i(TAG, "Picking up a sequential download at $existingLength bytes.")
+      for (index in 0 until state.segmentCount) {
+        if (state.startOf(index) + state.lengthOf(index) <= existingLength) {
+          state.setDone(index)
+        }
+      }
+    }
+
+    return state
+  }
+
+  private fun Closeable.closeQuietly() {
+    try {
+      close()
+    } catch (e: IOException) {
+      // Only closing to abort the request
+    }
+  }
+
+  /**
+   * Serves byte ranges of a single file.
+   */
+  interface RangeTransport {
+    /**
+     * @return The length of the whole file.
+     */
+    @Throws(IOException::class)
+    fun getLength(): Long
+
+    /**
+     * Opens a stream over bytes [start] through [endInclusive] of the file. Closing it aborts the request.
+     */
+    @Throws(IOException::class)
+    fun openRange(start: Long, endInclusive: Long): InputStream
+  }
+
+  private class SegmentState(val totalLength: Long, val segmentSize: Int, private val done: BitSet = BitSet()) {
+
+    val segmentCount: Int = ((totalLength + segmentSize - 1) / segmentSize).toInt()
+
+    fun startOf(index: Int): Long = index.toLong() * segmentSize
+
+    fun lengthOf(index: Int): Long = minOf(segmentSize.toLong(), totalLength - startOf(index))
+
+    @Synchronized
+    fun isDone(index: Int): Boolean = done[index]
+
+    @Synchronized
+    fun setDone(index: Int) {
+      done.set(index)
+    }
+
+    @Synchronized
+    fun markDone(index: Int, file: File) {
+      done.set(index)
+      save(file)
+    }
+
+    /**
+     * Written to a temporary file, synced, and renamed into place, so a crash never leaves a half-written state behind.
+     */
+    @Synchronized
+    fun save(file: File) {
+      val temp = File(file.path + ".tmp")
+
+      FileOutputStream(temp).use { fileOut ->
+        val out = DataOutputStream(fileOut)
+        val bits = done.toByteArray()
+        out.writeInt(STATE_VERSION)
+        out.writeLong(totalLength)
+        out.writeInt(segmentSize)
+        out.writeInt(bits.size)
+        out.write(bits)
+        out.flush()
+        fileOut.fd.sync()
+      }
+
+      if (!temp.renameTo(file)) {
+        throw IOException("Failed to save segment state!")
+      }
+    }
+
+    companion object {
+      fun read(file: File): SegmentState? {
+        if (!file.exists()) {
+          return null
+        }
+
+        return try {
+          DataInputStream(FileInputStream(file)).use { input ->
+            if (input.readInt() != STATE_VERSION) {
+              return null
+            }
+
+            val totalLength = input.readLong()
+            val segmentSize = input.readInt()
+            val bits = ByteArray(input.readInt())
+            input.readFully(bits)
+
+            SegmentState(totalLength, segmentSize, BitSet.valueOf(bits))
+          }
+        } catch (e: IOException) {
+          Log.w(TAG, "Failed to read segment state.", e)
+          null
+        }
+      }
+    }
+  }
+}
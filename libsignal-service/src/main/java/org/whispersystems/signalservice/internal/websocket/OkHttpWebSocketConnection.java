@@ -244,12 +244,25 @@ public class OkHttpWebSocketConnection extends WebSocketListener implements WebS
     outgoingRequests.put(request.id, new OutgoingRequest(single));
 
     if (!client.send(ByteString.of(message.encode()))) {
+      outgoingRequests.remove(request.id);
       throw new IOException("Write failed!");
     }
 
     return single.subscribeOn(Schedulers.io())
                  .observeOn(Schedulers.io())
-                 .timeout(timeoutSeconds, TimeUnit.SECONDS, Schedulers.io());
+                 .timeout(timeoutSeconds, TimeUnit.SECONDS, Schedulers.io())
+                 .doOnError(t -> {
+                   if (t instanceof TimeoutException) {
+                     removeOutgoingRequest(request.id);
+                   }
+                 });
+  }
+
+  /**
+   * Stops tracking a request that we've given up on, so a response that never arrives doesn't keep it around for the life of the connection.
+   */
+  private synchronized void removeOutgoingRequest(Long id) {
+    outgoingRequests.remove(id);
   }
 
   @Override
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.internal.websocket
+
+import io.reactivex.rxjava3.core.Scheduler
+import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.disposables.Disposable
+import io.reactivex.rxjava3.kotlin.subscribeBy
+import io.reactivex.rxjava3.schedulers.Schedulers
+import io.reactivex.rxjava3.subjects.SingleSubject
+import org.signal.core.util.logging.Log
+import org.signal.core.util.metrics.Metrics
+import java.io.IOException
+import java.util.ArrayDeque
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * Multiplexes requests over a websocket so that many can be outstanding at once, rather than callers paying a full round trip per request.
+ *
+ * - At most [maxInFlight] requests are on the wire at a time. Requests made while the window is full are queued in order and sent as responses
+ *   free up room, so a burst of requests can't flood the connection. At most [maxQueued] requests can wait, and any more fail right away with an
+ *   [IOException], so that a caller that doesn't bound itself can't grow the queue without limit.
+ * - Identical requests to one of [coalescableEndpoints] (a `GET` with no body and the same path and headers) that are made while one is already
+ *   queued or in flight share that request's response instead of being sent again. This is opt-in per endpoint, since plenty of `GET`s aren't
+ *   safe to share, like `GET /v2/keys`, which hands out one-time prekeys.
+ * - The latency of every request is recorded in [Metrics] under [METRIC_REQUEST].
+ *
+ * Requests are queued as soon as [request] is called, regardless of when (or if) the returned [Single] is subscribed to, matching the eager
+ * behavior of [WebSocketConnection.sendRequest]. A request's timeout counts from that point too: a request that's still queued when it runs out
+ * fails with a [TimeoutException], and one that's sent late only gets whatever time it has left.
+ *
+ * @param scheduler Used to time out queued requests, and as the clock for deadlines and latencies.
+ * @param send Performs the actual send on the current connection. May throw if there is no connection available.
+ */
+class WebSocketRequestPipeline(
+  private val maxInFlight: Int = DEFAULT_MAX_IN_FLIGHT,
+  private val maxQueued: Int = DEFAULT_MAX_QUEUED,
+  private val coalescableEndpoints: Set<String> = DEFAULT_COALESCABLE_ENDPOINTS,
+  private val scheduler: Scheduler = Schedulers.io(),
+  private val send: (WebSocketRequestMessage, Long) -> Single<WebsocketResponse>
+) {
+
+  companion object {
+    private val TAG = Log.tag(WebSocketRequestPipeline::class)
+
+    const val DEFAULT_MAX_IN_FLIGHT = 32
+    const val DEFAULT_MAX_QUEUED = 1_000
+
+    /** Endpoints, as named by [endpointOf], whose responses only depend on the request and that have no side effects. */
+    val DEFAULT_COALESCABLE_ENDPOINTS: Set<String> = setOf(
+      "GET /v1/profile/{id}",
+      "GET /v1/profile/{id}/{id}",
+      "GET /v1/profile/{id}/{id}/{id}"
+    )
+
+    /** Histogram of websocket request latencies, labeled by [endpointOf]. */
+    const val METRIC_REQUEST = "websocket.request"
+
+    private val IDENTIFIER_SEGMENT = Regex(".*[0-9:%+=].*|.{25,}")
+    private val VERSION_SEGMENT = Regex("v[0-9]+")
+
+    /**
+     * Collapses a request path into an endpoint name suitable for grouping metrics, e.g. `GET /v1/profile/<aci>/<version>` becomes `GET /v1/profile/{id}/{id}`.
+     */
+    fun endpointOf(request: WebSocketRequestMessage): String {
+      val path = request.path?.substringBefore('?') ?: ""
+      val normalized = path
+        .split('/')
+        .joinToString("/") { segment ->
+          if (segment.matches(IDENTIFIER_SEGMENT) && !segment.matches(VERSION_SEGMENT)) "{id}" else segment
+        }
+
+      return "${request.verb} $normalized"
+    }
+  }
+
+  private val lock = Any()
+  private val queue = ArrayDeque<PendingRequest>()
+  private val coalescable = HashMap<String, PendingRequest>()
+
+  private var inFlight = 0
+
+  init {
+    require(maxInFlight > 0) { "maxInFlight must be positive!" }
+    require(maxQueued >= 0) { "maxQueued must not be negative!" }
+  }
+
+  fun request(request: WebSocketRequestMessage, timeoutSeconds: Long): Single<WebsocketResponse> {
+    val key = request.coalescingKey()
+    val pending: PendingRequest
+    val toSend: List<PendingRequest>
+
+    synchronized(lock) {
+      if (key != null) {
+        val existing = coalescable[key]
+        if (existing != null) {
+          existing.coalesced++
+          return existing.response
+        }
+      }
+
+      if (inFlight >= maxInFlight && queue.size >= maxQueued) {
+        Log.w(TAG, "Request queue is full, rejecting a request to ${endpointOf(request)}")
+        return Single.error(IOException("Request queue is full"))
+      }
+
+      // Capped so that very long timeouts can't overflow the deadline
+      pending = PendingRequest(request, now() + minOf(TimeUnit.SECONDS.toNanos(timeoutSeconds), Long.MAX_VALUE / 4), key)
+      if (key != null) {
+        coalescable[key] = pending
+      }
+
+      queue.addLast(pending)
+      toSend = takeSendableLocked()
+
+      if (toSend.none { it === pending }) {
+        pending.queueTimeout = scheduler.scheduleDirect({ onQueueTimeout(pending) }, timeoutSeconds, TimeUnit.SECONDS)
+      }
+    }
+
+    dispatch(toSend)
+    return pending.response
+  }
+
+  /**
+   * Fails every request that's waiting for room in the window, e.g. because the connection is going away and they would otherwise sit here until
+   * something else frees up the window. Requests already on the wire are left to their connection.
+   */
+  fun failQueued(reason: String) {
+    val failed: List<PendingRequest>
+
+    synchronized(lock) {
+      failed = queue.toList()
+      queue.clear()
+      failed.forEach { removeLocked(it) }
+    }
+
+    if (failed.isNotEmpty()) {
+      Log.w(TAG, "Failing ${failed.size} queued request(s). $reason")
+    }
+
+    failed.forEach { it.response.onError(IOException(reason)) }
+  }
+
+  /** The number of requests currently on the wire. */
+  val inFlightCount: Int
+    get() = synchronized(lock) { inFlight }
+
+  /** The number of requests waiting for room in the window. */
+  val queuedCount: Int
+    get() = synchronized(lock) { queue.size }
+
+  private fun takeSendableLocked(): List<PendingRequest> {
+    if (queue.isEmpty() || inFlight >= maxInFlight) {
+      return emptyList()
+    }
+
+    val sendable = ArrayList<PendingRequest>(minOf(queue.size, maxInFlight - inFlight))
+    while (queue.isNotEmpty() && inFlight < maxInFlight) {
+      val pending = queue.removeFirst()
+      pending.queueTimeout?.dispose()
+      pending.queueTimeout = null
+      sendable += pending
+      inFlight++
+    }
+
+    return sendable
+  }
+
+  private fun onQueueTimeout(pending: PendingRequest) {
+    synchronized(lock) {
+      if (!queue.remove(pending)) {
+        return
+      }
+      removeLocked(pending)
+    }
+
+    Log.w(TAG, "Timed out waiting to send a request to ${endpointOf(pending.request)}")
+    pending.response.onError(TimeoutException("Timed out waiting to be sent"))
+  }
+
+  /**
+   * Forgets a request that's leaving the queue without being sent.
+   */
+  private fun removeLocked(pending: PendingRequest) {
+    pending.queueTimeout?.dispose()
+    pending.queueTimeout = null
+
+    if (pending.key != null && coalescable[pending.key] === pending) {
+      coalescable.remove(pending.key)
+    }
+  }
+
+  /**
+   * Sends the provided requests. Requests that fail to send synchronously (e.g. there's no connection) free up their slot immediately, so
+   * anything queued behind them is sent (or failed) by this same loop rather than recursively.
+   */
+  private fun dispatch(requests: List<PendingRequest>) {
+    val toSend = ArrayDeque(requests)
+
+    while (toSend.isNotEmpty()) {
+      val pending = toSend.removeFirst()
+      val startTime = now()
+      val remainingNanos = pending.deadlineNanos - startTime
+
+      if (remainingNanos <= 0) {
+        toSend += onComplete(pending)
+        pending.response.onError(TimeoutException("Timed out waiting to be sent"))
+        continue
+      }
+
+      val single: Single<WebsocketResponse> = try {
+        send(pending.request, TimeUnit.NANOSECONDS.toSeconds(remainingNanos + TimeUnit.SECONDS.toNanos(1) - 1))
+      } catch (e: IOException) {
+        toSend += onComplete(pending)
+        pending.response.onError(e)
+        continue
+      } catch (e: RuntimeException) {
+        toSend += onComplete(pending)
+        pending.response.onError(e)
+        continue
+      }
+
+      single.subscribeBy(
+        onSuccess = { response ->
+          Metrics.histogram(METRIC_REQUEST, endpointOf(pending.request)).record(now() - startTime)
+          dispatch(onComplete(pending))
+          pending.response.onSuccess(response)
+        },
+        onError = { error ->
+          dispatch(onComplete(pending))
+          pending.response.onError(error)
+        }
+      )
+    }
+  }
+
+  /**
+   * Frees up the window slot used by [pending] and returns whatever queued requests can now be sent.
+   */
+  private fun onComplete(pending: PendingRequest): List<PendingRequest> {
+    synchronized(lock) {
+      inFlight--
+
+      if (pending.key != null && coalescable[pending.key] === pending) {
+        coalescable.remove(pending.key)
+      }
+
+      if (pending.coalesced > 0) {
+        Log.d(TAG, "Coalesced ${pending.coalesced} duplicate request(s) to ${endpointOf(pending.request)}")
+      }
+
+      return takeSendableLocked()
+    }
+  }
+
+  private fun now(): Long {
+    return scheduler.now(TimeUnit.NANOSECONDS)
+  }
+
+  private fun WebSocketRequestMessage.coalescingKey(): String? {
+    if (!"GET".equals(this.verb, ignoreCase = true) || this.body != null || endpointOf(this) !in coalescableEndpoints) {
+      return null
+    }
+
+    return buildString {
+      append(path)
+      headers.forEach { append('\n').append(it) }
+    }
+  }
+
+  private class PendingRequest(
+    val request: WebSocketRequestMessage,
+    /** Only meaningful relative to the pipeline's clock. */
+    val deadlineNanos: Long,
+    val key: String?
+  ) {
+    val response: SingleSubject<WebsocketResponse> = SingleSubject.create()
+    var coalesced = 0
+
+    /** Fails the request if it's still queued when its timeout runs out. Only touched under the pipeline's lock. */
+    var queueTimeout: Disposable? = null
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.api
+
+import assertk.assertThat
+import assertk.assertions.hasSize
+import assertk.assertions.isEqualTo
+import assertk.assertions.isLessThanOrEqualTo
+import assertk.assertions.isNotNull
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.mockkConstructor
+import io.mockk.unmockkAll
+import io.mockk.verify
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.signal.libsignal.protocol.SignalProtocolAddress
+import org.signal.libsignal.protocol.UsePqRatchet
+import org.signal.libsignal.protocol.state.SessionRecord
+import org.whispersystems.signalservice.api.attachment.AttachmentApi
+import org.whispersystems.signalservice.api.crypto.ContentHint
+import org.whispersystems.signalservice.api.crypto.SignalServiceCipher
+import org.whispersystems.signalservice.api.keys.KeysApi
+import org.whispersystems.signalservice.api.message.MessageApi
+import org.whispersystems.signalservice.api.messages.SendMessageResult
+import org.whispersystems.signalservice.api.messages.SignalServiceDataMessage
+import org.whispersystems.signalservice.api.push.ServiceId.ACI
+import org.whispersystems.signalservice.api.push.ServiceId.PNI
+import org.whispersystems.signalservice.api.push.SignalServiceAddress
+import org.whispersystems.signalservice.api.util.CredentialsProvider
+import org.whispersystems.signalservice.api.websocket.WebSocketUnavailableException
+import org.whispersystems.signalservice.internal.push.OutgoingPushMessage
+import org.whispersystems.signalservice.internal.push.OutgoingPushMessageList
+import org.whispersystems.signalservice.internal.push.PushServiceSocket
+import org.whispersystems.signalservice.internal.push.SendMessageResponse
+import org.whispersystems.signalservice.internal.push.StaleDevices
+import org.whispersystems.signalservice.internal.push.exceptions.StaleDevicesException
+import java.util.Collections
+import java.util.Optional
+import java.util.UUID
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Drives legacy (non sender key) fan-out sends through a fake transport that simulates network latency, to check how the sender behaves under load.
+ */
+class SignalServiceMessageSenderFanOutTest {
+
+  companion object {
+    private const val RECIPIENT_COUNT = 500
+    private const val SEND_LATENCY_MS = 5L
+    private const val MAX_IN_FLIGHT_SENDS = 32
+  }
+
+  private val localAci = ACI.from(UUID.randomUUID())
+  private val recipients = (1..RECIPIENT_COUNT).map { SignalServiceAddress(ACI.from(UUID.randomUUID())) }
+  private val linkedDeviceRecipients = recipients.take(100).map { it.identifier }.toSet()
+
+  private val transport = FakeTransport()
+  private val sessionLoads = Collections.synchronizedList(mutableListOf<List<String>>())
+
+  private lateinit var executor: ExecutorService
+  private lateinit var aciStore: SignalServiceAccountDataStore
+  private lateinit var pushServiceSocket: PushServiceSocket
+  private lateinit var messageApi: MessageApi
+
+  @Before
+  fun setUp() {
+    executor = Executors.newCachedThreadPool()
+
+    mockkConstructor(SignalServiceCipher::class)
+    every { anyConstructed<SignalServiceCipher>().encrypt(any(), any(), any()) } answers {
+      OutgoingPushMessage(1, firstArg<SignalProtocolAddress>().deviceId, 1, "")
+    }
+
+    aciStore = mockk(relaxed = true) {
+      every { isMultiDevice } returns false
+      every { containsSession(any()) } returns true
+      every { getAllAddressesWithActiveSessions(any()) } answers {
+        val names = firstArg<List<String>>()
+        sessionLoads += names
+
+        names.flatMap { name ->
+          if (name in linkedDeviceRecipients) {
+            listOf(SignalProtocolAddress(name, 1), SignalProtocolAddress(name, 2))
+          } else {
+            listOf(SignalProtocolAddress(name, 1))
+          }
+        }.associateWith { mockk<SessionRecord>() }
+      }
+    }
+
+    val credentialsProvider = mockk<CredentialsProvider> {
+      every { aci } returns localAci
+      every { pni } returns PNI.from(UUID.randomUUID())
+      every { e164 } returns "+15555550100"
+      every { deviceId } returns SignalServiceAddress.DEFAULT_DEVICE_ID
+    }
+
+    pushServiceSocket = mockk {
+      every { this@mockk.credentialsProvider } returns credentialsProvider
+      every { sendMessage(any(), any(), any()) } answers { transport.send(firstArg()) }
+    }
+
+    messageApi = mockk {
+      every { sendMessage(any(), any(), any()) } answers { NetworkResult.Success(transport.send(firstArg())) }
+    }
+  }
+
+  @After
+  fun tearDown() {
+    unmockkAll()
+    executor.shutdownNow()
+  }
+
+  @Test
+  fun given500Recipients_whenISendOverTheWebSocket_thenEachRecipientGetsASuccessfulResult() {
+    val results = sendToAll(createSender())
+
+    assertThat(results).hasSize(RECIPIENT_COUNT)
+    assertThat(results.count { it.isSuccess }).isEqualTo(RECIPIENT_COUNT)
+    assertThat(results.first { it.address.identifier in linkedDeviceRecipients }.success.devices).isEqualTo(listOf(1, 2))
+    assertThat(transport.sends.get()).isEqualTo(RECIPIENT_COUNT)
+  }
+
+  @Test
+  fun given500Recipients_whenTheWebSocketIsUnavailable_thenEachRecipientIsSentOverTheFakePushServiceSocket() {
+    every { messageApi.sendMessage(any(), any(), any()) } returns NetworkResult.ApplicationError(WebSocketUnavailableException())
+
+    val results = sendToAll(createSender(useRestFallback = true))
+
+    assertThat(results).hasSize(RECIPIENT_COUNT)
+    assertThat(results.count { it.isSuccess }).isEqualTo(RECIPIENT_COUNT)
+    verify(exactly = RECIPIENT_COUNT) { pushServiceSocket.sendMessage(any(), any(), any()) }
+  }
+
+  @Test
+  fun given500Recipients_whenISend_thenSessionsAreLoadedWithOneStoreCall() {
+    sendToAll(createSender())
+
+    assertThat(sessionLoads).hasSize(1)
+    assertThat(sessionLoads[0]).hasSize(RECIPIENT_COUNT)
+    verify(exactly = 0) { aciStore.getSubDeviceSessions(any()) }
+  }
+
+  @Test
+  fun given500Recipients_whenISend_thenInFlightRequestsAreBounded() {
+    sendToAll(createSender())
+
+    assertThat(transport.maxInFlight.get()).isLessThanOrEqualTo(MAX_IN_FLIGHT_SENDS)
+  }
+
+  @Test
+  fun givenSomeRecipientsHaveStaleDevices_whenISend_thenTheyAreRetriedTogetherInASecondRound() {
+    val staleRecipients = recipients.takeLast(50).map { it.identifier }.toSet()
+    val staleDevices = mockk<StaleDevices> { every { this@mockk.staleDevices } returns listOf(2) }
+    val alreadyFailed = Collections.synchronizedSet(mutableSetOf<String>())
+
+    every { messageApi.sendMessage(any(), any(), any()) } answers {
+      val messages = firstArg<OutgoingPushMessageList>()
+
+      if (messages.destination in staleRecipients && alreadyFailed.add(messages.destination)) {
+        NetworkResult.ApplicationError(StaleDevicesException(staleDevices))
+      } else {
+        NetworkResult.Success(transport.send(messages))
+      }
+    }
+
+    val results = sendToAll(createSender())
+
+    assertThat(results).hasSize(RECIPIENT_COUNT)
+    assertThat(results.count { it.isSuccess }).isEqualTo(RECIPIENT_COUNT)
+    assertThat(sessionLoads).hasSize(2)
+    assertThat(sessionLoads[1].toSet()).isEqualTo(staleRecipients)
+    verify(exactly = staleRecipients.size) { aciStore.archiveSession(match { it.deviceId == 2 }) }
+  }
+
+  private fun createSender(useRestFallback: Boolean = false): SignalServiceMessageSender {
+    val store = mockk<SignalServiceDataStore> {
+      every { aci() } returns aciStore
+      every { pni() } returns mockk(relaxed = true)
+    }
+
+    return SignalServiceMessageSender(
+      pushServiceSocket,
+      store,
+      mockk(relaxed = true),
+      mockk<AttachmentApi>(),
+      messageApi,
+      mockk<KeysApi>(),
+      Optional.empty(),
+      executor,
+      256 * 1024,
+      { useRestFallback },
+      UsePqRatchet.NO
+    )
+  }
+
+  private fun sendToAll(sender: SignalServiceMessageSender): List<SendMessageResult> {
+    val message = SignalServiceDataMessage.newBuilder()
+      .withTimestamp(System.currentTimeMillis())
+      .withBody("Hello, everyone")
+      .build()
+
+    val results = sender.sendDataMessage(
+      recipients,
+      recipients.map { null },
+      false,
+      ContentHint.DEFAULT,
+      message,
+      SignalServiceMessageSender.LegacyGroupEvents.EMPTY,
+      null,
+      null,
+      false
+    )
+
+    assertThat(results).isNotNull()
+    return results
+  }
+
+  /**
+   * Stands in for the network. Each send blocks for [SEND_LATENCY_MS] and we keep track of how many sends were outstanding at once.
+   */
+  private class FakeTransport {
+    val sends = AtomicInteger()
+    val inFlight = AtomicInteger()
+    val maxInFlight = AtomicInteger()
+
+    fun send(messages: OutgoingPushMessageList): SendMessageResponse {
+      val current = inFlight.incrementAndGet()
+      maxInFlight.accumulateAndGet(current) { a, b -> maxOf(a, b) }
+
+      try {
+        Thread.sleep(SEND_LATENCY_MS)
+      } finally {
+        inFlight.decrementAndGet()
+      }
+
+      sends.incrementAndGet()
+      return SendMessageResponse(false, false)
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.api.groupsv2
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import okio.ByteString.Companion.toByteString
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.signal.libsignal.zkgroup.groups.ClientZkGroupCipher
+import org.signal.libsignal.zkgroup.groups.GroupMasterKey
+import org.signal.libsignal.zkgroup.groups.GroupSecretParams
+import org.signal.storageservice.protos.groups.BannedMember
+import org.signal.storageservice.protos.groups.Group
+import org.signal.storageservice.protos.groups.GroupChanges
+import org.signal.storageservice.protos.groups.Member
+import org.signal.storageservice.protos.groups.PendingMember
+import org.whispersystems.signalservice.api.push.ServiceId.ACI
+import org.whispersystems.signalservice.internal.util.Util
+import org.whispersystems.signalservice.testutil.LibSignalLibraryUtil
+import java.util.UUID
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Decrypts groups of increasing size both sequentially and across a pool, making sure the results are identical.
+ */
+class GroupsV2Operations_decrypt_parallel_Test {
+
+  companion object {
+    private val MEMBER_COUNTS = listOf(100, 500, 1000)
+    private const val HISTORY_PAGE_SIZE = 20
+  }
+
+  private lateinit var groupSecretParams: GroupSecretParams
+  private lateinit var clientZkOperations: ClientZkOperations
+  private lateinit var pool: ForkJoinPool
+
+  @Before
+  fun setup() {
+    LibSignalLibraryUtil.assumeLibSignalSupportedOnOS()
+
+    clientZkOperations = ClientZkOperations(TestZkGroupServer().serverPublicParams)
+    groupSecretParams = GroupSecretParams.deriveFromMasterKey(GroupMasterKey(Util.getSecretBytes(32)))
+    pool = ForkJoinPool(4)
+  }
+
+  @After
+  fun tearDown() {
+    if (::pool.isInitialized) {
+      pool.shutdownNow()
+    }
+  }
+
+  @Test
+  fun givenGroupsOfIncreasingSize_whenIDecryptInParallel_thenIExpectTheSameResultAsSequential() {
+    for (memberCount in MEMBER_COUNTS) {
+      val group = encryptedGroup(memberCount)
+
+      val sequential = sequentialOperations().decryptGroup(group)
+      val parallel = parallelOperations().decryptGroup(group)
+
+      assertThat(parallel).isEqualTo(sequential)
+    }
+  }
+
+  @Test
+  fun givenAHistoryPage_whenIDecryptInParallel_thenIExpectTheSameResultInTheSameOrder() {
+    val states = (1..HISTORY_PAGE_SIZE).map { revision ->
+      GroupChanges.GroupChangeState.Builder()
+        .groupState(encryptedGroup(100).newBuilder().revision(revision).build())
+        .build()
+    }
+
+    val sequential = sequentialOperations().decryptGroupHistory(states)
+    val parallel = parallelOperations().decryptGroupHistory(states)
+
+    assertThat(parallel.map { it.group }).isEqualTo(sequential.map { it.group })
+    assertThat(parallel.map { it.group!!.revision }).isEqualTo((1..HISTORY_PAGE_SIZE).toList())
+  }
+
+  private fun sequentialOperations(): GroupsV2Operations.GroupOperations {
+    return GroupsV2Operations(clientZkOperations, 1000).forGroup(groupSecretParams)
+  }
+
+  private fun parallelOperations(): GroupsV2Operations.GroupOperations {
+    return GroupsV2Operations(clientZkOperations, 1000, pool).forGroup(groupSecretParams)
+  }
+
+  private fun encryptedGroup(memberCount: Int): Group {
+    val operations = sequentialOperations()
+    val cipher = ClientZkGroupCipher(groupSecretParams)
+    val inviter = ACI.from(UUID.randomUUID())
+
+    return Group.Builder()
+      .title(operations.encryptTitle("Large group"))
+      .members(
+        List(memberCount) {
+          val aci = ACI.from(UUID.randomUUID())
+          Member.Builder()
+            .role(Member.Role.DEFAULT)
+            .userId(operations.encryptServiceId(aci))
+            .profileKey(cipher.encryptProfileKey(ProtoTestUtils.randomProfileKey(), aci.libSignalAci).serialize().toByteString())
+            .build()
+        }
+      )
+      .pendingMembers(
+        List(memberCount / 10) {
+          PendingMember.Builder()
+            .addedByUserId(operations.encryptServiceId(inviter))
+            .member(Member.Builder().role(Member.Role.DEFAULT).userId(operations.encryptServiceId(ACI.from(UUID.randomUUID()))).build())
+            .build()
+        }
+      )
+      .bannedMembers(
+        List(memberCount / 10) {
+          BannedMember.Builder()
+            .userId(operations.encryptServiceId(ACI.from(UUID.randomUUID())))
+            .build()
+        }
+      )
+      .build()
+  }
+}
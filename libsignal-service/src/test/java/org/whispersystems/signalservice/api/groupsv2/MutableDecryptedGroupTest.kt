@@ -0,0 +1,168 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.api.groupsv2
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import assertk.assertions.isTrue
+import okio.ByteString
+import okio.ByteString.Companion.toByteString
+import org.junit.Test
+import org.signal.storageservice.protos.groups.Member
+import org.signal.storageservice.protos.groups.local.DecryptedGroup
+import org.signal.storageservice.protos.groups.local.DecryptedGroupChange
+import org.signal.storageservice.protos.groups.local.DecryptedModifyMemberRole
+import org.signal.storageservice.protos.groups.local.DecryptedString
+import org.whispersystems.signalservice.api.push.ServiceId.ACI
+import org.whispersystems.signalservice.api.util.UuidUtil
+import java.util.UUID
+import kotlin.random.Random
+
+class MutableDecryptedGroupTest {
+
+  companion object {
+    private const val MEMBER_COUNT = 1_000
+    private const val REVISION_COUNT = 500
+  }
+
+  @Test
+  fun given1000MemberGroup_whenIApply500Revisions_thenIExpectTheSameResultAsApplyingThemOneByOne() {
+    val history = GroupHistory(Random(1))
+    val group = history.initialGroup(MEMBER_COUNT)
+    val changes = (1..REVISION_COUNT).map { history.nextChange() }
+
+    var expected = group
+    for (change in changes) {
+      expected = DecryptedGroupUtil.apply(expected, change)
+    }
+
+    val actual = MutableDecryptedGroup.applyAll(group, changes)
+
+    assertThat(actual).isEqualTo(expected)
+    assertThat(actual.revision).isEqualTo(REVISION_COUNT)
+  }
+
+  @Test
+  fun givenAGroupWithDuplicateMembers_whenICreateAnIndex_thenIExpectNull() {
+    val member = ProtoTestUtils.member(UUID.randomUUID())
+    val group = DecryptedGroup.Builder().members(listOf(member, member)).build()
+
+    assertThat(MutableDecryptedGroup.from(group)).isNull()
+  }
+
+  @Test
+  fun givenAChangeThatDuplicatesARequestingMember_whenIApplyAll_thenIExpectTheSameResultAsApplyingItDirectly() {
+    val requesting = ProtoTestUtils.requestingMember(UUID.randomUUID())
+    val group = DecryptedGroup.Builder().revision(1).requestingMembers(listOf(requesting)).build()
+    val change = DecryptedGroupChange.Builder().revision(2).newRequestingMembers(listOf(requesting)).build()
+
+    assertThat(MutableDecryptedGroup.from(group)!!.applyWithoutRevisionCheck(change)).isEqualTo(false)
+    assertThat(MutableDecryptedGroup.applyAll(group, listOf(change))).isEqualTo(DecryptedGroupUtil.apply(group, change))
+  }
+
+  @Test
+  fun givenAnIndexedGroup_whenILookUpMembers_thenIExpectToFindThem() {
+    val aci = UUID.randomUUID()
+    val pending = UUID.randomUUID()
+    val requesting = UUID.randomUUID()
+    val group = DecryptedGroup.Builder()
+      .members(listOf(ProtoTestUtils.member(aci)))
+      .pendingMembers(listOf(ProtoTestUtils.pendingMember(pending)))
+      .requestingMembers(listOf(ProtoTestUtils.requestingMember(requesting)))
+      .build()
+
+    val indexed = MutableDecryptedGroup.from(group)!!
+
+    assertThat(indexed.findMemberByAci(ACI.from(aci))).isNotNull()
+    assertThat(indexed.findPendingByServiceId(ACI.from(pending))).isNotNull()
+    assertThat(indexed.findRequestingByAci(ACI.from(requesting))).isNotNull()
+    assertThat(indexed.findMemberByAci(ACI.from(pending))).isNull()
+  }
+
+  @Test
+  fun givenAnUnknownRole_whenIApply_thenIExpectAnException() {
+    val aci = UUID.randomUUID()
+    val group = DecryptedGroup.Builder().revision(1).members(listOf(ProtoTestUtils.member(aci))).build()
+    val change = DecryptedGroupChange.Builder()
+      .revision(2)
+      .modifyMemberRoles(listOf(DecryptedModifyMemberRole.Builder().aciBytes(UuidUtil.toByteString(aci)).role(Member.Role.UNKNOWN).build()))
+      .build()
+
+    var thrown = false
+    try {
+      MutableDecryptedGroup.applyAll(group, listOf(change))
+    } catch (e: NotAbleToApplyGroupV2ChangeException) {
+      thrown = true
+    }
+
+    assertThat(thrown).isTrue()
+  }
+
+  /**
+   * Generates a plausible history for a large group, where each revision is one kind of action applied to a handful of people.
+   */
+  private class GroupHistory(private val random: Random) {
+    private val members: MutableList<UUID> = mutableListOf()
+    private val pending: MutableList<UUID> = mutableListOf()
+    private val requesting: MutableList<UUID> = mutableListOf()
+    private val banned: MutableList<UUID> = mutableListOf()
+    private var revision = 0
+
+    fun initialGroup(memberCount: Int): DecryptedGroup {
+      repeat(memberCount) { members += UUID.randomUUID() }
+      repeat(memberCount / 20) { pending += UUID.randomUUID() }
+      repeat(memberCount / 20) { requesting += UUID.randomUUID() }
+
+      return DecryptedGroup.Builder()
+        .revision(revision)
+        .title("Large group")
+        .members(members.map { ProtoTestUtils.member(it, randomProfileKey(), 0) })
+        .pendingMembers(pending.map { ProtoTestUtils.pendingMember(it) })
+        .requestingMembers(requesting.map { ProtoTestUtils.requestingMember(it) })
+        .build()
+    }
+
+    fun nextChange(): DecryptedGroupChange {
+      revision++
+      val builder = DecryptedGroupChange.Builder().revision(revision)
+      val count = random.nextInt(1, 4)
+
+      when (random.nextInt(12)) {
+        0 -> builder.newMembers(List(count) { UUID.randomUUID().also { members += it } }.map { ProtoTestUtils.member(it, randomProfileKey(), revision) })
+        1 -> builder.deleteMembers(take(members, count).map { UuidUtil.toByteString(it) })
+        2 -> builder.modifyMemberRoles(pick(members, count).map { ProtoTestUtils.promoteAdmin(it) })
+        3 -> builder.modifiedProfileKeys(pick(members, count).map { ProtoTestUtils.member(it, randomProfileKey(), 0) })
+        4 -> builder.newPendingMembers(List(count) { UUID.randomUUID().also { pending += it } }.map { ProtoTestUtils.pendingMember(it) })
+        5 -> builder.deletePendingMembers(take(pending, count).map { ProtoTestUtils.pendingMemberRemoval(it) })
+        6 -> builder.promotePendingMembers(take(pending, count).onEach { members += it }.map { ProtoTestUtils.member(it, randomProfileKey(), revision) })
+        7 -> builder.newRequestingMembers(List(count) { UUID.randomUUID().also { requesting += it } }.map { ProtoTestUtils.requestingMember(it) })
+        8 -> builder.deleteRequestingMembers(take(requesting, count).map { UuidUtil.toByteString(it) })
+        9 -> builder.promoteRequestingMembers(take(requesting, count).onEach { members += it }.map { ProtoTestUtils.approveMember(it) })
+        10 -> builder.newBannedMembers(List(count) { UUID.randomUUID().also { banned += it } }.map { ProtoTestUtils.bannedMember(it) })
+        else -> {
+          builder.deleteBannedMembers(take(banned, count).map { ProtoTestUtils.bannedMember(it) })
+          builder.newTitle(DecryptedString.Builder().value_("Large group v$revision").build())
+        }
+      }
+
+      return builder.build()
+    }
+
+    private fun take(list: MutableList<UUID>, count: Int): List<UUID> {
+      return List(minOf(count, list.size)) { list.removeAt(random.nextInt(list.size)) }
+    }
+
+    private fun pick(list: List<UUID>, count: Int): List<UUID> {
+      return List(count) { list[random.nextInt(list.size)] }.distinct()
+    }
+
+    private fun randomProfileKey(): ByteString {
+      return random.nextBytes(32).toByteString()
+    }
+  }
+}
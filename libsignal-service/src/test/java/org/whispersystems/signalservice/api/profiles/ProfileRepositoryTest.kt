@@ -0,0 +1,153 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.api.profiles
+
+import assertk.assertThat
+import assertk.assertions.hasSize
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isLessThan
+import assertk.assertions.isLessThanOrEqualTo
+import assertk.assertions.isNotNull
+import io.mockk.every
+import io.mockk.mockk
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withContext
+import org.junit.Test
+import org.whispersystems.signalservice.api.NetworkResult
+import org.whispersystems.signalservice.api.profiles.ProfileRepository.ProfileFetchRequest
+import org.whispersystems.signalservice.api.profiles.ProfileRepository.ProfileFetchResult
+import org.whispersystems.signalservice.api.push.ServiceId
+import org.whispersystems.signalservice.api.push.ServiceId.ACI
+import org.whispersystems.signalservice.api.push.exceptions.NonSuccessfulResponseCodeException
+import java.util.UUID
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs bulk profile fetches against a fake profile service that simulates network latency, to check how the repository behaves under load.
+ */
+class ProfileRepositoryTest {
+
+  companion object {
+    private const val PROFILE_COUNT = 2_000
+    private const val FETCH_LATENCY_MS = 5L
+  }
+
+  private val service = FakeProfileService()
+  private val profileApi: ProfileApi = mockk {
+    every { getUnversionedProfile(any(), any()) } answers { service.fetch(firstArg()) }
+  }
+
+  @Test
+  fun given2000Profiles_whenIFetchThem_thenEachIsReturnedAndInFlightRequestsAreBounded() {
+    val result = fetch(requests(PROFILE_COUNT))
+
+    assertThat(result.successes).hasSize(PROFILE_COUNT)
+    assertThat(result.retryableFailures).isEmpty()
+    assertThat(service.maxInFlight.get()).isLessThanOrEqualTo(ProfileRepository.DEFAULT_MAX_CONCURRENCY)
+  }
+
+  @Test
+  fun givenAConcurrencyOf4_whenIFetch_thenFourFetchesAreInFlightAtOnce() {
+    service.barrier = CyclicBarrier(4)
+
+    val result = fetch(requests(8), maxConcurrency = 4)
+
+    assertThat(result.successes).hasSize(8)
+    assertThat(service.maxInFlight.get()).isEqualTo(4)
+  }
+
+  @Test
+  fun givenASmallerConcurrency_whenIFetch_thenItIsRespected() {
+    val result = fetch(requests(200), maxConcurrency = 4)
+
+    assertThat(result.successes).hasSize(200)
+    assertThat(service.maxInFlight.get()).isLessThanOrEqualTo(4)
+  }
+
+  @Test
+  fun givenSomeUnregisteredUsers_whenIFetch_thenTheyAreReportedSeparately() {
+    val requests = requests(100)
+    service.unregistered += requests.take(10).map { it.serviceId }
+
+    val result = fetch(requests)
+
+    assertThat(result.successes).hasSize(90)
+    assertThat(result.unregistered).isEqualTo(requests.take(10).map { it.id }.toSet())
+    assertThat(result.retryableFailures).isEmpty()
+  }
+
+  @Test
+  fun givenTheServiceRateLimits_whenIFetch_thenTheFetchStopsAndTheRestAreRetryable() {
+    val requests = requests(PROFILE_COUNT)
+    service.rateLimitAfter = 100
+
+    val result = fetch(requests)
+
+    assertThat(result.retryAfter).isNotNull()
+    assertThat(result.successes.size + result.retryableFailures.size).isEqualTo(PROFILE_COUNT)
+    assertThat(service.fetches.get()).isLessThan(PROFILE_COUNT)
+  }
+
+  private fun requests(count: Int): List<ProfileFetchRequest<Int>> {
+    return (1..count).map { id ->
+      ProfileFetchRequest(
+        id = id,
+        serviceId = ACI.from(UUID.randomUUID()),
+        profileKey = null,
+        sealedSenderAccess = null,
+        fetchExpiringCredential = false
+      )
+    }
+  }
+
+  private fun fetch(requests: List<ProfileFetchRequest<Int>>, maxConcurrency: Int = ProfileRepository.DEFAULT_MAX_CONCURRENCY): ProfileFetchResult<Int> {
+    return runBlocking {
+      withContext(Dispatchers.IO) {
+        ProfileRepository(profileApi).fetchProfiles(requests, maxConcurrency)
+      }
+    }
+  }
+
+  /**
+   * Stands in for the profile service. Each fetch blocks for [FETCH_LATENCY_MS], like the real (blocking) network calls do, and we keep track of how
+   * many fetches were outstanding at once. If a [barrier] is set, fetches also wait for enough others to arrive, and fail if they never do.
+   */
+  private class FakeProfileService {
+    val fetches = AtomicInteger()
+    val inFlight = AtomicInteger()
+    val maxInFlight = AtomicInteger()
+    val unregistered: MutableSet<ServiceId> = mutableSetOf()
+
+    @Volatile
+    var rateLimitAfter = Int.MAX_VALUE
+
+    @Volatile
+    var barrier: CyclicBarrier? = null
+
+    fun fetch(serviceId: ServiceId): NetworkResult<SignalServiceProfile> {
+      val count = fetches.incrementAndGet()
+      val current = inFlight.incrementAndGet()
+      maxInFlight.accumulateAndGet(current) { a, b -> maxOf(a, b) }
+
+      try {
+        barrier?.await(10, TimeUnit.SECONDS)
+        Thread.sleep(FETCH_LATENCY_MS)
+      } finally {
+        inFlight.decrementAndGet()
+      }
+
+      return when {
+        count > rateLimitAfter -> NetworkResult.StatusCodeError(NonSuccessfulResponseCodeException(429, "Rate limited", null as String?, mapOf("retry-after" to "60")))
+        serviceId in unregistered -> NetworkResult.StatusCodeError(NonSuccessfulResponseCodeException(404))
+        else -> NetworkResult.Success(SignalServiceProfile())
+      }
+    }
+  }
+}
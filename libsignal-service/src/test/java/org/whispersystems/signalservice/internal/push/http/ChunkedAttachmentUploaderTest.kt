@@ -0,0 +1,162 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.internal.push.http
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isTrue
+import okio.Buffer
+import org.junit.Test
+import org.whispersystems.signalservice.api.crypto.AttachmentCipherStreamUtil
+import org.whispersystems.signalservice.internal.crypto.AttachmentDigest
+import org.whispersystems.signalservice.internal.util.Util
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+
+class ChunkedAttachmentUploaderTest {
+
+  companion object {
+    private const val PLAINTEXT_LENGTH = 2_500_000
+    private const val CHUNK_SIZE = ChunkedAttachmentUploader.CHUNK_ALIGNMENT
+    private val CIPHERTEXT_LENGTH = AttachmentCipherStreamUtil.getCiphertextLength(PLAINTEXT_LENGTH.toLong())
+  }
+
+  private val attachmentKey = Util.getSecretBytes(64)
+  private val attachmentIv = Util.getSecretBytes(16)
+  private val plaintext = Util.getSecretBytes(PLAINTEXT_LENGTH)
+
+  private val uploader = ChunkedAttachmentUploader(chunkSize = CHUNK_SIZE, maxChunksAhead = 2)
+
+  @Test
+  fun givenAnEmptyCdn_whenIUploadInChunks_thenIExpectTheSameCiphertextAndDigestAsASingleRequest() {
+    val (expectedCiphertext, expectedDigest) = uploadInSingleRequest()
+    val cdn = MockCdn()
+    val checkpoints = mutableListOf<Long>()
+
+    val digest = upload(cdn, startOffset = 0) { checkpoints += it }
+
+    assertThat(cdn.contents.toList()).isEqualTo(expectedCiphertext.toList())
+    assertThat(digest.digest.toList()).isEqualTo(expectedDigest.digest.toList())
+    assertThat(digest.incrementalDigest?.toList()).isEqualTo(expectedDigest.incrementalDigest?.toList())
+    assertThat(checkpoints.last()).isEqualTo(CIPHERTEXT_LENGTH)
+    assertThat(checkpoints.zipWithNext().all { (a, b) -> a < b }).isTrue()
+  }
+
+  @Test
+  fun givenAnUploadThatFailsPartWay_whenIResumeFromTheCdnOffset_thenIExpectTheSameCiphertextAndDigestAsASingleRequest() {
+    val (expectedCiphertext, expectedDigest) = uploadInSingleRequest()
+    val cdn = MockCdn(failAfterChunks = 4)
+    val checkpoints = mutableListOf<Long>()
+
+    assertFailure { upload(cdn, startOffset = 0) { checkpoints += it } }.isInstanceOf(IOException::class)
+    assertThat(checkpoints.last()).isEqualTo(cdn.committed)
+
+    cdn.failAfterChunks = Int.MAX_VALUE
+    val chunksBeforeResume = cdn.chunksReceived
+    val digest = upload(cdn, startOffset = cdn.committed)
+
+    assertThat(cdn.contents.toList()).isEqualTo(expectedCiphertext.toList())
+    assertThat(digest.digest.toList()).isEqualTo(expectedDigest.digest.toList())
+    assertThat(digest.incrementalDigest?.toList()).isEqualTo(expectedDigest.incrementalDigest?.toList())
+    val remaining = CIPHERTEXT_LENGTH - checkpoints.last()
+    assertThat(cdn.chunksReceived - chunksBeforeResume).isEqualTo(((remaining + CHUNK_SIZE - 1) / CHUNK_SIZE).toInt())
+  }
+
+  @Test
+  fun givenACdnThatOnlyCommitsPartOfEachChunk_whenIUpload_thenIExpectTheRemainderToBeResent() {
+    val (expectedCiphertext, _) = uploadInSingleRequest()
+    val cdn = MockCdn(maxCommitPerRequest = CHUNK_SIZE / 2)
+
+    upload(cdn, startOffset = 0)
+
+    assertThat(cdn.contents.toList()).isEqualTo(expectedCiphertext.toList())
+  }
+
+  @Test
+  fun givenEverythingIsAlreadyUploaded_whenIUpload_thenIExpectNoChunksAndTheFullDigest() {
+    val (expectedCiphertext, expectedDigest) = uploadInSingleRequest()
+    val cdn = MockCdn()
+    cdn.preload(expectedCiphertext)
+
+    val digest = upload(cdn, startOffset = CIPHERTEXT_LENGTH)
+
+    assertThat(cdn.chunksReceived).isEqualTo(0)
+    assertThat(digest.digest.toList()).isEqualTo(expectedDigest.digest.toList())
+  }
+
+  private fun upload(cdn: MockCdn, startOffset: Long, checkpointListener: ChunkedAttachmentUploader.CheckpointListener? = null): AttachmentDigest {
+    return uploader.upload(
+      inputStream = ByteArrayInputStream(plaintext),
+      outputStreamFactory = AttachmentCipherOutputStreamFactory(attachmentKey, attachmentIv),
+      contentLength = CIPHERTEXT_LENGTH,
+      incremental = true,
+      startOffset = startOffset,
+      transport = cdn,
+      progressListener = null,
+      cancelationSignal = null,
+      checkpointListener = checkpointListener
+    )
+  }
+
+  private fun uploadInSingleRequest(): Pair<ByteArray, AttachmentDigest> {
+    val body = DigestingRequestBody(
+      inputStream = ByteArrayInputStream(plaintext),
+      outputStreamFactory = AttachmentCipherOutputStreamFactory(attachmentKey, attachmentIv),
+      contentType = "application/octet-stream",
+      contentLength = CIPHERTEXT_LENGTH,
+      incremental = true,
+      progressListener = null,
+      cancelationSignal = null,
+      contentStart = 0
+    )
+
+    return Buffer().use { buffer ->
+      body.writeTo(buffer)
+      buffer.readByteArray() to body.attachmentDigest!!
+    }
+  }
+
+  /**
+   * A resumable upload location that behaves like a TUS server: every chunk has to start where the last one ended.
+   */
+  private class MockCdn(
+    var failAfterChunks: Int = Int.MAX_VALUE,
+    private val maxCommitPerRequest: Int = Int.MAX_VALUE
+  ) : ChunkedAttachmentUploader.ChunkTransport {
+
+    private val received = ByteArrayOutputStream()
+
+    var chunksReceived = 0
+      private set
+
+    val committed: Long
+      get() = received.size().toLong()
+
+    val contents: ByteArray
+      get() = received.toByteArray()
+
+    fun preload(data: ByteArray) {
+      received.write(data)
+    }
+
+    override fun uploadChunk(data: ByteArray, dataOffset: Int, length: Int, uploadOffset: Long, uploadLength: Long): Long {
+      if (chunksReceived >= failAfterChunks) {
+        throw IOException("Connection reset")
+      }
+
+      if (uploadOffset != committed) {
+        throw IOException("409 Conflict: expected offset $committed but got $uploadOffset")
+      }
+
+      chunksReceived++
+      received.write(data, dataOffset, minOf(length, maxCommitPerRequest))
+      return committed
+    }
+  }
+}
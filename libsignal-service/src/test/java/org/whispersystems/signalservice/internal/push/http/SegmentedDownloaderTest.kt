@@ -0,0 +1,160 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.internal.push.http
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isTrue
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.whispersystems.signalservice.api.push.exceptions.PushNetworkException
+import org.whispersystems.signalservice.api.push.exceptions.RangeException
+import org.whispersystems.signalservice.internal.util.Util
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.util.Collections
+
+class SegmentedDownloaderTest {
+
+  companion object {
+    private const val SEGMENT_SIZE = 64 * 1024
+    private const val FILE_SIZE = 10 * SEGMENT_SIZE + 1234
+    private const val SEGMENT_COUNT = 11
+  }
+
+  private val contents = Util.getSecretBytes(FILE_SIZE)
+  private val downloader = SegmentedDownloader(segmentSize = SEGMENT_SIZE, parallelism = 4)
+
+  private lateinit var destination: File
+
+  @Before
+  fun setUp() {
+    destination = File.createTempFile("attachment", ".tmp")
+  }
+
+  @After
+  fun tearDown() {
+    destination.delete()
+    SegmentedDownloader.getStateFile(destination).delete()
+  }
+
+  @Test
+  fun givenAnEmptyDestination_whenIDownload_thenIExpectTheWholeFileAndNoStateLeftBehind() {
+    val cdn = MockCdn(contents)
+
+    downloader.download(destination, cdn, Long.MAX_VALUE, null)
+
+    assertThat(destination.readBytes().toList()).isEqualTo(contents.toList())
+    assertThat(cdn.requestedStarts.size).isEqualTo(SEGMENT_COUNT)
+    assertThat(SegmentedDownloader.getStateFile(destination).exists()).isFalse()
+  }
+
+  @Test
+  fun givenADownloadThatFailsPartWay_whenIDownloadAgain_thenIExpectOnlyTheMissingSegmentsToBeFetched() {
+    val cdn = MockCdn(contents, failingStart = 3L * SEGMENT_SIZE)
+    val sequentialDownloader = SegmentedDownloader(segmentSize = SEGMENT_SIZE, parallelism = 1)
+
+    assertFailure { sequentialDownloader.download(destination, cdn, Long.MAX_VALUE, null) }.isInstanceOf(IOException::class)
+    assertThat(SegmentedDownloader.getStateFile(destination).exists()).isTrue()
+
+    cdn.failingStart = null
+    cdn.requestedStarts.clear()
+
+    downloader.download(destination, cdn, Long.MAX_VALUE, null)
+
+    assertThat(destination.readBytes().toList()).isEqualTo(contents.toList())
+    assertThat(cdn.requestedStarts.sorted()).isEqualTo((3 until SEGMENT_COUNT).map { it.toLong() * SEGMENT_SIZE })
+  }
+
+  @Test
+  fun givenADownloadThatFailsPartWay_whenIDeleteThePartialDownload_thenIExpectItsStateToBeDeletedToo() {
+    val cdn = MockCdn(contents, failingStart = 3L * SEGMENT_SIZE)
+
+    assertFailure { downloader.download(destination, cdn, Long.MAX_VALUE, null) }.isInstanceOf(IOException::class)
+
+    assertThat(SegmentedDownloader.deletePartialDownload(destination)).isTrue()
+    assertThat(destination.exists()).isFalse()
+    assertThat(SegmentedDownloader.getStateFile(destination).exists()).isFalse()
+  }
+
+  @Test
+  fun givenAPrefixFromASequentialDownload_whenIDownload_thenIExpectTheFullyCoveredSegmentsToBeSkipped() {
+    destination.writeBytes(contents.copyOf(SEGMENT_SIZE * 2 + 100))
+    val cdn = MockCdn(contents)
+
+    downloader.download(destination, cdn, Long.MAX_VALUE, null)
+
+    assertThat(destination.readBytes().toList()).isEqualTo(contents.toList())
+    assertThat(cdn.requestedStarts.size).isEqualTo(SEGMENT_COUNT - 2)
+  }
+
+  @Test
+  fun givenACompleteSequentialDownload_whenIDownload_thenIExpectARangeException() {
+    destination.writeBytes(contents)
+
+    assertFailure { downloader.download(destination, MockCdn(contents), Long.MAX_VALUE, null) }.isInstanceOf(RangeException::class)
+  }
+
+  @Test
+  fun givenStateForADifferentFile_whenIDownload_thenIExpectToStartOver() {
+    val other = Util.getSecretBytes(FILE_SIZE / 2)
+    val cdn = MockCdn(other, failingStart = 2L * SEGMENT_SIZE)
+    assertFailure { downloader.download(destination, cdn, Long.MAX_VALUE, null) }.isInstanceOf(IOException::class)
+
+    val newCdn = MockCdn(contents)
+    downloader.download(destination, newCdn, Long.MAX_VALUE, null)
+
+    assertThat(destination.readBytes().toList()).isEqualTo(contents.toList())
+    assertThat(newCdn.requestedStarts.size).isEqualTo(SEGMENT_COUNT)
+  }
+
+  @Test
+  fun givenAFileLargerThanTheMax_whenIDownload_thenIExpectNothingToBeFetched() {
+    val cdn = MockCdn(contents)
+
+    assertFailure { downloader.download(destination, cdn, FILE_SIZE - 1L, null) }.isInstanceOf(PushNetworkException::class)
+    assertThat(cdn.requestedStarts.size).isEqualTo(0)
+  }
+
+  @Test
+  fun givenACdnThatEndsASegmentEarly_whenIDownload_thenIExpectAFailure() {
+    val cdn = MockCdn(contents, truncateSegments = true)
+
+    assertFailure { downloader.download(destination, cdn, Long.MAX_VALUE, null) }.isInstanceOf(PushNetworkException::class)
+  }
+
+  /**
+   * Serves ranges of [contents], optionally failing the request for the range starting at [failingStart].
+   */
+  private class MockCdn(
+    private val contents: ByteArray,
+    var failingStart: Long? = null,
+    private val truncateSegments: Boolean = false
+  ) : SegmentedDownloader.RangeTransport {
+
+    val requestedStarts: MutableList<Long> = Collections.synchronizedList(mutableListOf())
+
+    override fun getLength(): Long = contents.size.toLong()
+
+    override fun openRange(start: Long, endInclusive: Long): InputStream {
+      requestedStarts += start
+
+      if (start == failingStart) {
+        throw IOException("Connection reset")
+      }
+
+      val length = (endInclusive - start + 1).toInt() - if (truncateSegments) 1 else 0
+
+      return ByteArrayInputStream(contents, start.toInt(), length)
+    }
+  }
+}
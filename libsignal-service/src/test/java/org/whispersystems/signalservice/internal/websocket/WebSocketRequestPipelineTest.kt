@@ -0,0 +1,247 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.internal.websocket
+
+import assertk.assertThat
+import assertk.assertions.hasSize
+import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isLessThanOrEqualTo
+import assertk.assertions.isTrue
+import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.schedulers.TestScheduler
+import io.reactivex.rxjava3.subjects.SingleSubject
+import okio.ByteString.Companion.encodeUtf8
+import org.junit.Test
+import org.signal.core.util.metrics.Metrics
+import java.io.IOException
+import java.util.Collections
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+
+class WebSocketRequestPipelineTest {
+
+  companion object {
+    private val ACI = "a".repeat(36)
+  }
+
+  private val scheduler = TestScheduler()
+  private val server = FakeServer(scheduler)
+
+  @Test
+  fun givenAFullWindow_whenIMakeMoreRequests_thenTheyAreQueuedUntilAResponseArrives() {
+    val pipeline = WebSocketRequestPipeline(maxInFlight = 4, send = server::hold)
+
+    val responses = (1..10).map { pipeline.request(put("/v1/messages/$it"), 10) }
+
+    assertThat(server.held).hasSize(4)
+    assertThat(pipeline.inFlightCount).isEqualTo(4)
+    assertThat(pipeline.queuedCount).isEqualTo(6)
+
+    server.held.removeAt(0).onSuccess(WebsocketResponse(200, "", emptyList(), false))
+
+    assertThat(server.held).hasSize(4)
+    assertThat(pipeline.queuedCount).isEqualTo(5)
+    assertThat(responses[0].blockingGet().status).isEqualTo(200)
+  }
+
+  @Test
+  fun givenAnIdenticalGetInFlight_whenIRequestItAgain_thenBothShareOneSend() {
+    val pipeline = WebSocketRequestPipeline(send = server::hold)
+
+    val first = pipeline.request(get("/v1/profile/$ACI", "accessKey:1"), 10)
+    val second = pipeline.request(get("/v1/profile/$ACI", "accessKey:1"), 10)
+
+    assertThat(server.held).hasSize(1)
+
+    server.held.removeAt(0).onSuccess(WebsocketResponse(200, "profile", emptyList(), false))
+
+    assertThat(first.blockingGet().body).isEqualTo("profile")
+    assertThat(second.blockingGet().body).isEqualTo("profile")
+  }
+
+  @Test
+  fun givenDifferentHeadersOrNonIdempotentRequests_whenIRequestThem_thenTheyAreNotCoalesced() {
+    val pipeline = WebSocketRequestPipeline(send = server::hold)
+
+    pipeline.request(get("/v1/profile/$ACI", "accessKey:1"), 10)
+    pipeline.request(get("/v1/profile/$ACI", "accessKey:2"), 10)
+    pipeline.request(put("/v1/messages/abc"), 10)
+    pipeline.request(put("/v1/messages/abc"), 10)
+
+    assertThat(server.held).hasSize(4)
+  }
+
+  @Test
+  fun givenAnIdenticalGetToAnEndpointThatIsNotAllowlisted_whenIRequestItAgain_thenItIsSentAgain() {
+    val pipeline = WebSocketRequestPipeline(send = server::hold)
+
+    pipeline.request(get("/v2/keys?identity=aci"), 10)
+    pipeline.request(get("/v2/keys?identity=aci"), 10)
+
+    assertThat(server.held).hasSize(2)
+  }
+
+  @Test
+  fun givenAFullQueue_whenIMakeAnotherRequest_thenItIsRejectedWithoutBeingQueued() {
+    val pipeline = WebSocketRequestPipeline(maxInFlight = 1, maxQueued = 2, send = server::hold)
+
+    val accepted = (1..3).map { pipeline.request(put("/v1/messages/$it"), 10) }
+    val rejected = pipeline.request(put("/v1/messages/4"), 10)
+
+    assertThat(rejected.test().errors().single()).isInstanceOf(IOException::class)
+    assertThat(pipeline.queuedCount).isEqualTo(2)
+
+    server.held.removeAt(0).onSuccess(WebsocketResponse(200, "", emptyList(), false))
+    pipeline.request(put("/v1/messages/5"), 10)
+
+    assertThat(accepted[0].blockingGet().status).isEqualTo(200)
+    assertThat(pipeline.queuedCount).isEqualTo(2)
+  }
+
+  @Test
+  fun givenACompletedGet_whenIRequestItAgain_thenItIsSentAgain() {
+    val pipeline = WebSocketRequestPipeline(send = server::hold)
+
+    pipeline.request(get("/v1/profile/$ACI"), 10)
+    server.held.removeAt(0).onSuccess(WebsocketResponse(200, "", emptyList(), false))
+    pipeline.request(get("/v1/profile/$ACI"), 10)
+
+    assertThat(server.held).hasSize(1)
+  }
+
+  @Test
+  fun givenTheConnectionIsLostWithRequestsQueued_whenTheWindowFrees_thenEachQueuedRequestFails() {
+    var connected = true
+    val pipeline = WebSocketRequestPipeline(maxInFlight = 1, maxQueued = 5_000) { request, timeout ->
+      if (connected) server.hold(request, timeout) else throw IOException("No connection!")
+    }
+
+    val responses = (1..5_000).map { pipeline.request(put("/v1/messages/$it"), 10) }
+    assertThat(pipeline.queuedCount).isEqualTo(4_999)
+
+    connected = false
+    server.held.removeAt(0).onError(IOException("Closed unexpectedly"))
+
+    responses.forEach { assertThat(it.test().await().errorCount()).isEqualTo(1) }
+    assertThat(pipeline.inFlightCount).isEqualTo(0)
+    assertThat(pipeline.queuedCount).isEqualTo(0)
+  }
+
+  @Test
+  fun givenAQueuedRequest_whenItsTimeoutRunsOutBeforeItIsSent_thenItFailsAndLeavesTheQueue() {
+    val pipeline = WebSocketRequestPipeline(maxInFlight = 1, scheduler = scheduler, send = server::hold)
+
+    pipeline.request(put("/v1/messages/1"), 10)
+    val queued = pipeline.request(put("/v1/messages/2"), 1)
+
+    scheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS)
+    assertThat(pipeline.queuedCount).isEqualTo(1)
+
+    scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+    assertThat(queued.test().errors().single()).isInstanceOf(TimeoutException::class)
+    assertThat(pipeline.queuedCount).isEqualTo(0)
+
+    server.held.removeAt(0).onSuccess(WebsocketResponse(200, "", emptyList(), false))
+
+    assertThat(server.held).hasSize(0)
+    assertThat(pipeline.inFlightCount).isEqualTo(0)
+  }
+
+  @Test
+  fun givenQueuedRequests_whenIFailThem_thenOnlyTheQueuedOnesFail() {
+    val pipeline = WebSocketRequestPipeline(maxInFlight = 1, send = server::hold)
+
+    val sent = pipeline.request(put("/v1/messages/1"), 10)
+    val queued = (2..4).map { pipeline.request(put("/v1/messages/$it"), 10) }
+
+    pipeline.failQueued("Disconnected.")
+
+    queued.forEach { assertThat(it.test().errors().single()).isInstanceOf(IOException::class) }
+    assertThat(pipeline.queuedCount).isEqualTo(0)
+    assertThat(pipeline.inFlightCount).isEqualTo(1)
+
+    server.held.removeAt(0).onSuccess(WebsocketResponse(200, "", emptyList(), false))
+
+    assertThat(sent.blockingGet().status).isEqualTo(200)
+    assertThat(server.held).hasSize(0)
+  }
+
+  @Test
+  fun givenCompletedRequests_whenIReadTheMetrics_thenLatenciesAreGroupedByEndpoint() {
+    val pipeline = WebSocketRequestPipeline(send = server::respond)
+    val profilesBefore = recordedLatencies("GET /v1/profile/{id}/{id}")
+    val messagesBefore = recordedLatencies("PUT /v1/messages/abc")
+
+    pipeline.request(get("/v1/profile/$ACI/1"), 10).blockingGet()
+    pipeline.request(get("/v1/profile/${"b".repeat(36)}/2"), 10).blockingGet()
+    pipeline.request(put("/v1/messages/abc?story=false"), 10).blockingGet()
+
+    assertThat(recordedLatencies("GET /v1/profile/{id}/{id}") - profilesBefore).isEqualTo(2L)
+    assertThat(recordedLatencies("PUT /v1/messages/abc") - messagesBefore).isEqualTo(1L)
+  }
+
+  @Test
+  fun given2000Requests_whenPipelined_thenTheyAreBoundByTheWindowRatherThanRoundTrips() {
+    val latencyMs = 20L
+    val pipeline = WebSocketRequestPipeline(maxInFlight = 32, maxQueued = 2_000, scheduler = scheduler) { request, timeout -> server.respond(request, timeout, latencyMs) }
+    val recordedBefore = recordedLatencies("GET /v1/profile/{id}")
+
+    val responses = (1..2_000).map { pipeline.request(get("/v1/profile/$it"), 10) }
+
+    // 2,000 requests, 32 at a time, is 63 round trips
+    scheduler.advanceTimeBy(63 * latencyMs, TimeUnit.MILLISECONDS)
+
+    assertThat(responses.all { it.hasValue() }).isTrue()
+    assertThat(server.maxInFlight.get()).isLessThanOrEqualTo(32)
+    assertThat(recordedLatencies("GET /v1/profile/{id}") - recordedBefore).isEqualTo(2_000L)
+  }
+
+  /** [Metrics] is shared by the whole process, so tests compare against what was recorded before they ran. */
+  private fun recordedLatencies(endpoint: String): Long {
+    return Metrics.snapshot().histograms[WebSocketRequestPipeline.METRIC_REQUEST]?.get(endpoint)?.count ?: 0
+  }
+
+  private fun get(path: String, vararg headers: String): WebSocketRequestMessage {
+    return WebSocketRequestMessage(verb = "GET", path = path, headers = headers.toList(), id = System.nanoTime())
+  }
+
+  private fun put(path: String): WebSocketRequestMessage {
+    return WebSocketRequestMessage(verb = "PUT", path = path, body = "{}".encodeUtf8(), id = System.nanoTime())
+  }
+
+  /**
+   * Stands in for the server on the other end of the websocket.
+   */
+  private class FakeServer(private val scheduler: TestScheduler) {
+    val held: MutableList<SingleSubject<WebsocketResponse>> = Collections.synchronizedList(mutableListOf())
+    val inFlight = AtomicInteger()
+    val maxInFlight = AtomicInteger()
+
+    /** Holds on to the response so the test can decide when it arrives. */
+    @Suppress("UNUSED_PARAMETER")
+    fun hold(request: WebSocketRequestMessage, timeoutSeconds: Long): Single<WebsocketResponse> {
+      return SingleSubject.create<WebsocketResponse>().also { held += it }
+    }
+
+    /** Responds once the test's scheduler has advanced by [latencyMs]. */
+    @Suppress("UNUSED_PARAMETER")
+    fun respond(request: WebSocketRequestMessage, timeoutSeconds: Long, latencyMs: Long): Single<WebsocketResponse> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet()) { a, b -> maxOf(a, b) }
+
+      return Single.timer(latencyMs, TimeUnit.MILLISECONDS, scheduler)
+        .map { WebsocketResponse(200, "", emptyList(), false) }
+        .doOnSuccess { inFlight.decrementAndGet() }
+    }
+
+    /** Responds immediately. */
+    @Suppress("UNUSED_PARAMETER")
+    fun respond(request: WebSocketRequestMessage, timeoutSeconds: Long): Single<WebsocketResponse> {
+      return Single.just(WebsocketResponse(200, "", emptyList(), false))
+    }
+  }
+}
@@ -1,4 +1,9 @@
-package org.signal.util
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.signalservice.test
 
 import okio.ByteString.Companion.toByteString
 import org.signal.core.util.Base64
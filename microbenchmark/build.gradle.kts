@@ -60,5 +60,6 @@ dependencies {
 
   // Dependencies of modules being tested
   androidTestImplementation(project(":libsignal-service"))
+  androidTestImplementation(testFixtures(project(":libsignal-service")))
   androidTestImplementation(libs.libsignal.android)
 }
@@ -10,8 +10,8 @@ import org.junit.Test
 import org.junit.runner.RunWith
 import org.signal.libsignal.protocol.logging.SignalProtocolLogger
 import org.signal.libsignal.protocol.logging.SignalProtocolLoggerProvider
-import org.signal.util.SignalClient
 import org.whispersystems.signalservice.api.push.DistributionId
+import org.whispersystems.signalservice.test.SignalClient
 import java.util.Optional
 
 /**
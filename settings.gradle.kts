@@ -91,6 +91,7 @@ include(":photoview")
 include(":core-ui")
 include(":benchmark")
 include(":microbenchmark")
+include(":benchmark-jvm")
 include(":video")
 include(":video-app")
 include(":billing")